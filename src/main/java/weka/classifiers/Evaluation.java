@@ -300,6 +300,90 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
     return m_delegate.getDiscardPredictions();
   }
 
+  /**
+   * Sets the number of threads to use for building the classifiers of a
+   * cross-validation. The statistics and the order of the predictions are
+   * the same as when running sequentially.
+   * 
+   * @param value the number of threads (1 = sequential, 0 = all available
+   *          processors)
+   */
+  public void setNumExecutionSlots(int value) {
+    m_delegate.setNumExecutionSlots(value);
+  }
+
+  /**
+   * Returns the number of threads to use for building the classifiers of a
+   * cross-validation.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_delegate.getNumExecutionSlots();
+  }
+
+  /**
+   * Sets the number of test instances to pass at once to a classifier that
+   * implements BatchPredictor efficiently.
+   *
+   * @param value the batch size (0 = all instances at once)
+   */
+  public void setPredictionBatchSize(int value) {
+    m_delegate.setPredictionBatchSize(value);
+  }
+
+  /**
+   * Returns the number of test instances to pass at once to a classifier that
+   * implements BatchPredictor efficiently.
+   *
+   * @return the batch size (0 = all instances at once)
+   */
+  public int getPredictionBatchSize() {
+    return m_delegate.getPredictionBatchSize();
+  }
+
+  /**
+   * Sets whether to score the next batch of test instances on a separate
+   * thread while the statistics of the current batch are updated.
+   *
+   * @param value true to score batches on a separate thread
+   */
+  public void setPipelinePredictions(boolean value) {
+    m_delegate.setPipelinePredictions(value);
+  }
+
+  /**
+   * Returns whether the next batch of test instances is scored on a separate
+   * thread while the current one is evaluated.
+   *
+   * @return true if batches are scored on a separate thread
+   */
+  public boolean getPipelinePredictions() {
+    return m_delegate.getPipelinePredictions();
+  }
+
+  /**
+   * Sets the number of bins per class used for estimating the areas under ROC
+   * and PRC when predictions are discarded.
+   *
+   * @param value the number of bins (0 = areas are not available when
+   *          discarding predictions)
+   * @see #setDiscardPredictions(boolean)
+   */
+  public void setNumCurveBins(int value) {
+    m_delegate.setNumCurveBins(value);
+  }
+
+  /**
+   * Returns the number of bins per class used for estimating the areas under
+   * ROC and PRC when predictions are discarded.
+   *
+   * @return the number of bins
+   */
+  public int getNumCurveBins() {
+    return m_delegate.getNumCurveBins();
+  }
+
   /**
    * Returns the area under ROC for those predictions that have been collected
    * in the evaluateClassifier(Classifier, Instances) method. Returns
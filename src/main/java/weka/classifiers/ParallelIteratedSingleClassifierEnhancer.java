@@ -148,6 +148,17 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
       + "constructing the ensemble.";
   }
 
+  /**
+   * Returns the number of threads to use, i.e., the number of execution slots
+   * or the number of available processors if the number of slots is 0.
+   *
+   * @return the number of threads
+   */
+  protected int numExecutionThreads() {
+    return (m_numExecutionSlots == 0) ? Runtime.getRuntime()
+      .availableProcessors() : Math.max(1, m_numExecutionSlots);
+  }
+
   /**
    * Stump method for building the classifiers
    *
@@ -176,10 +187,8 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
 
     if (m_numExecutionSlots != 1) {
 
-      int numCores =
-        (m_numExecutionSlots == 0) ? Runtime.getRuntime().availableProcessors()
-          : m_numExecutionSlots;
-      ExecutorService executorPool = Executors.newFixedThreadPool(numCores);
+      ExecutorService executorPool =
+        Executors.newFixedThreadPool(numExecutionThreads());
 
       final CountDownLatch doneSignal =
         new CountDownLatch(m_Classifiers.length);
@@ -200,7 +209,7 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
           @Override
           public void run() {
             try {
-              currentClassifier.buildClassifier(getTrainingSet(iteration));
+              buildClassifier(iteration);
             } catch (Throwable ex) {
               ex.printStackTrace();
               numFailed.incrementAndGet();
@@ -226,11 +235,23 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
     } else {
       // simple single-threaded execution
       for (int i = 0; i < m_Classifiers.length; i++) {
-        m_Classifiers[i].buildClassifier(getTrainingSet(i));
+        buildClassifier(i);
       }
     }
   }
 
+  /**
+   * Builds the member of the ensemble for a particular iteration, by default
+   * on the training set returned by getTrainingSet(int). Implementations
+   * may be called for several iterations at the same time.
+   *
+   * @param iteration the number of the iteration
+   * @throws Exception if the classifier could not be built successfully
+   */
+  protected void buildClassifier(int iteration) throws Exception {
+    m_Classifiers[iteration].buildClassifier(getTrainingSet(iteration));
+  }
+
   /**
    * Gets a training set for a particular iteration. Implementations need to be
    * careful with thread safety and should probably be synchronized to be on the
@@ -156,6 +156,15 @@ public class AggregateableEvaluation extends Evaluation implements
       }
     }
 
+    ThresholdCurveSketch sketchToAdd = evaluation.m_CurveSketch;
+    if (sketchToAdd != null) {
+      if (m_CurveSketch == null) {
+        m_CurveSketch = new ThresholdCurveSketch(sketchToAdd.numClasses(),
+          sketchToAdd.getNumBins());
+      }
+      m_CurveSketch.merge(sketchToAdd);
+    }
+
     return this;
   }
 
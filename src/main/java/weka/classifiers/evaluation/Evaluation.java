@@ -38,6 +38,7 @@ import weka.classifiers.xml.XMLClassifier;
 import weka.core.*;
 import weka.core.converters.ConverterUtils.DataSink;
 import weka.core.converters.ConverterUtils.DataSource;
+import weka.core.converters.PrefetchingLoader;
 import weka.core.pmml.PMMLFactory;
 import weka.core.pmml.PMMLModel;
 import weka.core.xml.KOML;
@@ -54,8 +55,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -168,6 +175,26 @@ import java.util.zip.GZIPOutputStream;
  * Turns off the collection of predictions in order to conserve memory.
  * <p/>
  *
+ * -num-slots &lt;num&gt; <br/>
+ * Number of threads for building the classifiers of a cross-validation (0 =
+ * all processors; default 1).
+ * <p/>
+ *
+ * -prediction-batch-size &lt;num&gt; <br/>
+ * Number of test instances to pass at once to a classifier that predicts
+ * batches efficiently (default 0, i.e., all instances).
+ * <p/>
+ *
+ * -pipeline-predictions <br/>
+ * Scores the next batch of test instances on a separate thread while the
+ * current one is evaluated.
+ * <p/>
+ *
+ * -curve-bins &lt;num&gt; <br/>
+ * Number of bins per class for estimating the areas under ROC and PRC when
+ * predictions are discarded (default 0, i.e., not estimated).
+ * <p/>
+ *
  * -r <br/>
  * Outputs cumulative margin distribution (and nothing else).
  * <p/>
@@ -448,6 +475,42 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    */
   protected boolean m_DiscardPredictions;
 
+  /**
+   * the number of bins per class of the sketch used for estimating the areas
+   * under ROC and PRC when predictions are discarded (0 = no sketch).
+   */
+  protected int m_NumCurveBins = 0;
+
+  /** summarizes the discarded predictions (for estimating AUC). */
+  protected ThresholdCurveSketch m_CurveSketch;
+
+  /** the areas under ROC and PRC per class, computed from m_Predictions. */
+  protected transient double[][] m_CurveAreas;
+
+  /** the list of predictions the cached areas are based on. */
+  protected transient ArrayList<Prediction> m_CurveAreasPredictions;
+
+  /** the number of predictions the cached areas are based on. */
+  protected transient int m_CurveAreasCount;
+
+  /**
+   * the number of threads to use for building the classifiers of a
+   * cross-validation (1 = sequential, 0 = all available processors).
+   */
+  protected int m_NumExecutionSlots = 1;
+
+  /**
+   * the number of test instances to pass at once to a classifier that
+   * implements BatchPredictor efficiently (0 = all instances).
+   */
+  protected int m_PredictionBatchSize = 0;
+
+  /**
+   * whether to score the next batch of test instances on a separate thread
+   * while the current one is evaluated.
+   */
+  protected boolean m_PipelinePredictions = false;
+
   /**
    * Holds plugin evaluation metrics
    */
@@ -610,6 +673,112 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     return m_DiscardPredictions;
   }
 
+  /**
+   * Sets the number of bins per class used for estimating the areas under ROC
+   * and PRC when predictions are discarded. Instead of the predictions, only
+   * histograms of the predicted probabilities are kept, using memory
+   * proportional to the number of bins. A larger number of bins results in a
+   * smaller error, see ThresholdCurveSketch.
+   *
+   * @param value the number of bins (0 = areas are not available when
+   *          discarding predictions)
+   * @see #setDiscardPredictions(boolean)
+   * @see ThresholdCurveSketch
+   */
+  public void setNumCurveBins(int value) {
+    m_NumCurveBins = value;
+    m_CurveSketch = null;
+  }
+
+  /**
+   * Returns the number of bins per class used for estimating the areas under
+   * ROC and PRC when predictions are discarded.
+   *
+   * @return the number of bins (0 = areas are not available when discarding
+   *         predictions)
+   */
+  public int getNumCurveBins() {
+    return m_NumCurveBins;
+  }
+
+  /**
+   * Returns the sketch summarizing the discarded predictions.
+   *
+   * @return the sketch, null if predictions are not discarded, no bins have
+   *         been set or no predictions have been made
+   * @see #setNumCurveBins(int)
+   */
+  public ThresholdCurveSketch getCurveSketch() {
+    return m_CurveSketch;
+  }
+
+  /**
+   * Sets the number of threads to use for building the classifiers of a
+   * cross-validation. The statistics and the order of the predictions are
+   * the same as when running sequentially.
+   *
+   * @param value the number of threads (1 = sequential, 0 = all available
+   *          processors)
+   */
+  public void setNumExecutionSlots(int value) {
+    m_NumExecutionSlots = value;
+  }
+
+  /**
+   * Returns the number of threads to use for building the classifiers of a
+   * cross-validation.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Sets the number of test instances to pass at once to a classifier that
+   * implements BatchPredictor efficiently. Smaller batches need less memory,
+   * as only a batch rather than the whole test set is copied for prediction.
+   *
+   * @param value the batch size (0 = all instances at once)
+   * @see #evaluateModel(Classifier, Instances, Object...)
+   */
+  public void setPredictionBatchSize(int value) {
+    m_PredictionBatchSize = value;
+  }
+
+  /**
+   * Returns the number of test instances to pass at once to a classifier that
+   * implements BatchPredictor efficiently.
+   *
+   * @return the batch size (0 = all instances at once)
+   */
+  public int getPredictionBatchSize() {
+    return m_PredictionBatchSize;
+  }
+
+  /**
+   * Sets whether to score the next batch of test instances on a separate
+   * thread while the statistics of the current batch are updated. Only has an
+   * effect if the test set is split into several batches. The statistics and
+   * the order of the predictions are the same as without pipelining.
+   *
+   * @param value true to score batches on a separate thread
+   * @see #setPredictionBatchSize(int)
+   */
+  public void setPipelinePredictions(boolean value) {
+    m_PipelinePredictions = value;
+  }
+
+  /**
+   * Returns whether the next batch of test instances is scored on a separate
+   * thread while the current one is evaluated.
+   *
+   * @return true if batches are scored on a separate thread
+   */
+  public boolean getPipelinePredictions() {
+    return m_PipelinePredictions;
+  }
+
   /**
    * Returns the list of plugin metrics in use (or null if there are none)
    *
@@ -687,8 +856,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
 
   /**
    * Returns the area under ROC for those predictions that have been collected
-   * in the evaluateClassifier(Classifier, Instances) method. Returns
-   * Utils.missingValue() if the area is not available.
+   * in the evaluateClassifier(Classifier, Instances) method. If predictions
+   * are discarded, the area is estimated from the curve sketch, if any.
+   * Returns Utils.missingValue() if the area is not available.
    *
    * @param classIndex the index of the class to consider as "positive"
    * @return the area under the ROC curve or not a number
@@ -697,11 +867,12 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
 
     // Check if any predictions have been collected
     if (m_Predictions == null) {
+      if (m_CurveSketch != null) {
+        return m_CurveSketch.getROCArea(classIndex);
+      }
       return Utils.missingValue();
     } else {
-      ThresholdCurve tc = new ThresholdCurve();
-      Instances result = tc.getCurve(m_Predictions, classIndex);
-      return ThresholdCurve.getROCArea(result);
+      return curveAreas(classIndex)[0];
     }
   }
 
@@ -727,7 +898,8 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
   /**
    * Returns the area under precision-recall curve (AUPRC) for those predictions
    * that have been collected in the evaluateClassifier(Classifier, Instances)
-   * method. Returns Utils.missingValue() if the area is not available.
+   * method. If predictions are discarded, the area is estimated from the curve
+   * sketch, if any. Returns Utils.missingValue() if the area is not available.
    *
    * @param classIndex the index of the class to consider as "positive"
    * @return the area under the precision-recall curve or not a number
@@ -735,12 +907,48 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
   public double areaUnderPRC(int classIndex) {
     // Check if any predictions have been collected
     if (m_Predictions == null) {
+      if (m_CurveSketch != null) {
+        return m_CurveSketch.getPRCArea(classIndex);
+      }
       return Utils.missingValue();
     } else {
-      ThresholdCurve tc = new ThresholdCurve();
-      Instances result = tc.getCurve(m_Predictions, classIndex);
-      return ThresholdCurve.getPRCArea(result);
+      return curveAreas(classIndex)[1];
+    }
+  }
+
+  /**
+   * Returns the areas under ROC and PRC for the given class, computed from the
+   * collected predictions without generating the threshold curve. The areas
+   * are cached until further predictions are collected.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the area under ROC and the area under PRC
+   * @see ThresholdCurve#getCurveAreas(double[], double[], double[], int)
+   */
+  protected double[] curveAreas(int classIndex) {
+    if ((m_CurveAreas == null) || (m_CurveAreasPredictions != m_Predictions)
+      || (m_CurveAreasCount != m_Predictions.size())) {
+      m_CurveAreas = new double[m_NumClasses][];
+      m_CurveAreasPredictions = m_Predictions;
+      m_CurveAreasCount = m_Predictions.size();
     }
+
+    if (m_CurveAreas[classIndex] == null) {
+      int n = m_Predictions.size();
+      double[] probs = new double[n];
+      double[] actual = new double[n];
+      double[] weights = new double[n];
+      for (int i = 0; i < n; i++) {
+        NominalPrediction pred = (NominalPrediction) m_Predictions.get(i);
+        probs[i] = pred.distribution()[classIndex];
+        actual[i] = pred.actual();
+        weights[i] = pred.weight();
+      }
+      m_CurveAreas[classIndex] =
+        ThresholdCurve.getCurveAreas(probs, actual, weights, classIndex);
+    }
+
+    return m_CurveAreas[classIndex];
   }
 
   /**
@@ -835,21 +1043,23 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
       classificationOutput.printHeader();
     }
 
+    int numThreads = m_NumExecutionSlots;
+    if (numThreads == 0) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+
     // Do the folds
-    for (int i = 0; i < numFolds; i++) {
-      Instances train = data.trainCV(numFolds, i, random);
-      setPriors(train);
-      Classifier copiedClassifier = AbstractClassifier.makeCopy(classifier);
-      copiedClassifier.buildClassifier(train);
-      if (classificationOutput == null && forPrinting.length > 0) {
-        ((StringBuffer)forPrinting[0]).append("\n=== Classifier model (training fold " + (i + 1) +") ===\n\n" +
-                copiedClassifier);
-      }
-      Instances test = data.testCV(numFolds, i);
-      if (classificationOutput != null){
-        evaluateModel(copiedClassifier, test, forPrinting);
-      } else {
-        evaluateModel(copiedClassifier, test);
+    if (numThreads > 1 && numFolds > 1) {
+      crossValidateFolds(classifier, data, numFolds, random, numThreads,
+        classificationOutput, forPrinting);
+    } else {
+      for (int i = 0; i < numFolds; i++) {
+        Instances train = data.trainCV(numFolds, i, random);
+        setPriors(train);
+        Classifier copiedClassifier = AbstractClassifier.makeCopy(classifier);
+        copiedClassifier.buildClassifier(train);
+        evaluateFold(copiedClassifier, data, numFolds, i,
+          classificationOutput, forPrinting);
       }
     }
     m_NumFolds = numFolds;
@@ -859,6 +1069,100 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     }
   }
 
+  /**
+   * Builds the classifiers of the folds of a cross-validation in parallel.
+   * The folds are generated and evaluated in order in the calling thread
+   * (which evaluates a fold while the later ones are still being built), so
+   * the random number generator is used, and the statistics are accumulated,
+   * in exactly the same way as in a sequential cross-validation. Each
+   * classifier is trained on its own copy of the training fold.
+   *
+   * @param classifier the classifier with any options set
+   * @param data the randomized (and stratified) data
+   * @param numFolds the number of folds for the cross-validation
+   * @param random random number generator for randomization
+   * @param numThreads the number of threads to use
+   * @param classificationOutput for printing the predictions, can be null
+   * @param forPrinting the objects for printing, as passed to
+   *          crossValidateModel
+   * @throws Exception if a classifier could not be generated successfully
+   */
+  protected void crossValidateFolds(Classifier classifier, Instances data,
+    int numFolds, Random random, int numThreads,
+    AbstractOutput classificationOutput, Object[] forPrinting)
+    throws Exception {
+
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      LinkedList<Instances> trainSets = new LinkedList<Instances>();
+      LinkedList<Future<Classifier>> pending =
+        new LinkedList<Future<Classifier>>();
+      int next = 0;
+      for (int i = 0; i < numFolds; i++) {
+        // keep the threads busy, but bound the number of folds in memory
+        while (next < numFolds && pending.size() < 2 * numThreads) {
+          Instances train = data.trainCV(numFolds, next, random);
+          final Instances trainCopy = new Instances(train);
+          final Classifier copiedClassifier =
+            AbstractClassifier.makeCopy(classifier);
+          trainSets.add(train);
+          pending.add(pool.submit(new Callable<Classifier>() {
+            @Override
+            public Classifier call() throws Exception {
+              copiedClassifier.buildClassifier(trainCopy);
+              return copiedClassifier;
+            }
+          }));
+          next++;
+        }
+
+        Classifier copiedClassifier;
+        try {
+          copiedClassifier = pending.removeFirst().get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+        setPriors(trainSets.removeFirst());
+        evaluateFold(copiedClassifier, data, numFolds, i, classificationOutput,
+          forPrinting);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Evaluates the classifier built on the training data of a fold on the
+   * fold's test data.
+   *
+   * @param copiedClassifier the classifier built for the fold
+   * @param data the randomized (and stratified) data
+   * @param numFolds the number of folds for the cross-validation
+   * @param fold the index of the fold
+   * @param classificationOutput for printing the predictions, can be null
+   * @param forPrinting the objects for printing, as passed to
+   *          crossValidateModel
+   * @throws Exception if the classifier could not be evaluated
+   */
+  protected void evaluateFold(Classifier copiedClassifier, Instances data,
+    int numFolds, int fold, AbstractOutput classificationOutput,
+    Object[] forPrinting) throws Exception {
+
+    if (classificationOutput == null && forPrinting.length > 0) {
+      ((StringBuffer)forPrinting[0]).append("\n=== Classifier model (training fold " + (fold + 1) +") ===\n\n" +
+              copiedClassifier);
+    }
+    Instances test = data.testCV(numFolds, fold);
+    if (classificationOutput != null){
+      evaluateModel(copiedClassifier, test, forPrinting);
+    } else {
+      evaluateModel(copiedClassifier, test);
+    }
+  }
+
   /**
    * Performs a (stratified if class is nominal) cross-validation for a
    * classifier on a set of instances.
@@ -982,6 +1286,26 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * Turns off the collection of predictions in order to conserve memory.
    * <p/>
    * <p>
+   * -num-slots &lt;num&gt; <br/>
+   * Number of threads for building the classifiers of a cross-validation (0 =
+   * all processors; default 1).
+   * <p/>
+   * <p>
+   * -prediction-batch-size &lt;num&gt; <br/>
+   * Number of test instances to pass at once to a classifier that predicts
+   * batches efficiently (default 0, i.e., all instances).
+   * <p/>
+   * <p>
+   * -pipeline-predictions <br/>
+   * Scores the next batch of test instances on a separate thread while the
+   * current one is evaluated.
+   * <p/>
+   * <p>
+   * -curve-bins &lt;num&gt; <br/>
+   * Number of bins per class for estimating the areas under ROC and PRC when
+   * predictions are discarded (default 0, i.e., not estimated).
+   * <p/>
+   * <p>
    * -r <br/>
    * Outputs cumulative margin distribution (and nothing else).
    * <p/>
@@ -1110,6 +1434,39 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     return classifier;
   }
 
+  /**
+   * Returns a data source for the given file that, if the file can be read incrementally, parses instances ahead
+   * on a background thread while the caller processes them.
+   *
+   * @param fileName the file to read
+   * @return the data source
+   * @throws Exception if the data source can't be initialized
+   */
+  protected static DataSource getPrefetchingSource(String fileName) throws Exception {
+    DataSource source = new DataSource(fileName);
+    if (source.isIncremental()) {
+      source = new DataSource(new PrefetchingLoader(source.getLoader()));
+    }
+    return source;
+  }
+
+  /**
+   * Stops a data source obtained from getPrefetchingSource from reading ahead,
+   * so that the reader thread doesn't keep the file open if the caller stops
+   * before the end of the data.
+   *
+   * @param source the data source
+   */
+  protected static void closePrefetchingSource(DataSource source) {
+    if (source.getLoader() instanceof PrefetchingLoader) {
+      try {
+        source.getLoader().reset();
+      } catch (Exception ex) {
+        // ignore
+      }
+    }
+  }
+
   /**
    * Saves the given classifier, along with the template Instances object (if appropriate) to the given file.
    *
@@ -1251,6 +1608,26 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * Turns off the collection of predictions in order to conserve memory.
    * <p/>
    *
+   * -num-slots &lt;num&gt; <br/>
+   * Number of threads for building the classifiers of a cross-validation (0 =
+   * all processors; default 1).
+   * <p/>
+   * <p>
+   * -prediction-batch-size &lt;num&gt; <br/>
+   * Number of test instances to pass at once to a classifier that predicts
+   * batches efficiently (default 0, i.e., all instances).
+   * <p/>
+   * <p>
+   * -pipeline-predictions <br/>
+   * Scores the next batch of test instances on a separate thread while the
+   * current one is evaluated.
+   * <p/>
+   *
+   * -curve-bins &lt;num&gt; <br/>
+   * Number of bins per class for estimating the areas under ROC and PRC when
+   * predictions are discarded (default 0, i.e., not estimated).
+   * <p/>
+   *
    * -r <br/>
    * Outputs cumulative margin distribution (and nothing else).
    * <p/>
@@ -1320,6 +1697,13 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     String splitPercentageString = Utils.getOption("split-percentage", options);
     boolean preserveOrder = Utils.getFlag("preserve-order", options);
     boolean discardPredictions = Utils.getFlag("no-predictions", options);
+    String numSlotsString = Utils.getOption("num-slots", options);
+    int numSlots = (numSlotsString.length() > 0) ? Integer.parseInt(numSlotsString) : 1;
+    String curveBinsString = Utils.getOption("curve-bins", options);
+    int curveBins = (curveBinsString.length() > 0) ? Integer.parseInt(curveBinsString) : 0;
+    String batchSizeString = Utils.getOption("prediction-batch-size", options);
+    int predictionBatchSize = (batchSizeString.length() > 0) ? Integer.parseInt(batchSizeString) : 0;
+    boolean pipelinePredictions = Utils.getFlag("pipeline-predictions", options);
     String metricsToToggle = Utils.getOption("toggle", options);
     boolean continueIteratingIterative = Utils.getFlag("continue-iterating", options);
     boolean cleanUpIterative = Utils.getFlag("clean-up", options);
@@ -1595,13 +1979,17 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
               (testFileName.length() > 0) || (classificationOutput != null && noCrossValidation && splitPercentage == -1)) {
         if ((classifier instanceof UpdateableClassifier) && !forceBatchTraining) { // Build classifier incrementally
           trainTimeStart = System.currentTimeMillis();
-          DataSource trainSource = new DataSource(trainFileName);
-          trainSource.getStructure(); // Need to advance in the file to get to the data
-          if (objectInputFileName.length() <= 0) { // Only need to initialize classifier if we haven't loaded one
-            classifier.buildClassifier(new Instances(train, 0));
-          }
-          while (trainSource.hasMoreElements(train)) {
-            ((UpdateableClassifier) classifier).updateClassifier(trainSource.nextElement(train));
+          DataSource trainSource = getPrefetchingSource(trainFileName);
+          try {
+            trainSource.getStructure(); // Need to advance in the file to get to the data
+            if (objectInputFileName.length() <= 0) { // Only need to initialize classifier if we haven't loaded one
+              classifier.buildClassifier(new Instances(train, 0));
+            }
+            while (trainSource.hasMoreElements(train)) {
+              ((UpdateableClassifier) classifier).updateClassifier(trainSource.nextElement(train));
+            }
+          } finally {
+            closePrefetchingSource(trainSource);
           }
           if (classifier instanceof UpdateableBatchProcessor) {
             ((UpdateableBatchProcessor) classifier).batchFinished();
@@ -1723,6 +2111,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
           testingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
         }
         testingEvaluation.toggleEvalMetrics(toggleList);
+        testingEvaluation.setNumExecutionSlots(numSlots);
+        testingEvaluation.setPredictionBatchSize(predictionBatchSize);
+        testingEvaluation.setPipelinePredictions(pipelinePredictions);
         classifier = AbstractClassifier.makeCopy(classifierBackup);
         predsBuff.append("\n=== Predictions under cross-validation ===\n\n");
         testingEvaluation.crossValidateModel(classifier, new DataSource(trainFileName).getDataSet(actualClassIndex), folds, random,
@@ -1743,7 +2134,11 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         testingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
       }
       testingEvaluation.setDiscardPredictions(discardPredictions);
+      testingEvaluation.setNumCurveBins(curveBins);
       testingEvaluation.toggleEvalMetrics(toggleList);
+      testingEvaluation.setNumExecutionSlots(numSlots);
+      testingEvaluation.setPredictionBatchSize(predictionBatchSize);
+      testingEvaluation.setPipelinePredictions(pipelinePredictions);
 
       // CASE 1: SEPARATE TEST SET
       if (testFileName.length() > 0) {
@@ -1755,6 +2150,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setNumCurveBins(curveBins);
+          trainingEvaluation.setPredictionBatchSize(predictionBatchSize);
+          trainingEvaluation.setPipelinePredictions(pipelinePredictions);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           trainingEvaluation.setPriors(train);
           testingEvaluation.setPriors(train);
@@ -1770,11 +2168,15 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation.evaluateModel(classifier, new DataSource(trainFileName).getDataSet(actualClassIndex));
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           } else {
-            trainSource = new DataSource(trainFileName);
-            trainSource.getStructure(); // We already know the structure but need to advance to the data section
-            testTimeStart = System.currentTimeMillis();
-            while (trainSource.hasMoreElements(train)) {
-              trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+            trainSource = getPrefetchingSource(trainFileName);
+            try {
+              trainSource.getStructure(); // We already know the structure but need to advance to the data section
+              testTimeStart = System.currentTimeMillis();
+              while (trainSource.hasMoreElements(train)) {
+                trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+              }
+            } finally {
+              closePrefetchingSource(trainSource);
             }
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           }
@@ -1805,11 +2207,15 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
           testingEvaluation.evaluateModel(classifier, new DataSource(testFileName).getDataSet(test.classIndex()));
           testTimeElapsed = System.currentTimeMillis() - testTimeStart;
         } else {
-          DataSource testSource = new DataSource(testFileName);
-          testSource.getStructure(); // We already know the structure but need to advance to the data section
-          testTimeStart = System.currentTimeMillis();
-          while (testSource.hasMoreElements(test)) {
-            testingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, testSource.nextElement(test));
+          DataSource testSource = getPrefetchingSource(testFileName);
+          try {
+            testSource.getStructure(); // We already know the structure but need to advance to the data section
+            testTimeStart = System.currentTimeMillis();
+            while (testSource.hasMoreElements(test)) {
+              testingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, testSource.nextElement(test));
+            }
+          } finally {
+            closePrefetchingSource(testSource);
           }
           testTimeElapsed = System.currentTimeMillis() - testTimeStart;
         }
@@ -1834,6 +2240,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setNumCurveBins(curveBins);
+          trainingEvaluation.setPredictionBatchSize(predictionBatchSize);
+          trainingEvaluation.setPipelinePredictions(pipelinePredictions);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           DataSource trainSource = new DataSource(trainFileName);
           trainSource.getStructure(); // We already know the structure but need to advance to the data section
@@ -1846,11 +2255,15 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation.evaluateModel(classifier, new DataSource(trainFileName).getDataSet(actualClassIndex));
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           } else {
-            trainSource = new DataSource(trainFileName);
-            trainSource.getStructure(); // We already know the structure but need to advance to the data section
-            testTimeStart = System.currentTimeMillis();
-            while (trainSource.hasMoreElements(train)) {
-              trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+            trainSource = getPrefetchingSource(trainFileName);
+            try {
+              trainSource.getStructure(); // We already know the structure but need to advance to the data section
+              testTimeStart = System.currentTimeMillis();
+              while (trainSource.hasMoreElements(train)) {
+                trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+              }
+            } finally {
+              closePrefetchingSource(trainSource);
             }
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           }
@@ -1904,6 +2317,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setNumCurveBins(curveBins);
+          trainingEvaluation.setPredictionBatchSize(predictionBatchSize);
+          trainingEvaluation.setPipelinePredictions(pipelinePredictions);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           DataSource trainSource = new DataSource(trainFileName);
           trainSource.getStructure(); // We already know the structure but need to advance to the data section
@@ -1916,11 +2332,15 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation.evaluateModel(classifier, new DataSource(trainFileName).getDataSet(actualClassIndex));
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           } else {
-            trainSource = new DataSource(trainFileName);
-            trainSource.getStructure(); // We already know the structure but need to advance to the data section
-            testTimeStart = System.currentTimeMillis();
-            while (trainSource.hasMoreElements(train)) {
-              trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+            trainSource = getPrefetchingSource(trainFileName);
+            try {
+              trainSource.getStructure(); // We already know the structure but need to advance to the data section
+              testTimeStart = System.currentTimeMillis();
+              while (trainSource.hasMoreElements(train)) {
+                trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+              }
+            } finally {
+              closePrefetchingSource(trainSource);
             }
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           }
@@ -1974,6 +2394,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setNumCurveBins(curveBins);
+          trainingEvaluation.setPredictionBatchSize(predictionBatchSize);
+          trainingEvaluation.setPipelinePredictions(pipelinePredictions);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           DataSource trainSource = new DataSource(trainFileName);
           trainSource.getStructure(); // We already know the structure but need to advance to the data section
@@ -1986,11 +2409,15 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation.evaluateModel(classifier, new DataSource(trainFileName).getDataSet(actualClassIndex));
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           } else {
-            trainSource = new DataSource(trainFileName);
-            trainSource.getStructure(); // We already know the structure but need to advance to the data section
-            testTimeStart = System.currentTimeMillis();
-            while (trainSource.hasMoreElements(train)) {
-              trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+            trainSource = getPrefetchingSource(trainFileName);
+            try {
+              trainSource.getStructure(); // We already know the structure but need to advance to the data section
+              testTimeStart = System.currentTimeMillis();
+              while (trainSource.hasMoreElements(train)) {
+                trainingEvaluation.evaluateModelOnceAndRecordPrediction(classifier, trainSource.nextElement(train));
+              }
+            } finally {
+              closePrefetchingSource(trainSource);
             }
             testTimeElapsed = System.currentTimeMillis() - testTimeStart;
           }
@@ -2098,20 +2525,59 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
 
     if (classifier instanceof BatchPredictor
       && ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction()) {
-      // make a copy and set the class to missing
-      Instances dataPred = new Instances(data);
-      for (int i = 0; i < data.numInstances(); i++) {
-        dataPred.instance(i).setClassMissing();
+      final BatchPredictor predictor = (BatchPredictor) classifier;
+      final Instances testData = data;
+      final int numInstances = data.numInstances();
+      final int batchSize = (m_PredictionBatchSize > 0) ? m_PredictionBatchSize
+        : Math.max(numInstances, 1);
+
+      // score the next batch while the current one is evaluated
+      ExecutorService scorer = null;
+      if (m_PipelinePredictions && (batchSize < numInstances)) {
+        scorer = Executors.newSingleThreadExecutor();
       }
-      double[][] preds =
-        ((BatchPredictor) classifier).distributionsForInstances(dataPred);
-      for (int i = 0; i < data.numInstances(); i++) {
-        double[] p = preds[i];
+      try {
+        Future<double[][]> next = null;
+        for (int start = 0; start < numInstances; start += batchSize) {
+          double[][] preds;
+          if (next == null) {
+            preds = distributionsForBatch(predictor, data, start, batchSize);
+          } else {
+            try {
+              preds = next.get();
+            } catch (ExecutionException e) {
+              if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+              }
+              throw e;
+            }
+            next = null;
+          }
+          final int nextStart = start + batchSize;
+          if ((scorer != null) && (nextStart < numInstances)) {
+            next = scorer.submit(new Callable<double[][]>() {
+              @Override
+              public double[][] call() throws Exception {
+                return distributionsForBatch(predictor, testData, nextStart,
+                  batchSize);
+              }
+            });
+          }
 
-        predictions[i] = evaluationForSingleInstance(p, data.instance(i), true);
+          for (int i = 0; i < preds.length; i++) {
+            double[] p = preds[i];
+            Instance inst = data.instance(start + i);
 
-        if (classificationOutput != null) {
-          classificationOutput.printClassification(p, data.instance(i), i);
+            predictions[start + i] = evaluationForSingleInstance(p, inst, true);
+
+            if (classificationOutput != null) {
+              classificationOutput.printClassification(p, inst, start + i);
+            }
+          }
+        }
+      } finally {
+        if (scorer != null) {
+          scorer.shutdownNow();
         }
       }
     } else {
@@ -2130,6 +2596,29 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     return predictions;
   }
 
+  /**
+   * Obtains the distributions for a batch of test instances from a batch
+   * predictor, with the class values set to missing.
+   *
+   * @param predictor the batch predictor to use
+   * @param data the test instances
+   * @param start the index of the first instance of the batch
+   * @param batchSize the maximum number of instances in the batch
+   * @return the distributions, one per instance of the batch
+   * @throws Exception if the distributions could not be obtained
+   */
+  protected static double[][] distributionsForBatch(BatchPredictor predictor,
+    Instances data, int start, int batchSize) throws Exception {
+
+    // make a copy and set the class to missing
+    Instances dataPred = new Instances(data, start,
+      Math.min(batchSize, data.numInstances() - start));
+    for (int i = 0; i < dataPred.numInstances(); i++) {
+      dataPred.instance(i).setClassMissing();
+    }
+    return predictor.distributionsForInstances(dataPred);
+  }
+
   /**
    * Evaluates the supplied distribution on a single instance.
    *
@@ -2156,6 +2645,11 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         }
         m_Predictions.add(new NominalPrediction(instance.classValue(), dist,
           instance.weight()));
+      } else if (storePredictions && (m_NumCurveBins > 0)) {
+        if (m_CurveSketch == null) {
+          m_CurveSketch = new ThresholdCurveSketch(m_NumClasses, m_NumCurveBins);
+        }
+        m_CurveSketch.update(instance.classValue(), dist, instance.weight());
       }
     } else {
       pred = dist[0];
@@ -4644,6 +5138,22 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     optionsText.append("-no-predictions\n");
     optionsText
       .append("\tTurns off the collection of predictions in order to conserve memory.\n");
+    optionsText.append("-num-slots <num>\n");
+    optionsText
+      .append("\tNumber of threads for building the classifiers of a\n"
+        + "\tcross-validation (0 = all processors; default 1).\n");
+    optionsText.append("-curve-bins <num>\n");
+    optionsText
+      .append("\tNumber of bins per class for estimating the areas under\n"
+        + "\tROC and PRC when predictions are discarded (default 0).\n");
+    optionsText.append("-prediction-batch-size <num>\n");
+    optionsText
+      .append("\tNumber of test instances to pass at once to a classifier\n"
+        + "\tthat predicts batches efficiently (default 0 = all).\n");
+    optionsText.append("-pipeline-predictions\n");
+    optionsText
+      .append("\tScores the next batch of test instances on a separate\n"
+        + "\tthread while the current one is evaluated.\n");
 
     // Get scheme-specific options
     if (classifier instanceof OptionHandler) {
@@ -278,6 +278,19 @@ public class ThresholdCurve implements RevisionHandler {
     final double[] pVals = tcurve.attributeToDoubleArray(pInd);
     final double[] rVals = tcurve.attributeToDoubleArray(rInd);
 
+    return getPRCArea(pVals, rVals, n);
+  }
+
+  /**
+   * Calculates the area under the precision-recall curve from the precision
+   * and recall values of the curve points.
+   *
+   * @param pVals the precision per curve point
+   * @param rVals the recall per curve point
+   * @param n the number of curve points
+   * @return the PRC area
+   */
+  private static double getPRCArea(double[] pVals, double[] rVals, int n) {
     double area = 0;
     double xlast = rVals[n - 1];
 
@@ -314,6 +327,19 @@ public class ThresholdCurve implements RevisionHandler {
     final double[] tpVals = tcurve.attributeToDoubleArray(tpInd);
     final double[] fpVals = tcurve.attributeToDoubleArray(fpInd);
 
+    return getROCArea(tpVals, fpVals, n);
+  }
+
+  /**
+   * Calculates the area under the ROC curve from the true and false positives
+   * of the curve points.
+   *
+   * @param tpVals the true positives per curve point
+   * @param fpVals the false positives per curve point
+   * @param n the number of curve points
+   * @return the ROC area
+   */
+  private static double getROCArea(double[] tpVals, double[] fpVals, int n) {
     double area = 0.0, cumNeg = 0.0;
     final double totalPos = tpVals[0];
     final double totalNeg = fpVals[0];
@@ -334,6 +360,136 @@ public class ThresholdCurve implements RevisionHandler {
     return area;
   }
 
+  /**
+   * Calculates the areas under the ROC and the precision-recall curve directly
+   * from the predicted probabilities, without generating the curve. The
+   * results are the same as the ones of <code>getROCArea</code> and
+   * <code>getPRCArea</code> applied to the curve generated by
+   * <code>getCurve</code> for the equivalent predictions.
+   *
+   * @param probs the predicted probabilities of the class of interest
+   * @param actual the actual class values (missing values are skipped)
+   * @param weights the weights of the predictions, null for unit weights
+   * @param classIndex index of the class of interest
+   * @return the ROC area and the PRC area, Double.NaN if no predictions are
+   *         given
+   */
+  public static double[] getCurveAreas(double[] probs, double[] actual,
+    double[] weights, int classIndex) {
+
+    final int n = probs.length;
+    if (n == 0) {
+      return new double[] { Double.NaN, Double.NaN };
+    }
+
+    double totPos = 0, totNeg = 0;
+    for (int i = 0; i < n; i++) {
+      double weight = (weights == null) ? 1.0 : weights[i];
+      if (Utils.isMissingValue(actual[i]) || (weight < 0)) {
+        continue;
+      }
+      if (actual[i] == classIndex) {
+        totPos += weight;
+      } else {
+        totNeg += weight;
+      }
+    }
+
+    // same walk over the thresholds as getCurve, keeping only the values
+    // required for the areas
+    int[] sorted = Utils.sort(probs);
+    double[] tpVals = new double[n + 1];
+    double[] fpVals = new double[n + 1];
+    double[] pVals = new double[n + 1];
+    double[] rVals = new double[n + 1];
+    int points = 0;
+    double tp = totPos, fn = 0, fp = totNeg, tn = 0;
+    double threshold = 0;
+    double cumulativePos = 0;
+    double cumulativeNeg = 0;
+
+    for (int i = 0; i < n; i++) {
+      int index = sorted[i];
+      if ((i == 0) || (probs[index] > threshold)) {
+        tp -= cumulativePos;
+        fn += cumulativePos;
+        fp -= cumulativeNeg;
+        tn += cumulativeNeg;
+        threshold = probs[index];
+        tpVals[points] = tp;
+        fpVals[points] = fp;
+        pVals[points] = (tp + fp == 0) ? Double.NaN : tp / (tp + fp);
+        rVals[points] = (tp + fn == 0) ? Double.NaN : tp / (tp + fn);
+        points++;
+        cumulativePos = 0;
+        cumulativeNeg = 0;
+        if (i == n - 1) {
+          break;
+        }
+      }
+
+      double weight = (weights == null) ? 1.0 : weights[index];
+      if (Utils.isMissingValue(actual[index]) || (weight < 0)) {
+        continue;
+      }
+      if (actual[index] == classIndex) {
+        cumulativePos += weight;
+      } else {
+        cumulativeNeg += weight;
+      }
+    }
+
+    // make sure a zero point gets into the curve
+    if (fn != totPos || tn != totNeg) {
+      tpVals[points] = 0;
+      fpVals[points] = 0;
+      pVals[points] = Double.NaN;
+      rVals[points] = (totPos == 0) ? Double.NaN : 0;
+      points++;
+    }
+
+    return new double[] { getROCArea(tpVals, fpVals, points),
+      getPRCArea(pVals, rVals, points) };
+  }
+
+  /**
+   * Calculates the performance stats for the desired class at the given
+   * threshold directly from the predicted probabilities, i.e., predictions
+   * with a probability of at least the threshold count as positive.
+   *
+   * @param probs the predicted probabilities of the class of interest
+   * @param actual the actual class values (missing values are skipped)
+   * @param weights the weights of the predictions, null for unit weights
+   * @param classIndex index of the class of interest
+   * @param threshold the threshold
+   * @return the stats at the threshold
+   */
+  public static TwoClassStats getOperatingPoint(double[] probs,
+    double[] actual, double[] weights, int classIndex, double threshold) {
+
+    double tp = 0, fn = 0, fp = 0, tn = 0;
+    for (int i = 0; i < probs.length; i++) {
+      double weight = (weights == null) ? 1.0 : weights[i];
+      if (Utils.isMissingValue(actual[i]) || (weight < 0)) {
+        continue;
+      }
+      if (actual[i] == classIndex) {
+        if (probs[i] >= threshold) {
+          tp += weight;
+        } else {
+          fn += weight;
+        }
+      } else {
+        if (probs[i] >= threshold) {
+          fp += weight;
+        } else {
+          tn += weight;
+        }
+      }
+    }
+    return new TwoClassStats(tp, fp, tn, fn);
+  }
+
   /**
    * Gets the index of the instance with the closest threshold value to the
    * desired target
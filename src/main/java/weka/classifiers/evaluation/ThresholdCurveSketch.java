@@ -0,0 +1,247 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ThresholdCurveSketch.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.evaluation;
+
+import java.io.Serializable;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Summarizes nominal predictions in per-class histograms of the predicted
+ * probabilities, so that the areas under the ROC and precision-recall curves
+ * can be estimated without keeping the predictions themselves. The memory
+ * used is proportional to the number of classes times the number of bins,
+ * independent of the number of predictions.
+ * <p/>
+ * The probability range [0,1] is divided into bins of equal width. All
+ * predictions falling into the same bin are treated as ties, i.e., the areas
+ * are the ones that ThresholdCurve would compute if the probabilities had been
+ * rounded to the bins. The error of the ROC area is therefore bounded by half
+ * the fraction of positive/negative pairs that share a bin, which is available
+ * via <code>getROCAreaErrorBound(int)</code>. If the classifier produces at
+ * most one distinct probability per bin, the areas are exact.
+ * <p/>
+ * Sketches with the same number of classes and bins can be merged, e.g., to
+ * combine the results of several folds or threads. A sketch itself is not
+ * thread-safe.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @see ThresholdCurve
+ */
+public class ThresholdCurveSketch implements Serializable, RevisionHandler {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -3254841218006335176L;
+
+  /** the default number of bins. */
+  public static final int DEFAULT_NUM_BINS = 1000;
+
+  /** the number of bins per class. */
+  protected int m_NumBins;
+
+  /** the weight of the positives per class and bin. */
+  protected double[][] m_Pos;
+
+  /** the weight of the negatives per class and bin. */
+  protected double[][] m_Neg;
+
+  /**
+   * Initializes an empty sketch.
+   *
+   * @param numClasses the number of class values
+   * @param numBins the number of bins per class
+   */
+  public ThresholdCurveSketch(int numClasses, int numBins) {
+    if (numBins < 1) {
+      throw new IllegalArgumentException("Number of bins must be at least 1: "
+        + numBins);
+    }
+    m_NumBins = numBins;
+    m_Pos = new double[numClasses][numBins];
+    m_Neg = new double[numClasses][numBins];
+  }
+
+  /**
+   * Returns the number of class values.
+   *
+   * @return the number of classes
+   */
+  public int numClasses() {
+    return m_Pos.length;
+  }
+
+  /**
+   * Returns the number of bins per class.
+   *
+   * @return the number of bins
+   */
+  public int getNumBins() {
+    return m_NumBins;
+  }
+
+  /**
+   * Returns the bin a probability falls into.
+   *
+   * @param prob the probability
+   * @return the bin index
+   */
+  protected int bin(double prob) {
+    int bin = (int) (prob * m_NumBins);
+    if (bin < 0) {
+      return 0;
+    }
+    if (bin >= m_NumBins) {
+      return m_NumBins - 1;
+    }
+    return bin;
+  }
+
+  /**
+   * Adds a prediction. Predictions with a missing actual class value or a
+   * negative weight are skipped, as in ThresholdCurve.
+   *
+   * @param actual the actual class value
+   * @param dist the predicted class distribution
+   * @param weight the weight of the prediction
+   */
+  public void update(double actual, double[] dist, double weight) {
+    if (Utils.isMissingValue(actual) || (weight < 0)) {
+      return;
+    }
+    int actualClass = (int) actual;
+    for (int i = 0; i < m_Pos.length; i++) {
+      if (i == actualClass) {
+        m_Pos[i][bin(dist[i])] += weight;
+      } else {
+        m_Neg[i][bin(dist[i])] += weight;
+      }
+    }
+  }
+
+  /**
+   * Adds the predictions summarized by the given sketch to this one.
+   *
+   * @param other the sketch to merge
+   * @throws IllegalArgumentException if the number of classes or bins differs
+   */
+  public void merge(ThresholdCurveSketch other) {
+    if ((other.m_NumBins != m_NumBins)
+      || (other.m_Pos.length != m_Pos.length)) {
+      throw new IllegalArgumentException(
+        "Sketches differ in number of classes or bins!");
+    }
+    for (int i = 0; i < m_Pos.length; i++) {
+      for (int j = 0; j < m_NumBins; j++) {
+        m_Pos[i][j] += other.m_Pos[i][j];
+        m_Neg[i][j] += other.m_Neg[i][j];
+      }
+    }
+  }
+
+  /**
+   * Calculates the area under the ROC curve as the Wilcoxon-Mann-Whitney
+   * statistic, treating predictions in the same bin as ties.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the ROC area, or Double.NaN if there are no positives or no
+   *         negatives
+   */
+  public double getROCArea(int classIndex) {
+    double[] pos = m_Pos[classIndex];
+    double[] neg = m_Neg[classIndex];
+    double area = 0, cumNeg = 0;
+    for (int i = 0; i < m_NumBins; i++) {
+      area += pos[i] * (cumNeg + 0.5 * neg[i]);
+      cumNeg += neg[i];
+    }
+    return area / (cumNeg * Utils.sum(pos));
+  }
+
+  /**
+   * Returns an upper bound on the absolute difference between the ROC area
+   * computed from this sketch and the one computed from the original
+   * predictions, i.e., half the fraction of positive/negative pairs that fall
+   * into the same bin.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the error bound, or Double.NaN if there are no positives or no
+   *         negatives
+   */
+  public double getROCAreaErrorBound(int classIndex) {
+    double[] pos = m_Pos[classIndex];
+    double[] neg = m_Neg[classIndex];
+    double ties = 0;
+    for (int i = 0; i < m_NumBins; i++) {
+      ties += pos[i] * neg[i];
+    }
+    return 0.5 * ties / (Utils.sum(neg) * Utils.sum(pos));
+  }
+
+  /**
+   * Calculates the area under the precision-recall curve, using the same
+   * step-wise integration as ThresholdCurve with one threshold per non-empty
+   * bin.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the PRC area, or Utils.missingValue() if it is not available
+   */
+  public double getPRCArea(int classIndex) {
+    double[] pos = m_Pos[classIndex];
+    double[] neg = m_Neg[classIndex];
+    double totPos = Utils.sum(pos);
+    if (totPos == 0) {
+      return Double.NaN;
+    }
+
+    // walk the thresholds from the highest down to the lowest, the
+    // artificial zero point (recall 0) being the starting point
+    double area = 0, tp = 0, fp = 0, recallLast = 0;
+    for (int i = m_NumBins - 1; i >= 0; i--) {
+      if ((pos[i] == 0) && (neg[i] == 0)) {
+        continue;
+      }
+      tp += pos[i];
+      fp += neg[i];
+      double recall = tp / totPos;
+      area += (tp / (tp + fp)) * (recall - recallLast);
+      recallLast = recall;
+    }
+
+    if (area == 0) {
+      return Utils.missingValue();
+    }
+    return area;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -175,9 +175,12 @@ public class Bagging
   /** Random number generator */
   protected Random m_random;
 
-  /** Used to indicate whether an instance is in a bag or not */
+  /** Used to indicate which instances are in the bag of each classifier */
   protected boolean[][] m_inBag;
 
+  /** The number of instances for which out-of-bag votes are collected at once */
+  protected static final int OUT_OF_BAG_BLOCK_SIZE = 1024;
+
   /** Reference to the training data */
   protected Instances m_data;
 
@@ -649,7 +652,7 @@ public class Bagging
     Random r = new Random(m_Seed + iteration);
 
     // create the in-bag indicator array if necessary
-    if (m_CalcOutOfBag) {
+    if (m_inBag != null) {
       m_inBag[iteration] = new boolean[m_data.numInstances()];
       return m_data.resampleWithWeights(r, m_inBag[iteration], getRepresentCopiesUsingWeights(), m_BagSizePercent);
     } else {
@@ -695,7 +698,7 @@ public class Bagging
     m_random = new Random(m_Seed);
 
     m_inBag = null;
-    if (m_CalcOutOfBag)
+    if (requiresInBag())
       m_inBag = new boolean[m_Classifiers.length][];
 
     for (int j = 0; j < m_Classifiers.length; j++) {
@@ -708,60 +711,143 @@ public class Bagging
 
     buildClassifiers();
 
-    // calc OOB error?
-    if (getCalcOutOfBag()) {
-      m_OutOfBagEvaluationObject = new Evaluation(m_data);
+    evaluateOutOfBag();
 
-      for (int i = 0; i < m_data.numInstances(); i++) {
-        double[] votes;
-        if (m_Numeric)
-          votes = new double[1];
-        else
-          votes = new double[m_data.numClasses()];
+    // save memory
+    m_inBag = null;
+    m_data = new Instances(m_data, 0);
+  }
 
-        // determine predictions for instance
-        int voteCount = 0;
-        for (int j = 0; j < m_Classifiers.length; j++) {
-          if (m_inBag[j][i])
-            continue;
+  /**
+   * Returns whether the in-bag indicators are required after building the
+   * classifiers, i.e., whether the out-of-bag error is calculated.
+   *
+   * @return true if the in-bag indicators are required
+   */
+  protected boolean requiresInBag() {
+    return m_CalcOutOfBag;
+  }
 
+  /**
+   * Calculates the out-of-bag error, if required, after the classifiers have
+   * been built. The votes of the classifiers are collected in parallel for
+   * blocks of instances, with every classifier used by a single thread only.
+   * The votes are added up in the order of the classifiers, so the error does
+   * not depend on the number of threads.
+   *
+   * @throws Exception if the out-of-bag error cannot be calculated
+   */
+  protected void evaluateOutOfBag() throws Exception {
+
+    if (!getCalcOutOfBag()) {
+      m_OutOfBagEvaluationObject = null;
+      return;
+    }
+    m_OutOfBagEvaluationObject = new Evaluation(m_data);
+
+    int numThreads = Math.min(numExecutionThreads(), m_Classifiers.length);
+    ExecutorService pool = (numThreads > 1) ? Executors.newFixedThreadPool(numThreads) : null;
+    try {
+      for (int start = 0; start < m_data.numInstances(); start += OUT_OF_BAG_BLOCK_SIZE) {
+        final int lo = start;
+        final int hi = Math.min(start + OUT_OF_BAG_BLOCK_SIZE, m_data.numInstances());
+        double[][][] perClassifier;
+        if (pool == null) {
+          perClassifier = outOfBagVotes(lo, hi, 0, m_Classifiers.length);
+        } else {
+          List<Future<double[][][]>> results = new ArrayList<Future<double[][][]>>();
+          int chunkSize = m_Classifiers.length / numThreads;
+          for (int t = 0; t < numThreads; t++) {
+            final int first = t * chunkSize;
+            final int last = (t < numThreads - 1) ? first + chunkSize : m_Classifiers.length;
+            results.add(pool.submit(new Callable<double[][][]>() {
+              @Override
+              public double[][][] call() throws Exception {
+                return outOfBagVotes(lo, hi, first, last);
+              }
+            }));
+          }
+          perClassifier = new double[m_Classifiers.length][][];
+          for (int t = 0; t < numThreads; t++) {
+            double[][][] partial = results.get(t).get();
+            System.arraycopy(partial, 0, perClassifier, t * chunkSize, partial.length);
+          }
+        }
+
+        // sum the votes in the order of the classifiers
+        double[][] votes = new double[hi - lo][m_Numeric ? 2 : m_data.numClasses()];
+        for (double[][] forClassifier : perClassifier) {
+          for (int i = 0; i < votes.length; i++) {
+            if (forClassifier[i] == null)
+              continue;
+
+            if (m_Numeric) {
+              votes[i][0] += forClassifier[i][0];
+              votes[i][1]++;
+            } else {
+              for (int k = 0; k < forClassifier[i].length; k++) {
+                votes[i][k] += forClassifier[i][k];
+              }
+            }
+          }
+        }
+
+        // "vote"
+        for (int i = lo; i < hi; i++) {
           if (m_Numeric) {
-            double pred = m_Classifiers[j].classifyInstance(m_data.instance(i));
-            if (!Utils.isMissingValue(pred)) {
-              votes[0] += pred;
-              voteCount++;
+            if (votes[i - lo][1] > 0) {
+              m_OutOfBagEvaluationObject.evaluationForSingleInstance(new double[] { votes[i - lo][0] / votes[i - lo][1] },
+                m_data.instance(i), getStoreOutOfBagPredictions());
             }
           } else {
-            voteCount++;
-            double[] newProbs = m_Classifiers[j].distributionForInstance(m_data.instance(i));
-            // sum the probability estimates
-            for (int k = 0; k < newProbs.length; k++) {
-              votes[k] += newProbs[k];
+            double sum = Utils.sum(votes[i - lo]);
+            if (sum > 0) {
+              Utils.normalize(votes[i - lo], sum);
+              m_OutOfBagEvaluationObject.evaluationForSingleInstance(votes[i - lo], m_data.instance(i),
+                getStoreOutOfBagPredictions());
             }
           }
         }
+      }
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Collects the votes of a range of classifiers for a block of instances
+   * that were not in their bags. For a numeric class, a vote is the
+   * prediction; instances that were in the bag or for which no prediction
+   * is made get no vote.
+   *
+   * @param lo the first instance
+   * @param hi the instance after the last one
+   * @param first the first classifier
+   * @param last the classifier after the last one
+   * @return the votes of each classifier for each instance, null if none
+   * @throws Exception if a prediction cannot be made
+   */
+  protected double[][][] outOfBagVotes(int lo, int hi, int first, int last) throws Exception {
+
+    double[][][] votes = new double[last - first][hi - lo][];
+    for (int j = first; j < last; j++) {
+      for (int i = lo; i < hi; i++) {
+        if (m_inBag[j][i])
+          continue;
 
-        // "vote"
         if (m_Numeric) {
-          if (voteCount > 0) {
-            votes[0] /= voteCount;
-            m_OutOfBagEvaluationObject.evaluationForSingleInstance(votes, m_data.instance(i), getStoreOutOfBagPredictions());
+          double pred = m_Classifiers[j].classifyInstance(m_data.instance(i));
+          if (!Utils.isMissingValue(pred)) {
+            votes[j - first][i - lo] = new double[] { pred };
           }
         } else {
-          double sum = Utils.sum(votes);
-          if (sum > 0) {
-            Utils.normalize(votes, sum);
-            m_OutOfBagEvaluationObject.evaluationForSingleInstance(votes, m_data.instance(i), getStoreOutOfBagPredictions());
-          }
+          votes[j - first][i - lo] = m_Classifiers[j].distributionForInstance(m_data.instance(i));
         }
       }
-    } else {
-      m_OutOfBagEvaluationObject = null;
     }
-
-    // save memory
-    m_inBag = null;
-    m_data = new Instances(m_data, 0);
+    return votes;
   }
 
   /**
@@ -90,6 +90,16 @@ import weka.core.TechnicalInformationHandler;
  *  Set minimum number of instances per leaf
  *  (default 4)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of threads for evaluating the splits of large nodes
+ *  with -fast-build (use 0 to auto-detect number of cores)
+ *  (default 1)</pre>
+ * 
+ * <pre> -fast-build
+ *  Build faster: sort the instances once, evaluate the splits
+ *  of large nodes in parallel and fit the linear models from
+ *  sufficient statistics (results can differ in the last digits)</pre>
+ * 
  <!-- options-end -->
  *
  * @author <a href="mailto:mhall@cs.waikato.ac.nz">Mark Hall</a>
@@ -0,0 +1,563 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    FlattenedForest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A set of RandomTree models flattened into contiguous arrays for fast
+ * prediction. The nodes of each tree are numbered in breadth-first order and
+ * stored after the ones of the previous tree, the successors of a node are
+ * stored next to each other, and the class distributions of all nodes are
+ * stored in a single array. Predictions for a numeric class are identical to
+ * the ones of the trees. For a nominal class they are identical unless an
+ * instance with missing values is split up: then the weights of the branches
+ * are multiplied before rather than after the leaf distributions are added
+ * up, so class probabilities can differ by rounding (a few ulps, well below
+ * 1e-12).
+ * <p/>
+ * The predictions of the trees are combined as in Bagging, i.e., the class
+ * distributions are summed up and normalized for a nominal class, and the
+ * predictions that are not missing are averaged for a numeric class.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class FlattenedForest implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -4205851740632384093L;
+
+  /** the number of instances that are passed down a tree in one go */
+  public static final int BLOCK_SIZE = 256;
+
+  /** the number of classes, 1 for a numeric class */
+  protected int m_NumClasses;
+
+  /** whether the class is numeric */
+  protected boolean m_Numeric;
+
+  /** the number of values of each attribute, 0 for numeric ones */
+  protected int[] m_NumValues;
+
+  /** the root node of each tree */
+  protected int[] m_Roots;
+
+  /** whether each tree is allowed to abstain from making a prediction */
+  protected boolean[] m_AllowUnclassified;
+
+  /** the attribute split on at each node, -1 for leaves */
+  protected int[] m_Attribute;
+
+  /** the split point at each node */
+  protected double[] m_SplitPoint;
+
+  /** the first successor of each node */
+  protected int[] m_FirstSuccessor;
+
+  /** the proportion of training instances going down to each node */
+  protected double[] m_Prop;
+
+  /** the offset of the distribution of each node, -1 for empty nodes */
+  protected int[] m_DistOffset;
+
+  /** the class distributions, normalized for a nominal class */
+  protected double[] m_Dists;
+
+  /**
+   * Returns whether the given tree can be flattened, i.e., whether it has
+   * been built and is not a ZeroR model.
+   *
+   * @param tree the tree
+   * @return true if the tree can be flattened
+   */
+  public static boolean canFlatten(RandomTree tree) {
+    return (tree.m_Tree != null) && (tree.m_zeroR == null);
+  }
+
+  /**
+   * Flattens the given trees, which must have been built on data with the
+   * same format.
+   *
+   * @param trees the trees
+   * @throws IllegalArgumentException if a tree cannot be flattened
+   */
+  public FlattenedForest(RandomTree[] trees) {
+
+    Instances header = trees[0].m_Info;
+    m_Numeric = header.classAttribute().isNumeric();
+    m_NumClasses = header.numClasses();
+    m_NumValues = new int[header.numAttributes()];
+    for (int i = 0; i < m_NumValues.length; i++) {
+      if (header.attribute(i).isNominal()) {
+        m_NumValues[i] = header.attribute(i).numValues();
+      }
+    }
+
+    // collect the nodes and count the distributions
+    m_Roots = new int[trees.length];
+    m_AllowUnclassified = new boolean[trees.length];
+    int numDists = 0;
+    List<RandomTree.Tree> queue = new ArrayList<RandomTree.Tree>();
+    for (int t = 0; t < trees.length; t++) {
+      if (!canFlatten(trees[t])) {
+        throw new IllegalArgumentException("Tree has not been built yet or "
+          + "is a ZeroR model!");
+      }
+      m_Roots[t] = queue.size();
+      m_AllowUnclassified[t] = trees[t].getAllowUnclassifiedInstances();
+      queue.add(trees[t].m_Tree);
+      for (int i = m_Roots[t]; i < queue.size(); i++) {
+        RandomTree.Tree node = queue.get(i);
+        if ((node != null) && (node.m_ClassDistribution != null)) {
+          numDists++;
+        }
+        if ((node != null) && (node.m_Attribute > -1)) {
+          for (RandomTree.Tree successor : node.m_Successors) {
+            queue.add(successor);
+          }
+        }
+      }
+    }
+
+    int numNodes = queue.size();
+    m_Attribute = new int[numNodes];
+    m_SplitPoint = new double[numNodes];
+    m_FirstSuccessor = new int[numNodes];
+    m_Prop = new double[numNodes];
+    m_DistOffset = new int[numNodes];
+    m_Dists = new double[numDists * m_NumClasses];
+
+    // the successors of the nodes of a tree follow its root in the same order
+    int tree = 0;
+    int next = 0;
+    int offset = 0;
+    for (int i = 0; i < numNodes; i++) {
+      RandomTree.Tree node = queue.get(i);
+      if ((tree < m_Roots.length) && (i == m_Roots[tree])) {
+        next = i + 1;
+        tree++;
+      }
+      m_Attribute[i] = -1;
+      m_DistOffset[i] = -1;
+      if (node == null) {
+        continue;
+      }
+      if (node.m_ClassDistribution != null) {
+        System.arraycopy(node.m_ClassDistribution, 0, m_Dists, offset,
+          m_NumClasses);
+        if (!m_Numeric) {
+          double sum = Utils.sum(node.m_ClassDistribution);
+          if ((sum > 0) && !Double.isNaN(sum)) {
+            for (int j = offset; j < offset + m_NumClasses; j++) {
+              m_Dists[j] /= sum;
+            }
+          }
+        }
+        m_DistOffset[i] = offset;
+        offset += m_NumClasses;
+      }
+      if (node.m_Attribute > -1) {
+        m_Attribute[i] = node.m_Attribute;
+        m_SplitPoint[i] = node.m_SplitPoint;
+        m_FirstSuccessor[i] = next;
+        for (int j = 0; j < node.m_Successors.length; j++) {
+          m_Prop[next++] = node.m_Prop[j];
+        }
+      }
+    }
+    queue = null;
+  }
+
+  /**
+   * Returns the number of trees.
+   *
+   * @return the number of trees
+   */
+  public int numTrees() {
+    return m_Roots.length;
+  }
+
+  /**
+   * Returns the total number of nodes of all trees.
+   *
+   * @return the number of nodes
+   */
+  public int numNodes() {
+    return m_Attribute.length;
+  }
+
+  /**
+   * Returns the number of successors of a node that is not a leaf.
+   *
+   * @param node the node
+   * @return the number of successors
+   */
+  protected int numSuccessors(int node) {
+    int numValues = m_NumValues[m_Attribute[node]];
+    return (numValues > 0) ? numValues : 2;
+  }
+
+  /**
+   * Adds the weighted class distribution of an instance, for a nominal
+   * class, to the given array, following RandomTree.Tree. The value of one
+   * attribute can be taken from another instance.
+   *
+   * @param node the node to start at
+   * @param tree the tree the node belongs to
+   * @param instance the instance
+   * @param swapped the attribute to take from the other instance, -1 if none
+   * @param other the instance to take the value of the attribute from
+   * @param weight the weight of the distribution
+   * @param dist the array to add the distribution to
+   * @param pos the position of the distribution in the array
+   * @return false if the tree returns no distribution
+   */
+  protected boolean addDistribution(int node, int tree, Instance instance,
+    int swapped, Instance other, double weight, double[] dist, int pos) {
+
+    int att = m_Attribute[node];
+    if (att > -1) {
+      Instance source = (att == swapped) ? other : instance;
+      int first = m_FirstSuccessor[node];
+      if (source.isMissing(att)) {
+
+        // split instance up
+        int num = numSuccessors(node);
+        for (int i = first; i < first + num; i++) {
+          addDistribution(i, tree, instance, swapped, other,
+            weight * m_Prop[i], dist, pos);
+        }
+        return true;
+      }
+      int successor;
+      if (m_NumValues[att] > 0) {
+        successor = first + (int) source.value(att);
+      } else {
+        successor = (source.value(att) < m_SplitPoint[node]) ? first
+          : first + 1;
+      }
+      if (addDistribution(successor, tree, instance, swapped, other, weight,
+        dist, pos)) {
+        return true;
+      }
+    }
+
+    // node is a leaf or successor is empty
+    int offset = m_DistOffset[node];
+    if (offset < 0) {
+      return m_AllowUnclassified[tree];
+    }
+    for (int j = 0; j < m_NumClasses; j++) {
+      dist[pos + j] += weight * m_Dists[offset + j];
+    }
+    return true;
+  }
+
+  /**
+   * Returns the prediction for an instance, for a numeric class, following
+   * RandomTree.Tree. The value of one attribute can be taken from another
+   * instance.
+   *
+   * @param node the node to start at
+   * @param tree the tree the node belongs to
+   * @param instance the instance
+   * @param swapped the attribute to take from the other instance, -1 if none
+   * @param other the instance to take the value of the attribute from
+   * @return the prediction, missing if the tree returns no prediction
+   */
+  protected double predict(int node, int tree, Instance instance,
+    int swapped, Instance other) {
+
+    int att = m_Attribute[node];
+    if (att > -1) {
+      Instance source = (att == swapped) ? other : instance;
+      int first = m_FirstSuccessor[node];
+      if (source.isMissing(att)) {
+
+        // split instance up, a missing prediction of a successor is skipped
+        // unless unclassified instances are allowed
+        int num = numSuccessors(node);
+        double pred = 0;
+        for (int i = first; i < first + num; i++) {
+          double help = predict(i, tree, instance, swapped, other);
+          if (!Utils.isMissingValue(help) || m_AllowUnclassified[tree]) {
+            pred += m_Prop[i] * help;
+          }
+        }
+        return pred;
+      }
+      int successor;
+      if (m_NumValues[att] > 0) {
+        successor = first + (int) source.value(att);
+      } else {
+        successor = (source.value(att) < m_SplitPoint[node]) ? first
+          : first + 1;
+      }
+      double pred = predict(successor, tree, instance, swapped, other);
+      if (!Utils.isMissingValue(pred) || m_AllowUnclassified[tree]) {
+        return pred;
+      }
+    }
+
+    // node is a leaf or successor is empty
+    int offset = m_DistOffset[node];
+    return (offset < 0) ? Utils.missingValue() : m_Dists[offset];
+  }
+
+  /**
+   * Computes the class distribution of an instance for a single tree, as
+   * RandomTree does.
+   *
+   * @param tree the index of the tree
+   * @param instance the instance
+   * @return the class distribution, null if the tree returns none
+   */
+  public double[] distributionForInstance(int tree, Instance instance) {
+
+    double[] dist = new double[m_NumClasses];
+    if (m_Numeric) {
+      dist[0] = predict(m_Roots[tree], tree, instance, -1, null);
+      if (Utils.isMissingValue(dist[0]) && !m_AllowUnclassified[tree]) {
+        return null;
+      }
+    } else if (!addDistribution(m_Roots[tree], tree, instance, -1, null, 1,
+      dist, 0)) {
+      return null;
+    }
+    return dist;
+  }
+
+  /**
+   * Classifies an instance with a single tree without allocating any memory,
+   * as RandomTree does. The value of one attribute can be taken from another
+   * instance.
+   *
+   * @param tree the index of the tree
+   * @param instance the instance
+   * @param swapped the attribute to take from the other instance, -1 if none
+   * @param other the instance to take the value of the attribute from
+   * @param dist an array of length number of classes to work with
+   * @return the predicted class value, missing if the tree makes no prediction
+   */
+  public double classifyInstance(int tree, Instance instance, int swapped,
+    Instance other, double[] dist) {
+
+    if (m_Numeric) {
+      return predict(m_Roots[tree], tree, instance, swapped, other);
+    }
+    for (int j = 0; j < m_NumClasses; j++) {
+      dist[j] = 0;
+    }
+    if (!addDistribution(m_Roots[tree], tree, instance, swapped, other, 1,
+      dist, 0)) {
+      return Utils.missingValue();
+    }
+    int maxIndex = Utils.maxIndex(dist);
+    return (dist[maxIndex] > 0) ? maxIndex : Utils.missingValue();
+  }
+
+  /**
+   * Returns the attributes a single tree splits on.
+   *
+   * @param tree the index of the tree
+   * @return whether the tree splits on each attribute
+   */
+  public boolean[] splitAttributes(int tree) {
+
+    boolean[] used = new boolean[m_NumValues.length];
+    int end = (tree < m_Roots.length - 1) ? m_Roots[tree + 1] : numNodes();
+    for (int i = m_Roots[tree]; i < end; i++) {
+      if (m_Attribute[i] > -1) {
+        used[m_Attribute[i]] = true;
+      }
+    }
+    return used;
+  }
+
+  /**
+   * Computes the combined class distribution of an instance without
+   * allocating any memory.
+   *
+   * @param instance the instance
+   * @param dist the array to store the distribution in, of length number of
+   *          classes
+   */
+  public void distributionForInstance(Instance instance, double[] dist) {
+
+    if (m_Numeric) {
+      double sum = 0;
+      int numPreds = 0;
+      for (int i = 0; i < m_Roots.length; i++) {
+        double pred = predict(m_Roots[i], i, instance, -1, null);
+        if (!Utils.isMissingValue(pred)) {
+          sum += pred;
+          numPreds++;
+        }
+      }
+      dist[0] = (numPreds == 0) ? Utils.missingValue() : sum / numPreds;
+      return;
+    }
+
+    for (int j = 0; j < m_NumClasses; j++) {
+      dist[j] = 0;
+    }
+    for (int i = 0; i < m_Roots.length; i++) {
+      addDistribution(m_Roots[i], i, instance, -1, null, 1, dist, 0);
+    }
+    double sum = Utils.sum(dist);
+    if (!Utils.eq(sum, 0)) {
+      Utils.normalize(dist, sum);
+    }
+  }
+
+  /**
+   * Computes the combined class distribution of an instance.
+   *
+   * @param instance the instance
+   * @return the class distribution
+   */
+  public double[] distributionForInstance(Instance instance) {
+
+    double[] dist = new double[m_NumClasses];
+    distributionForInstance(instance, dist);
+    return dist;
+  }
+
+  /**
+   * Adds up the predictions of all trees for a range of instances, in the
+   * order of the trees. The instances are passed down each tree in blocks.
+   * For a numeric class, the sum of the predictions and their number are
+   * stored.
+   *
+   * @param insts the instances
+   * @param lo the first instance
+   * @param hi the instance after the last one
+   * @param sums the array to store the summed up predictions in
+   */
+  protected void sumPredictions(Instances insts, int lo, int hi,
+    double[][] sums) {
+
+    for (int start = lo; start < hi; start += BLOCK_SIZE) {
+      int end = Math.min(start + BLOCK_SIZE, hi);
+      for (int i = 0; i < m_Roots.length; i++) {
+        int root = m_Roots[i];
+        for (int j = start; j < end; j++) {
+          if (m_Numeric) {
+            double pred = predict(root, i, insts.instance(j), -1, null);
+            if (!Utils.isMissingValue(pred)) {
+              sums[j][0] += pred;
+              sums[j][1]++;
+            }
+          } else {
+            addDistribution(root, i, insts.instance(j), -1, null, 1, sums[j],
+              0);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the combined class distributions of the given instances. The
+   * blocks of instances are divided among the given number of threads, so
+   * the predictions do not depend on the number of threads.
+   *
+   * @param insts the instances
+   * @param numThreads the number of threads to use
+   * @return the class distributions
+   * @throws Exception if a thread fails
+   */
+  public double[][] distributionsForInstances(final Instances insts,
+    int numThreads) throws Exception {
+
+    int numBlocks = (insts.numInstances() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    numThreads = Math.max(1, Math.min(numThreads, numBlocks));
+    final double[][] sums =
+      new double[insts.numInstances()][m_Numeric ? 2 : m_NumClasses];
+    if (numThreads == 1) {
+      sumPredictions(insts, 0, insts.numInstances(), sums);
+    } else {
+      ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+      try {
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        int chunkSize = (numBlocks / numThreads) * BLOCK_SIZE;
+        for (int t = 0; t < numThreads; t++) {
+          final int lo = t * chunkSize;
+          final int hi =
+            (t < numThreads - 1) ? lo + chunkSize : insts.numInstances();
+          results.add(pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+              sumPredictions(insts, lo, hi, sums);
+              return null;
+            }
+          }));
+        }
+        for (Future<Void> result : results) {
+          result.get();
+        }
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    // combine the predictions
+    if (m_Numeric) {
+      double[][] result = new double[sums.length][1];
+      for (int j = 0; j < sums.length; j++) {
+        result[j][0] = (sums[j][1] == 0) ? Utils.missingValue()
+          : sums[j][0] / sums[j][1];
+      }
+      return result;
+    }
+    for (double[] dist : sums) {
+      double sum = Utils.sum(dist);
+      if (!Utils.eq(sum, 0)) {
+        Utils.normalize(dist, sum);
+      }
+    }
+    return sums;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -27,6 +27,12 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.UpdateableClassifier;
@@ -35,6 +41,7 @@ import weka.classifiers.trees.ht.GiniSplitMetric;
 import weka.classifiers.trees.ht.HNode;
 import weka.classifiers.trees.ht.InactiveHNode;
 import weka.classifiers.trees.ht.InfoGainSplitMetric;
+import weka.classifiers.trees.ht.LeafHandoff;
 import weka.classifiers.trees.ht.LeafNode;
 import weka.classifiers.trees.ht.LearningNode;
 import weka.classifiers.trees.ht.NBNode;
@@ -42,6 +49,7 @@ import weka.classifiers.trees.ht.NBNodeAdaptive;
 import weka.classifiers.trees.ht.SplitCandidate;
 import weka.classifiers.trees.ht.SplitMetric;
 import weka.classifiers.trees.ht.SplitNode;
+import weka.classifiers.trees.ht.WeightMass;
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
@@ -151,6 +159,20 @@ import weka.core.WeightedInstancesHandler;
  *  Print leaf models when using naive Bayes at the leaves.
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads for adding instances to the tree (use 0 to
+ *  auto-detect number of cores)
+ *  (default = 1)
+ * </pre>
+ * 
+ * <pre>
+ * -memory-limit &lt;megabytes&gt;
+ *  Estimated memory the tree may use before the least promising
+ *  leaves are deactivated (0 = no limit)
+ *  (default = 0)
+ * </pre>
+ * 
  <!-- options-end -->
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
@@ -227,6 +249,27 @@ public class HoeffdingTree extends AbstractClassifier implements
    */
   protected boolean m_printLeafModels;
 
+  /**
+   * The number of threads for adding instances to the tree, 0 for one per
+   * processor
+   */
+  protected int m_numExecutionSlots = 1;
+
+  /** Guards the structure of the tree while it is updated concurrently */
+  protected transient volatile ReentrantReadWriteLock m_structureLock;
+
+  /** The number of instances between checks of the memory used by the tree */
+  public static final int MEMORY_CHECK_PERIOD = 1000;
+
+  /**
+   * The estimated memory in megabytes the tree may use before leaves are
+   * deactivated, 0 for no limit
+   */
+  protected double m_memoryLimit = 0;
+
+  /** The number of instances added to the tree */
+  protected AtomicInteger m_numUpdates = new AtomicInteger();
+
   /**
    * Returns a string describing classifier
    * 
@@ -279,6 +322,7 @@ public class HoeffdingTree extends AbstractClassifier implements
     m_activeLeafCount = 0;
     m_inactiveLeafCount = 0;
     m_decisionNodeCount = 0;
+    m_numUpdates = new AtomicInteger();
   }
 
   /**
@@ -340,6 +384,12 @@ public class HoeffdingTree extends AbstractClassifier implements
             "-N"));
     newVector.add(new Option("\tPrint leaf models when using naive Bayes "
         + "at the leaves.", "P", 0, "-P"));
+    newVector.add(new Option("\tNumber of threads for adding instances to "
+        + "the tree (use 0 to\n\tauto-detect number of cores)\n\t"
+        + "(default = 1)", "num-slots", 1, "-num-slots <num>"));
+    newVector.add(new Option("\tEstimated memory the tree may use before "
+        + "the least promising\n\tleaves are deactivated (0 = no limit)\n\t"
+        + "(default = 0)", "memory-limit", 1, "-memory-limit <megabytes>"));
 
     return newVector.elements();
   }
@@ -399,6 +449,20 @@ public class HoeffdingTree extends AbstractClassifier implements
    *  Print leaf models when using naive Bayes at the leaves.
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads for adding instances to the tree (use 0 to
+   *  auto-detect number of cores)
+   *  (default = 1)
+   * </pre>
+   * 
+   * <pre>
+   * -memory-limit &lt;megabytes&gt;
+   *  Estimated memory the tree may use before the least promising
+   *  leaves are deactivated (0 = no limit)
+   *  (default = 0)
+   * </pre>
+   * 
    <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -446,6 +510,20 @@ public class HoeffdingTree extends AbstractClassifier implements
 
     m_printLeafModels = Utils.getFlag('P', options);
 
+    opt = Utils.getOption("num-slots", options);
+    if (opt.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(opt));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
+    opt = Utils.getOption("memory-limit", options);
+    if (opt.length() > 0) {
+      setMemoryLimit(Double.parseDouble(opt));
+    } else {
+      setMemoryLimit(0);
+    }
+
     super.setOptions(options);
   }
 
@@ -483,9 +561,108 @@ public class HoeffdingTree extends AbstractClassifier implements
       options.add("-P");
     }
 
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
+
+    options.add("-memory-limit");
+    options.add("" + getMemoryLimit());
+
     return options.toArray(new String[1]);
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads for adding instances to the tree (0 = one "
+        + "per processor). If more than one, buildClassifier adds the "
+        + "training instances in parallel, and updateClassifier and "
+        + "distributionForInstance may be called from several threads at once "
+        + "(but the model should not be printed while instances are added).";
+  }
+
+  /**
+   * Set the number of threads for adding instances to the tree
+   * 
+   * @param numSlots the number of threads, 0 for one per processor
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of threads for adding instances to the tree
+   * 
+   * @return the number of threads, 0 for one per processor
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String memoryLimitTipText() {
+    return "The estimated memory in megabytes the tree may use (0 = no "
+        + "limit). When the limit is exceeded, the leaves with the least "
+        + "weight of misclassified training instances stop collecting "
+        + "statistics for splitting, and they are reactivated when the limit "
+        + "allows again.";
+  }
+
+  /**
+   * Set the estimated memory the tree may use
+   * 
+   * @param limit the limit in megabytes, 0 for no limit
+   */
+  public void setMemoryLimit(double limit) {
+    m_memoryLimit = limit;
+  }
+
+  /**
+   * Get the estimated memory the tree may use
+   * 
+   * @return the limit in megabytes, 0 for no limit
+   */
+  public double getMemoryLimit() {
+    return m_memoryLimit;
+  }
+
+  /**
+   * Returns the number of threads to use for adding instances to the tree
+   * 
+   * @return the number of threads
+   */
+  protected int numExecutionThreads() {
+    return (m_numExecutionSlots == 0) ? Runtime.getRuntime()
+        .availableProcessors() : Math.max(1, m_numExecutionSlots);
+  }
+
+  /**
+   * Returns the lock guarding the structure of the tree, creating it if
+   * necessary
+   * 
+   * @return the lock
+   */
+  protected ReentrantReadWriteLock structureLock() {
+    ReentrantReadWriteLock lock = m_structureLock;
+    if (lock == null) {
+      synchronized (this) {
+        if (m_structureLock == null) {
+          m_structureLock = new ReentrantReadWriteLock();
+        }
+        lock = m_structureLock;
+      }
+    }
+    return lock;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -743,8 +920,35 @@ public class HoeffdingTree extends AbstractClassifier implements
 
     data = new Instances(data);
     data.deleteWithMissingClass();
-    for (int i = 0; i < data.numInstances(); i++) {
-      updateClassifier(data.instance(i));
+    final int numThreads = numExecutionThreads();
+    if (numThreads == 1) {
+      for (int i = 0; i < data.numInstances(); i++) {
+        updateClassifier(data.instance(i));
+      }
+    } else {
+      // every thread adds every numThreads-th instance
+      final Instances train = data;
+      ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+      try {
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int t = 0; t < numThreads; t++) {
+          final int first = t;
+          results.add(pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              for (int i = first; i < train.numInstances(); i += numThreads) {
+                updateClassifier(train.instance(i));
+              }
+              return null;
+            }
+          }));
+        }
+        for (Future<Void> result : results) {
+          result.get();
+        }
+      } finally {
+        pool.shutdown();
+      }
     }
 
     // can classifier handle the data?
@@ -753,7 +957,10 @@ public class HoeffdingTree extends AbstractClassifier implements
   }
 
   /**
-   * Updates the classifier with the given instance.
+   * Updates the classifier with the given instance. If more than one
+   * execution slot is used, this method may be called from several threads
+   * at once, and the instance may be added to the tree by another thread
+   * after this method returns.
    * 
    * @param inst the new training instance to include in the model
    * @exception Exception if the instance could not be incorporated in the
@@ -766,6 +973,12 @@ public class HoeffdingTree extends AbstractClassifier implements
       return;
     }
 
+    if (numExecutionThreads() > 1) {
+      updateConcurrently(inst);
+      checkMemory();
+      return;
+    }
+
     if (m_root == null) {
       m_root = newLearningNode();
     }
@@ -792,6 +1005,233 @@ public class HoeffdingTree extends AbstractClassifier implements
         }
       }
     }
+
+    checkMemory();
+  }
+
+  /**
+   * Enforces the memory limit, if any, every MEMORY_CHECK_PERIOD instances
+   * 
+   * @throws Exception if a problem occurs
+   */
+  protected void checkMemory() throws Exception {
+    if ((m_memoryLimit > 0)
+        && (m_numUpdates.incrementAndGet() % MEMORY_CHECK_PERIOD == 0)) {
+      enforceMemoryLimit();
+    }
+  }
+
+  /**
+   * Keeps the estimated size of the tree within the memory limit. Learning
+   * nodes are ranked by their promise, i.e., the weight of the instances not
+   * in their majority class. In order of decreasing promise, active nodes
+   * stay active and nodes deactivated earlier are reactivated as long as
+   * their statistics fit into the limit, and the remaining active nodes are
+   * deactivated. When updating concurrently, nodes busy in other threads are
+   * left as they are.
+   * 
+   * @throws Exception if a problem occurs
+   */
+  protected void enforceMemoryLimit() throws Exception {
+
+    boolean concurrent = numExecutionThreads() > 1;
+    List<LeafNode> locked = new ArrayList<LeafNode>();
+    List<HNode> replaced = new ArrayList<HNode>();
+    if (concurrent) {
+      structureLock().writeLock().lock();
+    }
+    try {
+      if (m_root == null) {
+        return;
+      }
+
+      List<LeafNode> leaves = new ArrayList<LeafNode>();
+      m_root.findLearningNodes(null, null, leaves);
+      for (LeafNode l : leaves) {
+        if (!concurrent || l.m_theNode.getHandoff().m_lock.tryLock()) {
+          locked.add(l);
+        }
+      }
+
+      // the size of the tree without the statistics of the nodes considered
+      long limit = (long) (m_memoryLimit * 1024 * 1024);
+      long size = m_root.calcByteSizeIncludingSubtree();
+      double[] promise = new double[locked.size()];
+      for (int i = 0; i < promise.length; i++) {
+        HNode node = locked.get(i).m_theNode;
+        double max = 0;
+        for (WeightMass w : node.m_classDistribution.values()) {
+          max = Math.max(max, w.m_weight);
+        }
+        promise[i] = node.totalWeight() - max;
+        if (node instanceof ActiveHNode) {
+          size -= ((ActiveHNode) node).calcStatsByteSize();
+        }
+      }
+
+      long leafStatsSize = newLearningNode().estimateStatsByteSize(m_header);
+      int[] order = Utils.sort(promise);
+      for (int i = order.length - 1; i >= 0; i--) {
+        LeafNode l = locked.get(order[i]);
+        HNode node = l.m_theNode;
+        if (node instanceof ActiveHNode) {
+          long statsSize = Math.max(leafStatsSize,
+              ((ActiveHNode) node).calcStatsByteSize());
+          if (size + statsSize <= limit) {
+            size += statsSize;
+          } else {
+            deactivateNode((ActiveHNode) node, l.m_parentNode, l.m_parentBranch);
+            HNode leaf = (l.m_parentNode == null) ? m_root : l.m_parentNode
+                .getChild(l.m_parentBranch);
+            ((InactiveHNode) leaf).m_deactivatedForMemory = true;
+            replaced.add(node);
+          }
+        } else if (((InactiveHNode) node).m_deactivatedForMemory
+            && (size + leafStatsSize <= limit)) {
+          size += leafStatsSize;
+          activateNode((InactiveHNode) node, l.m_parentNode, l.m_parentBranch);
+          replaced.add(node);
+        }
+      }
+    } finally {
+      if (concurrent) {
+        for (HNode node : replaced) {
+          node.getHandoff().m_detached = true;
+        }
+        for (LeafNode l : locked) {
+          l.m_theNode.getHandoff().m_lock.unlock();
+        }
+        structureLock().writeLock().unlock();
+      }
+    }
+
+    if (concurrent) {
+      // route the instances handed over to replaced nodes again
+      for (HNode node : replaced) {
+        Instance pending;
+        while ((pending = node.getHandoff().m_pending.poll()) != null) {
+          updateConcurrently(pending);
+        }
+      }
+    }
+  }
+
+  /**
+   * Updates the classifier with the given instance, while other threads may
+   * do the same. The instance is routed to its leaf under the read lock of
+   * the tree structure. If another thread is updating the leaf, the instance
+   * is handed over to that thread, otherwise this thread updates the leaf
+   * and processes the instances handed over in the meantime.
+   * 
+   * @param inst the new training instance to include in the model
+   * @throws Exception if the instance could not be incorporated in the model
+   */
+  protected void updateConcurrently(Instance inst) throws Exception {
+
+    ReentrantReadWriteLock structure = structureLock();
+    LeafNode l;
+    while (true) {
+      structure.readLock().lock();
+      try {
+        l = (m_root == null) ? null : m_root.leafForInstance(inst, null, null);
+      } finally {
+        structure.readLock().unlock();
+      }
+      if ((l != null) && (l.m_theNode != null)) {
+        break;
+      }
+
+      // create the root or the missing child and route the instance again
+      structure.writeLock().lock();
+      try {
+        if (m_root == null) {
+          m_root = newLearningNode();
+        } else if (l.m_parentNode.getChild(l.m_parentBranch) == null) {
+          l.m_parentNode.setChild(l.m_parentBranch, new ActiveHNode());
+        }
+      } finally {
+        structure.writeLock().unlock();
+      }
+    }
+
+    HNode actualNode = l.m_theNode;
+    if (!(actualNode instanceof LearningNode)) {
+      return;
+    }
+
+    LeafHandoff handoff = actualNode.getHandoff();
+    boolean reroute = false;
+    if (handoff.m_pending.isEmpty() && handoff.m_lock.tryLock()) {
+      try {
+        if (handoff.m_detached) {
+          reroute = true;
+        } else {
+          updateLeaf(actualNode, l, inst);
+        }
+      } finally {
+        handoff.m_lock.unlock();
+      }
+    } else {
+      handoff.m_pending.add((Instance) inst.copy());
+    }
+    if (reroute) {
+      updateConcurrently(inst);
+    }
+
+    // whoever gets the lock processes the instances handed over
+    while (!handoff.m_pending.isEmpty() && handoff.m_lock.tryLock()) {
+      List<Instance> detached = new ArrayList<Instance>();
+      try {
+        Instance pending;
+        while ((pending = handoff.m_pending.poll()) != null) {
+          if (handoff.m_detached) {
+            detached.add(pending);
+          } else {
+            updateLeaf(actualNode, l, pending);
+          }
+        }
+      } finally {
+        handoff.m_lock.unlock();
+      }
+      for (Instance pending : detached) {
+        updateConcurrently(pending);
+      }
+    }
+  }
+
+  /**
+   * Updates a leaf with the given instance and tries to split it after the
+   * grace period. The caller must hold the lock of the leaf. A split is
+   * evaluated without blocking other threads, and only installed in the tree
+   * under the write lock of the tree structure.
+   * 
+   * @param node the leaf
+   * @param l the position of the leaf in the tree
+   * @param inst the instance
+   * @throws Exception if the instance could not be incorporated in the model
+   */
+  protected void updateLeaf(HNode node, LeafNode l, Instance inst)
+      throws Exception {
+
+    node.updateNode(inst);
+    if (node instanceof ActiveHNode) {
+      ActiveHNode active = (ActiveHNode) node;
+      double totalWeight = active.totalWeight();
+      if (totalWeight - active.m_weightSeenAtLastSplitEval > m_gracePeriod) {
+        SplitCandidate best = bestSplit(active);
+        if (best != null) {
+          ReentrantReadWriteLock structure = structureLock();
+          structure.writeLock().lock();
+          try {
+            applySplit(active, l.m_parentNode, l.m_parentBranch, best);
+          } finally {
+            structure.writeLock().unlock();
+          }
+          node.getHandoff().m_detached = true;
+        }
+        active.m_weightSeenAtLastSplitEval = totalWeight;
+      }
+    }
   }
 
   /**
@@ -807,7 +1247,34 @@ public class HoeffdingTree extends AbstractClassifier implements
     Attribute classAtt = inst.classAttribute();
     double[] pred = new double[classAtt.numValues()];
 
-    if (m_root != null) {
+    if ((m_root != null) && (numExecutionThreads() > 1)) {
+      LeafNode l;
+      ReentrantReadWriteLock structure = structureLock();
+      structure.readLock().lock();
+      try {
+        l = m_root.leafForInstance(inst, null, null);
+      } finally {
+        structure.readLock().unlock();
+      }
+      HNode actualNode = l.m_theNode;
+
+      if (actualNode == null) {
+        actualNode = l.m_parentNode;
+      }
+
+      if (actualNode instanceof LearningNode) {
+        // wait for the thread updating the leaf
+        LeafHandoff handoff = actualNode.getHandoff();
+        handoff.m_lock.lock();
+        try {
+          pred = actualNode.getDistribution(inst, classAtt);
+        } finally {
+          handoff.m_lock.unlock();
+        }
+      } else {
+        pred = actualNode.getDistribution(inst, classAtt);
+      }
+    } else if (m_root != null) {
       LeafNode l = m_root.leafForInstance(inst, null, null);
       HNode actualNode = l.m_theNode;
 
@@ -855,11 +1322,13 @@ public class HoeffdingTree extends AbstractClassifier implements
    * @param toActivate the node to activate
    * @param parent the node's parent
    * @param parentBranch the branch leading to the node
+   * @throws Exception if a problem occurs
    */
   protected void activateNode(InactiveHNode toActivate, SplitNode parent,
-      String parentBranch) {
-    HNode leaf = new ActiveHNode();
+      String parentBranch) throws Exception {
+    ActiveHNode leaf = newLearningNode();
     leaf.m_classDistribution = toActivate.m_classDistribution;
+    leaf.m_weightSeenAtLastSplitEval = leaf.totalWeight();
 
     if (parent == null) {
       m_root = leaf;
@@ -882,9 +1351,27 @@ public class HoeffdingTree extends AbstractClassifier implements
   protected void trySplit(ActiveHNode node, SplitNode parent,
       String parentBranch) throws Exception {
 
+    SplitCandidate best = bestSplit(node);
+    if (best != null) {
+      applySplit(node, parent, parentBranch, best);
+    }
+  }
+
+  /**
+   * Determines whether the supplied node should be split, based on the
+   * statistics collected at the node
+   * 
+   * @param node the node to split
+   * @return the split to perform, with a null split test to deactivate the
+   *         node, or null if the node should not be split
+   * @throws Exception if a problem occurs
+   */
+  protected SplitCandidate bestSplit(ActiveHNode node) throws Exception {
+
     // non-pure?
     if (node.numEntriesInClassDistribution() > 1) {
-      List<SplitCandidate> bestSplits = node.getPossibleSplits(m_splitMetric);
+      List<SplitCandidate> bestSplits = node.getPossibleSplits(m_splitMetric,
+          m_header);
       Collections.sort(bestSplits);
 
       boolean doSplit = false;
@@ -908,42 +1395,57 @@ public class HoeffdingTree extends AbstractClassifier implements
       }
 
       if (doSplit) {
-        SplitCandidate best = bestSplits.get(bestSplits.size() - 1);
+        return bestSplits.get(bestSplits.size() - 1);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Performs the given split of the supplied node
+   * 
+   * @param node the node to split
+   * @param parent the parent of the node
+   * @param parentBranch the branch leading to the node
+   * @param best the split to perform, with a null split test to deactivate
+   *          the node
+   * @throws Exception if a problem occurs
+   */
+  protected void applySplit(ActiveHNode node, SplitNode parent,
+      String parentBranch, SplitCandidate best) throws Exception {
 
-        if (best.m_splitTest == null) {
-          // preprune
-          deactivateNode(node, parent, parentBranch);
+    if (best.m_splitTest == null) {
+      // preprune
+      deactivateNode(node, parent, parentBranch);
+    } else {
+      SplitNode newSplit = new SplitNode(node.m_classDistribution,
+          best.m_splitTest);
+
+      for (int i = 0; i < best.numSplits(); i++) {
+        ActiveHNode newChild = newLearningNode();
+        newChild.m_classDistribution = best.m_postSplitClassDistributions
+            .get(i);
+        newChild.m_weightSeenAtLastSplitEval = newChild.totalWeight();
+        String branchName = "";
+        if (m_header.attribute(best.m_splitTest.splitAttributes().get(0))
+            .isNumeric()) {
+          branchName = i == 0 ? "left" : "right";
         } else {
-          SplitNode newSplit = new SplitNode(node.m_classDistribution,
-              best.m_splitTest);
-
-          for (int i = 0; i < best.numSplits(); i++) {
-            ActiveHNode newChild = newLearningNode();
-            newChild.m_classDistribution = best.m_postSplitClassDistributions
-                .get(i);
-            newChild.m_weightSeenAtLastSplitEval = newChild.totalWeight();
-            String branchName = "";
-            if (m_header.attribute(best.m_splitTest.splitAttributes().get(0))
-                .isNumeric()) {
-              branchName = i == 0 ? "left" : "right";
-            } else {
-              Attribute splitAtt = m_header.attribute(best.m_splitTest
-                  .splitAttributes().get(0));
-              branchName = splitAtt.value(i);
-            }
-            newSplit.setChild(branchName, newChild);
-          }
+          Attribute splitAtt = m_header.attribute(best.m_splitTest
+              .splitAttributes().get(0));
+          branchName = splitAtt.value(i);
+        }
+        newSplit.setChild(branchName, newChild);
+      }
 
-          m_activeLeafCount--;
-          m_decisionNodeCount++;
-          m_activeLeafCount += best.numSplits();
+      m_activeLeafCount--;
+      m_decisionNodeCount++;
+      m_activeLeafCount += best.numSplits();
 
-          if (parent == null) {
-            m_root = newSplit;
-          } else {
-            parent.setChild(parentBranch, newSplit);
-          }
-        }
+      if (parent == null) {
+        m_root = newSplit;
+      } else {
+        parent.setChild(parentBranch, newSplit);
       }
     }
   }
@@ -24,6 +24,8 @@ package weka.classifiers.trees;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.trees.j48.C45ModelSelection;
@@ -138,6 +140,13 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  *  Do not make split point actual value.
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads for fitting the regression functions of the classes
+ *  (use 0 to auto-detect number of cores)
+ *  (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Niels Landwehr
@@ -195,6 +204,9 @@ public class LMT extends AbstractClassifier implements OptionHandler,
   /** Do not relocate split point to actual data value */
   private boolean m_doNotMakeSplitPointActualValue;
 
+  /** The number of threads for fitting the regression functions */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Creates an instance of LMT with standard options
    */
@@ -273,8 +285,24 @@ public class LMT extends AbstractClassifier implements OptionHandler,
     m_tree = new LMTNode(modSelection, m_numBoostingIterations,
       m_fastRegression, m_errorOnProbabilities, m_minNumInstances,
       m_weightTrimBeta, m_useAIC, m_nominalToBinary, m_numDecimalPlaces);
-    // build tree
-    m_tree.buildClassifier(filteredData);
+
+    int numThreads = m_numExecutionSlots;
+    if (numThreads < 1) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    ExecutorService executor = null;
+    if (numThreads > 1) {
+      executor = Executors.newFixedThreadPool(numThreads);
+    }
+    try {
+      // build tree
+      m_tree.setExecutor(executor);
+      m_tree.buildClassifier(filteredData);
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
 
     if (modSelection instanceof C45ModelSelection) {
       ((C45ModelSelection) modSelection).cleanup();
@@ -385,6 +413,9 @@ public class LMT extends AbstractClassifier implements OptionHandler,
       "\tThe AIC is used to choose the best iteration.", "A", 0, "-A"));
     newVector.addElement(new Option("\tDo not make split point actual value.",
       "-doNotMakeSplitPointActualValue", 0, "-doNotMakeSplitPointActualValue"));
+    newVector.addElement(new Option("\tNumber of threads for fitting the "
+      + "regression functions of the classes\n\t(use 0 to auto-detect number "
+      + "of cores)\n\t(default 1)", "num-slots", 1, "-num-slots <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -443,6 +474,13 @@ public class LMT extends AbstractClassifier implements OptionHandler,
    *  Do not make split point actual value.
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads for fitting the regression functions of the classes
+   *  (use 0 to auto-detect number of cores)
+   *  (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -475,6 +513,13 @@ public class LMT extends AbstractClassifier implements OptionHandler,
     m_doNotMakeSplitPointActualValue = Utils.getFlag(
       "doNotMakeSplitPointActualValue", options);
 
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -521,6 +566,9 @@ public class LMT extends AbstractClassifier implements OptionHandler,
         options.add("-doNotMakeSplitPointActualValue");
     }
 
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
+
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[0]);
@@ -928,6 +976,35 @@ public class LMT extends AbstractClassifier implements OptionHandler,
     this.m_doNotMakeSplitPointActualValue = m_doNotMakeSplitPointActualValue;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for fitting the regression functions "
+      + "of the different classes in LogitBoost (0 = one per processor).";
+  }
+
+  /**
+   * Gets the number of threads for fitting the regression functions.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Sets the number of threads for fitting the regression functions.
+   * 
+   * @param numSlots the number of threads, 0 for one per processor
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -97,6 +97,20 @@ import weka.core.Utils;
  * </pre>
  * 
  * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads for evaluating the splits of large nodes
+ *  with -fast-build (use 0 to auto-detect number of cores)
+ *  (default 1)
+ * </pre>
+ * 
+ * <pre>
+ * -fast-build
+ *  Build faster: sort the instances once, evaluate the splits
+ *  of large nodes in parallel and fit the linear models from
+ *  sufficient statistics (results can differ in the last digits)
+ * </pre>
+ * 
+ * <pre>
  * -L
  *  Save instances at the nodes in
  *  the tree (for visualization purposes)
@@ -239,6 +253,20 @@ public class M5P extends M5Base implements Drawable {
    * </pre>
    * 
    * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads for evaluating the splits of large nodes
+   *  with -fast-build (use 0 to auto-detect number of cores)
+   *  (default 1)
+   * </pre>
+   * 
+   * <pre>
+   * -fast-build
+   *  Build faster: sort the instances once, evaluate the splits
+   *  of large nodes in parallel and fit the linear models from
+   *  sufficient statistics (results can differ in the last digits)
+   * </pre>
+   * 
+   * <pre>
    * -L
    *  Save instances at the nodes in
    *  the tree (for visualization purposes)
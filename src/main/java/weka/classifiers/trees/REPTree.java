@@ -22,16 +22,23 @@
 package weka.classifiers.trees;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Sourcable;
 import weka.classifiers.rules.ZeroR;
+import weka.classifiers.trees.binned.BinnedData;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Attribute;
 import weka.core.Capabilities;
@@ -92,6 +99,19 @@ import weka.core.WeightedInstancesHandler;
  *  Maximum tree depth (default -1, no maximum)
  * </pre>
  * 
+ * <pre>
+ * -max-bins &lt;num&gt;
+ *  The maximum number of bins for numeric attributes, at most 255.
+ *  (default 0, no binning)
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads for growing the tree
+ *  (use 0 to auto-detect number of cores)
+ *  (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -509,10 +529,14 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     }
 
     /**
-     * Recursively generates a tree.
+     * Recursively generates a tree. The instances at the node are given by a
+     * range of the sorted indices of each attribute. If possible, the range is
+     * partitioned in place for the successors.
      * 
      * @param sortedIndices the sorted indices of the instances
      * @param weights the weights of the instances
+     * @param start the start of the node's range (inclusive)
+     * @param end the end of the node's range (exclusive)
      * @param data the data to work with
      * @param totalWeight
      * @param classProbs the class probabilities
@@ -521,12 +545,14 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
      * @param minVariance
      * @param depth the current depth of the tree
      * @param maxDepth the maximum allowed depth of the tree
+     * @param workspace the buffers and executor for growing the tree
      * @throws Exception if generation fails
      */
-    protected void buildTree(int[][][] sortedIndices, double[][][] weights,
-      Instances data, double totalWeight, double[] classProbs,
-      Instances header, double minNum, double minVariance, int depth,
-      int maxDepth) throws Exception {
+    protected void buildTree(int[][] sortedIndices, double[][] weights,
+      int start, int end, Instances data, double totalWeight,
+      double[] classProbs, Instances header, double minNum,
+      double minVariance, int depth, int maxDepth, Workspace workspace)
+      throws Exception {
 
       // Store structure of dataset, set minimum number of instances
       // and make space for potential info from pruning data
@@ -542,15 +568,13 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       if (data.classIndex() == 0) {
         helpIndex = 1;
       }
-      if (sortedIndices[0][helpIndex].length == 0) {
+      if (start == end) {
         if (data.classAttribute().isNumeric()) {
           m_Distribution = new double[2];
         } else {
           m_Distribution = new double[data.numClasses()];
         }
         m_ClassProbs = null;
-        sortedIndices[0] = null;
-        weights[0] = null;
         return;
       }
 
@@ -559,12 +583,12 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
 
         // Compute prior variance
         double totalSum = 0, totalSumSquared = 0, totalSumOfWeights = 0;
-        for (int i = 0; i < sortedIndices[0][helpIndex].length; i++) {
-          Instance inst = data.instance(sortedIndices[0][helpIndex][i]);
-          totalSum += inst.classValue() * weights[0][helpIndex][i];
+        for (int i = start; i < end; i++) {
+          Instance inst = data.instance(sortedIndices[helpIndex][i]);
+          totalSum += inst.classValue() * weights[helpIndex][i];
           totalSumSquared += inst.classValue() * inst.classValue()
-            * weights[0][helpIndex][i];
-          totalSumOfWeights += weights[0][helpIndex][i];
+            * weights[helpIndex][i];
+          totalSumOfWeights += weights[helpIndex][i];
         }
         priorVar = singleVariance(totalSum, totalSumSquared, totalSumOfWeights);
       }
@@ -606,8 +630,6 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
           m_Distribution[0] = priorVar;
           m_Distribution[1] = totalWeight;
         }
-        sortedIndices[0] = null;
-        weights[0] = null;
         return;
       }
 
@@ -618,27 +640,8 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       double[][] props = new double[data.numAttributes()][0];
       double[][] totalSubsetWeights = new double[data.numAttributes()][0];
       double[] splits = new double[data.numAttributes()];
-      if (data.classAttribute().isNominal()) {
-
-        // Nominal case
-        for (int i = 0; i < data.numAttributes(); i++) {
-          if (i != data.classIndex()) {
-            splits[i] = distribution(props, dists, i, sortedIndices[0][i],
-              weights[0][i], totalSubsetWeights, data);
-            vals[i] = gain(dists[i], priorVal(dists[i]));
-          }
-        }
-      } else {
-
-        // Numeric case
-        for (int i = 0; i < data.numAttributes(); i++) {
-          if (i != data.classIndex()) {
-            splits[i] = numericDistribution(props, dists, i,
-              sortedIndices[0][i], weights[0][i], totalSubsetWeights, data,
-              vals);
-          }
-        }
-      }
+      evaluateAttributes(props, dists, totalSubsetWeights, splits, vals,
+        sortedIndices, weights, start, end, data, workspace);
 
       // Find best attribute
       m_Attribute = Utils.maxIndex(vals);
@@ -672,24 +675,37 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         totalSubsetWeights = null;
         splits = null;
 
-        // Split data
-        int[][][][] subsetIndices = new int[numAttVals][1][data.numAttributes()][0];
-        double[][][][] subsetWeights = new double[numAttVals][1][data
-          .numAttributes()][0];
-        splitData(subsetIndices, subsetWeights, m_Attribute, m_SplitPoint,
-          sortedIndices[0], weights[0], data);
-
-        // Release memory
-        sortedIndices[0] = null;
-        weights[0] = null;
+        // Split data, in place if no instances have to be split up
+        int[] bounds = new int[numAttVals + 1];
+        int[][][] subsetIndices = null;
+        double[][][] subsetWeights = null;
+        if (!partition(sortedIndices, weights, start, end, bounds, data,
+          workspace)) {
+          subsetIndices = new int[numAttVals][data.numAttributes()][0];
+          subsetWeights = new double[numAttVals][data.numAttributes()][0];
+          splitData(subsetIndices, subsetWeights, workspace.m_Successor,
+            sortedIndices, weights, start, end, data);
+        }
 
         // Build successors
         m_Successors = new Tree[numAttVals];
         for (int i = 0; i < numAttVals; i++) {
           m_Successors[i] = new Tree();
-          m_Successors[i].buildTree(subsetIndices[i], subsetWeights[i], data,
-            attTotalSubsetWeights[i], attSubsetDists[i], header, minNum,
-            minVariance, depth + 1, maxDepth);
+          if (subsetIndices == null) {
+            m_Successors[i].buildTree(sortedIndices, weights, bounds[i],
+              bounds[i + 1], data, attTotalSubsetWeights[i],
+              attSubsetDists[i], header, minNum, minVariance, depth + 1,
+              maxDepth, workspace);
+          } else {
+            m_Successors[i].buildTree(subsetIndices[i], subsetWeights[i], 0,
+              subsetIndices[i][helpIndex].length, data,
+              attTotalSubsetWeights[i], attSubsetDists[i], header, minNum,
+              minVariance, depth + 1, maxDepth, workspace);
+
+            // Release as much memory as we can
+            subsetIndices[i] = null;
+            subsetWeights[i] = null;
+          }
 
           // Release as much memory as we can
           attSubsetDists[i] = null;
@@ -698,8 +714,6 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
 
         // Make leaf
         m_Attribute = -1;
-        sortedIndices[0] = null;
-        weights[0] = null;
       }
 
       // Normalize class counts
@@ -717,6 +731,166 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       }
     }
 
+    /**
+     * Recursively generates a tree from binned data, using histograms to
+     * find the splits.
+     * 
+     * @param node the instances at this node
+     * @param totalWeight
+     * @param classProbs the class probabilities
+     * @param header the header of the data
+     * @param minNum the minimum number of instances in a leaf
+     * @param minVariance
+     * @param depth the current depth of the tree
+     * @param maxDepth the maximum allowed depth of the tree
+     * @throws Exception if generation fails
+     */
+    protected void buildTree(BinnedData.Node node, double totalWeight,
+      double[] classProbs, Instances header, double minNum, double minVariance,
+      int depth, int maxDepth) throws Exception {
+
+      // Store structure of dataset and make space for potential info from
+      // pruning data
+      m_Info = header;
+      boolean nominalClass = header.classAttribute().isNominal();
+      if (nominalClass) {
+        m_HoldOutDist = new double[header.numClasses()];
+      } else {
+        m_HoldOutDist = new double[2];
+      }
+
+      // Make leaf if there are no training instances
+      if (node.numInstances() == 0) {
+        if (nominalClass) {
+          m_Distribution = new double[header.numClasses()];
+        } else {
+          m_Distribution = new double[2];
+        }
+        m_ClassProbs = null;
+        return;
+      }
+
+      double priorVar = 0;
+      if (!nominalClass) {
+
+        // Compute prior variance
+        double totalSum = 0, totalSumSquared = 0, totalSumOfWeights = 0;
+        for (int i = 0; i < node.numInstances(); i++) {
+          double classVal = node.classValue(i) * node.weight(i);
+          totalSum += classVal;
+          totalSumSquared += node.classValue(i) * classVal;
+          totalSumOfWeights += node.weight(i);
+        }
+        priorVar = singleVariance(totalSum, totalSumSquared, totalSumOfWeights);
+      }
+
+      // Check if node doesn't contain enough instances, is pure
+      // or the maximum tree depth is reached
+      m_ClassProbs = new double[classProbs.length];
+      System.arraycopy(classProbs, 0, m_ClassProbs, 0, classProbs.length);
+      if ((totalWeight < (2 * minNum))
+        || (nominalClass && Utils.eq(m_ClassProbs[Utils.maxIndex(m_ClassProbs)],
+          Utils.sum(m_ClassProbs)))
+        || (!nominalClass && ((priorVar / totalWeight) < minVariance))
+        || ((m_MaxDepth >= 0) && (depth >= maxDepth))) {
+
+        // Make leaf
+        m_Attribute = -1;
+        if (nominalClass) {
+          m_Distribution = new double[m_ClassProbs.length];
+          for (int i = 0; i < m_ClassProbs.length; i++) {
+            m_Distribution[i] = m_ClassProbs[i];
+          }
+          doSmoothing();
+          Utils.normalize(m_ClassProbs);
+        } else {
+          m_Distribution = new double[2];
+          m_Distribution[0] = priorVar;
+          m_Distribution[1] = totalWeight;
+        }
+        return;
+      }
+
+      // Compute class distributions and value of splitting
+      // criterion for each attribute
+      BinnedData data = node.getData();
+      double[] vals = new double[header.numAttributes()];
+      double[][][] dists = new double[header.numAttributes()][0][0];
+      double[][] props = new double[header.numAttributes()][0];
+      double[][] totalSubsetWeights = new double[header.numAttributes()][0];
+      double[] splits = new double[header.numAttributes()];
+      for (int i = 0; i < header.numAttributes(); i++) {
+        if (i != header.classIndex()) {
+          if (nominalClass) {
+            splits[i] = distribution(props, dists, i, data, node.histogram(i),
+              totalSubsetWeights);
+            vals[i] = gain(dists[i], priorVal(dists[i]));
+          } else {
+            splits[i] = numericDistribution(props, dists, i, data,
+              node.histogram(i), totalSubsetWeights, vals);
+          }
+        }
+      }
+
+      // Find best attribute
+      m_Attribute = Utils.maxIndex(vals);
+      int numAttVals = dists[m_Attribute].length;
+
+      // Check if there are at least two subsets with
+      // required minimum number of instances
+      int count = 0;
+      for (int i = 0; i < numAttVals; i++) {
+        if (totalSubsetWeights[m_Attribute][i] >= minNum) {
+          count++;
+        }
+        if (count > 1) {
+          break;
+        }
+      }
+
+      // Any useful split found?
+      if (Utils.gr(vals[m_Attribute], 0) && (count > 1)) {
+
+        // Set split point and proportions, and split data
+        m_SplitPoint = splits[m_Attribute];
+        m_Prop = props[m_Attribute];
+        double[][] attSubsetDists = dists[m_Attribute];
+        double[] attTotalSubsetWeights = totalSubsetWeights[m_Attribute];
+        BinnedData.Node[] subsets = node.split(m_Attribute, m_SplitPoint, m_Prop);
+
+        // Build successors
+        m_Successors = new Tree[numAttVals];
+        for (int i = 0; i < numAttVals; i++) {
+          m_Successors[i] = new Tree();
+          m_Successors[i].buildTree(subsets[i], attTotalSubsetWeights[i],
+            attSubsetDists[i], header, minNum, minVariance, depth + 1,
+            maxDepth);
+          subsets[i].done();
+
+          // Release as much memory as we can
+          attSubsetDists[i] = null;
+        }
+      } else {
+
+        // Make leaf
+        m_Attribute = -1;
+      }
+
+      // Normalize class counts
+      if (nominalClass) {
+        m_Distribution = new double[m_ClassProbs.length];
+        for (int i = 0; i < m_ClassProbs.length; i++) {
+          m_Distribution[i] = m_ClassProbs[i];
+        }
+        doSmoothing();
+        Utils.normalize(m_ClassProbs);
+      } else {
+        m_Distribution = new double[2];
+        m_Distribution[0] = priorVar;
+        m_Distribution[1] = totalWeight;
+      }
+    }
+
     /**
      * Smoothes class probabilities stored at node.
      */
@@ -750,20 +924,178 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     }
 
     /**
-     * Splits instances into subsets.
+     * Returns the successor an instance without a missing value for the split
+     * attribute belongs to.
+     * 
+     * @param inst the instance
+     * @return the index of the successor
+     */
+    protected int successorIndex(Instance inst) {
+
+      if (m_Info.attribute(m_Attribute).isNominal()) {
+        return (int) inst.value(m_Attribute);
+      } else {
+        return (inst.value(m_Attribute) < m_SplitPoint) ? 0 : 1;
+      }
+    }
+
+    /**
+     * Computes the class distributions and the value of the splitting
+     * criterion for each attribute. Attributes are evaluated in parallel if
+     * the workspace provides an executor and the node is large enough.
+     * 
+     * @param props the proportions for each attribute
+     * @param dists the distributions for each attribute
+     * @param subsetWeights the subset weights for each attribute
+     * @param splits the split points for each attribute
+     * @param vals the values of the splitting criterion
+     * @param sortedIndices the sorted indices of the instances
+     * @param weights the weights of the instances
+     * @param start the start of the node's range (inclusive)
+     * @param end the end of the node's range (exclusive)
+     * @param data the data to work with
+     * @param workspace the workspace
+     * @throws Exception if computation fails
+     */
+    protected void evaluateAttributes(final double[][] props,
+      final double[][][] dists, final double[][] subsetWeights,
+      final double[] splits, final double[] vals, final int[][] sortedIndices,
+      final double[][] weights, final int start, final int end,
+      final Instances data, Workspace workspace) throws Exception {
+
+      List<Future<Void>> results = null;
+      if (workspace.useExecutor(end - start, data.numAttributes())) {
+        results = new ArrayList<Future<Void>>();
+      }
+      for (int i = 0; i < data.numAttributes(); i++) {
+        if (i != data.classIndex()) {
+          final int att = i;
+          Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              if (data.classAttribute().isNominal()) {
+
+                // Nominal case
+                splits[att] = distribution(props, dists, att,
+                  sortedIndices[att], weights[att], start, end, subsetWeights,
+                  data);
+                vals[att] = gain(dists[att], priorVal(dists[att]));
+              } else {
+
+                // Numeric case
+                splits[att] = numericDistribution(props, dists, att,
+                  sortedIndices[att], weights[att], start, end, subsetWeights,
+                  data, vals);
+              }
+              return null;
+            }
+          };
+          if (results == null) {
+            task.call();
+          } else {
+            results.add(workspace.m_Executor.submit(task));
+          }
+        }
+      }
+      if (results != null) {
+        for (Future<Void> result : results) {
+          result.get();
+        }
+      }
+    }
+
+    /**
+     * Partitions the node's range of the sorted indices in place, so that
+     * the instances of each successor form a contiguous range that is still
+     * sorted. This is only possible if no instance has a missing value for the
+     * split attribute, as such instances are split up.
+     * 
+     * @param sortedIndices the sorted indices of the instances
+     * @param weights the weights of the instances
+     * @param start the start of the node's range (inclusive)
+     * @param end the end of the node's range (exclusive)
+     * @param bounds returns the bounds of the successors' ranges
+     * @param data the data to work with
+     * @param workspace the workspace, returns the successor of each instance
+     * @return false if the range could not be partitioned in place
+     * @throws Exception if partitioning fails
+     */
+    protected boolean partition(final int[][] sortedIndices,
+      final double[][] weights, final int start, final int end,
+      final int[] bounds, Instances data, final Workspace workspace)
+      throws Exception {
+
+      // Find the successor of each instance, -1 if it has to be split up
+      boolean missing = false;
+      int[] counts = new int[bounds.length - 1];
+      for (int j = start; j < end; j++) {
+        int index = sortedIndices[m_Attribute][j];
+        Instance inst = data.instance(index);
+        if (inst.isMissing(m_Attribute)) {
+          workspace.m_Successor[index] = -1;
+          missing = true;
+        } else {
+          workspace.m_Successor[index] = successorIndex(inst);
+          counts[workspace.m_Successor[index]]++;
+        }
+      }
+      if (missing) {
+        return false;
+      }
+      bounds[0] = start;
+      for (int k = 0; k < counts.length; k++) {
+        bounds[k + 1] = bounds[k] + counts[k];
+      }
+
+      // Each thread uses its own buffer for a subset of the attributes
+      final int classIndex = data.classIndex();
+      final int numAttributes = data.numAttributes();
+      final int numBuffers = workspace.useExecutor(end - start, numAttributes)
+        ? workspace.m_ScratchIndices.length : 1;
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int t = 0; t < numBuffers; t++) {
+        final int buffer = t;
+        Callable<Void> task = new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = buffer; i < numAttributes; i += numBuffers) {
+              if (i != classIndex) {
+                workspace.partition(sortedIndices[i], weights[i], start, end,
+                  bounds, buffer);
+              }
+            }
+            return null;
+          }
+        };
+        if (numBuffers == 1) {
+          task.call();
+        } else {
+          results.add(workspace.m_Executor.submit(task));
+        }
+      }
+      for (Future<Void> result : results) {
+        result.get();
+      }
+      return true;
+    }
+
+    /**
+     * Splits instances into subsets, copying the sorted indices.
      * 
      * @param subsetIndices the sorted indices in the subset
      * @param subsetWeights the weights of the subset
-     * @param att the attribute index
-     * @param splitPoint the split point for numeric attributes
+     * @param successors the successor of each instance, -1 if the instance
+     *          has to be split up
      * @param sortedIndices the sorted indices of the whole set
      * @param weights the weights of the whole set
+     * @param start the start of the range to split (inclusive)
+     * @param end the end of the range to split (exclusive)
      * @param data the data to work with
      * @throws Exception if something goes wrong
      */
-    protected void splitData(int[][][][] subsetIndices,
-      double[][][][] subsetWeights, int att, double splitPoint,
-      int[][] sortedIndices, double[][] weights, Instances data)
+    protected void splitData(int[][][] subsetIndices,
+      double[][][] subsetWeights, int[] successors, int[][] sortedIndices,
+      double[][] weights, int start, int end, Instances data)
       throws Exception {
 
       int j;
@@ -772,70 +1104,38 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       // For each attribute
       for (int i = 0; i < data.numAttributes(); i++) {
         if (i != data.classIndex()) {
-          if (data.attribute(att).isNominal()) {
-
-            // For nominal attributes
-            num = new int[data.attribute(att).numValues()];
-            for (int k = 0; k < num.length; k++) {
-              subsetIndices[k][0][i] = new int[sortedIndices[i].length];
-              subsetWeights[k][0][i] = new double[sortedIndices[i].length];
-            }
-            for (j = 0; j < sortedIndices[i].length; j++) {
-              Instance inst = data.instance(sortedIndices[i][j]);
-              if (inst.isMissing(att)) {
-
-                // Split instance up
-                for (int k = 0; k < num.length; k++) {
-                  if (m_Prop[k] > 0) {
-                    subsetIndices[k][0][i][num[k]] = sortedIndices[i][j];
-                    subsetWeights[k][0][i][num[k]] = m_Prop[k] * weights[i][j];
-                    num[k]++;
-                  }
-                }
-              } else {
-                int subset = (int) inst.value(att);
-                subsetIndices[subset][0][i][num[subset]] = sortedIndices[i][j];
-                subsetWeights[subset][0][i][num[subset]] = weights[i][j];
-                num[subset]++;
-              }
-            }
-          } else {
-
-            // For numeric attributes
-            num = new int[2];
-            for (int k = 0; k < 2; k++) {
-              subsetIndices[k][0][i] = new int[sortedIndices[i].length];
-              subsetWeights[k][0][i] = new double[weights[i].length];
-            }
-            for (j = 0; j < sortedIndices[i].length; j++) {
-              Instance inst = data.instance(sortedIndices[i][j]);
-              if (inst.isMissing(att)) {
-
-                // Split instance up
-                for (int k = 0; k < num.length; k++) {
-                  if (m_Prop[k] > 0) {
-                    subsetIndices[k][0][i][num[k]] = sortedIndices[i][j];
-                    subsetWeights[k][0][i][num[k]] = m_Prop[k] * weights[i][j];
-                    num[k]++;
-                  }
+          num = new int[subsetIndices.length];
+          for (int k = 0; k < num.length; k++) {
+            subsetIndices[k][i] = new int[end - start];
+            subsetWeights[k][i] = new double[end - start];
+          }
+          for (j = start; j < end; j++) {
+            int subset = successors[sortedIndices[i][j]];
+            if (subset < 0) {
+
+              // Split instance up
+              for (int k = 0; k < num.length; k++) {
+                if (m_Prop[k] > 0) {
+                  subsetIndices[k][i][num[k]] = sortedIndices[i][j];
+                  subsetWeights[k][i][num[k]] = m_Prop[k] * weights[i][j];
+                  num[k]++;
                 }
-              } else {
-                int subset = (inst.value(att) < splitPoint) ? 0 : 1;
-                subsetIndices[subset][0][i][num[subset]] = sortedIndices[i][j];
-                subsetWeights[subset][0][i][num[subset]] = weights[i][j];
-                num[subset]++;
               }
+            } else {
+              subsetIndices[subset][i][num[subset]] = sortedIndices[i][j];
+              subsetWeights[subset][i][num[subset]] = weights[i][j];
+              num[subset]++;
             }
           }
 
           // Trim arrays
           for (int k = 0; k < num.length; k++) {
             int[] copy = new int[num[k]];
-            System.arraycopy(subsetIndices[k][0][i], 0, copy, 0, num[k]);
-            subsetIndices[k][0][i] = copy;
+            System.arraycopy(subsetIndices[k][i], 0, copy, 0, num[k]);
+            subsetIndices[k][i] = copy;
             double[] copyWeights = new double[num[k]];
-            System.arraycopy(subsetWeights[k][0][i], 0, copyWeights, 0, num[k]);
-            subsetWeights[k][0][i] = copyWeights;
+            System.arraycopy(subsetWeights[k][i], 0, copyWeights, 0, num[k]);
+            subsetWeights[k][i] = copyWeights;
           }
         }
       }
@@ -849,14 +1149,16 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
      * @param att the attribute index
      * @param sortedIndices the sorted indices of the instances
      * @param weights the weights of the instances
+     * @param start the start of the node's range (inclusive)
+     * @param end the end of the node's range (exclusive)
      * @param subsetWeights the weights of the subset
      * @param data the data to work with
      * @return the split point
      * @throws Exception if computation fails
      */
     protected double distribution(double[][] props, double[][][] dists,
-      int att, int[] sortedIndices, double[] weights, double[][] subsetWeights,
-      Instances data) throws Exception {
+      int att, int[] sortedIndices, double[] weights, int start, int end,
+      double[][] subsetWeights, Instances data) throws Exception {
 
       double splitPoint = Double.NaN;
       Attribute attribute = data.attribute(att);
@@ -867,7 +1169,7 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
 
         // For nominal attributes
         dist = new double[attribute.numValues()][data.numClasses()];
-        for (i = 0; i < sortedIndices.length; i++) {
+        for (i = start; i < end; i++) {
           Instance inst = data.instance(sortedIndices[i]);
           if (inst.isMissing(att)) {
             break;
@@ -881,7 +1183,7 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         dist = new double[2][data.numClasses()];
 
         // Move all instances into second subset
-        for (int j = 0; j < sortedIndices.length; j++) {
+        for (int j = start; j < end; j++) {
           Instance inst = data.instance(sortedIndices[j]);
           if (inst.isMissing(att)) {
             break;
@@ -892,9 +1194,9 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         System.arraycopy(currDist[1], 0, dist[1], 0, dist[1].length);
 
         // Try all possible split points
-        double currSplit = data.instance(sortedIndices[0]).value(att);
+        double currSplit = data.instance(sortedIndices[start]).value(att);
         double currVal, bestVal = -Double.MAX_VALUE;
-        for (i = 0; i < sortedIndices.length; i++) {
+        for (i = start; i < end; i++) {
           Instance inst = data.instance(sortedIndices[i]);
           if (inst.isMissing(att)) {
             break;
@@ -935,7 +1237,7 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       }
 
       // Distribute counts
-      while (i < sortedIndices.length) {
+      while (i < end) {
         Instance inst = data.instance(sortedIndices[i]);
         for (int j = 0; j < dist.length; j++) {
           dist[j][(int) inst.classValue()] += props[att][j] * weights[i];
@@ -962,6 +1264,8 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
      * @param att the attribute index
      * @param sortedIndices the sorted indices of the instances
      * @param weights the weights of the instances
+     * @param start the start of the node's range (inclusive)
+     * @param end the end of the node's range (exclusive)
      * @param subsetWeights the weights of the subset
      * @param data the data to work with
      * @param vals
@@ -969,8 +1273,9 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
      * @throws Exception if computation fails
      */
     protected double numericDistribution(double[][] props, double[][][] dists,
-      int att, int[] sortedIndices, double[] weights, double[][] subsetWeights,
-      Instances data, double[] vals) throws Exception {
+      int att, int[] sortedIndices, double[] weights, int start, int end,
+      double[][] subsetWeights, Instances data, double[] vals)
+      throws Exception {
 
       double splitPoint = Double.NaN;
       Attribute attribute = data.attribute(att);
@@ -989,7 +1294,7 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         sumSquared = new double[attribute.numValues()];
         sumOfWeights = new double[attribute.numValues()];
         int attVal;
-        for (i = 0; i < sortedIndices.length; i++) {
+        for (i = start; i < end; i++) {
           Instance inst = data.instance(sortedIndices[i]);
           if (inst.isMissing(att)) {
             break;
@@ -1014,7 +1319,7 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         double[] currSumOfWeights = new double[2];
 
         // Move all instances into second subset
-        for (int j = 0; j < sortedIndices.length; j++) {
+        for (int j = start; j < end; j++) {
           Instance inst = data.instance(sortedIndices[j]);
           if (inst.isMissing(att)) {
             break;
@@ -1034,9 +1339,9 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         sumOfWeights[1] = currSumOfWeights[1];
 
         // Try all possible split points
-        double currSplit = data.instance(sortedIndices[0]).value(att);
+        double currSplit = data.instance(sortedIndices[start]).value(att);
         double currVal, bestVal = Double.MAX_VALUE;
-        for (i = 0; i < sortedIndices.length; i++) {
+        for (i = start; i < end; i++) {
           Instance inst = data.instance(sortedIndices[i]);
           if (inst.isMissing(att)) {
             break;
@@ -1089,7 +1394,7 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       }
 
       // Distribute counts for missing values
-      while (i < sortedIndices.length) {
+      while (i < end) {
         Instance inst = data.instance(sortedIndices[i]);
         for (int j = 0; j < sums.length; j++) {
           sums[j] += props[att][j] * inst.classValue() * weights[i];
@@ -1127,46 +1432,284 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     }
 
     /**
-     * Computes variance for subsets.
+     * Computes class distribution for an attribute from the histogram of
+     * binned data. Split points are only considered between bins.
      * 
-     * @param s
-     * @param sS
-     * @param sumOfWeights
-     * @return the variance
+     * @param props
+     * @param dists
+     * @param att the attribute index
+     * @param data the binned data
+     * @param hist the histogram of the attribute
+     * @param subsetWeights the weights of the subset
+     * @return the split point
      */
-    protected double variance(double[] s, double[] sS, double[] sumOfWeights) {
+    protected double distribution(double[][] props, double[][][] dists,
+      int att, BinnedData data, BinnedData.Histogram hist,
+      double[][] subsetWeights) {
 
-      double var = 0;
+      double splitPoint = Double.NaN;
+      int numClasses = m_Info.numClasses();
+      double[] values = hist.values();
+      int numRows = hist.numRows();
+      double[][] dist = null;
 
-      for (int i = 0; i < s.length; i++) {
-        if (sumOfWeights[i] > 0) {
-          var += singleVariance(s[i], sS[i], sumOfWeights[i]);
-        }
-      }
+      if (m_Info.attribute(att).isNominal()) {
 
-      return var;
-    }
+        // For nominal attributes
+        dist = new double[data.numBins(att)][numClasses];
+        for (int r = 0; r < numRows; r++) {
+          System.arraycopy(values, r * numClasses, dist[hist.bin(r)], 0,
+            numClasses);
+        }
+      } else {
 
-    /**
-     * Computes the variance for a single set
-     * 
-     * @param s
-     * @param sS
-     * @param weight the weight
-     * @return the variance
-     */
-    protected double singleVariance(double s, double sS, double weight) {
+        // For numeric attributes
+        double[][] currDist = new double[2][numClasses];
+        dist = new double[2][numClasses];
 
-      return sS - ((s * s) / weight);
-    }
+        // Move all bins into second subset
+        for (int r = 0; r < numRows; r++) {
+          for (int c = 0; c < numClasses; c++) {
+            currDist[1][c] += values[r * numClasses + c];
+          }
+        }
+        double priorVal = priorVal(currDist);
+        System.arraycopy(currDist[1], 0, dist[1], 0, dist[1].length);
 
-    /**
-     * Computes value of splitting criterion before split.
-     * 
-     * @param dist
-     * @return the splitting criterion
-     */
-    protected double priorVal(double[][] dist) {
+        // Try split points between all non-empty bins
+        double currVal, bestVal = -Double.MAX_VALUE;
+        int lastRow = -1;
+        for (int r = 0; r < numRows; r++) {
+          if (!(hist.weight(r) > 0)) {
+            continue;
+          }
+          if (lastRow >= 0) {
+            currVal = gain(currDist, priorVal);
+            if (currVal > bestVal) {
+              bestVal = currVal;
+              splitPoint = data.splitPoint(att, hist.bin(lastRow), hist.bin(r));
+              for (int j = 0; j < currDist.length; j++) {
+                System.arraycopy(currDist[j], 0, dist[j], 0, dist[j].length);
+              }
+            }
+          }
+          lastRow = r;
+          for (int c = 0; c < numClasses; c++) {
+            currDist[0][c] += values[r * numClasses + c];
+            currDist[1][c] -= values[r * numClasses + c];
+          }
+        }
+      }
+
+      // Compute weights
+      props[att] = new double[dist.length];
+      for (int k = 0; k < props[att].length; k++) {
+        props[att][k] = Utils.sum(dist[k]);
+      }
+      if (!(Utils.sum(props[att]) > 0)) {
+        for (int k = 0; k < props[att].length; k++) {
+          props[att][k] = 1.0 / props[att].length;
+        }
+      } else {
+        Utils.normalize(props[att]);
+      }
+
+      // Distribute counts for missing values
+      int missing = numRows * numClasses;
+      for (int j = 0; j < dist.length; j++) {
+        for (int c = 0; c < numClasses; c++) {
+          dist[j][c] += props[att][j] * values[missing + c];
+        }
+      }
+
+      // Compute subset weights
+      subsetWeights[att] = new double[dist.length];
+      for (int j = 0; j < dist.length; j++) {
+        subsetWeights[att][j] += Utils.sum(dist[j]);
+      }
+
+      // Return distribution and split point
+      dists[att] = dist;
+      return splitPoint;
+    }
+
+    /**
+     * Computes numeric class distribution for an attribute from the histogram
+     * of binned data. Split points are only considered between bins.
+     * 
+     * @param props
+     * @param dists
+     * @param att the attribute index
+     * @param data the binned data
+     * @param hist the histogram of the attribute
+     * @param subsetWeights the weights of the subset
+     * @param vals
+     * @return the split point
+     */
+    protected double numericDistribution(double[][] props, double[][][] dists,
+      int att, BinnedData data, BinnedData.Histogram hist,
+      double[][] subsetWeights, double[] vals) {
+
+      double splitPoint = Double.NaN;
+      double[] values = hist.values();
+      int numRows = hist.numRows();
+      int numSubsets = m_Info.attribute(att).isNominal() ? data.numBins(att) : 2;
+      double[] sums = new double[numSubsets];
+      double[] sumSquared = new double[numSubsets];
+      double[] sumOfWeights = new double[numSubsets];
+      double totalSum = 0, totalSumSquared = 0, totalSumOfWeights = 0;
+
+      if (m_Info.attribute(att).isNominal()) {
+
+        // For nominal attributes
+        for (int r = 0; r < numRows; r++) {
+          sums[hist.bin(r)] = values[r * 3];
+          sumSquared[hist.bin(r)] = values[r * 3 + 1];
+          sumOfWeights[hist.bin(r)] = values[r * 3 + 2];
+        }
+        totalSum = Utils.sum(sums);
+        totalSumSquared = Utils.sum(sumSquared);
+        totalSumOfWeights = Utils.sum(sumOfWeights);
+      } else {
+
+        // For numeric attributes
+        double[] currSums = new double[2];
+        double[] currSumSquared = new double[2];
+        double[] currSumOfWeights = new double[2];
+
+        // Move all bins into second subset
+        for (int r = 0; r < numRows; r++) {
+          currSums[1] += values[r * 3];
+          currSumSquared[1] += values[r * 3 + 1];
+          currSumOfWeights[1] += values[r * 3 + 2];
+        }
+        totalSum = currSums[1];
+        totalSumSquared = currSumSquared[1];
+        totalSumOfWeights = currSumOfWeights[1];
+
+        sums[1] = currSums[1];
+        sumSquared[1] = currSumSquared[1];
+        sumOfWeights[1] = currSumOfWeights[1];
+
+        // Try split points between all non-empty bins
+        double currVal, bestVal = Double.MAX_VALUE;
+        int lastRow = -1;
+        for (int r = 0; r < numRows; r++) {
+          if (!(values[r * 3 + 2] > 0)) {
+            continue;
+          }
+          if (lastRow >= 0) {
+            currVal = variance(currSums, currSumSquared, currSumOfWeights);
+            if (currVal < bestVal) {
+              bestVal = currVal;
+              splitPoint = data.splitPoint(att, hist.bin(lastRow), hist.bin(r));
+              for (int j = 0; j < 2; j++) {
+                sums[j] = currSums[j];
+                sumSquared[j] = currSumSquared[j];
+                sumOfWeights[j] = currSumOfWeights[j];
+              }
+            }
+          }
+          lastRow = r;
+
+          currSums[0] += values[r * 3];
+          currSumSquared[0] += values[r * 3 + 1];
+          currSumOfWeights[0] += values[r * 3 + 2];
+
+          currSums[1] -= values[r * 3];
+          currSumSquared[1] -= values[r * 3 + 1];
+          currSumOfWeights[1] -= values[r * 3 + 2];
+        }
+      }
+
+      // Compute weights
+      props[att] = new double[numSubsets];
+      for (int k = 0; k < props[att].length; k++) {
+        props[att][k] = sumOfWeights[k];
+      }
+      if (!(Utils.sum(props[att]) > 0)) {
+        for (int k = 0; k < props[att].length; k++) {
+          props[att][k] = 1.0 / props[att].length;
+        }
+      } else {
+        Utils.normalize(props[att]);
+      }
+
+      // Distribute counts for missing values
+      int missing = numRows * 3;
+      for (int j = 0; j < numSubsets; j++) {
+        sums[j] += props[att][j] * values[missing];
+        sumSquared[j] += props[att][j] * values[missing + 1];
+        sumOfWeights[j] += props[att][j] * values[missing + 2];
+      }
+      totalSum += values[missing];
+      totalSumSquared += values[missing + 1];
+      totalSumOfWeights += values[missing + 2];
+
+      // Compute final distribution
+      double[][] dist = new double[numSubsets][m_Info.numClasses()];
+      for (int j = 0; j < numSubsets; j++) {
+        if (sumOfWeights[j] > 0) {
+          dist[j][0] = sums[j] / sumOfWeights[j];
+        } else {
+          dist[j][0] = totalSum / totalSumOfWeights;
+        }
+      }
+
+      // Compute variance gain
+      double priorVar = singleVariance(totalSum, totalSumSquared,
+        totalSumOfWeights);
+      double var = variance(sums, sumSquared, sumOfWeights);
+      double gain = priorVar - var;
+
+      // Return distribution and split point
+      subsetWeights[att] = sumOfWeights;
+      dists[att] = dist;
+      vals[att] = gain;
+      return splitPoint;
+    }
+
+    /**
+     * Computes variance for subsets.
+     * 
+     * @param s
+     * @param sS
+     * @param sumOfWeights
+     * @return the variance
+     */
+    protected double variance(double[] s, double[] sS, double[] sumOfWeights) {
+
+      double var = 0;
+
+      for (int i = 0; i < s.length; i++) {
+        if (sumOfWeights[i] > 0) {
+          var += singleVariance(s[i], sS[i], sumOfWeights[i]);
+        }
+      }
+
+      return var;
+    }
+
+    /**
+     * Computes the variance for a single set
+     * 
+     * @param s
+     * @param sS
+     * @param weight the weight
+     * @return the variance
+     */
+    protected double singleVariance(double s, double sS, double weight) {
+
+      return sS - ((s * s) / weight);
+    }
+
+    /**
+     * Computes value of splitting criterion before split.
+     * 
+     * @param dist
+     * @return the splitting criterion
+     */
+    protected double priorVal(double[][] dist) {
 
       return ContingencyTables.entropyOverColumns(dist);
     }
@@ -1220,8 +1763,97 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
      */
     protected void insertHoldOutSet(Instances data) throws Exception {
 
+      int[] indices = new int[data.numInstances()];
+      double[] weights = new double[data.numInstances()];
       for (int i = 0; i < data.numInstances(); i++) {
-        insertHoldOutInstance(data.instance(i), data.instance(i).weight(), this);
+        indices[i] = i;
+        weights[i] = data.instance(i).weight();
+      }
+      insertHoldOutSet(data, indices, weights, 0, data.numInstances(),
+        new int[data.numInstances()], new double[data.numInstances()], this);
+    }
+
+    /**
+     * Inserts a range of instances from the hold-out set into the tree, node
+     * by node rather than instance by instance. The range is partitioned in
+     * place for the successors unless instances have to be split up because
+     * of missing values. The order of the instances is preserved, so the
+     * statistics are the same as when inserting them one at a time.
+     * 
+     * @param data the hold-out set
+     * @param indices the indices of the instances
+     * @param weights the weights of the instances
+     * @param start the start of the range (inclusive)
+     * @param end the end of the range (exclusive)
+     * @param scratchIndices a buffer for partitioning the indices
+     * @param scratchWeights a buffer for partitioning the weights
+     * @param parent the parent of the node
+     * @throws Exception if insertion fails
+     */
+    protected void insertHoldOutSet(Instances data, int[] indices,
+      double[] weights, int start, int end, int[] scratchIndices,
+      double[] scratchWeights, Tree parent) throws Exception {
+
+      for (int j = start; j < end; j++) {
+        addHoldOutInstance(data.instance(indices[j]), weights[j], parent);
+      }
+
+      // The process is recursive
+      if ((m_Attribute == -1) || (start == end)) {
+        return;
+      }
+      int[] bounds = new int[m_Successors.length + 1];
+      boolean missing = false;
+      for (int j = start; j < end; j++) {
+        Instance inst = data.instance(indices[j]);
+        if (inst.isMissing(m_Attribute)) {
+          missing = true;
+          break;
+        }
+        bounds[successorIndex(inst) + 1]++;
+      }
+      if (!missing) {
+
+        // Partition range in place
+        bounds[0] = start;
+        for (int i = 0; i < m_Successors.length; i++) {
+          bounds[i + 1] += bounds[i];
+        }
+        int[] pos = new int[m_Successors.length];
+        System.arraycopy(bounds, 0, pos, 0, pos.length);
+        for (int j = start; j < end; j++) {
+          int p = pos[successorIndex(data.instance(indices[j]))]++;
+          scratchIndices[p] = indices[j];
+          scratchWeights[p] = weights[j];
+        }
+        System.arraycopy(scratchIndices, start, indices, start, end - start);
+        System.arraycopy(scratchWeights, start, weights, start, end - start);
+        for (int i = 0; i < m_Successors.length; i++) {
+          m_Successors[i].insertHoldOutSet(data, indices, weights, bounds[i],
+            bounds[i + 1], scratchIndices, scratchWeights, this);
+        }
+      } else {
+
+        // Distribute instances with missing values
+        for (int i = 0; i < m_Successors.length; i++) {
+          int[] subsetIndices = new int[end - start];
+          double[] subsetWeights = new double[end - start];
+          int num = 0;
+          for (int j = start; j < end; j++) {
+            Instance inst = data.instance(indices[j]);
+            if (inst.isMissing(m_Attribute)) {
+              if (m_Prop[i] > 0) {
+                subsetIndices[num] = indices[j];
+                subsetWeights[num++] = weights[j] * m_Prop[i];
+              }
+            } else if (successorIndex(inst) == i) {
+              subsetIndices[num] = indices[j];
+              subsetWeights[num++] = weights[j];
+            }
+          }
+          m_Successors[i].insertHoldOutSet(data, subsetIndices, subsetWeights,
+            0, num, new int[num], new double[num], this);
+        }
       }
     }
 
@@ -1236,6 +1868,38 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     protected void insertHoldOutInstance(Instance inst, double weight,
       Tree parent) throws Exception {
 
+      addHoldOutInstance(inst, weight, parent);
+
+      // The process is recursive
+      if (m_Attribute != -1) {
+
+        // If node is not a leaf
+        if (inst.isMissing(m_Attribute)) {
+
+          // Distribute instance
+          for (int i = 0; i < m_Successors.length; i++) {
+            if (m_Prop[i] > 0) {
+              m_Successors[i].insertHoldOutInstance(inst, weight * m_Prop[i],
+                this);
+            }
+          }
+        } else {
+          m_Successors[successorIndex(inst)].insertHoldOutInstance(inst,
+            weight, this);
+        }
+      }
+    }
+
+    /**
+     * Adds an instance from the hold-out set to the statistics of this node.
+     * 
+     * @param inst the instance to add
+     * @param weight the weight of the instance
+     * @param parent the parent of the node
+     */
+    protected void addHoldOutInstance(Instance inst, double weight,
+      Tree parent) {
+
       // Insert instance into hold-out class distribution
       if (inst.classAttribute().isNominal()) {
 
@@ -1263,38 +1927,6 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         }
         m_HoldOutError += diff * diff * weight;
       }
-
-      // The process is recursive
-      if (m_Attribute != -1) {
-
-        // If node is not a leaf
-        if (inst.isMissing(m_Attribute)) {
-
-          // Distribute instance
-          for (int i = 0; i < m_Successors.length; i++) {
-            if (m_Prop[i] > 0) {
-              m_Successors[i].insertHoldOutInstance(inst, weight * m_Prop[i],
-                this);
-            }
-          }
-        } else {
-
-          if (m_Info.attribute(m_Attribute).isNominal()) {
-
-            // Treat nominal attributes
-            m_Successors[(int) inst.value(m_Attribute)].insertHoldOutInstance(
-              inst, weight, this);
-          } else {
-
-            // Treat numeric attributes
-            if (inst.value(m_Attribute) < m_SplitPoint) {
-              m_Successors[0].insertHoldOutInstance(inst, weight, this);
-            } else {
-              m_Successors[1].insertHoldOutInstance(inst, weight, this);
-            }
-          }
-        }
-      }
     }
 
     /**
@@ -1358,6 +1990,87 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     }
   }
 
+  /**
+   * The buffers and the executor shared by all nodes while growing a tree from
+   * sorted indices.
+   */
+  protected static class Workspace {
+
+    /** The successor of each training instance at the current node */
+    protected int[] m_Successor;
+
+    /** A buffer of indices for partitioning, one per thread */
+    protected int[][] m_ScratchIndices;
+
+    /** A buffer of weights for partitioning, one per thread */
+    protected double[][] m_ScratchWeights;
+
+    /** The executor for large nodes, null if the tree is grown sequentially */
+    protected ExecutorService m_Executor;
+
+    /**
+     * Creates the workspace.
+     * 
+     * @param numInstances the number of training instances
+     * @param numThreads the number of threads used
+     * @param executor the executor, null if the tree is grown sequentially
+     */
+    protected Workspace(int numInstances, int numThreads,
+      ExecutorService executor) {
+
+      m_Successor = new int[numInstances];
+      m_ScratchIndices = new int[numThreads][numInstances];
+      m_ScratchWeights = new double[numThreads][numInstances];
+      m_Executor = executor;
+    }
+
+    /**
+     * Returns whether the work at a node is split among several threads.
+     * 
+     * @param numInstances the number of instances at the node
+     * @param numAttributes the number of attributes
+     * @return true if the executor is to be used
+     */
+    protected boolean useExecutor(int numInstances, int numAttributes) {
+
+      return (m_Executor != null)
+        && ((long) numInstances * numAttributes >= PARALLEL_SPLIT_THRESHOLD);
+    }
+
+    /**
+     * Stably partitions a range of the sorted indices of one attribute by the
+     * successors given in m_Successor.
+     * 
+     * @param indices the sorted indices of the attribute
+     * @param weights the corresponding weights
+     * @param start the start of the range (inclusive)
+     * @param end the end of the range (exclusive)
+     * @param bounds the bounds of the successors' ranges
+     * @param buffer the index of the buffer to use
+     */
+    protected void partition(int[] indices, double[] weights, int start,
+      int end, int[] bounds, int buffer) {
+
+      int[] scratchIndices = m_ScratchIndices[buffer];
+      double[] scratchWeights = m_ScratchWeights[buffer];
+      int[] pos = new int[bounds.length - 1];
+      System.arraycopy(bounds, 0, pos, 0, pos.length);
+      for (int j = start; j < end; j++) {
+        int p = pos[m_Successor[indices[j]]]++;
+        scratchIndices[p] = indices[j];
+        scratchWeights[p] = weights[j];
+      }
+      System.arraycopy(scratchIndices, start, indices, start, end - start);
+      System.arraycopy(scratchWeights, start, weights, start, end - start);
+    }
+  }
+
+  /**
+   * The minimum number of instance-attribute pairs at a node for evaluating
+   * and partitioning the attributes in parallel.
+   */
+  protected static final int PARALLEL_SPLIT_THRESHOLD = 50000;
+
   /** The Tree object */
   protected Tree m_Tree = null;
 
@@ -1388,6 +2101,12 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
   /** Whether to spread initial count across all values */
   protected boolean m_SpreadInitialCount = false;
 
+  /** The maximum number of bins for numeric attributes (0 = no binning) */
+  protected int m_MaxBins = 0;
+
+  /** The number of threads for growing the tree (0 = one per processor) */
+  protected int m_NumExecutionSlots = 1;
+
   /**
    * Returns the tip text for this property
    * 
@@ -1573,6 +2292,71 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     m_MaxDepth = newMaxDepth;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxBinsTipText() {
+    return "The maximum number of bins numeric attributes are discretized into "
+      + "before growing the tree (at most " + BinnedData.MAX_BINS + ", 0 for no "
+      + "binning). Binning speeds up split selection but only considers split "
+      + "points between bins.";
+  }
+
+  /**
+   * Get the value of MaxBins.
+   * 
+   * @return Value of MaxBins.
+   */
+  public int getMaxBins() {
+
+    return m_MaxBins;
+  }
+
+  /**
+   * Set the value of MaxBins.
+   * 
+   * @param newMaxBins Value to assign to MaxBins.
+   */
+  public void setMaxBins(int newMaxBins) {
+
+    m_MaxBins = newMaxBins;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for evaluating and partitioning the "
+      + "attributes at large nodes (0 = one per processor). Ignored if "
+      + "binning is used.";
+  }
+
+  /**
+   * Get the value of NumExecutionSlots.
+   * 
+   * @return Value of NumExecutionSlots.
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Set the value of NumExecutionSlots.
+   * 
+   * @param newNumExecutionSlots Value to assign to NumExecutionSlots.
+   */
+  public void setNumExecutionSlots(int newNumExecutionSlots) {
+
+    m_NumExecutionSlots = newNumExecutionSlots;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -1663,6 +2447,13 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     newVector.addElement(new Option(
       "\tSpread initial count over all class values (i.e."
         + " don't use 1 per value)", "R", 0, "-R"));
+    newVector.addElement(new Option(
+      "\tThe maximum number of bins for numeric attributes, at most "
+        + BinnedData.MAX_BINS + ".\n" + "\t(default 0, no binning)",
+      "max-bins", 1, "-max-bins <num>"));
+    newVector.addElement(new Option("\tNumber of threads for growing the "
+      + "tree\n\t(use 0 to auto-detect number of cores)\n\t(default 1)",
+      "num-slots", 1, "-num-slots <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -1696,6 +2487,12 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     if (getSpreadInitialCount()) {
       options.add("-R");
     }
+    if (getMaxBins() > 0) {
+      options.add("-max-bins");
+      options.add("" + getMaxBins());
+    }
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
 
     Collections.addAll(options, super.getOptions());
 
@@ -1740,6 +2537,19 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
    *  Maximum tree depth (default -1, no maximum)
    * </pre>
    * 
+   * <pre>
+   * -max-bins &lt;num&gt;
+   *  The maximum number of bins for numeric attributes, at most 255.
+   *  (default 0, no binning)
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads for growing the tree
+   *  (use 0 to auto-detect number of cores)
+   *  (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -1786,6 +2596,18 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       m_InitialCount = 0;
     }
     m_SpreadInitialCount = Utils.getFlag('R', options);
+    String maxBinsString = Utils.getOption("max-bins", options);
+    if (maxBinsString.length() != 0) {
+      m_MaxBins = Integer.parseInt(maxBinsString);
+    } else {
+      m_MaxBins = 0;
+    }
+    String numSlotsString = Utils.getOption("num-slots", options);
+    if (numSlotsString.length() != 0) {
+      m_NumExecutionSlots = Integer.parseInt(numSlotsString);
+    } else {
+      m_NumExecutionSlots = 1;
+    }
 
     super.setOptions(options);
   }
@@ -1897,50 +2719,6 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       train = data;
     }
 
-    // Create array of sorted indices and weights
-    int[][][] sortedIndices = new int[1][train.numAttributes()][0];
-    double[][][] weights = new double[1][train.numAttributes()][0];
-    double[] vals = new double[train.numInstances()];
-    for (int j = 0; j < train.numAttributes(); j++) {
-      if (j != train.classIndex()) {
-        weights[0][j] = new double[train.numInstances()];
-        if (train.attribute(j).isNominal()) {
-
-          // Handling nominal attributes. Putting indices of
-          // instances with missing values at the end.
-          sortedIndices[0][j] = new int[train.numInstances()];
-          int count = 0;
-          for (int i = 0; i < train.numInstances(); i++) {
-            Instance inst = train.instance(i);
-            if (!inst.isMissing(j)) {
-              sortedIndices[0][j][count] = i;
-              weights[0][j][count] = inst.weight();
-              count++;
-            }
-          }
-          for (int i = 0; i < train.numInstances(); i++) {
-            Instance inst = train.instance(i);
-            if (inst.isMissing(j)) {
-              sortedIndices[0][j][count] = i;
-              weights[0][j][count] = inst.weight();
-              count++;
-            }
-          }
-        } else {
-
-          // Sorted indices are computed for numeric attributes
-          for (int i = 0; i < train.numInstances(); i++) {
-            Instance inst = train.instance(i);
-            vals[i] = inst.value(j);
-          }
-          sortedIndices[0][j] = Utils.sort(vals);
-          for (int i = 0; i < train.numInstances(); i++) {
-            weights[0][j][i] = train.instance(sortedIndices[0][j][i]).weight();
-          }
-        }
-      }
-    }
-
     // Compute initial class counts
     double[] classProbs = new double[train.numClasses()];
     double totalWeight = 0, totalSumSquared = 0;
@@ -1965,9 +2743,79 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     }
 
     // Build tree
-    m_Tree.buildTree(sortedIndices, weights, train, totalWeight, classProbs,
-      new Instances(train, 0), m_MinNum, m_MinVarianceProp * trainVariance, 0,
-      m_MaxDepth);
+    if (m_MaxBins > 0) {
+
+      // Use histograms of binned data to find the splits
+      BinnedData.Node root = new BinnedData.Node(new BinnedData(train,
+        Math.min(Math.max(m_MaxBins, 2), BinnedData.MAX_BINS)));
+      m_Tree.buildTree(root, totalWeight, classProbs, new Instances(train, 0),
+        m_MinNum, m_MinVarianceProp * trainVariance, 0, m_MaxDepth);
+      root.done();
+    } else {
+
+      // Create array of sorted indices and weights
+      int[][] sortedIndices = new int[train.numAttributes()][0];
+      double[][] weights = new double[train.numAttributes()][0];
+      double[] vals = new double[train.numInstances()];
+      for (int j = 0; j < train.numAttributes(); j++) {
+        if (j != train.classIndex()) {
+          weights[j] = new double[train.numInstances()];
+          if (train.attribute(j).isNominal()) {
+
+            // Handling nominal attributes. Putting indices of
+            // instances with missing values at the end.
+            sortedIndices[j] = new int[train.numInstances()];
+            int count = 0;
+            for (int i = 0; i < train.numInstances(); i++) {
+              Instance inst = train.instance(i);
+              if (!inst.isMissing(j)) {
+                sortedIndices[j][count] = i;
+                weights[j][count] = inst.weight();
+                count++;
+              }
+            }
+            for (int i = 0; i < train.numInstances(); i++) {
+              Instance inst = train.instance(i);
+              if (inst.isMissing(j)) {
+                sortedIndices[j][count] = i;
+                weights[j][count] = inst.weight();
+                count++;
+              }
+            }
+          } else {
+
+            // Sorted indices are computed for numeric attributes
+            for (int i = 0; i < train.numInstances(); i++) {
+              Instance inst = train.instance(i);
+              vals[i] = inst.value(j);
+            }
+            sortedIndices[j] = Utils.sort(vals);
+            for (int i = 0; i < train.numInstances(); i++) {
+              weights[j][i] = train.instance(sortedIndices[j][i]).weight();
+            }
+          }
+        }
+      }
+
+      int numThreads = m_NumExecutionSlots;
+      if (numThreads < 1) {
+        numThreads = Runtime.getRuntime().availableProcessors();
+      }
+      ExecutorService executor = null;
+      if (numThreads > 1) {
+        executor = Executors.newFixedThreadPool(numThreads);
+      }
+      try {
+        m_Tree.buildTree(sortedIndices, weights, 0, train.numInstances(),
+          train, totalWeight, classProbs, new Instances(train, 0), m_MinNum,
+          m_MinVarianceProp * trainVariance, 0, m_MaxDepth, new Workspace(
+            train.numInstances(), numThreads, executor));
+      } finally {
+        if (executor != null) {
+          executor.shutdown();
+        }
+      }
+    }
 
     // Insert pruning data and perform reduced error pruning
     if (!m_NoPruning) {
@@ -24,7 +24,10 @@ package weka.classifiers.trees;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.meta.Bagging;
+import weka.classifiers.trees.binned.BinnedData;
 import weka.core.Capabilities;
+import weka.core.Instance;
+import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
@@ -35,10 +38,17 @@ import weka.core.Utils;
 import weka.core.WekaException;
 import weka.gui.ProgrammaticProperty;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <!-- globalinfo-start --> Class for constructing a forest of random trees.<br>
@@ -102,6 +112,11 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -permutation-importance
+ *  Compute and output attribute importance (out-of-bag permutation method)
+ * </pre>
+ * 
+ * <pre>
  * -I &lt;num&gt;
  *  Number of iterations (i.e., the number of trees in the random forest).
  *  (current value 100)
@@ -145,6 +160,12 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -max-bins &lt;num&gt;
+ *  The maximum number of bins for numeric attributes, at most 255.
+ *  (default 0, no binning)
+ * </pre>
+ * 
+ * <pre>
  * -N &lt;num&gt;
  *  Number of folds for backfitting (default 0, no backfitting).
  * </pre>
@@ -194,6 +215,30 @@ public class RandomForest extends Bagging {
   /** True to compute attribute importance */
   protected boolean m_computeAttributeImportance;
 
+  /** True to compute attribute importance by permuting out-of-bag values */
+  protected boolean m_computePermutationImportance;
+
+  /** The permutation importance of each attribute, null if not computed */
+  protected double[] m_PermutationImportance;
+
+  /** the data shared by all trees while building, null if not shared */
+  protected BinnedData m_SharedData;
+
+  /** the index of each training instance in the shared data, -1 if left out */
+  protected int[] m_SharedIndices;
+
+  /** the index of each instance of the shared data in the training data */
+  protected int[] m_SharedRows;
+
+  /** the weights of the training instances for drawing the samples */
+  protected double[] m_SampleWeights;
+
+  /** the trees flattened for prediction, created when first needed */
+  protected transient FlattenedForest m_Flattened;
+
+  /** the trees the flattened forest was created from */
+  protected transient Classifier[] m_FlattenedFrom;
+
   /**
    * The default number of iterations to perform.
    */
@@ -386,6 +431,37 @@ public class RandomForest extends Bagging {
     return m_computeAttributeImportance;
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String computePermutationImportanceTipText() {
+    return "Compute attribute importance via the mean increase in out-of-bag "
+      + "error when the values of an attribute are permuted";
+  }
+
+  /**
+   * Set whether to compute and output permutation importance scores
+   *
+   * @param computePermutationImportance true to compute permutation
+   *          importance scores
+   */
+  public void setComputePermutationImportance(
+    boolean computePermutationImportance) {
+    m_computePermutationImportance = computePermutationImportance;
+  }
+
+  /**
+   * Get whether to compute and output permutation importance scores
+   *
+   * @return true if computing permutation importance scores
+   */
+  public boolean getComputePermutationImportance() {
+    return m_computePermutationImportance;
+  }
+
   /**
    * Returns the tip text for this property
    *
@@ -414,6 +490,34 @@ public class RandomForest extends Bagging {
     ((RandomTree) getClassifier()).setMaxDepth(value);
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxBinsTipText() {
+    return ((RandomTree) getClassifier()).maxBinsTipText();
+  }
+
+  /**
+   * Get the maximum number of bins for numeric attributes, 0 for no binning.
+   *
+   * @return the maximum number of bins.
+   */
+  public int getMaxBins() {
+    return ((RandomTree) getClassifier()).getMaxBins();
+  }
+
+  /**
+   * Set the maximum number of bins for numeric attributes, 0 for no binning.
+   *
+   * @param value the maximum number of bins.
+   */
+  public void setMaxBins(int value) {
+    ((RandomTree) getClassifier()).setMaxBins(value);
+  }
+
   /**
    * Returns the tip text for this property
    *
@@ -487,6 +591,397 @@ public class RandomForest extends Bagging {
     ((RandomTree) getClassifier()).setSeed(s);
   }
 
+  /**
+   * Builds the trees. If the trees are grown from binned data, or the class
+   * is nominal and binning the data loses no information (so that the trees
+   * are the same as grown by the exact search), the binned data is shared by
+   * all trees, with every bootstrap sample represented by the number of times
+   * an instance was drawn. Otherwise, every tree is trained on its own
+   * bootstrap sample, which shares the attribute values with the training
+   * data.
+   *
+   * @throws Exception if the trees could not be built successfully
+   */
+  @Override
+  protected void buildClassifiers() throws Exception {
+
+    synchronized (this) {
+      m_Flattened = null;
+      m_FlattenedFrom = null;
+    }
+    RandomTree tree = (RandomTree) getClassifier();
+    if ((tree.getNumFolds() > 0) || (m_data.numAttributes() == 1)) {
+      super.buildClassifiers();
+      return;
+    }
+    Instances data = new Instances(m_data);
+    data.deleteWithMissingClass();
+    if ((tree.getMaxBins() <= 0)
+      && (!data.classAttribute().isNominal() || !BinnedData.isLossless(data))) {
+      super.buildClassifiers();
+      return;
+    }
+
+    // store the instances with a class value once
+    m_SharedIndices = new int[m_data.numInstances()];
+    m_SharedRows = new int[data.numInstances()];
+    m_SampleWeights = new double[m_data.numInstances()];
+    int numShared = 0;
+    for (int i = 0; i < m_data.numInstances(); i++) {
+      m_SampleWeights[i] = m_data.instance(i).weight();
+      if (m_data.instance(i).classIsMissing()) {
+        m_SharedIndices[i] = -1;
+      } else {
+        m_SharedIndices[i] = numShared;
+        m_SharedRows[numShared++] = i;
+      }
+    }
+    int maxBins = (tree.getMaxBins() > 0) ? tree.getMaxBins() : BinnedData.MAX_BINS;
+    m_SharedData = new BinnedData(data,
+      Math.min(Math.max(maxBins, 2), BinnedData.MAX_BINS));
+    data = null;
+
+    try {
+      super.buildClassifiers();
+    } finally {
+      m_SharedData = null;
+      m_SharedIndices = null;
+      m_SharedRows = null;
+      m_SampleWeights = null;
+    }
+  }
+
+  /**
+   * Builds the tree for a particular iteration from the shared data, using
+   * the same bootstrap sample as Bagging.
+   *
+   * @param iteration the number of the iteration
+   * @throws Exception if the tree could not be built successfully
+   */
+  @Override
+  protected void buildClassifier(int iteration) throws Exception {
+
+    if (m_SharedData == null) {
+      super.buildClassifier(iteration);
+      return;
+    }
+
+    int[] drawn = m_data.resampleIndicesWithWeights(new Random(m_Seed
+      + iteration), m_SampleWeights, m_BagSizePercent);
+    if (m_inBag != null) {
+      m_inBag[iteration] = new boolean[m_data.numInstances()];
+    }
+    double[] weights = new double[m_SharedData.numInstances()];
+    for (int index : drawn) {
+      if (m_inBag != null) {
+        m_inBag[iteration][index] = true;
+      }
+      if (m_SharedIndices[index] >= 0) {
+        weights[m_SharedIndices[index]]++;
+      }
+    }
+
+    RandomTree tree = (RandomTree) m_Classifiers[iteration];
+    tree.buildClassifier(m_SharedData, weights, m_data,
+      getRandomNumberGenerator(weights, tree.getSeed()));
+  }
+
+  /**
+   * Returns the random number generator a tree would use when trained on a
+   * copy of its bootstrap sample, see Instances.getRandomNumberGenerator(long).
+   *
+   * @param weights the weights of the instances of the shared data
+   * @param seed the seed of the tree
+   * @return the random number generator
+   */
+  protected Random getRandomNumberGenerator(double[] weights, long seed) {
+
+    int numInstances = 0;
+    for (double weight : weights) {
+      if (weight > 0) {
+        numInstances++;
+      }
+    }
+    Random r = new Random(seed);
+    if (numInstances == 0) {
+      return r;
+    }
+    int pos = r.nextInt(numInstances);
+    for (int i = 0; i < weights.length; i++) {
+      if ((weights[i] > 0) && (pos-- == 0)) {
+        r.setSeed(m_data.instance(m_SharedRows[i]).toStringNoWeight()
+          .hashCode() + seed);
+        break;
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Returns the trees flattened into arrays, creating them if necessary.
+   *
+   * @return the flattened trees, null if they cannot be flattened
+   */
+  protected synchronized FlattenedForest getFlattenedForest() {
+
+    if ((m_Classifiers == null) || (m_Classifiers.length == 0)) {
+      return null;
+    }
+    if ((m_Flattened == null) || (m_FlattenedFrom != m_Classifiers)) {
+      RandomTree[] trees = new RandomTree[m_Classifiers.length];
+      for (int i = 0; i < trees.length; i++) {
+        if (!(m_Classifiers[i] instanceof RandomTree)
+          || !FlattenedForest.canFlatten((RandomTree) m_Classifiers[i])) {
+          return null;
+        }
+        trees[i] = (RandomTree) m_Classifiers[i];
+      }
+      m_Flattened = new FlattenedForest(trees);
+      m_FlattenedFrom = m_Classifiers;
+    }
+    return m_Flattened;
+  }
+
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instance, using the flattened trees.
+   *
+   * @param instance the instance to be classified
+   * @return predicted class probability distribution
+   * @throws Exception if distribution can't be computed successfully
+   */
+  @Override
+  public double[] distributionForInstance(Instance instance) throws Exception {
+
+    FlattenedForest flattened = getFlattenedForest();
+    if (flattened == null) {
+      return super.distributionForInstance(instance);
+    }
+    return flattened.distributionForInstance(instance);
+  }
+
+  /**
+   * Batch scoring method. Passes blocks of instances down the flattened
+   * trees. The blocks are divided among the execution slots.
+   *
+   * @param insts the instances to get predictions for
+   * @return an array of probability distributions, one for each instance
+   * @throws Exception if a problem occurs
+   */
+  @Override
+  public double[][] distributionsForInstances(Instances insts)
+    throws Exception {
+
+    FlattenedForest flattened = getFlattenedForest();
+    if (flattened == null) {
+      return super.distributionsForInstances(insts);
+    }
+    return flattened.distributionsForInstances(insts, numExecutionThreads());
+  }
+
+  /**
+   * Returns true, as the flattened trees are used for batch prediction.
+   *
+   * @return true
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    return true;
+  }
+
+  /**
+   * Returns whether the in-bag indicators are required after building the
+   * trees, i.e., whether the out-of-bag error or the permutation importance
+   * is calculated.
+   *
+   * @return true if the in-bag indicators are required
+   */
+  @Override
+  protected boolean requiresInBag() {
+    return super.requiresInBag() || m_computePermutationImportance;
+  }
+
+  /**
+   * Calculates the out-of-bag error and the permutation importance, if
+   * required, after the trees have been built.
+   *
+   * @throws Exception if the statistics cannot be calculated
+   */
+  @Override
+  protected void evaluateOutOfBag() throws Exception {
+
+    super.evaluateOutOfBag();
+    m_PermutationImportance = null;
+    if (m_computePermutationImportance) {
+      m_PermutationImportance = computePermutationImportance();
+    }
+  }
+
+  /**
+   * Computes the permutation importance of each attribute: for every tree,
+   * the values of an attribute the tree splits on are permuted among the
+   * instances that were not in its bag, and the increase in the error of the
+   * tree on these instances is averaged over the trees. The error is the
+   * misclassification rate for a nominal class and the mean squared error
+   * for a numeric class. The trees are divided among the execution slots.
+   *
+   * @return the importance of each attribute, null if the trees cannot be
+   *         flattened
+   * @throws Exception if a thread fails
+   */
+  protected double[] computePermutationImportance() throws Exception {
+
+    final FlattenedForest forest = getFlattenedForest();
+    if (forest == null) {
+      return null;
+    }
+    final double[][] perTree = new double[m_Classifiers.length][];
+    int numThreads = Math.min(numExecutionThreads(), m_Classifiers.length);
+    if (numThreads == 1) {
+      for (int t = 0; t < perTree.length; t++) {
+        perTree[t] = computePermutationImportance(forest, t);
+      }
+    } else {
+      ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+      try {
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int t = 0; t < perTree.length; t++) {
+          final int tree = t;
+          results.add(pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              perTree[tree] = computePermutationImportance(forest, tree);
+              return null;
+            }
+          }));
+        }
+        for (Future<Void> result : results) {
+          result.get();
+        }
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    // average over the trees with out-of-bag instances
+    double[] importance = new double[m_data.numAttributes()];
+    int numTrees = 0;
+    for (double[] forTree : perTree) {
+      if (forTree != null) {
+        for (int i = 0; i < importance.length; i++) {
+          importance[i] += forTree[i];
+        }
+        numTrees++;
+      }
+    }
+    if (numTrees > 0) {
+      for (int i = 0; i < importance.length; i++) {
+        importance[i] /= numTrees;
+      }
+    }
+    return importance;
+  }
+
+  /**
+   * Computes the permutation importance of each attribute for a single tree.
+   * Attributes the tree does not split on have importance 0.
+   *
+   * @param forest the flattened trees
+   * @param tree the index of the tree
+   * @return the importance of each attribute, null if the tree has no
+   *         out-of-bag instances with a class value
+   */
+  protected double[] computePermutationImportance(FlattenedForest forest,
+    int tree) {
+
+    int numRows = 0;
+    int[] rows = new int[m_data.numInstances()];
+    for (int i = 0; i < rows.length; i++) {
+      if (!m_inBag[tree][i] && !m_data.instance(i).classIsMissing()) {
+        rows[numRows++] = i;
+      }
+    }
+    if (numRows == 0) {
+      return null;
+    }
+    rows = Arrays.copyOf(rows, numRows);
+
+    double[] dist = new double[m_data.numClasses()];
+    double error = outOfBagError(forest, tree, rows, -1, null, dist);
+    double[] importance = new double[m_data.numAttributes()];
+    boolean[] used = forest.splitAttributes(tree);
+    int[] permuted = rows.clone();
+    Random random = new Random(m_Seed + tree);
+    for (int att = 0; att < used.length; att++) {
+      if (used[att]) {
+        for (int i = permuted.length - 1; i > 0; i--) {
+          int j = random.nextInt(i + 1);
+          int help = permuted[i];
+          permuted[i] = permuted[j];
+          permuted[j] = help;
+        }
+        importance[att] =
+          outOfBagError(forest, tree, rows, att, permuted, dist) - error;
+      }
+    }
+    return importance;
+  }
+
+  /**
+   * Computes the error of a single tree on the given instances, with the
+   * values of one attribute optionally taken from other instances.
+   *
+   * @param forest the flattened trees
+   * @param tree the index of the tree
+   * @param rows the indices of the instances
+   * @param att the attribute to take from other instances, -1 if none
+   * @param permuted the indices of the instances to take the values of the
+   *          attribute from, one for each instance
+   * @param dist an array of length number of classes to work with
+   * @return the misclassification rate or the mean squared error
+   */
+  protected double outOfBagError(FlattenedForest forest, int tree,
+    int[] rows, int att, int[] permuted, double[] dist) {
+
+    boolean numeric = m_data.classAttribute().isNumeric();
+    double error = 0;
+    double weight = 0;
+    for (int i = 0; i < rows.length; i++) {
+      Instance inst = m_data.instance(rows[i]);
+      Instance other = (att > -1) ? m_data.instance(permuted[i]) : null;
+      double pred = forest.classifyInstance(tree, inst, att, other, dist);
+      if (numeric) {
+        if (!Utils.isMissingValue(pred)) {
+          double diff = pred - inst.classValue();
+          error += inst.weight() * diff * diff;
+          weight += inst.weight();
+        }
+      } else {
+        if (Utils.isMissingValue(pred) || (pred != inst.classValue())) {
+          error += inst.weight();
+        }
+        weight += inst.weight();
+      }
+    }
+    return (weight > 0) ? error / weight : 0;
+  }
+
+  /**
+   * Returns the permutation importance of each attribute, as computed when
+   * the forest was built.
+   *
+   * @return the mean increase in out-of-bag error of each attribute
+   * @throws WekaException if the importance has not been computed
+   */
+  public double[] getPermutationImportance() throws WekaException {
+
+    if (m_PermutationImportance == null) {
+      throw new WekaException("Permutation importance has not been "
+        + "computed!");
+    }
+    return m_PermutationImportance;
+  }
+
   /**
    * Returns description of the bagged classifier.
    *
@@ -527,6 +1022,22 @@ public class RandomForest extends Bagging {
       }
     }
 
+    if (m_PermutationImportance != null) {
+      int[] sortedIndices = Utils.sort(m_PermutationImportance);
+      buffer.append("\n\nAttribute importance based on mean increase in "
+        + "out-of-bag error when permuting the attribute\n\n");
+      for (int i = sortedIndices.length - 1; i >= 0; i--) {
+        int index = sortedIndices[i];
+        if (index != m_data.classIndex()) {
+          buffer
+            .append(
+              Utils.doubleToString(m_PermutationImportance[index], 10,
+                getNumDecimalPlaces() + 2)).append("  ")
+            .append(m_data.attribute(index).name()).append("\n");
+        }
+      }
+    }
+
     return buffer.toString();
   }
 
@@ -607,6 +1118,10 @@ public class RandomForest extends Bagging {
       "\tCompute and output attribute importance (mean impurity decrease "
         + "method)", "attribute-importance", 0, "-attribute-importance"));
 
+    newVector.addElement(new Option(
+      "\tCompute and output attribute importance (out-of-bag permutation "
+        + "method)", "permutation-importance", 0, "-permutation-importance"));
+
     newVector.addElement(new Option("\tNumber of iterations (i.e., the number of trees in the random forest).\n"
       + "\t(current value " + getNumIterations() + ")", "I", 1, "-I <num>"));
 
@@ -655,6 +1170,10 @@ public class RandomForest extends Bagging {
       result.add("-attribute-importance");
     }
 
+    if (getComputePermutationImportance()) {
+      result.add("-permutation-importance");
+    }
+
     result.add("-I");
     result.add("" + getNumIterations());
 
@@ -714,6 +1233,11 @@ public class RandomForest extends Bagging {
    * </pre>
    * 
    * <pre>
+   * -permutation-importance
+   *  Compute and output attribute importance (out-of-bag permutation method)
+   * </pre>
+   * 
+   * <pre>
    * -I &lt;num&gt;
    *  Number of iterations (i.e., the number of trees in the random forest).
    *  (current value 100)
@@ -757,6 +1281,12 @@ public class RandomForest extends Bagging {
    * </pre>
    * 
    * <pre>
+   * -max-bins &lt;num&gt;
+   *  The maximum number of bins for numeric attributes, at most 255.
+   *  (default 0, no binning)
+   * </pre>
+   * 
+   * <pre>
    * -N &lt;num&gt;
    *  Number of folds for backfitting (default 0, no backfitting).
    * </pre>
@@ -821,6 +1351,9 @@ public class RandomForest extends Bagging {
     setComputeAttributeImportance(Utils
       .getFlag("attribute-importance", options));
 
+    setComputePermutationImportance(Utils.getFlag("permutation-importance",
+      options));
+
     String iterations = Utils.getOption('I', options);
     if (iterations.length() != 0) {
       setNumIterations(Integer.parseInt(iterations));
@@ -23,6 +23,7 @@ package weka.classifiers.trees;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.classifiers.trees.binned.BinnedData;
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
@@ -30,6 +31,8 @@ import weka.core.ContingencyTables;
 import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.ModelPersistence;
+import weka.core.ObjectCodec;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.PartitionGenerator;
@@ -39,6 +42,9 @@ import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 import weka.gui.ProgrammaticProperty;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -89,6 +95,12 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -max-bins &lt;num&gt;
+ *  The maximum number of bins for numeric attributes, at most 255.
+ *  (default 0, no binning)
+ * </pre>
+ * 
+ * <pre>
  * -N &lt;num&gt;
  *  Number of folds for backfitting (default 0, no backfitting).
  * </pre>
@@ -159,9 +171,15 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
   /** Whether to break ties randomly. */
   protected boolean m_BreakTiesRandomly = false;
 
+  /** The maximum number of bins for numeric attributes (0 = no binning) */
+  protected int m_MaxBins = 0;
+
   /** a ZeroR model in case no model can be built from the data */
   protected Classifier m_zeroR;
 
+  /** the tree flattened for batch prediction, created when first needed */
+  protected transient volatile FlattenedForest m_Flattened;
+
   /**
    * The minimum proportion of the total variance (over all the data) required
    * for split.
@@ -375,6 +393,37 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     m_MaxDepth = value;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxBinsTipText() {
+    return "The maximum number of bins numeric attributes are discretized into "
+      + "before growing the tree (at most " + BinnedData.MAX_BINS + ", 0 for no "
+      + "binning). Binning speeds up split selection but only considers split "
+      + "points between bins.";
+  }
+
+  /**
+   * Get the maximum number of bins for numeric attributes, 0 for no binning.
+   * 
+   * @return the maximum number of bins.
+   */
+  public int getMaxBins() {
+    return m_MaxBins;
+  }
+
+  /**
+   * Set the maximum number of bins for numeric attributes, 0 for no binning.
+   *
+   * @param value the maximum number of bins.
+   */
+  public void setMaxBins(int value) {
+    m_MaxBins = value;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -436,6 +485,7 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     boolean newAllowUnclassifiedInstances) {
 
     m_AllowUnclassifiedInstances = newAllowUnclassifiedInstances;
+    m_Flattened = null;
   }
 
   /**
@@ -499,6 +549,11 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       "\tThe maximum depth of the tree, 0 for unlimited.\n" + "\t(default 0)",
       "depth", 1, "-depth <num>"));
 
+    newVector.addElement(new Option(
+      "\tThe maximum number of bins for numeric attributes, at most "
+        + BinnedData.MAX_BINS + ".\n" + "\t(default 0, no binning)",
+      "max-bins", 1, "-max-bins <num>"));
+
     newVector.addElement(new Option("\tNumber of folds for backfitting "
       + "(default 0, no backfitting).", "N", 1, "-N <num>"));
     newVector.addElement(new Option("\tAllow unclassified instances.", "U", 0,
@@ -536,6 +591,11 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       result.add("" + getMaxDepth());
     }
 
+    if (getMaxBins() > 0) {
+      result.add("-max-bins");
+      result.add("" + getMaxBins());
+    }
+
     if (getNumFolds() > 0) {
       result.add("-N");
       result.add("" + getNumFolds());
@@ -592,6 +652,12 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
    * </pre>
    * 
    * <pre>
+   * -max-bins &lt;num&gt;
+   *  The maximum number of bins for numeric attributes, at most 255.
+   *  (default 0, no binning)
+   * </pre>
+   * 
+   * <pre>
    * -N &lt;num&gt;
    *  Number of folds for backfitting (default 0, no backfitting).
    * </pre>
@@ -666,6 +732,14 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     } else {
       setMaxDepth(0);
     }
+
+    tmpStr = Utils.getOption("max-bins", options);
+    if (tmpStr.length() != 0) {
+      setMaxBins(Integer.parseInt(tmpStr));
+    } else {
+      setMaxBins(0);
+    }
+
     String numFoldsString = Utils.getOption('N', options);
     if (numFoldsString.length() != 0) {
       m_NumFolds = Integer.parseInt(numFoldsString);
@@ -713,6 +787,7 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
   @Override
   public void buildClassifier(Instances data) throws Exception {
 
+    m_Flattened = null;
     if (m_computeImpurityDecreases) {
       m_impurityDecreasees = new double[data.numAttributes()][2];
     }
@@ -757,16 +832,20 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       backfit = data.testCV(m_NumFolds, 1);
     }
 
-    // Create the attribute indices window
-    int[] attIndicesWindow = new int[data.numAttributes() - 1];
-    int j = 0;
-    for (int i = 0; i < attIndicesWindow.length; i++) {
-      if (j == data.classIndex()) {
-        j++; // do not include the class
+    // Build tree from binned data if required
+    m_Info = new Instances(data, 0);
+    if (m_MaxBins > 0) {
+      buildTree(new BinnedData.Node(new BinnedData(train,
+        Math.min(Math.max(m_MaxBins, 2), BinnedData.MAX_BINS))), rand);
+      if (backfit != null) {
+        m_Tree.backfitData(backfit);
       }
-      attIndicesWindow[i] = j++;
+      return;
     }
 
+    // Create the attribute indices window
+    int[] attIndicesWindow = attIndicesWindow(data);
+
     double totalWeight = 0;
     double totalSumSquared = 0;
 
@@ -795,7 +874,6 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
 
     // Build tree
     m_Tree = new Tree();
-    m_Info = new Instances(data, 0);
     m_Tree.buildTree(train, classProbs, attIndicesWindow, totalWeight, rand, 0,
       m_MinVarianceProp * trainVariance);
 
@@ -805,6 +883,106 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     }
   }
 
+  /**
+   * Builds the tree from the instances of shared binned data, weighted with
+   * the given weights, e.g., the number of times every instance occurs in a
+   * bootstrap sample. Instances with a weight of 0 are not used. As the data
+   * is not modified, several trees can be built from it at the same time.
+   * Backfitting is not supported.
+   * 
+   * @param data the shared data, without instances with a missing class
+   * @param weights the weight of every instance of the data
+   * @param header the header of the data
+   * @param rand the random number generator for selecting the attributes
+   * @throws Exception if something goes wrong or the data doesn't fit
+   */
+  public void buildClassifier(BinnedData data, double[] weights,
+    Instances header, Random rand) throws Exception {
+
+    if (m_NumFolds > 0) {
+      throw new Exception("Backfitting is not supported for shared data!");
+    }
+    m_Flattened = null;
+    if (header.numAttributes() == 1) {
+      throw new Exception("Cannot build model from class attribute only!");
+    }
+
+    if (m_computeImpurityDecreases) {
+      m_impurityDecreasees = new double[header.numAttributes()][2];
+    }
+
+    // Make sure K value is in range
+    if (m_KValue > header.numAttributes() - 1) {
+      m_KValue = header.numAttributes() - 1;
+    }
+    if (m_KValue < 1) {
+      m_KValue = (int) Utils.log2(header.numAttributes() - 1) + 1;
+    }
+
+    m_zeroR = null;
+    m_Info = new Instances(header, 0);
+    buildTree(new BinnedData.Node(data, weights), rand);
+  }
+
+  /**
+   * Creates the window of the attribute indices to choose from, i.e., the
+   * indices of all attributes except the class.
+   * 
+   * @param data the data
+   * @return the attribute indices
+   */
+  protected int[] attIndicesWindow(Instances data) {
+    int[] attIndicesWindow = new int[data.numAttributes() - 1];
+    int j = 0;
+    for (int i = 0; i < attIndicesWindow.length; i++) {
+      if (j == data.classIndex()) {
+        j++; // do not include the class
+      }
+      attIndicesWindow[i] = j++;
+    }
+    return attIndicesWindow;
+  }
+
+  /**
+   * Grows the tree from the instances at the given root node of binned data.
+   * The header must have been stored in m_Info.
+   * 
+   * @param root the root node
+   * @param rand the random number generator for selecting the attributes
+   * @throws Exception if something goes wrong
+   */
+  protected void buildTree(BinnedData.Node root, Random rand) throws Exception {
+
+    // Compute initial class counts
+    boolean nominalClass = m_Info.classAttribute().isNominal();
+    double totalWeight = 0;
+    double totalSumSquared = 0;
+    double[] classProbs = new double[m_Info.numClasses()];
+    for (int i = 0; i < root.numInstances(); i++) {
+      if (nominalClass) {
+        classProbs[(int) root.classValue(i)] += root.weight(i);
+      } else {
+        classProbs[0] += root.classValue(i) * root.weight(i);
+        totalSumSquared +=
+          root.classValue(i) * root.classValue(i) * root.weight(i);
+      }
+      totalWeight += root.weight(i);
+    }
+
+    double trainVariance = 0;
+    if (!nominalClass) {
+      trainVariance =
+        RandomTree.singleVariance(classProbs[0], totalSumSquared, totalWeight)
+          / totalWeight;
+      classProbs[0] /= totalWeight;
+    }
+
+    m_Tree = new Tree();
+    m_Tree.buildTree(root, classProbs, attIndicesWindow(m_Info), totalWeight,
+      rand, 0, m_MinVarianceProp * trainVariance);
+    root.done();
+  }
+
   /**
    * Computes class distribution of an instance using the tree.
    * 
@@ -822,6 +1000,44 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     }
   }
 
+  /**
+   * Computes the class distributions of the given instances using the
+   * flattened tree.
+   * 
+   * @param insts the instances to compute the distributions for
+   * @return the class distributions, null for instances the tree makes no
+   *         prediction for
+   * @throws Exception if computation fails
+   */
+  @Override
+  public double[][] distributionsForInstances(Instances insts)
+    throws Exception {
+
+    if (!FlattenedForest.canFlatten(this)) {
+      return super.distributionsForInstances(insts);
+    }
+    FlattenedForest flattened = m_Flattened;
+    if (flattened == null) {
+      flattened = new FlattenedForest(new RandomTree[] { this });
+      m_Flattened = flattened;
+    }
+    double[][] dists = new double[insts.numInstances()][];
+    for (int i = 0; i < dists.length; i++) {
+      dists[i] = flattened.distributionForInstance(0, insts.instance(i));
+    }
+    return dists;
+  }
+
+  /**
+   * Returns true, as the flattened tree is used for batch prediction.
+   * 
+   * @return true
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    return true;
+  }
+
   /**
    * Outputs the decision tree.
    * 
@@ -993,6 +1209,15 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
      */
     protected double[] m_Distribution = null;
 
+    /**
+     * Returns the RandomTree this node belongs to.
+     * 
+     * @return the RandomTree
+     */
+    protected RandomTree getOwner() {
+      return RandomTree.this;
+    }
+
     /**
      * Backfits the given data into the tree.
      */
@@ -1556,6 +1781,173 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       }
     }
 
+    /**
+     * Recursively generates a tree from binned data, using histograms to
+     * find the splits.
+     * 
+     * @param node the instances at this node
+     * @param classProbs the class distribution
+     * @param attIndicesWindow the attribute window to choose attributes from
+     * @param totalWeight the total weight of the instances (numeric class)
+     * @param random random number generator for choosing random attributes
+     * @param depth the current depth
+     * @param minVariance the minimum variance for a split
+     * @throws Exception if generation fails
+     */
+    protected void buildTree(BinnedData.Node node, double[] classProbs,
+      int[] attIndicesWindow, double totalWeight, Random random, int depth,
+      double minVariance) throws Exception {
+
+      boolean nominalClass = m_Info.classAttribute().isNominal();
+
+      // Make leaf if there are no training instances
+      if (node.numInstances() == 0) {
+        m_Attribute = -1;
+        m_ClassDistribution = null;
+        m_Prop = null;
+
+        if (!nominalClass) {
+          m_Distribution = new double[2];
+        }
+        return;
+      }
+
+      double priorVar = 0;
+      if (!nominalClass) {
+
+        // Compute prior variance
+        double totalSum = 0, totalSumSquared = 0, totalSumOfWeights = 0;
+        for (int i = 0; i < node.numInstances(); i++) {
+          double classVal = node.classValue(i) * node.weight(i);
+          totalSum += classVal;
+          totalSumSquared += node.classValue(i) * classVal;
+          totalSumOfWeights += node.weight(i);
+        }
+        priorVar =
+          RandomTree.singleVariance(totalSum, totalSumSquared,
+            totalSumOfWeights);
+      }
+
+      // Check if node doesn't contain enough instances or is pure
+      // or maximum depth reached
+      if (nominalClass) {
+        totalWeight = Utils.sum(classProbs);
+      }
+      if (totalWeight < 2 * m_MinNum
+        || (nominalClass && Utils.eq(classProbs[Utils.maxIndex(classProbs)],
+          Utils.sum(classProbs)))
+        || (!nominalClass && priorVar / totalWeight < minVariance)
+        || ((getMaxDepth() > 0) && (depth >= getMaxDepth()))) {
+
+        // Make leaf
+        m_Attribute = -1;
+        m_ClassDistribution = classProbs.clone();
+        if (!nominalClass) {
+          m_Distribution = new double[2];
+          m_Distribution[0] = priorVar;
+          m_Distribution[1] = totalWeight;
+        }
+
+        m_Prop = null;
+        return;
+      }
+
+      // Compute class distributions and value of splitting
+      // criterion for K random attributes
+      double val = -Double.MAX_VALUE;
+      double split = -Double.MAX_VALUE;
+      double[][] bestDists = null;
+      double[] bestProps = null;
+      int bestIndex = 0;
+      double[][] props = new double[1][0];
+      double[][][] dists = new double[1][0][0];
+      double[][] totalSubsetWeights = new double[m_Info.numAttributes()][0];
+      int attIndex = 0;
+      int windowSize = attIndicesWindow.length;
+      int k = m_KValue;
+      boolean gainFound = false;
+      double[] tempNumericVals = new double[m_Info.numAttributes()];
+      while ((windowSize > 0) && (k-- > 0 || !gainFound)) {
+
+        int chosenIndex = random.nextInt(windowSize);
+        attIndex = attIndicesWindow[chosenIndex];
+
+        // shift chosen attIndex out of window
+        attIndicesWindow[chosenIndex] = attIndicesWindow[windowSize - 1];
+        attIndicesWindow[windowSize - 1] = attIndex;
+        windowSize--;
+
+        BinnedData.Histogram hist = node.histogram(attIndex);
+        double currSplit =
+          nominalClass ? distribution(props, dists, attIndex, node.getData(),
+            hist) : numericDistribution(props, dists, attIndex,
+            totalSubsetWeights, node.getData(), hist, tempNumericVals);
+
+        double currVal =
+          nominalClass ? gain(dists[0], priorVal(dists[0]))
+            : tempNumericVals[attIndex];
+
+        if (Utils.gr(currVal, 0)) {
+          gainFound = true;
+        }
+
+        if ((currVal > val)
+          || ((!getBreakTiesRandomly()) && (currVal == val) && (attIndex < bestIndex))) {
+          val = currVal;
+          bestIndex = attIndex;
+          split = currSplit;
+          bestProps = props[0];
+          bestDists = dists[0];
+        }
+      }
+
+      // Find best attribute
+      m_Attribute = bestIndex;
+
+      // Any useful split found?
+      if (Utils.gr(val, 0)) {
+        if (m_computeImpurityDecreases) {
+          m_impurityDecreasees[m_Attribute][0] += val;
+          m_impurityDecreasees[m_Attribute][1]++;
+        }
+
+        // Build subtrees
+        m_SplitPoint = split;
+        m_Prop = bestProps;
+        BinnedData.Node[] subsets = node.split(m_Attribute, split, bestProps);
+        m_Successors = new Tree[bestDists.length];
+        double[] attTotalSubsetWeights = totalSubsetWeights[bestIndex];
+
+        boolean emptySuccessor = false;
+        for (int i = 0; i < bestDists.length; i++) {
+          m_Successors[i] = new Tree();
+          m_Successors[i].buildTree(subsets[i], bestDists[i], attIndicesWindow,
+            nominalClass ? 0 : attTotalSubsetWeights[i], random, depth + 1,
+            minVariance);
+          subsets[i].done();
+          if (m_Successors[i].m_ClassDistribution == null) {
+            emptySuccessor = true;
+          }
+        }
+
+        // If all successors are non-empty, we don't need to store the class
+        // distribution
+        if (emptySuccessor) {
+          m_ClassDistribution = classProbs.clone();
+        }
+      } else {
+
+        // Make leaf
+        m_Attribute = -1;
+        m_ClassDistribution = classProbs.clone();
+        if (!nominalClass) {
+          m_Distribution = new double[2];
+          m_Distribution[0] = priorVar;
+          m_Distribution[1] = totalWeight;
+        }
+      }
+    }
+
     /**
      * Computes size of the tree.
      * 
@@ -1967,6 +2359,241 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       return splitPoint;
     }
 
+    /**
+     * Computes numeric class distribution for an attribute from the histogram
+     * of binned data. Split points are only considered between bins.
+     * 
+     * @param props
+     * @param dists
+     * @param att the attribute index
+     * @param subsetWeights
+     * @param data the binned data
+     * @param hist the histogram of the attribute
+     * @param vals
+     * @return the split point
+     */
+    protected double numericDistribution(double[][] props, double[][][] dists,
+      int att, double[][] subsetWeights, BinnedData data,
+      BinnedData.Histogram hist, double[] vals) {
+
+      double splitPoint = Double.NaN;
+      double[] values = hist.values();
+      int numRows = hist.numRows();
+      int numSubsets = m_Info.attribute(att).isNominal() ? data.numBins(att) : 2;
+      double[] sums = new double[numSubsets];
+      double[] sumSquared = new double[numSubsets];
+      double[] sumOfWeights = new double[numSubsets];
+      double totalSum = 0, totalSumSquared = 0, totalSumOfWeights = 0;
+
+      if (m_Info.attribute(att).isNominal()) {
+        for (int r = 0; r < numRows; r++) {
+          sums[hist.bin(r)] = values[r * 3];
+          sumSquared[hist.bin(r)] = values[r * 3 + 1];
+          sumOfWeights[hist.bin(r)] = values[r * 3 + 2];
+        }
+        totalSum = Utils.sum(sums);
+        totalSumSquared = Utils.sum(sumSquared);
+        totalSumOfWeights = Utils.sum(sumOfWeights);
+      } else {
+        double[] currSums = new double[2];
+        double[] currSumSquared = new double[2];
+        double[] currSumOfWeights = new double[2];
+
+        // Move all bins into second subset
+        for (int r = 0; r < numRows; r++) {
+          currSums[1] += values[r * 3];
+          currSumSquared[1] += values[r * 3 + 1];
+          currSumOfWeights[1] += values[r * 3 + 2];
+        }
+        totalSum = currSums[1];
+        totalSumSquared = currSumSquared[1];
+        totalSumOfWeights = currSumOfWeights[1];
+        sums[1] = currSums[1];
+        sumSquared[1] = currSumSquared[1];
+        sumOfWeights[1] = currSumOfWeights[1];
+
+        // Try split points between all non-empty bins
+        double currVal, bestVal = Double.MAX_VALUE;
+        int lastRow = -1;
+        for (int r = 0; r < numRows; r++) {
+          if (!(values[r * 3 + 2] > 0)) {
+            continue;
+          }
+          if (lastRow >= 0) {
+            currVal =
+              RandomTree.variance(currSums, currSumSquared, currSumOfWeights);
+            if (currVal < bestVal) {
+              bestVal = currVal;
+              splitPoint = data.splitPoint(att, hist.bin(lastRow), hist.bin(r));
+              for (int j = 0; j < 2; j++) {
+                sums[j] = currSums[j];
+                sumSquared[j] = currSumSquared[j];
+                sumOfWeights[j] = currSumOfWeights[j];
+              }
+            }
+          }
+          lastRow = r;
+
+          currSums[0] += values[r * 3];
+          currSumSquared[0] += values[r * 3 + 1];
+          currSumOfWeights[0] += values[r * 3 + 2];
+
+          currSums[1] -= values[r * 3];
+          currSumSquared[1] -= values[r * 3 + 1];
+          currSumOfWeights[1] -= values[r * 3 + 2];
+        }
+      }
+
+      // Compute weights
+      props[0] = new double[numSubsets];
+      for (int k = 0; k < props[0].length; k++) {
+        props[0][k] = sumOfWeights[k];
+      }
+      if (!(Utils.sum(props[0]) > 0)) {
+        for (int k = 0; k < props[0].length; k++) {
+          props[0][k] = 1.0 / props[0].length;
+        }
+      } else {
+        Utils.normalize(props[0]);
+      }
+
+      // Distribute weights for instances with missing values
+      int missing = numRows * 3;
+      for (int j = 0; j < numSubsets; j++) {
+        sums[j] += props[0][j] * values[missing];
+        sumSquared[j] += props[0][j] * values[missing + 1];
+        sumOfWeights[j] += props[0][j] * values[missing + 2];
+      }
+      totalSum += values[missing];
+      totalSumSquared += values[missing + 1];
+      totalSumOfWeights += values[missing + 2];
+
+      // Compute final distribution
+      double[][] dist = new double[numSubsets][m_Info.numClasses()];
+      for (int j = 0; j < numSubsets; j++) {
+        if (sumOfWeights[j] > 0) {
+          dist[j][0] = sums[j] / sumOfWeights[j];
+        } else {
+          dist[j][0] = totalSum / totalSumOfWeights;
+        }
+      }
+
+      // Compute variance gain
+      double priorVar =
+        singleVariance(totalSum, totalSumSquared, totalSumOfWeights);
+      double var = variance(sums, sumSquared, sumOfWeights);
+      double gain = priorVar - var;
+
+      // Return distribution and split point
+      subsetWeights[att] = sumOfWeights;
+      dists[0] = dist;
+      vals[att] = gain;
+
+      return splitPoint;
+    }
+
+    /**
+     * Computes class distribution for an attribute from the histogram of
+     * binned data. Split points are only considered between bins.
+     * 
+     * @param props
+     * @param dists
+     * @param att the attribute index
+     * @param data the binned data
+     * @param hist the histogram of the attribute
+     * @return the split point
+     */
+    protected double distribution(double[][] props, double[][][] dists,
+      int att, BinnedData data, BinnedData.Histogram hist) {
+
+      double splitPoint = Double.NaN;
+      int numClasses = m_Info.numClasses();
+      double[] values = hist.values();
+      int numRows = hist.numRows();
+      double[][] dist = null;
+
+      if (m_Info.attribute(att).isNominal()) {
+
+        // For nominal attributes
+        dist = new double[data.numBins(att)][numClasses];
+        for (int r = 0; r < numRows; r++) {
+          System.arraycopy(values, r * numClasses, dist[hist.bin(r)], 0,
+            numClasses);
+        }
+      } else {
+
+        // For numeric attributes
+        double[][] currDist = new double[2][numClasses];
+        dist = new double[2][numClasses];
+
+        // Move all bins into second subset
+        for (int r = 0; r < numRows; r++) {
+          for (int c = 0; c < numClasses; c++) {
+            currDist[1][c] += values[r * numClasses + c];
+          }
+        }
+
+        // Value before splitting
+        double priorVal = priorVal(currDist);
+
+        // Save initial distribution
+        for (int j = 0; j < currDist.length; j++) {
+          System.arraycopy(currDist[j], 0, dist[j], 0, dist[j].length);
+        }
+
+        // Try split points between all non-empty bins
+        double currVal, bestVal = -Double.MAX_VALUE;
+        int lastRow = -1;
+        for (int r = 0; r < numRows; r++) {
+          if (!(hist.weight(r) > 0)) {
+            continue;
+          }
+          if (lastRow >= 0) {
+            currVal = gain(currDist, priorVal);
+            if (currVal > bestVal) {
+              bestVal = currVal;
+              splitPoint = data.splitPoint(att, hist.bin(lastRow), hist.bin(r));
+              for (int j = 0; j < currDist.length; j++) {
+                System.arraycopy(currDist[j], 0, dist[j], 0, dist[j].length);
+              }
+            }
+          }
+          lastRow = r;
+
+          // Shift over the weight
+          for (int c = 0; c < numClasses; c++) {
+            currDist[0][c] += values[r * numClasses + c];
+            currDist[1][c] -= values[r * numClasses + c];
+          }
+        }
+      }
+
+      // Compute weights for subsets
+      props[0] = new double[dist.length];
+      for (int k = 0; k < props[0].length; k++) {
+        props[0][k] = Utils.sum(dist[k]);
+      }
+      if (Utils.eq(Utils.sum(props[0]), 0)) {
+        for (int k = 0; k < props[0].length; k++) {
+          props[0][k] = 1.0 / props[0].length;
+        }
+      } else {
+        Utils.normalize(props[0]);
+      }
+
+      // Distribute weights for instances with missing values
+      int missing = numRows * numClasses;
+      for (int j = 0; j < dist.length; j++) {
+        for (int c = 0; c < numClasses; c++) {
+          dist[j][c] += props[0][j] * values[missing + c];
+        }
+      }
+
+      // Return distribution and split point
+      dists[0] = dist;
+      return splitPoint;
+    }
+
     /**
      * Computes value of splitting criterion before split.
      * 
@@ -2082,6 +2709,85 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     return sS - ((s * s) / weight);
   }
 
+  /**
+   * Codec for writing the nodes of a RandomTree with ModelPersistence. The
+   * whole (sub)tree gets written in one go.
+   */
+  public static class TreeCodec implements ObjectCodec<Tree> {
+
+    @Override
+    public Class<Tree> getType() {
+      return Tree.class;
+    }
+
+    @Override
+    public void write(Tree tree, ObjectOutput out) throws IOException {
+      out.writeObject(tree.getOwner());
+      writeNode(tree, out);
+    }
+
+    /**
+     * Writes the given node and its successors.
+     * 
+     * @param node the node to write
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    protected void writeNode(Tree node, ObjectOutput out) throws IOException {
+      out.writeInt(node.m_Attribute);
+      out.writeDouble(node.m_SplitPoint);
+      ModelPersistence.writeDoubles(out, node.m_Prop);
+      ModelPersistence.writeDoubles(out, node.m_ClassDistribution);
+      ModelPersistence.writeDoubles(out, node.m_Distribution);
+      if (node.m_Successors == null) {
+        out.writeInt(-1);
+        return;
+      }
+      out.writeInt(node.m_Successors.length);
+      for (Tree successor : node.m_Successors) {
+        out.writeBoolean(successor != null);
+        if (successor != null) {
+          writeNode(successor, out);
+        }
+      }
+    }
+
+    @Override
+    public Tree read(ObjectInput in) throws IOException,
+      ClassNotFoundException {
+      return readNode((RandomTree) in.readObject(), in);
+    }
+
+    /**
+     * Reads a node and its successors.
+     * 
+     * @param owner the RandomTree the node belongs to
+     * @param in the input to read from
+     * @return the node
+     * @throws IOException if reading fails
+     */
+    protected Tree readNode(RandomTree owner, ObjectInput in)
+      throws IOException {
+      Tree result = owner.new Tree();
+      result.m_Attribute = in.readInt();
+      result.m_SplitPoint = in.readDouble();
+      result.m_Prop = ModelPersistence.readDoubles(in);
+      result.m_ClassDistribution = ModelPersistence.readDoubles(in);
+      result.m_Distribution = ModelPersistence.readDoubles(in);
+      int numSuccessors = in.readInt();
+      if (numSuccessors == -1) {
+        return result;
+      }
+      result.m_Successors = new Tree[numSuccessors];
+      for (int i = 0; i < numSuccessors; i++) {
+        if (in.readBoolean()) {
+          result.m_Successors[i] = readNode(owner, in);
+        }
+      }
+      return result;
+    }
+  }
+
   /**
    * Main method for this class.
    * 
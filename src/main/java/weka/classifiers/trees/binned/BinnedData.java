@@ -0,0 +1,814 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    BinnedData.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees.binned;
+
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * A read-only, quantized copy of a dataset for growing trees with
+ * histogram-based split selection. Every numeric attribute is discretized once
+ * into at most 255 bins of roughly equal frequency, and the bin of each
+ * instance is stored in a byte column. Nominal attributes are stored by value,
+ * in int columns if they have more than 255 values. As the data is never
+ * modified, several trees can be grown from it at the same time, each using
+ * its own instance weights.
+ * <p/>
+ * A histogram of an attribute holds one row per bin plus a last row for
+ * missing values. For a nominal class, a row holds the weight per class value,
+ * for a numeric class the weighted sum, the weighted sum of squares and the
+ * weight of the class values. Split points between bins are placed half way
+ * between the largest training value of the lower bin and the smallest one of
+ * the upper bin, hence an attribute with at most as many distinct values as
+ * bins yields the same split points as sorting the data. The statistics of a
+ * split are added up bin by bin rather than instance by instance, though. For
+ * a nominal class and integer weights they are exact either way. For a numeric
+ * class they may differ in the last bits, so a split may be chosen differently
+ * from the exact search if several splits are (almost) equally good.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class BinnedData implements RevisionHandler {
+
+  /** the maximum number of bins per attribute. */
+  public static final int MAX_BINS = 255;
+
+  /** the byte value that denotes a missing value. */
+  protected static final int MISSING = 255;
+
+  /** the weight below which histogram entries are considered empty. */
+  protected static final double EMPTY_WEIGHT = 1e-10;
+
+  /** the index of the class attribute. */
+  protected int m_ClassIndex;
+
+  /** whether the class is nominal. */
+  protected boolean m_NominalClass;
+
+  /** the number of entries per histogram row. */
+  protected int m_Stride;
+
+  /** the number of bins per attribute, 0 for the class attribute. */
+  protected int[] m_NumBins;
+
+  /** the smallest training value per bin for numeric attributes. */
+  protected double[][] m_BinMin;
+
+  /** the largest training value per bin for numeric attributes. */
+  protected double[][] m_BinMax;
+
+  /** the bin of every instance per attribute with at most MAX_BINS bins. */
+  protected byte[][] m_Bins;
+
+  /** the bin of every instance per attribute with more bins, -1 if missing. */
+  protected int[][] m_WideBins;
+
+  /** the class values of the instances. */
+  protected double[] m_ClassValues;
+
+  /** the weights of the instances. */
+  protected double[] m_Weights;
+
+  /**
+   * Quantizes the given data. Instances with a missing class value must have
+   * been removed.
+   *
+   * @param data the data to quantize
+   * @param maxBins the maximum number of bins per numeric attribute, at most
+   *          MAX_BINS
+   * @throws IllegalArgumentException if the number of bins is out of range
+   */
+  public BinnedData(Instances data, int maxBins) {
+    if ((maxBins < 2) || (maxBins > MAX_BINS)) {
+      throw new IllegalArgumentException("Number of bins must be between 2 and "
+        + MAX_BINS + ": " + maxBins);
+    }
+
+    int numInstances = data.numInstances();
+    m_ClassIndex = data.classIndex();
+    m_NominalClass = data.classAttribute().isNominal();
+    m_Stride = m_NominalClass ? data.numClasses() : 3;
+    m_NumBins = new int[data.numAttributes()];
+    m_BinMin = new double[data.numAttributes()][];
+    m_BinMax = new double[data.numAttributes()][];
+    m_Bins = new byte[data.numAttributes()][];
+    m_WideBins = new int[data.numAttributes()][];
+    m_ClassValues = new double[numInstances];
+    m_Weights = new double[numInstances];
+    for (int i = 0; i < numInstances; i++) {
+      Instance inst = data.instance(i);
+      m_ClassValues[i] = inst.classValue();
+      m_Weights[i] = inst.weight();
+    }
+
+    double[] vals = new double[numInstances];
+    int[] bins = new int[numInstances];
+    for (int j = 0; j < data.numAttributes(); j++) {
+      if (j == m_ClassIndex) {
+        continue;
+      }
+      if (data.attribute(j).isNominal()) {
+        for (int i = 0; i < numInstances; i++) {
+          Instance inst = data.instance(i);
+          bins[i] = inst.isMissing(j) ? -1 : (int) inst.value(j);
+        }
+        setBins(j, data.attribute(j).numValues(), bins);
+        continue;
+      }
+
+      // collect and sort the values that are not missing
+      int count = 0;
+      for (int i = 0; i < numInstances; i++) {
+        Instance inst = data.instance(i);
+        if (!inst.isMissing(j)) {
+          vals[count++] = inst.value(j);
+        }
+      }
+      double[] sorted = Arrays.copyOf(vals, count);
+      Arrays.sort(sorted);
+      int numDistinct = 0;
+      for (int i = 0; i < count; i++) {
+        if ((i == 0) || (sorted[i] > sorted[i - 1])) {
+          numDistinct++;
+        }
+      }
+
+      // assign groups of equal values to bins of roughly equal frequency,
+      // every bin holds a single value if there are few enough
+      double[] binMin = new double[Math.min(numDistinct, maxBins)];
+      double[] binMax =
+        (numDistinct <= maxBins) ? binMin : new double[binMin.length];
+      int bin = -1;
+      for (int i = 0; i < count; i++) {
+        boolean newValue = (i == 0) || (sorted[i] > sorted[i - 1]);
+        boolean binFull = (bin < binMin.length - 1)
+          && (i >= (double) (bin + 1) * count / binMin.length);
+        if (newValue && ((numDistinct <= maxBins) || binFull)) {
+          bin++;
+          binMin[bin] = sorted[i];
+        }
+        binMax[bin] = sorted[i];
+      }
+
+      // look up the bin of every instance
+      for (int i = 0; i < numInstances; i++) {
+        Instance inst = data.instance(i);
+        if (inst.isMissing(j)) {
+          bins[i] = -1;
+        } else {
+          int pos = Arrays.binarySearch(binMin, inst.value(j));
+          bins[i] = (pos >= 0) ? pos : -pos - 2;
+        }
+      }
+      setBins(j, binMin.length, bins);
+      m_BinMin[j] = binMin;
+      m_BinMax[j] = binMax;
+    }
+  }
+
+  /**
+   * Returns whether quantizing the given data is lossless, i.e., whether no
+   * numeric attribute has more than MAX_BINS distinct values, so that the
+   * candidate split points are the same as the ones found by sorting the data.
+   * The chosen splits are only guaranteed to be the same for a nominal class
+   * (see the class description).
+   *
+   * @param data the data to check
+   * @return true if every numeric attribute has at most MAX_BINS values
+   */
+  public static boolean isLossless(Instances data) {
+    double[] vals = new double[data.numInstances()];
+    for (int j = 0; j < data.numAttributes(); j++) {
+      if ((j == data.classIndex()) || !data.attribute(j).isNumeric()) {
+        continue;
+      }
+      int count = 0;
+      for (int i = 0; i < data.numInstances(); i++) {
+        if (!data.instance(i).isMissing(j)) {
+          vals[count++] = data.instance(i).value(j);
+        }
+      }
+      Arrays.sort(vals, 0, count);
+      int numDistinct = 0;
+      for (int i = 0; i < count; i++) {
+        if (((i == 0) || (vals[i] > vals[i - 1])) && (++numDistinct > MAX_BINS)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stores the bins of an attribute in a byte column if possible, otherwise in
+   * an int column.
+   *
+   * @param att the attribute index
+   * @param numBins the number of bins
+   * @param bins the bin of every instance, -1 if missing
+   */
+  protected void setBins(int att, int numBins, int[] bins) {
+    m_NumBins[att] = numBins;
+    if (numBins > MAX_BINS) {
+      m_WideBins[att] = bins.clone();
+    } else {
+      byte[] column = new byte[bins.length];
+      for (int i = 0; i < bins.length; i++) {
+        column[i] = (byte) ((bins[i] < 0) ? MISSING : bins[i]);
+      }
+      m_Bins[att] = column;
+    }
+  }
+
+  /**
+   * Returns the number of instances.
+   *
+   * @return the number of instances
+   */
+  public int numInstances() {
+    return m_ClassValues.length;
+  }
+
+  /**
+   * Returns the number of bins of an attribute, i.e., the number of values for
+   * nominal attributes.
+   *
+   * @param att the attribute index
+   * @return the number of bins
+   */
+  public int numBins(int att) {
+    return m_NumBins[att];
+  }
+
+  /**
+   * Returns the bin of an instance.
+   *
+   * @param att the attribute index
+   * @param inst the instance index
+   * @return the bin, or -1 if the value is missing
+   */
+  public int bin(int att, int inst) {
+    if (m_WideBins[att] != null) {
+      return m_WideBins[att][inst];
+    }
+    int bin = m_Bins[att][inst] & 0xff;
+    return (bin == MISSING) ? -1 : bin;
+  }
+
+  /**
+   * Returns the class value of an instance.
+   *
+   * @param inst the instance index
+   * @return the class value
+   */
+  public double classValue(int inst) {
+    return m_ClassValues[inst];
+  }
+
+  /**
+   * Returns the weight of an instance.
+   *
+   * @param inst the instance index
+   * @return the weight
+   */
+  public double weight(int inst) {
+    return m_Weights[inst];
+  }
+
+  /**
+   * Returns the number of entries per histogram row, i.e., the number of
+   * classes for a nominal class and 3 for a numeric one.
+   *
+   * @return the number of entries per row
+   */
+  public int stride() {
+    return m_Stride;
+  }
+
+  /**
+   * Computes the histogram of an attribute over the given instances. If
+   * there are fewer instances than bins, the histogram only holds rows for
+   * the bins that occur.
+   *
+   * @param att the attribute index
+   * @param indices the instance indices
+   * @param weights the weights of the instances
+   * @param num the number of instances to use
+   * @return the histogram
+   */
+  public Histogram histogram(int att, int[] indices, double[] weights, int num) {
+    int numBins = m_NumBins[att];
+    if (2 * num >= numBins) {
+      Histogram hist = new Histogram(m_Stride, numBins, null);
+      for (int i = 0; i < num; i++) {
+        int row = bin(att, indices[i]);
+        add(hist, (row < 0) ? numBins : row, indices[i], weights[i]);
+      }
+      return hist;
+    }
+
+    // sort the instances by bin, missing values last
+    long[] keys = new long[num];
+    int numRows = 0;
+    for (int i = 0; i < num; i++) {
+      int bin = bin(att, indices[i]);
+      keys[i] = ((long) ((bin < 0) ? Integer.MAX_VALUE : bin) << 32) | i;
+    }
+    Arrays.sort(keys);
+
+    // only store rows for the bins that occur
+    int[] rowBins = new int[num];
+    for (int i = 0; i < num; i++) {
+      int bin = (int) (keys[i] >>> 32);
+      if (bin == Integer.MAX_VALUE) {
+        break;
+      }
+      if ((numRows == 0) || (bin > rowBins[numRows - 1])) {
+        rowBins[numRows++] = bin;
+      }
+    }
+    Histogram hist =
+      new Histogram(m_Stride, numRows, Arrays.copyOf(rowBins, numRows));
+    int row = -1;
+    int lastBin = -1;
+    for (int i = 0; i < num; i++) {
+      int bin = (int) (keys[i] >>> 32);
+      if (bin != lastBin) {
+        row = (bin == Integer.MAX_VALUE) ? numRows : row + 1;
+        lastBin = bin;
+      }
+      int pos = (int) keys[i];
+      add(hist, row, indices[pos], weights[pos]);
+    }
+    return hist;
+  }
+
+  /**
+   * Adds an instance to a row of a histogram.
+   *
+   * @param hist the histogram
+   * @param row the row
+   * @param index the instance index
+   * @param weight the weight of the instance
+   */
+  protected void add(Histogram hist, int row, int index, double weight) {
+    double[] values = hist.m_Values;
+    if (m_NominalClass) {
+      values[row * m_Stride + (int) m_ClassValues[index]] += weight;
+    } else {
+      double classVal = m_ClassValues[index] * weight;
+      values[row * 3] += classVal;
+      values[row * 3 + 1] += m_ClassValues[index] * classVal;
+      values[row * 3 + 2] += weight;
+    }
+  }
+
+  /**
+   * Returns the split point between two bins of a numeric attribute. All
+   * values in the lower bin are smaller than the split point, all values in
+   * the upper bin are at least as large.
+   *
+   * @param att the attribute index
+   * @param lower the lower bin
+   * @param upper the upper bin
+   * @return the split point
+   */
+  public double splitPoint(int att, int lower, int upper) {
+    double max = m_BinMax[att][lower];
+    double min = m_BinMin[att][upper];
+    double splitPoint = (max + min) / 2.0;
+
+    // Check for numeric precision problems
+    if (splitPoint <= max) {
+      splitPoint = min;
+    }
+    return splitPoint;
+  }
+
+  /**
+   * Returns whether a bin of a numeric attribute lies below the given split
+   * point.
+   *
+   * @param att the attribute index
+   * @param bin the bin
+   * @param splitPoint the split point
+   * @return true if the values in the bin are smaller than the split point
+   */
+  public boolean isBelow(int att, int bin, double splitPoint) {
+    return m_BinMax[att][bin] < splitPoint;
+  }
+
+  /**
+   * The histogram of an attribute over the instances at a node. A histogram
+   * consists of rows of entries, one row per bin in ascending order plus a
+   * last row for the missing values. A dense histogram has a row for every
+   * bin, a sparse one only for the bins that occur.
+   */
+  public static class Histogram {
+
+    /** the number of entries per row. */
+    protected int m_Stride;
+
+    /** the number of rows, excluding the one for missing values. */
+    protected int m_NumRows;
+
+    /** the bins of the rows, null for a dense histogram. */
+    protected int[] m_RowBins;
+
+    /** the entries. */
+    protected double[] m_Values;
+
+    /**
+     * Initializes an empty histogram.
+     *
+     * @param stride the number of entries per row
+     * @param numRows the number of rows, excluding the one for missing values
+     * @param rowBins the bins of the rows, null for a dense histogram
+     */
+    protected Histogram(int stride, int numRows, int[] rowBins) {
+      m_Stride = stride;
+      m_NumRows = numRows;
+      m_RowBins = rowBins;
+      m_Values = new double[(numRows + 1) * stride];
+    }
+
+    /**
+     * Returns the number of rows, excluding the one for missing values, which
+     * is at index numRows().
+     *
+     * @return the number of rows
+     */
+    public int numRows() {
+      return m_NumRows;
+    }
+
+    /**
+     * Returns the bin of a row.
+     *
+     * @param row the row
+     * @return the bin
+     */
+    public int bin(int row) {
+      return (m_RowBins == null) ? row : m_RowBins[row];
+    }
+
+    /**
+     * Returns the entries, the ones of a row starting at row * stride. The
+     * returned array must not be modified.
+     *
+     * @return the entries
+     */
+    public double[] values() {
+      return m_Values;
+    }
+
+    /**
+     * Returns the total weight in a row.
+     *
+     * @param row the row
+     * @return the weight
+     */
+    public double weight(int row) {
+      double weight = 0;
+      for (int i = row * m_Stride; i < (row + 1) * m_Stride; i++) {
+        weight += m_Values[i];
+      }
+      return weight;
+    }
+
+    /**
+     * Subtracts the given histogram from this dense histogram.
+     *
+     * @param other the histogram to subtract
+     */
+    protected void subtract(Histogram other) {
+      for (int row = 0; row <= other.m_NumRows; row++) {
+        int bin = (row == other.m_NumRows) ? m_NumRows : other.bin(row);
+        for (int i = 0; i < m_Stride; i++) {
+          m_Values[bin * m_Stride + i] -= other.m_Values[row * m_Stride + i];
+        }
+      }
+    }
+
+    /**
+     * Sets weights left over from rounding errors after subtracting to zero.
+     *
+     * @param nominalClass whether the class is nominal
+     */
+    protected void clean(boolean nominalClass) {
+      for (int i = 0; i < m_Values.length; i += m_Stride) {
+        if (nominalClass) {
+          for (int j = i; j < i + m_Stride; j++) {
+            if (m_Values[j] < EMPTY_WEIGHT) {
+              m_Values[j] = 0;
+            }
+          }
+        } else if (m_Values[i + 2] < EMPTY_WEIGHT) {
+          m_Values[i] = 0;
+          m_Values[i + 1] = 0;
+          m_Values[i + 2] = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * A set of weighted instances reaching a node while growing a tree. The
+   * histograms of a node are computed on demand and cached. The largest
+   * successor of a node derives its histograms by subtracting the ones of its
+   * siblings from the ones of the node, so that only the smaller subsets are
+   * ever scanned for attributes that have already been looked at further up.
+   */
+  public static class Node {
+
+    /** the data. */
+    protected BinnedData m_Data;
+
+    /** the indices of the instances. */
+    protected int[] m_Indices;
+
+    /** the weights of the instances. */
+    protected double[] m_Weights;
+
+    /** the cached histograms per attribute. */
+    protected Histogram[] m_Histograms;
+
+    /** the node this one is a successor of, null for the root. */
+    protected Node m_Parent;
+
+    /** the successors of the parent, including this node. */
+    protected Node[] m_Siblings;
+
+    /** whether this is the successor with the most instances. */
+    protected boolean m_Largest;
+
+    /** whether the subtree of this node has been grown. */
+    protected boolean m_Done;
+
+    /**
+     * Initializes the root node holding all instances with their weights.
+     *
+     * @param data the data
+     */
+    public Node(BinnedData data) {
+      this(data, null, null);
+      m_Indices = new int[data.numInstances()];
+      for (int i = 0; i < m_Indices.length; i++) {
+        m_Indices[i] = i;
+      }
+      m_Weights = data.m_Weights.clone();
+    }
+
+    /**
+     * Initializes the root node holding the instances with a positive weight
+     * in the given array, e.g., the number of times an instance occurs in a
+     * bootstrap sample.
+     *
+     * @param data the data
+     * @param weights the weight of every instance of the data
+     */
+    public Node(BinnedData data, double[] weights) {
+      this(data, null, null);
+      int num = 0;
+      for (double weight : weights) {
+        if (weight > 0) {
+          num++;
+        }
+      }
+      m_Indices = new int[num];
+      m_Weights = new double[num];
+      num = 0;
+      for (int i = 0; i < weights.length; i++) {
+        if (weights[i] > 0) {
+          m_Indices[num] = i;
+          m_Weights[num++] = weights[i];
+        }
+      }
+    }
+
+    /**
+     * Initializes a node.
+     *
+     * @param data the data
+     * @param indices the instance indices
+     * @param weights the instance weights
+     */
+    protected Node(BinnedData data, int[] indices, double[] weights) {
+      m_Data = data;
+      m_Indices = indices;
+      m_Weights = weights;
+      m_Histograms = new Histogram[data.m_NumBins.length];
+    }
+
+    /**
+     * Returns the data.
+     *
+     * @return the data
+     */
+    public BinnedData getData() {
+      return m_Data;
+    }
+
+    /**
+     * Returns the number of instances at this node.
+     *
+     * @return the number of instances
+     */
+    public int numInstances() {
+      return m_Indices.length;
+    }
+
+    /**
+     * Returns the class value of an instance at this node.
+     *
+     * @param i the position of the instance at this node
+     * @return the class value
+     */
+    public double classValue(int i) {
+      return m_Data.m_ClassValues[m_Indices[i]];
+    }
+
+    /**
+     * Returns the weight of an instance at this node.
+     *
+     * @param i the position of the instance at this node
+     * @return the weight
+     */
+    public double weight(int i) {
+      return m_Weights[i];
+    }
+
+    /**
+     * Returns the histogram of an attribute at this node. The returned
+     * histogram must not be modified. Histograms of attributes stored in int
+     * columns are not cached, as they can be large.
+     *
+     * @param att the attribute index
+     * @return the histogram
+     */
+    public Histogram histogram(int att) {
+      if ((m_Histograms == null) || (m_Data.m_WideBins[att] != null)) {
+
+        // the cache has already been released or is not used
+        return m_Data.histogram(att, m_Indices, m_Weights, m_Indices.length);
+      }
+      if (m_Histograms[att] == null) {
+        Histogram parent = null;
+        if (m_Largest && (m_Parent.m_Histograms != null)) {
+          parent = m_Parent.m_Histograms[att];
+        }
+        if ((parent != null) && (parent.m_RowBins == null)
+          && (2 * m_Indices.length >= m_Data.m_NumBins[att])) {
+
+          // derive the histogram from the parent and the siblings
+          Histogram hist = new Histogram(parent.m_Stride, parent.m_NumRows, null);
+          System.arraycopy(parent.m_Values, 0, hist.m_Values, 0,
+            hist.m_Values.length);
+          for (Node sibling : m_Siblings) {
+            if (sibling != this) {
+              hist.subtract(sibling.histogram(att));
+            }
+          }
+          hist.clean(m_Data.m_NominalClass);
+          m_Histograms[att] = hist;
+        } else {
+          m_Histograms[att] =
+            m_Data.histogram(att, m_Indices, m_Weights, m_Indices.length);
+        }
+      }
+      return m_Histograms[att];
+    }
+
+    /**
+     * Splits the instances at this node. Instances with a missing value are
+     * passed on to all subsets with a positive proportion, with their weight
+     * reduced accordingly.
+     *
+     * @param att the attribute to split on
+     * @param splitPoint the split point for a numeric attribute
+     * @param props the proportions of the subsets
+     * @return the successors
+     */
+    public Node[] split(int att, double splitPoint, double[] props) {
+      boolean numeric = (m_Data.m_BinMin[att] != null);
+      int[] subsets = new int[m_Indices.length];
+      int[] counts = new int[props.length];
+      for (int i = 0; i < m_Indices.length; i++) {
+        int bin = m_Data.bin(att, m_Indices[i]);
+        if (bin < 0) {
+          subsets[i] = -1;
+          for (int k = 0; k < props.length; k++) {
+            if (props[k] > 0) {
+              counts[k]++;
+            }
+          }
+        } else {
+          subsets[i] =
+            numeric ? (m_Data.isBelow(att, bin, splitPoint) ? 0 : 1) : bin;
+          counts[subsets[i]]++;
+        }
+      }
+
+      Node[] nodes = new Node[props.length];
+      int largest = 0;
+      for (int k = 0; k < props.length; k++) {
+        nodes[k] =
+          new Node(m_Data, new int[counts[k]], new double[counts[k]]);
+        nodes[k].m_Parent = this;
+        nodes[k].m_Siblings = nodes;
+        if (counts[k] > counts[largest]) {
+          largest = k;
+        }
+        counts[k] = 0;
+      }
+      nodes[largest].m_Largest = true;
+      for (int i = 0; i < m_Indices.length; i++) {
+        if (subsets[i] < 0) {
+          for (int k = 0; k < props.length; k++) {
+            if (props[k] > 0) {
+              nodes[k].m_Indices[counts[k]] = m_Indices[i];
+              nodes[k].m_Weights[counts[k]] = props[k] * m_Weights[i];
+              counts[k]++;
+            }
+          }
+        } else {
+          int k = subsets[i];
+          nodes[k].m_Indices[counts[k]] = m_Indices[i];
+          nodes[k].m_Weights[counts[k]] = m_Weights[i];
+          counts[k]++;
+        }
+      }
+
+      return nodes;
+    }
+
+    /**
+     * Signals that the subtree of this node has been grown, so that memory
+     * which is no longer needed can be released.
+     */
+    public void done() {
+      m_Done = true;
+      if (m_Parent == null) {
+        release();
+        return;
+      }
+      boolean largestDone = true;
+      for (Node sibling : m_Siblings) {
+        if (sibling.m_Largest && !sibling.m_Done) {
+          largestDone = false;
+        }
+      }
+      if (largestDone) {
+        m_Parent.m_Histograms = null;
+        for (Node sibling : m_Siblings) {
+          if (sibling.m_Done) {
+            sibling.release();
+          }
+        }
+      }
+    }
+
+    /**
+     * Releases the instances and histograms of this node.
+     */
+    protected void release() {
+      m_Indices = null;
+      m_Weights = null;
+      m_Histograms = null;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
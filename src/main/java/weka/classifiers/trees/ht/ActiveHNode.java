@@ -23,12 +23,12 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import weka.core.Attribute;
 import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  * Node that is "active" (i.e. growth can occur) in a Hoeffding tree
@@ -42,46 +42,104 @@ public class ActiveHNode extends LeafNode implements LearningNode, Serializable
   /**
    * For serialization
    */
-  private static final long serialVersionUID = 3284585939739561683L;
+  private static final long serialVersionUID = -1932357226553917446L;
 
   /** The weight of instances seen at the last split evaluation */
   public double m_weightSeenAtLastSplitEval = 0;
 
-  /** Statistics for nominal or numeric attributes conditioned on the class */
-  protected Map<String, ConditionalSufficientStats> m_nodeStats = new HashMap<String, ConditionalSufficientStats>();
+  /**
+   * Statistics for nominal or numeric attributes conditioned on the class,
+   * indexed by attribute (null for the class attribute)
+   */
+  protected ConditionalSufficientStats[] m_nodeStats;
 
   @Override
   public void updateNode(Instance inst) throws Exception {
     super.updateDistribution(inst);
 
-    for (int i = 0; i < inst.numAttributes(); i++) {
-      Attribute a = inst.attribute(i);
-      if (i != inst.classIndex()) {
-        ConditionalSufficientStats stats = m_nodeStats.get(a.name());
+    if (m_nodeStats == null) {
+      m_nodeStats = new ConditionalSufficientStats[inst.numAttributes()];
+    }
+    int classIndex = inst.classIndex();
+    int classVal = (int) inst.classValue();
+    double weight = inst.weight();
+    for (int i = 0; i < m_nodeStats.length; i++) {
+      if (i != classIndex) {
+        ConditionalSufficientStats stats = m_nodeStats[i];
         if (stats == null) {
+          Attribute a = inst.attribute(i);
           if (a.isNumeric()) {
-            stats = new GaussianConditionalSufficientStats();
+            stats = new GaussianConditionalSufficientStats(inst.numClasses());
           } else {
-            stats = new NominalConditionalSufficientStats();
+            stats = new NominalConditionalSufficientStats(a.numValues(),
+                inst.numClasses());
           }
-          m_nodeStats.put(a.name(), stats);
+          m_nodeStats[i] = stats;
         }
 
-        stats
-            .update(inst.value(a),
-                inst.classAttribute().value((int) inst.classValue()),
-                inst.weight());
+        stats.update(inst.value(i), classVal, weight);
+      }
+    }
+  }
+
+  /**
+   * Returns the estimated memory footprint of the statistics held by this
+   * node for growing the tree
+   * 
+   * @return the size in bytes
+   */
+  public long calcStatsByteSize() {
+    if (m_nodeStats == null) {
+      return 0;
+    }
+
+    long size = ConditionalSufficientStats.arrayByteSize(m_nodeStats.length);
+    for (ConditionalSufficientStats stats : m_nodeStats) {
+      if (stats != null) {
+        size += stats.calcByteSize();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the estimated memory footprint of the statistics held by this
+   * node once it has seen instances with the given structure
+   * 
+   * @param header the structure of the instances
+   * @return the size in bytes
+   */
+  public long estimateStatsByteSize(Instances header) {
+    long size = ConditionalSufficientStats.arrayByteSize(header
+        .numAttributes());
+    for (int i = 0; i < header.numAttributes(); i++) {
+      if (i != header.classIndex()) {
+        if (header.attribute(i).isNumeric()) {
+          size += GaussianConditionalSufficientStats.byteSize(header
+              .numClasses());
+        } else {
+          size += NominalConditionalSufficientStats.byteSize(header
+              .attribute(i).numValues(), header.numClasses());
+        }
       }
     }
+    return size;
+  }
+
+  @Override
+  public long calcByteSize() {
+    return super.calcByteSize() + calcStatsByteSize();
   }
 
   /**
    * Returns a list of split candidates
    * 
    * @param splitMetric the splitting metric to use
+   * @param header the structure of the instances seen by the node
    * @return a list of split candidates
    */
-  public List<SplitCandidate> getPossibleSplits(SplitMetric splitMetric) {
+  public List<SplitCandidate> getPossibleSplits(SplitMetric splitMetric,
+      Instances header) {
 
     List<SplitCandidate> splits = new ArrayList<SplitCandidate>();
 
@@ -92,15 +150,27 @@ public class ActiveHNode extends LeafNode implements LearningNode, Serializable
         splitMetric.evaluateSplit(m_classDistribution, nullDist));
     splits.add(nullSplit);
 
-    for (Map.Entry<String, ConditionalSufficientStats> e : m_nodeStats
-        .entrySet()) {
-      ConditionalSufficientStats stat = e.getValue();
+    if (m_nodeStats == null) {
+      return splits;
+    }
 
-      SplitCandidate splitCandidate = stat.bestSplit(splitMetric,
-          m_classDistribution, e.getKey());
+    Attribute classAtt = header.classAttribute();
+    double[] preSplitDist = new double[classAtt.numValues()];
+    for (int i = 0; i < preSplitDist.length; i++) {
+      WeightMass w = m_classDistribution.get(classAtt.value(i));
+      if (w != null) {
+        preSplitDist[i] = w.m_weight;
+      }
+    }
+
+    for (int i = 0; i < m_nodeStats.length; i++) {
+      if (m_nodeStats[i] != null) {
+        SplitCandidate splitCandidate = m_nodeStats[i].bestSplit(splitMetric,
+            preSplitDist, header.attribute(i).name(), classAtt);
 
-      if (splitCandidate != null) {
-        splits.add(splitCandidate);
+        if (splitCandidate != null) {
+          splits.add(splitCandidate);
+        }
       }
     }
 
@@ -22,11 +22,12 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+
+import weka.core.Attribute;
 
 /**
- * Records sufficient stats for an attribute
+ * Records sufficient stats for an attribute. Class values are referred to by
+ * their index.
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -37,39 +38,58 @@ public abstract class ConditionalSufficientStats implements Serializable {
   /**
    * For serialization
    */
-  private static final long serialVersionUID = 8724787722646808376L;
+  private static final long serialVersionUID = -3307516564394063463L;
+
+  /** Estimated size of an object header in bytes */
+  public static final long OBJECT_OVERHEAD = 16;
 
-  /** Lookup by class value */
-  protected Map<String, Object> m_classLookup = new HashMap<String, Object>();
+  /**
+   * Returns the estimated size of an array of doubles or references
+   * 
+   * @param length the length of the array
+   * @return the size in bytes
+   */
+  public static long arrayByteSize(int length) {
+    return OBJECT_OVERHEAD + 8L * length;
+  }
 
   /**
    * Update this stat with the supplied attribute value and class value
    * 
    * @param attVal the value of the attribute
-   * @param classVal the class value
+   * @param classVal the index of the class value
    * @param weight the weight of this observation
    */
-  public abstract void update(double attVal, String classVal, double weight);
+  public abstract void update(double attVal, int classVal, double weight);
 
   /**
    * Return the probability of an attribute value conditioned on a class value
    * 
    * @param attVal the attribute value to compute the conditional probability
    *          for
-   * @param classVal the class value
+   * @param classVal the index of the class value
    * @return the probability
    */
   public abstract double probabilityOfAttValConditionedOnClass(double attVal,
-      String classVal);
+      int classVal);
 
   /**
    * Return the best split
    * 
    * @param splitMetric the split metric to use
-   * @param preSplitDist the distribution of class values prior to splitting
+   * @param preSplitDist the distribution of class values prior to splitting,
+   *          indexed by class value
    * @param attName the name of the attribute being considered for splitting
+   * @param classAtt the class attribute
    * @return the best split for the attribute
    */
   public abstract SplitCandidate bestSplit(SplitMetric splitMetric,
-      Map<String, WeightMass> preSplitDist, String attName);
+      double[] preSplitDist, String attName, Attribute classAtt);
+
+  /**
+   * Returns the estimated memory footprint of these stats
+   * 
+   * @return the size in bytes
+   */
+  public abstract long calcByteSize();
 }
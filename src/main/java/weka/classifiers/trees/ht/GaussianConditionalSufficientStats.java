@@ -23,17 +23,20 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 
+import weka.core.Attribute;
+import weka.core.Statistics;
 import weka.core.Utils;
-import weka.estimators.UnivariateNormalEstimator;
 
 /**
  * Maintains sufficient stats for a Gaussian distribution for a numeric
- * attribute
+ * attribute. The weight, mean and sum of squared deviations (updated with
+ * Welford's method) and the range of the observed values are held in arrays
+ * indexed by class value.
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -45,59 +48,61 @@ public class GaussianConditionalSufficientStats extends
   /**
    * For serialization
    */
-  private static final long serialVersionUID = -1527915607201784762L;
+  private static final long serialVersionUID = 3520718547829390541L;
 
-  /**
-   * Inner class that implements a Gaussian estimator
-   * 
-   * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
-   */
-  protected class GaussianEstimator extends UnivariateNormalEstimator implements
-      Serializable {
+  /** Normalizing constant of the normal density */
+  protected static final double CONST = Math.sqrt(2 * Math.PI);
 
-    /**
-     * For serialization
-     */
-    private static final long serialVersionUID = 4756032800685001315L;
+  /** The minimum variance of the Gaussian estimators */
+  protected static final double MIN_VARIANCE = 1.0E-6 * 1.0E-6;
 
-    public double getSumOfWeights() {
-      return m_SumOfWeights;
-    }
+  /** The sum of weights per class */
+  protected double[] m_sumOfWeights;
 
-    public double probabilityDensity(double value) {
-      updateMeanAndVariance();
+  /** The weighted mean per class */
+  protected double[] m_mean;
 
-      if (m_SumOfWeights > 0) {
-        double stdDev = Math.sqrt(m_Variance);
-        if (stdDev > 0) {
-          double diff = value - m_Mean;
-          return (1.0 / (CONST * stdDev))
-              * Math.exp(-(diff * diff / (2.0 * m_Variance)));
-        }
-        return value == m_Mean ? 1.0 : 0.0;
-      }
+  /** The weighted sum of squared deviations from the mean per class */
+  protected double[] m_sumOfSquares;
 
-      return 0.0;
-    }
+  /** The smallest value observed per class, positive infinity if none */
+  protected double[] m_minValObservedPerClass;
 
-    public double[] weightLessThanEqualAndGreaterThan(double value) {
-      double stdDev = Math.sqrt(m_Variance);
-      double equalW = probabilityDensity(value) * m_SumOfWeights;
+  /** The largest value observed per class, negative infinity if none */
+  protected double[] m_maxValObservedPerClass;
 
-      double lessW = (stdDev > 0) ? weka.core.Statistics
-          .normalProbability((value - m_Mean) / stdDev)
-          * m_SumOfWeights
-          - equalW : (value < m_Mean) ? m_SumOfWeights - equalW : 0.0;
-      double greaterW = m_SumOfWeights - equalW - lessW;
+  protected int m_numBins = 10;
 
-      return new double[] { lessW, equalW, greaterW };
-    }
+  /**
+   * Constructor
+   * 
+   * @param numClasses the number of class values
+   */
+  public GaussianConditionalSufficientStats(int numClasses) {
+    m_sumOfWeights = new double[numClasses];
+    m_mean = new double[numClasses];
+    m_sumOfSquares = new double[numClasses];
+    m_minValObservedPerClass = new double[numClasses];
+    m_maxValObservedPerClass = new double[numClasses];
+    Arrays.fill(m_minValObservedPerClass, Double.POSITIVE_INFINITY);
+    Arrays.fill(m_maxValObservedPerClass, Double.NEGATIVE_INFINITY);
   }
 
-  protected Map<String, Double> m_minValObservedPerClass = new HashMap<String, Double>();
-  protected Map<String, Double> m_maxValObservedPerClass = new HashMap<String, Double>();
+  /**
+   * Returns the estimated memory footprint of the stats for a numeric
+   * attribute
+   * 
+   * @param numClasses the number of class values
+   * @return the size in bytes
+   */
+  public static long byteSize(int numClasses) {
+    return OBJECT_OVERHEAD + 48 + 5 * arrayByteSize(numClasses);
+  }
 
-  protected int m_numBins = 10;
+  @Override
+  public long calcByteSize() {
+    return byteSize(m_sumOfWeights.length);
+  }
 
   public void setNumBins(int b) {
     m_numBins = b;
@@ -107,139 +112,173 @@ public class GaussianConditionalSufficientStats extends
     return m_numBins;
   }
 
+  /**
+   * Returns whether a value has been observed for a class value
+   * 
+   * @param classVal the index of the class value
+   * @return true if a value has been observed
+   */
+  protected boolean observed(int classVal) {
+    return m_minValObservedPerClass[classVal] <= m_maxValObservedPerClass[classVal];
+  }
+
+  /**
+   * Returns the variance of the values of a class value
+   * 
+   * @param classVal the index of the class value
+   * @return the variance, at least the minimum variance
+   */
+  protected double variance(int classVal) {
+    if (m_sumOfWeights[classVal] <= 0) {
+      return Double.MAX_VALUE;
+    }
+    return Math.max(m_sumOfSquares[classVal] / m_sumOfWeights[classVal],
+        MIN_VARIANCE);
+  }
+
   @Override
-  public void update(double attVal, String classVal, double weight) {
+  public void update(double attVal, int classVal, double weight) {
     if (!Utils.isMissingValue(attVal)) {
-      GaussianEstimator norm = (GaussianEstimator) m_classLookup.get(classVal);
-      if (norm == null) {
-        norm = new GaussianEstimator();
-        m_classLookup.put(classVal, norm);
-        m_minValObservedPerClass.put(classVal, attVal);
-        m_maxValObservedPerClass.put(classVal, attVal);
-      } else {
-        if (attVal < m_minValObservedPerClass.get(classVal)) {
-          m_minValObservedPerClass.put(classVal, attVal);
-        }
+      if (attVal < m_minValObservedPerClass[classVal]) {
+        m_minValObservedPerClass[classVal] = attVal;
+      }
+      if (attVal > m_maxValObservedPerClass[classVal]) {
+        m_maxValObservedPerClass[classVal] = attVal;
+      }
 
-        if (attVal > m_maxValObservedPerClass.get(classVal)) {
-          m_maxValObservedPerClass.put(classVal, attVal);
-        }
+      if (weight != 0) {
+        double sumOfWeights = m_sumOfWeights[classVal] + weight;
+        double diff = attVal - m_mean[classVal];
+        m_mean[classVal] += diff * weight / sumOfWeights;
+        m_sumOfSquares[classVal] += weight * diff * (attVal - m_mean[classVal]);
+        m_sumOfWeights[classVal] = sumOfWeights;
       }
-      norm.addValue(attVal, weight);
     }
   }
 
   @Override
   public double probabilityOfAttValConditionedOnClass(double attVal,
-      String classVal) {
-    GaussianEstimator norm = (GaussianEstimator) m_classLookup.get(classVal);
-    if (norm == null) {
+      int classVal) {
+    if (!observed(classVal) || (m_sumOfWeights[classVal] <= 0)) {
       return 0;
     }
 
-    // return Utils.lo
-    return norm.probabilityDensity(attVal);
+    double variance = variance(classVal);
+    double diff = attVal - m_mean[classVal];
+    return (1.0 / (CONST * Math.sqrt(variance)))
+        * Math.exp(-(diff * diff / (2.0 * variance)));
   }
 
-  protected TreeSet<Double> getSplitPointCandidates() {
-    TreeSet<Double> splits = new TreeSet<Double>();
+  /**
+   * Returns the candidate split points, in ascending order
+   * 
+   * @return the split points
+   */
+  protected double[] getSplitPointCandidates() {
     double min = Double.POSITIVE_INFINITY;
     double max = Double.NEGATIVE_INFINITY;
 
-    for (String classVal : m_classLookup.keySet()) {
-      if (m_minValObservedPerClass.containsKey(classVal)) {
-        if (m_minValObservedPerClass.get(classVal) < min) {
-          min = m_minValObservedPerClass.get(classVal);
-        }
-
-        if (m_maxValObservedPerClass.get(classVal) > max) {
-          max = m_maxValObservedPerClass.get(classVal);
-        }
+    for (int i = 0; i < m_sumOfWeights.length; i++) {
+      if (observed(i)) {
+        min = Math.min(min, m_minValObservedPerClass[i]);
+        max = Math.max(max, m_maxValObservedPerClass[i]);
       }
     }
 
+    double[] splits = new double[m_numBins];
+    int numSplits = 0;
     if (min < Double.POSITIVE_INFINITY) {
       double bin = max - min;
       bin /= (m_numBins + 1);
       for (int i = 0; i < m_numBins; i++) {
         double split = min + (bin * (i + 1));
 
-        if (split > min && split < max) {
-          splits.add(split);
+        if (split > min && split < max
+            && (numSplits == 0 || split > splits[numSplits - 1])) {
+          splits[numSplits++] = split;
         }
       }
     }
-    return splits;
+    return Arrays.copyOf(splits, numSplits);
   }
 
-  protected List<Map<String, WeightMass>> classDistsAfterSplit(double splitVal) {
-    Map<String, WeightMass> lhsDist = new HashMap<String, WeightMass>();
-    Map<String, WeightMass> rhsDist = new HashMap<String, WeightMass>();
-
-    for (Map.Entry<String, Object> e : m_classLookup.entrySet()) {
-      String classVal = e.getKey();
-      GaussianEstimator attEst = (GaussianEstimator) e.getValue();
-
-      if (attEst != null) {
-        if (splitVal < m_minValObservedPerClass.get(classVal)) {
-          WeightMass mass = rhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            rhsDist.put(classVal, mass);
-          }
-          mass.m_weight += attEst.getSumOfWeights();
-        } else if (splitVal > m_maxValObservedPerClass.get(classVal)) {
-          WeightMass mass = lhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            lhsDist.put(classVal, mass);
-          }
-          mass.m_weight += attEst.getSumOfWeights();
+  /**
+   * Computes the class distributions on both sides of a split point
+   * 
+   * @param splitVal the split point
+   * @param lhs the weights per class of values less than or equal to the
+   *          split point
+   * @param rhs the weights per class of values greater than the split point
+   */
+  protected void classDistsAfterSplit(double splitVal, double[] lhs,
+      double[] rhs) {
+    for (int i = 0; i < m_sumOfWeights.length; i++) {
+      lhs[i] = 0;
+      rhs[i] = 0;
+      if (observed(i)) {
+        if (splitVal < m_minValObservedPerClass[i]) {
+          rhs[i] = m_sumOfWeights[i];
+        } else if (splitVal > m_maxValObservedPerClass[i]) {
+          lhs[i] = m_sumOfWeights[i];
         } else {
-          double[] weights = attEst.weightLessThanEqualAndGreaterThan(splitVal);
-          WeightMass mass = lhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            lhsDist.put(classVal, mass);
-          }
-          mass.m_weight += weights[0] + weights[1]; // <=
-
-          mass = rhsDist.get(classVal);
-          if (mass == null) {
-            mass = new WeightMass();
-            rhsDist.put(classVal, mass);
-          }
-          mass.m_weight += weights[2]; // >
+          double less = Statistics.normalProbability((splitVal - m_mean[i])
+              / Math.sqrt(variance(i)))
+              * m_sumOfWeights[i];
+          lhs[i] = less;
+          rhs[i] = m_sumOfWeights[i] - less;
         }
       }
     }
-
-    List<Map<String, WeightMass>> dists = new ArrayList<Map<String, WeightMass>>();
-    dists.add(lhsDist);
-    dists.add(rhsDist);
-
-    return dists;
   }
 
   @Override
   public SplitCandidate bestSplit(SplitMetric splitMetric,
-      Map<String, WeightMass> preSplitDist, String attName) {
+      double[] preSplitDist, String attName, Attribute classAtt) {
 
-    SplitCandidate best = null;
+    int numClasses = m_sumOfWeights.length;
+    double[][] postSplitDists = new double[2][numClasses];
+    double bestMerit = 0;
+    double bestSplit = Double.NaN;
 
-    TreeSet<Double> candidates = getSplitPointCandidates();
-    for (Double s : candidates) {
-      List<Map<String, WeightMass>> postSplitDists = classDistsAfterSplit(s);
+    for (double s : getSplitPointCandidates()) {
+      classDistsAfterSplit(s, postSplitDists[0], postSplitDists[1]);
 
       double splitMerit = splitMetric.evaluateSplit(preSplitDist,
           postSplitDists);
 
-      if (best == null || splitMerit > best.m_splitMerit) {
-        Split split = new UnivariateNumericBinarySplit(attName, s);
-        best = new SplitCandidate(split, postSplitDists, splitMerit);
+      if (Double.isNaN(bestSplit) || splitMerit > bestMerit) {
+        bestMerit = splitMerit;
+        bestSplit = s;
+      }
+    }
+    if (Double.isNaN(bestSplit)) {
+      return null;
+    }
+
+    // class values on either side of the split
+    classDistsAfterSplit(bestSplit, postSplitDists[0], postSplitDists[1]);
+    Map<String, WeightMass> lhsDist = new LinkedHashMap<String, WeightMass>();
+    Map<String, WeightMass> rhsDist = new LinkedHashMap<String, WeightMass>();
+    for (int i = 0; i < numClasses; i++) {
+      if (observed(i)) {
+        if (bestSplit >= m_minValObservedPerClass[i]) {
+          WeightMass mass = new WeightMass();
+          mass.m_weight = postSplitDists[0][i];
+          lhsDist.put(classAtt.value(i), mass);
+        }
+        if (bestSplit <= m_maxValObservedPerClass[i]) {
+          WeightMass mass = new WeightMass();
+          mass.m_weight = postSplitDists[1][i];
+          rhsDist.put(classAtt.value(i), mass);
+        }
       }
     }
 
-    return best;
+    List<Map<String, WeightMass>> dists = new ArrayList<Map<String, WeightMass>>();
+    dists.add(lhsDist);
+    dists.add(rhsDist);
+
+    Split split = new UnivariateNumericBinarySplit(attName, bestSplit);
+    return new SplitCandidate(split, dists, bestMerit);
   }
 }
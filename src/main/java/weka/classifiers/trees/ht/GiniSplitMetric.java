@@ -22,9 +22,10 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.List;
 import java.util.Map;
 
+import weka.core.Utils;
+
 /**
  * Implements the gini splitting criterion
  * 
@@ -40,24 +41,41 @@ public class GiniSplitMetric extends SplitMetric implements Serializable {
   private static final long serialVersionUID = -2037586582742660298L;
 
   @Override
-  public double evaluateSplit(Map<String, WeightMass> preDist,
-      List<Map<String, WeightMass>> postDist) {
+  public double evaluateSplit(double[] preDist, double[][] postDist) {
     double totalWeight = 0.0;
-    double[] distWeights = new double[postDist.size()];
+    double[] distWeights = new double[postDist.length];
 
-    for (int i = 0; i < postDist.size(); i++) {
-      distWeights[i] = SplitMetric.sum(postDist.get(i));
+    for (int i = 0; i < postDist.length; i++) {
+      distWeights[i] = Utils.sum(postDist[i]);
       totalWeight += distWeights[i];
     }
+
     double gini = 0;
-    for (int i = 0; i < postDist.size(); i++) {
+    for (int i = 0; i < postDist.length; i++) {
       gini += (distWeights[i] / totalWeight)
-          * gini(postDist.get(i), distWeights[i]);
+          * gini(postDist[i], distWeights[i]);
     }
 
     return 1.0 - gini;
   }
 
+  /**
+   * Return the gini metric computed from the supplied weights
+   * 
+   * @param dist the weights to compute the gini metric from
+   * @param sumOfWeights the sum of the weights
+   * @return the gini metric
+   */
+  protected static double gini(double[] dist, double sumOfWeights) {
+    double gini = 1.0;
+    for (double weight : dist) {
+      double frac = weight / sumOfWeights;
+      gini -= frac * frac;
+    }
+
+    return gini;
+  }
+
   /**
    * Return the gini metric computed from the supplied distribution
    * 
@@ -23,6 +23,7 @@ package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import weka.core.Attribute;
@@ -51,6 +52,15 @@ public abstract class HNode implements Serializable {
   /** Holds the node number (for graphing purposes) */
   protected int m_nodeNum;
 
+  /** Estimated size of a node and its class distribution map in bytes */
+  protected static final long NODE_OVERHEAD = 96;
+
+  /** Estimated size of an entry of a map held by a node in bytes */
+  protected static final long MAP_ENTRY_SIZE = 64;
+
+  /** The state for updating this node concurrently, created when needed */
+  protected transient volatile LeafHandoff m_handoff;
+
   /**
    * Construct a new HNode
    */
@@ -66,6 +76,25 @@ public abstract class HNode implements Serializable {
     m_classDistribution = classDistrib;
   }
 
+  /**
+   * Returns the state for updating this node from several threads, creating
+   * it if necessary.
+   * 
+   * @return the state for concurrent updates
+   */
+  public LeafHandoff getHandoff() {
+    LeafHandoff handoff = m_handoff;
+    if (handoff == null) {
+      synchronized (this) {
+        if (m_handoff == null) {
+          m_handoff = new LeafHandoff();
+        }
+        handoff = m_handoff;
+      }
+    }
+    return handoff;
+  }
+
   /**
    * Returns true if this is a leaf
    * 
@@ -243,6 +272,41 @@ public abstract class HNode implements Serializable {
     return new LeafNode(this, parent, parentBranch);
   }
 
+  /**
+   * Returns the estimated memory footprint of this node, excluding any child
+   * nodes
+   * 
+   * @return the size in bytes
+   */
+  public long calcByteSize() {
+    return NODE_OVERHEAD + m_classDistribution.size() * MAP_ENTRY_SIZE;
+  }
+
+  /**
+   * Returns the estimated memory footprint of the subtree rooted at this
+   * node
+   * 
+   * @return the size in bytes
+   */
+  public long calcByteSizeIncludingSubtree() {
+    return calcByteSize();
+  }
+
+  /**
+   * Collects the learning nodes in the subtree rooted at this node, along
+   * with their position in the tree
+   * 
+   * @param parent the parent of this node
+   * @param parentBranch the branch leading to this node
+   * @param found the list to add the learning nodes to
+   */
+  public void findLearningNodes(SplitNode parent, String parentBranch,
+      List<LeafNode> found) {
+    if (this instanceof LearningNode) {
+      found.add(new LeafNode(this, parent, parentBranch));
+    }
+  }
+
   /**
    * Update the node with the supplied instance
    * 
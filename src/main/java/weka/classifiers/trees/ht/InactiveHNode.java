@@ -41,6 +41,9 @@ public class InactiveHNode extends LeafNode implements LearningNode,
    */
   private static final long serialVersionUID = -8747567733141700911L;
 
+  /** Whether the node was deactivated to stay within a memory limit */
+  public boolean m_deactivatedForMemory;
+
   /**
    * Constructor
    * 
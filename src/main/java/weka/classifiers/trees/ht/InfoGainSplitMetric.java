@@ -22,7 +22,6 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.List;
 import java.util.Map;
 
 import weka.core.ContingencyTables;
@@ -49,21 +48,14 @@ public class InfoGainSplitMetric extends SplitMetric implements Serializable {
   }
 
   @Override
-  public double evaluateSplit(Map<String, WeightMass> preDist,
-      List<Map<String, WeightMass>> postDist) {
+  public double evaluateSplit(double[] preDist, double[][] postDist) {
 
-    double[] pre = new double[preDist.size()];
-    int count = 0;
-    for (Map.Entry<String, WeightMass> e : preDist.entrySet()) {
-      pre[count++] = e.getValue().m_weight;
-    }
-
-    double preEntropy = ContingencyTables.entropy(pre);
+    double preEntropy = ContingencyTables.entropy(preDist);
 
-    double[] distWeights = new double[postDist.size()];
+    double[] distWeights = new double[postDist.length];
     double totalWeight = 0.0;
-    for (int i = 0; i < postDist.size(); i++) {
-      distWeights[i] = SplitMetric.sum(postDist.get(i));
+    for (int i = 0; i < postDist.length; i++) {
+      distWeights[i] = Utils.sum(postDist[i]);
       totalWeight += distWeights[i];
     }
 
@@ -79,14 +71,8 @@ public class InfoGainSplitMetric extends SplitMetric implements Serializable {
     }
 
     double postEntropy = 0;
-    for (int i = 0; i < postDist.size(); i++) {
-      Map<String, WeightMass> d = postDist.get(i);
-      double[] post = new double[d.size()];
-      count = 0;
-      for (Map.Entry<String, WeightMass> e : d.entrySet()) {
-        post[count++] = e.getValue().m_weight;
-      }
-      postEntropy += distWeights[i] * ContingencyTables.entropy(post);
+    for (int i = 0; i < postDist.length; i++) {
+      postEntropy += distWeights[i] * ContingencyTables.entropy(postDist[i]);
     }
 
     if (totalWeight > 0) {
@@ -0,0 +1,51 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    LeafHandoff.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees.ht;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import weka.core.Instance;
+
+/**
+ * The state needed for updating a learning node from several threads. Only
+ * the thread holding the lock updates the node. Other threads do not wait
+ * for the lock, but hand their instances over via a lock-free queue, which is
+ * emptied by the thread holding the lock. Once the node has been replaced in
+ * the tree, it is marked as detached and the instances handed over to it are
+ * routed through the tree again.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class LeafHandoff {
+
+  /** The lock held by the thread updating the node */
+  public final ReentrantLock m_lock = new ReentrantLock();
+
+  /** The instances waiting to be added to the node */
+  public final Queue<Instance> m_pending = new ConcurrentLinkedQueue<Instance>();
+
+  /** Whether the node has been replaced in the tree */
+  public volatile boolean m_detached;
+}
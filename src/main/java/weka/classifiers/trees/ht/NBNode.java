@@ -76,6 +76,20 @@ public class NBNode extends ActiveHNode implements LearningNode, Serializable {
     }
   }
 
+  /**
+   * Adds the naive Bayes model, which holds estimators comparable to the
+   * split statistics
+   */
+  @Override
+  public long calcStatsByteSize() {
+    return 2 * super.calcStatsByteSize();
+  }
+
+  @Override
+  public long estimateStatsByteSize(Instances header) {
+    return 2 * super.estimateStatsByteSize(header);
+  }
+
   protected double[] bypassNB(Instance inst, Attribute classAtt)
       throws Exception {
     return super.getDistribution(inst, classAtt);
@@ -22,16 +22,17 @@
 package weka.classifiers.trees.ht;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import weka.core.Attribute;
 import weka.core.Utils;
 
 /**
- * Maintains sufficient stats for the distribution of a nominal attribute
+ * Maintains sufficient stats for the distribution of a nominal attribute. The
+ * counts are held in an array indexed by attribute value and class value.
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -43,77 +44,62 @@ public class NominalConditionalSufficientStats extends
   /**
    * For serialization
    */
-  private static final long serialVersionUID = -669902060601313488L;
+  private static final long serialVersionUID = 5370409722018513717L;
 
   /**
-   * Inner class that implements a discrete distribution
-   * 
-   * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
-   * 
+   * The weight per attribute value and class value. The count of a
+   * combination starts at 1 when it is first observed, and is 0 while it has
+   * not been observed.
    */
-  protected class ValueDistribution implements Serializable {
-
-    /**
-     * For serialization
-     */
-    private static final long serialVersionUID = -61711544350888154L;
-
-    protected final Map<Integer, WeightMass> m_dist = new LinkedHashMap<Integer, WeightMass>();
+  protected double[][] m_counts;
 
-    private double m_sum;
-
-    public void add(int val, double weight) {
-      WeightMass count = m_dist.get(val);
-      if (count == null) {
-        count = new WeightMass();
-        count.m_weight = 1.0;
-        m_sum += 1.0;
-        m_dist.put(val, count);
-      }
-      count.m_weight += weight;
-      m_sum += weight;
-    }
+  /** The sum of the counts per class value */
+  protected double[] m_classSums;
 
-    public void delete(int val, double weight) {
-      WeightMass count = m_dist.get(val);
-      if (count != null) {
-        count.m_weight -= weight;
-        m_sum -= weight;
-      }
-    }
-
-    public double getWeight(int val) {
-      WeightMass count = m_dist.get(val);
-      if (count != null) {
-        return count.m_weight;
-      }
+  protected double m_totalWeight;
+  protected double m_missingWeight;
 
-      return 0.0;
-    }
+  /**
+   * Constructor
+   * 
+   * @param numValues the number of values of the attribute
+   * @param numClasses the number of class values
+   */
+  public NominalConditionalSufficientStats(int numValues, int numClasses) {
+    m_counts = new double[numValues][numClasses];
+    m_classSums = new double[numClasses];
+  }
 
-    public double sum() {
-      return m_sum;
-    }
+  /**
+   * Returns the estimated memory footprint of the stats for a nominal
+   * attribute
+   * 
+   * @param numValues the number of values of the attribute
+   * @param numClasses the number of class values
+   * @return the size in bytes
+   */
+  public static long byteSize(int numValues, int numClasses) {
+    return OBJECT_OVERHEAD + 32 + arrayByteSize(numValues) + numValues
+      * arrayByteSize(numClasses) + arrayByteSize(numClasses);
   }
 
-  protected double m_totalWeight;
-  protected double m_missingWeight;
+  @Override
+  public long calcByteSize() {
+    return byteSize(m_counts.length, m_classSums.length);
+  }
 
   @Override
-  public void update(double attVal, String classVal, double weight) {
+  public void update(double attVal, int classVal, double weight) {
     if (Utils.isMissingValue(attVal)) {
       m_missingWeight += weight;
     } else {
-      new Integer((int) attVal);
-      ValueDistribution valDist = (ValueDistribution) m_classLookup
-        .get(classVal);
-      if (valDist == null) {
-        valDist = new ValueDistribution();
-        valDist.add((int) attVal, weight);
-        m_classLookup.put(classVal, valDist);
-      } else {
-        valDist.add((int) attVal, weight);
+      double[] counts = m_counts[(int) attVal];
+      if (counts[classVal] == 0) {
+        counts[classVal] = 1.0;
+        m_classSums[classVal] += 1.0;
       }
+      counts[classVal] += weight;
+      m_classSums[classVal] += weight;
     }
 
     m_totalWeight += weight;
@@ -121,63 +107,63 @@ public class NominalConditionalSufficientStats extends
 
   @Override
   public double probabilityOfAttValConditionedOnClass(double attVal,
-    String classVal) {
-    ValueDistribution valDist = (ValueDistribution) m_classLookup.get(classVal);
-    if (valDist != null) {
-      double prob = valDist.getWeight((int) attVal) / valDist.sum();
-      return prob;
+    int classVal) {
+    if (m_classSums[classVal] != 0) {
+      return m_counts[(int) attVal][classVal] / m_classSums[classVal];
     }
 
     return 0;
   }
 
-  protected List<Map<String, WeightMass>> classDistsAfterSplit() {
-
-    // att index keys to class distribution
-    Map<Integer, Map<String, WeightMass>> splitDists = new HashMap<Integer, Map<String, WeightMass>>();
-
-    for (Map.Entry<String, Object> cls : m_classLookup.entrySet()) {
-      String classVal = cls.getKey();
-      ValueDistribution attDist = (ValueDistribution) cls.getValue();
-
-      for (Map.Entry<Integer, WeightMass> att : attDist.m_dist.entrySet()) {
-        Integer attVal = att.getKey();
-        WeightMass attCount = att.getValue();
-
-        Map<String, WeightMass> clsDist = splitDists.get(attVal);
-        if (clsDist == null) {
-          clsDist = new HashMap<String, WeightMass>();
-          splitDists.put(attVal, clsDist);
-        }
-
-        WeightMass clsCount = clsDist.get(classVal);
-
-        if (clsCount == null) {
-          clsCount = new WeightMass();
-          clsDist.put(classVal, clsCount);
-        }
-
-        clsCount.m_weight += attCount.m_weight;
+  /**
+   * Returns whether an attribute value has been observed
+   * 
+   * @param attVal the index of the attribute value
+   * @return true if the value has been observed
+   */
+  protected boolean observed(int attVal) {
+    for (double count : m_counts[attVal]) {
+      if (count != 0) {
+        return true;
       }
-
     }
-
-    List<Map<String, WeightMass>> result = new LinkedList<Map<String, WeightMass>>();
-    for (Map.Entry<Integer, Map<String, WeightMass>> v : splitDists.entrySet()) {
-      result.add(v.getValue());
-    }
-
-    return result;
+    return false;
   }
 
   @Override
   public SplitCandidate bestSplit(SplitMetric splitMetric,
-    Map<String, WeightMass> preSplitDist, String attName) {
-
-    List<Map<String, WeightMass>> postSplitDists = classDistsAfterSplit();
+    double[] preSplitDist, String attName, Attribute classAtt) {
+
+    // one branch per observed attribute value
+    int numBranches = 0;
+    double[][] postSplitDists = new double[m_counts.length][];
+    for (int i = 0; i < m_counts.length; i++) {
+      if (observed(i)) {
+        postSplitDists[numBranches++] = m_counts[i];
+      }
+    }
+    if (numBranches < postSplitDists.length) {
+      double[][] branches = new double[numBranches][];
+      System.arraycopy(postSplitDists, 0, branches, 0, numBranches);
+      postSplitDists = branches;
+    }
     double merit = splitMetric.evaluateSplit(preSplitDist, postSplitDists);
+
+    List<Map<String, WeightMass>> dists = new ArrayList<Map<String, WeightMass>>();
+    for (double[] counts : postSplitDists) {
+      Map<String, WeightMass> dist = new LinkedHashMap<String, WeightMass>();
+      for (int j = 0; j < counts.length; j++) {
+        if (counts[j] != 0) {
+          WeightMass mass = new WeightMass();
+          mass.m_weight = counts[j];
+          dist.put(classAtt.value(j), mass);
+        }
+      }
+      dists.add(dist);
+    }
+
     SplitCandidate candidate = new SplitCandidate(
-      new UnivariateNominalMultiwaySplit(attName), postSplitDists, merit);
+      new UnivariateNominalMultiwaySplit(attName), dists, merit);
 
     return candidate;
   }
@@ -55,6 +55,21 @@ public abstract class SplitMetric implements Serializable {
     return sum;
   }
 
+  /**
+   * Utility method to return the weights in a distribution as an array
+   * 
+   * @param dist the distribution
+   * @return the weights contained in the distribution
+   */
+  public static double[] weights(Map<String, WeightMass> dist) {
+    double[] weights = new double[dist.size()];
+    int count = 0;
+    for (Map.Entry<String, WeightMass> e : dist.entrySet()) {
+      weights[count++] = e.getValue().m_weight;
+    }
+    return weights;
+  }
+
   /**
    * Evaluate the merit of a split
    * 
@@ -62,8 +77,24 @@ public abstract class SplitMetric implements Serializable {
    * @param postDist the class distributions after the split
    * @return the merit of the split
    */
-  public abstract double evaluateSplit(Map<String, WeightMass> preDist,
-      List<Map<String, WeightMass>> postDist);
+  public double evaluateSplit(Map<String, WeightMass> preDist,
+      List<Map<String, WeightMass>> postDist) {
+    double[][] post = new double[postDist.size()][];
+    for (int i = 0; i < post.length; i++) {
+      post[i] = weights(postDist.get(i));
+    }
+    return evaluateSplit(weights(preDist), post);
+  }
+
+  /**
+   * Evaluate the merit of a split, given the class distributions as arrays of
+   * weights. Classes with zero weight may be included or omitted.
+   * 
+   * @param preDist the class distribution before the split
+   * @param postDist the class distributions after the split
+   * @return the merit of the split
+   */
+  public abstract double evaluateSplit(double[] preDist, double[][] postDist);
 
   /**
    * Get the range of the splitting metric
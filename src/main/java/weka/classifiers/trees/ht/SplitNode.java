@@ -22,6 +22,7 @@
 package weka.classifiers.trees.ht;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import weka.core.Instance;
@@ -92,6 +93,16 @@ public class SplitNode extends HNode {
     m_children.put(branch, child);
   }
 
+  /**
+   * Returns the child for the given branch
+   * 
+   * @param branch the branch
+   * @return the child, null if there is none
+   */
+  public HNode getChild(String branch) {
+    return m_children.get(branch);
+  }
+
   @Override
   public LeafNode leafForInstance(Instance inst, SplitNode parent,
     String parentBranch) {
@@ -107,6 +118,34 @@ public class SplitNode extends HNode {
     return new LeafNode(this, parent, parentBranch);
   }
 
+  @Override
+  public long calcByteSize() {
+    return super.calcByteSize() + NODE_OVERHEAD + m_children.size()
+      * MAP_ENTRY_SIZE;
+  }
+
+  @Override
+  public long calcByteSizeIncludingSubtree() {
+    long size = calcByteSize();
+    for (HNode child : m_children.values()) {
+      if (child != null) {
+        size += child.calcByteSizeIncludingSubtree();
+      }
+    }
+
+    return size;
+  }
+
+  @Override
+  public void findLearningNodes(SplitNode parent, String parentBranch,
+    List<LeafNode> found) {
+    for (Map.Entry<String, HNode> e : m_children.entrySet()) {
+      if (e.getValue() != null) {
+        e.getValue().findLearningNodes(this, e.getKey(), found);
+      }
+    }
+  }
+
   @Override
   public void updateNode(Instance inst) {
     // don't update the distribution
@@ -0,0 +1,421 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    TreeCodecs.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import weka.core.Instances;
+import weka.core.ModelPersistence;
+import weka.core.ObjectCodec;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Codecs for writing the trees built by J48 with ModelPersistence.
+ * The nodes of a tree are written in one go, the split models and
+ * distributions as separate objects.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @see ModelPersistence
+ */
+public class TreeCodecs implements RevisionHandler {
+
+  /** marks a missing son. */
+  protected static final int NO_SON = 0;
+
+  /** marks a son of the same class, written inline. */
+  protected static final int INLINE_SON = 1;
+
+  /** marks a son of a different class, written as object. */
+  protected static final int OBJECT_SON = 2;
+
+  /**
+   * Codec for distributions.
+   */
+  public static class DistributionCodec implements ObjectCodec<Distribution> {
+
+    @Override
+    public Class<Distribution> getType() {
+      return Distribution.class;
+    }
+
+    @Override
+    public void write(Distribution dist, ObjectOutput out) throws IOException {
+      if (dist.m_perClassPerBag == null) {
+        out.writeInt(-1);
+      } else {
+        out.writeInt(dist.m_perClassPerBag.length);
+        for (double[] bag : dist.m_perClassPerBag) {
+          ModelPersistence.writeDoubles(out, bag);
+        }
+      }
+      ModelPersistence.writeDoubles(out, dist.m_perBag);
+      ModelPersistence.writeDoubles(out, dist.m_perClass);
+      out.writeDouble(dist.totaL);
+    }
+
+    @Override
+    public Distribution read(ObjectInput in) throws IOException {
+      Distribution result = new Distribution(0, 0);
+      int numBags = in.readInt();
+      if (numBags == -1) {
+        result.m_perClassPerBag = null;
+      } else {
+        result.m_perClassPerBag = new double[numBags][];
+        for (int i = 0; i < numBags; i++) {
+          result.m_perClassPerBag[i] = ModelPersistence.readDoubles(in);
+        }
+      }
+      result.m_perBag = ModelPersistence.readDoubles(in);
+      result.m_perClass = ModelPersistence.readDoubles(in);
+      result.totaL = in.readDouble();
+      return result;
+    }
+  }
+
+  /**
+   * Base class for the codecs of trees. Writes the settings specific to the
+   * tree class, followed by the fields of ClassifierTree and the sons.
+   *
+   * @param <T> the type of tree
+   */
+  protected abstract static class AbstractTreeCodec<T extends ClassifierTree>
+    implements ObjectCodec<T> {
+
+    /**
+     * Writes the fields specific to the tree class.
+     *
+     * @param tree the tree to write the fields for
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    protected abstract void writeSettings(T tree, ObjectOutput out)
+      throws IOException;
+
+    /**
+     * Creates a tree node, reading the fields specific to the tree class.
+     *
+     * @param toSelectModel the model selection of the tree
+     * @param in the input to read from
+     * @return the new node
+     * @throws Exception if reading or creating the node fails
+     */
+    protected abstract T newNode(ModelSelection toSelectModel, ObjectInput in)
+      throws Exception;
+
+    @Override
+    public void write(T tree, ObjectOutput out) throws IOException {
+      ClassifierTree node = tree;
+
+      out.writeObject(node.m_toSelectModel);
+      writeSettings(tree, out);
+      out.writeObject(node.m_localModel);
+      out.writeBoolean(node.m_isLeaf);
+      out.writeBoolean(node.m_isEmpty);
+      out.writeObject(node.m_train);
+      out.writeObject(node.m_test);
+      out.writeInt(node.m_id);
+      out.writeBoolean(node.m_pruneTheTree);
+      out.writeBoolean(node.m_collapseTheTree);
+      out.writeFloat(node.m_CF);
+      out.writeBoolean(node.m_subtreeRaising);
+      out.writeBoolean(node.m_cleanup);
+
+      if (node.m_sons == null) {
+        out.writeInt(-1);
+        return;
+      }
+      out.writeInt(node.m_sons.length);
+      for (ClassifierTree son : node.m_sons) {
+        if (son == null) {
+          out.writeByte(NO_SON);
+        } else if (son.getClass() == getType()) {
+          out.writeByte(INLINE_SON);
+          write(getType().cast(son), out);
+        } else {
+          out.writeByte(OBJECT_SON);
+          out.writeObject(son);
+        }
+      }
+    }
+
+    @Override
+    public T read(ObjectInput in) throws IOException, ClassNotFoundException {
+      T result;
+      try {
+        result = newNode((ModelSelection) in.readObject(), in);
+      } catch (IOException e) {
+        throw e;
+      } catch (ClassNotFoundException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
+      }
+
+      ClassifierTree node = result;
+      node.m_localModel = (ClassifierSplitModel) in.readObject();
+      node.m_isLeaf = in.readBoolean();
+      node.m_isEmpty = in.readBoolean();
+      node.m_train = (Instances) in.readObject();
+      node.m_test = (Distribution) in.readObject();
+      node.m_id = in.readInt();
+      node.m_pruneTheTree = in.readBoolean();
+      node.m_collapseTheTree = in.readBoolean();
+      node.m_CF = in.readFloat();
+      node.m_subtreeRaising = in.readBoolean();
+      node.m_cleanup = in.readBoolean();
+
+      int numSons = in.readInt();
+      if (numSons == -1) {
+        node.m_sons = null;
+        return result;
+      }
+      node.m_sons = new ClassifierTree[numSons];
+      for (int i = 0; i < numSons; i++) {
+        int type = in.readByte();
+        if (type == INLINE_SON) {
+          node.m_sons[i] = read(in);
+        } else if (type == OBJECT_SON) {
+          node.m_sons[i] = (ClassifierTree) in.readObject();
+        } else if (type != NO_SON) {
+          throw new IOException("Unknown son type: " + type);
+        }
+      }
+
+      return result;
+    }
+  }
+
+  /**
+   * Codec for plain ClassifierTree objects.
+   */
+  public static class ClassifierTreeCodec extends
+    AbstractTreeCodec<ClassifierTree> {
+
+    @Override
+    public Class<ClassifierTree> getType() {
+      return ClassifierTree.class;
+    }
+
+    @Override
+    protected void writeSettings(ClassifierTree tree, ObjectOutput out) {
+    }
+
+    @Override
+    protected ClassifierTree newNode(ModelSelection toSelectModel,
+      ObjectInput in) {
+      return new ClassifierTree(toSelectModel);
+    }
+  }
+
+  /**
+   * Codec for the trees of J48.
+   */
+  public static class C45PruneableClassifierTreeCodec extends
+    AbstractTreeCodec<C45PruneableClassifierTree> {
+
+    @Override
+    public Class<C45PruneableClassifierTree> getType() {
+      return C45PruneableClassifierTree.class;
+    }
+
+    @Override
+    protected void writeSettings(C45PruneableClassifierTree tree,
+      ObjectOutput out) throws IOException {
+      out.writeBoolean(tree.m_pruneTheTree);
+      out.writeFloat(tree.m_CF);
+      out.writeBoolean(tree.m_subtreeRaising);
+      out.writeBoolean(tree.m_cleanup);
+      out.writeBoolean(tree.m_collapseTheTree);
+    }
+
+    @Override
+    protected C45PruneableClassifierTree newNode(ModelSelection toSelectModel,
+      ObjectInput in) throws Exception {
+      boolean pruneTree = in.readBoolean();
+      float cf = in.readFloat();
+      boolean raiseTree = in.readBoolean();
+      boolean cleanup = in.readBoolean();
+      boolean collapseTree = in.readBoolean();
+      return new C45PruneableClassifierTree(toSelectModel, pruneTree, cf,
+        raiseTree, cleanup, collapseTree);
+    }
+  }
+
+  /**
+   * Codec for the trees of J48 with reduced error pruning.
+   */
+  public static class PruneableClassifierTreeCodec extends
+    AbstractTreeCodec<PruneableClassifierTree> {
+
+    @Override
+    public Class<PruneableClassifierTree> getType() {
+      return PruneableClassifierTree.class;
+    }
+
+    @Override
+    protected void writeSettings(PruneableClassifierTree tree,
+      ObjectOutput out) throws IOException {
+      out.writeBoolean(tree.pruneTheTree);
+      out.writeInt(tree.numSets);
+      out.writeBoolean(tree.m_cleanup);
+      out.writeInt(tree.m_seed);
+    }
+
+    @Override
+    protected PruneableClassifierTree newNode(ModelSelection toSelectModel,
+      ObjectInput in) throws Exception {
+      boolean pruneTree = in.readBoolean();
+      int numSets = in.readInt();
+      boolean cleanup = in.readBoolean();
+      int seed = in.readInt();
+      return new PruneableClassifierTree(toSelectModel, pruneTree, numSets,
+        cleanup, seed);
+    }
+  }
+
+  /**
+   * Codec for C4.5 splits.
+   */
+  public static class C45SplitCodec implements ObjectCodec<C45Split> {
+
+    @Override
+    public Class<C45Split> getType() {
+      return C45Split.class;
+    }
+
+    @Override
+    public void write(C45Split split, ObjectOutput out) throws IOException {
+      out.writeInt(split.m_attIndex);
+      out.writeInt(split.m_minNoObj);
+      out.writeDouble(split.m_sumOfWeights);
+      out.writeBoolean(split.m_useMDLcorrection);
+      out.writeInt(split.m_complexityIndex);
+      out.writeDouble(split.m_splitPoint);
+      out.writeDouble(split.m_infoGain);
+      out.writeDouble(split.m_gainRatio);
+      out.writeInt(split.m_index);
+      out.writeInt(split.m_numSubsets);
+      out.writeObject(split.m_distribution);
+    }
+
+    @Override
+    public C45Split read(ObjectInput in) throws IOException,
+      ClassNotFoundException {
+      int attIndex = in.readInt();
+      int minNoObj = in.readInt();
+      double sumOfWeights = in.readDouble();
+      boolean useMDLcorrection = in.readBoolean();
+      C45Split result =
+        new C45Split(attIndex, minNoObj, sumOfWeights, useMDLcorrection);
+      result.m_complexityIndex = in.readInt();
+      result.m_splitPoint = in.readDouble();
+      result.m_infoGain = in.readDouble();
+      result.m_gainRatio = in.readDouble();
+      result.m_index = in.readInt();
+      result.m_numSubsets = in.readInt();
+      result.m_distribution = (Distribution) in.readObject();
+      return result;
+    }
+  }
+
+  /**
+   * Codec for binary C4.5 splits.
+   */
+  public static class BinC45SplitCodec implements ObjectCodec<BinC45Split> {
+
+    @Override
+    public Class<BinC45Split> getType() {
+      return BinC45Split.class;
+    }
+
+    @Override
+    public void write(BinC45Split split, ObjectOutput out) throws IOException {
+      out.writeInt(split.m_attIndex);
+      out.writeInt(split.m_minNoObj);
+      out.writeDouble(split.m_sumOfWeights);
+      out.writeBoolean(split.m_useMDLcorrection);
+      out.writeDouble(split.m_splitPoint);
+      out.writeDouble(split.m_infoGain);
+      out.writeDouble(split.m_gainRatio);
+      out.writeInt(split.m_numSubsets);
+      out.writeObject(split.m_distribution);
+    }
+
+    @Override
+    public BinC45Split read(ObjectInput in) throws IOException,
+      ClassNotFoundException {
+      int attIndex = in.readInt();
+      int minNoObj = in.readInt();
+      double sumOfWeights = in.readDouble();
+      boolean useMDLcorrection = in.readBoolean();
+      BinC45Split result =
+        new BinC45Split(attIndex, minNoObj, sumOfWeights, useMDLcorrection);
+      result.m_splitPoint = in.readDouble();
+      result.m_infoGain = in.readDouble();
+      result.m_gainRatio = in.readDouble();
+      result.m_numSubsets = in.readInt();
+      result.m_distribution = (Distribution) in.readObject();
+      return result;
+    }
+  }
+
+  /**
+   * Codec for leaves.
+   */
+  public static class NoSplitCodec implements ObjectCodec<NoSplit> {
+
+    @Override
+    public Class<NoSplit> getType() {
+      return NoSplit.class;
+    }
+
+    @Override
+    public void write(NoSplit split, ObjectOutput out) throws IOException {
+      out.writeInt(split.m_numSubsets);
+      out.writeObject(split.m_distribution);
+    }
+
+    @Override
+    public NoSplit read(ObjectInput in) throws IOException,
+      ClassNotFoundException {
+      int numSubsets = in.readInt();
+      NoSplit result = new NoSplit(new Distribution(0, 0));
+      result.m_numSubsets = numSubsets;
+      result.m_distribution = (Distribution) in.readObject();
+      return result;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
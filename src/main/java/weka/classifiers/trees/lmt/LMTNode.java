@@ -311,9 +311,9 @@ public class LMTNode extends LogisticBase {
     m_numParameters += m_numRegressions;
 
     // store performance of model at this node
-    Evaluation eval = new Evaluation(m_train);
-    eval.evaluateModel(this, m_train);
-    m_numIncorrectModel = eval.incorrect();
+    double[][] probs = getProbs(getFs(getValues(m_numericData),
+      m_numInstances));
+    m_numIncorrectModel = getIncorrect(probs, m_train);
 
     boolean grow;
     // split node if more than minNumInstances...
@@ -322,7 +322,6 @@ public class LMTNode extends LogisticBase {
       // residuals
       if (m_modelSelection instanceof ResidualModelSelection) {
         // need ps/Ys/Zs/weights
-        double[][] probs = getProbs(getFs(m_numericData));
         double[][] trainYs = getYs(m_train);
         double[][] dataZs = getZs(probs, trainYs);
         double[][] dataWs = getWs(probs, trainYs);
@@ -350,6 +349,7 @@ public class LMTNode extends LogisticBase {
         m_sons[i] = new LMTNode(m_modelSelection, m_fixedNumIterations,
           m_fastRegression, m_errorOnProbabilities, m_minNumInstances,
           getWeightTrimBeta(), getUseAIC(), m_nominalToBinary, m_numDecimalPlaces);
+        m_sons[i].setExecutor(m_executor);
         m_sons[i].buildTree(localInstances[i], copyRegressions(m_regressions),
           m_totalInstanceWeight, m_numParameters, m_numericDataHeader);
         localInstances[i] = null;
@@ -521,6 +521,7 @@ public class LMTNode extends LogisticBase {
     logistic.setWeightTrimBeta(getWeightTrimBeta()); // Not in Marc's code.
                                                      // Added by Eibe.
     logistic.setUseAIC(getUseAIC());
+    logistic.setExecutor(m_executor);
     logistic.buildClassifier(filteredData);
 
     // return best number of iterations
@@ -21,6 +21,12 @@
 
 package weka.classifiers.trees.lmt;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Evaluation;
 import weka.core.Attribute;
@@ -120,6 +126,18 @@ public class LogisticBase extends AbstractClassifier implements
    **/
   protected double m_weightTrimBeta = 0;
 
+  /**
+   * The minimum number of instance-attribute pairs for fitting the regression
+   * functions of the different classes in parallel.
+   */
+  protected static final int PARALLEL_FIT_THRESHOLD = 50000;
+
+  /**
+   * The executor for fitting the regression functions of the different classes
+   * in parallel, null if they are fitted sequentially.
+   */
+  protected transient ExecutorService m_executor;
+
   /**
    * Constructor that creates LogisticBase object with standard options.
    */
@@ -279,15 +297,17 @@ public class LogisticBase extends AbstractClassifier implements
 
     // initialize Ys/Fs/ps
     double[][] trainYs = getYs(m_train);
-    double[][] trainFs = getFs(m_numericData);
+    double[][] trainValues = getValues(m_numericData);
+    double[] trainWeights = getWeights(m_numericData);
+    double[][] trainFs = getFs(trainValues, m_numericData.numInstances());
     double[][] probs = getProbs(trainFs);
 
     int iteration = 0;
     while (iteration < m_maxIterations) {
 
       // perform single LogitBoost iteration
-      boolean foundAttribute = performIteration(iteration, trainYs, trainFs,
-        probs, m_numericData);
+      boolean foundAttribute = performIteration(trainYs, trainFs, probs,
+        trainValues, trainWeights) != null;
       if (foundAttribute) {
         iteration++;
         m_numRegressions = iteration;
@@ -338,13 +358,18 @@ public class LogisticBase extends AbstractClassifier implements
   protected int performBoosting(Instances train, Instances test,
     double[] error, int maxIterations) throws Exception {
 
-    // get numeric version of the (sub)set of training instances
+    // get numeric version of the (sub)sets of training and test instances
     Instances numericTrain = getNumericData(train);
+    Instances numericTest = getNumericData(test);
+    double[][] trainValues = getValues(numericTrain);
+    double[] trainWeights = getWeights(numericTrain);
+    double[][] testValues = getValues(numericTest);
 
     // initialize Ys/Fs/ps
     double[][] trainYs = getYs(train);
-    double[][] trainFs = getFs(numericTrain);
+    double[][] trainFs = getFs(trainValues, train.numInstances());
     double[][] probs = getProbs(trainFs);
+    double[][] testFs = getFs(testValues, test.numInstances());
 
     int iteration = 0;
 
@@ -352,16 +377,16 @@ public class LogisticBase extends AbstractClassifier implements
     double lastMin = Double.MAX_VALUE;
 
     if (m_errorOnProbabilities) {
-      error[0] += getMeanAbsoluteError(test);
+      error[0] += getMeanAbsoluteError(getProbs(testFs), test);
     } else {
-      error[0] += getErrorRate(test);
+      error[0] += getErrorRate(getProbs(testFs), test);
     }
 
     while (iteration < maxIterations) {
 
       // perform single LogitBoost iteration
-      boolean foundAttribute = performIteration(iteration, trainYs, trainFs,
-        probs, numericTrain);
+      boolean foundAttribute = performIteration(trainYs, trainFs, probs,
+        trainValues, trainWeights) != null;
       if (foundAttribute) {
         iteration++;
         m_numRegressions = iteration;
@@ -370,10 +395,11 @@ public class LogisticBase extends AbstractClassifier implements
         break;
       }
 
+      testFs = getFs(testValues, test.numInstances());
       if (m_errorOnProbabilities) {
-        error[iteration] += getMeanAbsoluteError(test);
+        error[iteration] += getMeanAbsoluteError(getProbs(testFs), test);
       } else {
-        error[iteration] += getErrorRate(test);
+        error[iteration] += getErrorRate(getProbs(testFs), test);
       }
 
       // heuristic: stop LogitBoost if the current minimum has not changed for
@@ -402,15 +428,17 @@ public class LogisticBase extends AbstractClassifier implements
 
     // initialize Ys/Fs/ps
     double[][] trainYs = getYs(m_train);
-    double[][] trainFs = getFs(m_numericData);
+    double[][] trainValues = getValues(m_numericData);
+    double[] trainWeights = getWeights(m_numericData);
+    double[][] trainFs = getFs(trainValues, m_numericData.numInstances());
     double[][] probs = getProbs(trainFs);
 
     int iteration = 0;
 
     // run iterations
     while (iteration < numIterations) {
-      boolean foundAttribute = performIteration(iteration, trainYs, trainFs,
-        probs, m_numericData);
+      boolean foundAttribute = performIteration(trainYs, trainFs, probs,
+        trainValues, trainWeights) != null;
       if (foundAttribute) {
         iteration++;
       } else {
@@ -433,20 +461,22 @@ public class LogisticBase extends AbstractClassifier implements
 
     // initialize Ys/Fs/ps
     double[][] trainYs = getYs(m_train);
-    double[][] trainFs = getFs(m_numericData);
+    double[][] trainValues = getValues(m_numericData);
+    double[] trainWeights = getWeights(m_numericData);
+    double[][] trainFs = getFs(trainValues, m_numericData.numInstances());
     double[][] probs = getProbs(trainFs);
 
     int iteration = 0;
 
     double[] trainErrors = new double[m_maxIterations + 1];
-    trainErrors[0] = getErrorRate(m_train);
+    trainErrors[0] = getErrorRate(probs, m_train);
 
     int noMin = 0;
     double lastMin = Double.MAX_VALUE;
 
     while (iteration < m_maxIterations) {
-      boolean foundAttribute = performIteration(iteration, trainYs, trainFs,
-        probs, m_numericData);
+      boolean foundAttribute = performIteration(trainYs, trainFs, probs,
+        trainValues, trainWeights) != null;
       if (foundAttribute) {
         iteration++;
         m_numRegressions = iteration;
@@ -455,7 +485,7 @@ public class LogisticBase extends AbstractClassifier implements
         break;
       }
 
-      trainErrors[iteration] = getErrorRate(m_train);
+      trainErrors[iteration] = getErrorRate(probs, m_train);
 
       // heuristic: stop LogitBoost if the current minimum has not changed for
       // <m_heuristicStop> iterations
@@ -505,6 +535,95 @@ public class LogisticBase extends AbstractClassifier implements
     return eval.meanAbsoluteError();
   }
 
+  /**
+   * Returns the class predicted from the given probabilities, as determined by
+   * Evaluation.
+   * 
+   * @param probs the class probabilities
+   * @return the predicted class, -1 if no class is predicted
+   */
+  protected int predictedClass(double[] probs) {
+    int predictedClass = -1;
+    double bestProb = 0.0;
+    for (int j = 0; j < probs.length; j++) {
+      if (probs[j] > bestProb) {
+        predictedClass = j;
+        bestProb = probs[j];
+      }
+    }
+    return predictedClass;
+  }
+
+  /**
+   * Returns the weighted number of instances misclassified by the given
+   * probability estimates, as computed by Evaluation.
+   * 
+   * @param probs the probability estimates for the instances
+   * @param data the set of instances
+   * @return the weighted number of misclassified instances
+   */
+  protected double getIncorrect(double[][] probs, Instances data) {
+    double incorrect = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      if (!inst.classIsMissing()) {
+        int predictedClass = predictedClass(probs[i]);
+        if ((predictedClass >= 0)
+          && (predictedClass != (int) inst.classValue())) {
+          incorrect += inst.weight();
+        }
+      }
+    }
+    return incorrect;
+  }
+
+  /**
+   * Returns the misclassification error of the given probability estimates, as
+   * computed by Evaluation.
+   * 
+   * @param probs the probability estimates for the instances
+   * @param data the set of instances
+   * @return the error rate
+   */
+  protected double getErrorRate(double[][] probs, Instances data) {
+    double withClass = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (!data.instance(i).classIsMissing()) {
+        withClass += data.instance(i).weight();
+      }
+    }
+    return getIncorrect(probs, data) / withClass;
+  }
+
+  /**
+   * Returns the error of the given probability estimates, as computed by
+   * Evaluation.
+   * 
+   * @param probs the probability estimates for the instances
+   * @param data the set of instances
+   * @return the error
+   */
+  protected double getMeanAbsoluteError(double[][] probs, Instances data) {
+    double sumAbsErr = 0, withClass = 0, unclassified = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      if (!inst.classIsMissing()) {
+        withClass += inst.weight();
+        if (predictedClass(probs[i]) < 0) {
+          unclassified += inst.weight();
+        } else {
+          double absErr = 0;
+          for (int j = 0; j < m_numClasses; j++) {
+            double actual = (j == (int) inst.classValue()) ? 1.0 : 0.0;
+            absErr += Math.abs(probs[i][j] - actual);
+          }
+          sumAbsErr += inst.weight() * absErr / m_numClasses;
+        }
+      }
+    }
+    return sumAbsErr / (withClass - unclassified);
+  }
+
   /**
    * Helper function to find the minimum in an array of error values.
    * 
@@ -545,122 +664,226 @@ public class LogisticBase extends AbstractClassifier implements
     double[][] trainFs, double[][] probs, Instances trainNumeric)
     throws Exception {
 
-    SimpleLinearRegression[] linearRegressionForEachClass = new SimpleLinearRegression[m_numClasses];
-
-    // Store weights
-    double[] oldWeights = new double[trainNumeric.numInstances()];
-    for (int i = 0; i < oldWeights.length; i++) {
-      oldWeights[i] = trainNumeric.instance(i).weight();
-    }
-
-    for (int j = 0; j < m_numClasses; j++) {
-      // Keep track of sum of weights
-      double weightSum = 0.0;
-
-      for (int i = 0; i < trainNumeric.numInstances(); i++) {
-
-        // compute response and weight
-        double p = probs[i][j];
-        double actual = trainYs[i][j];
-        double z = getZ(actual, p);
-        double w = (actual - p) / z;
+    return performIteration(trainYs, trainFs, probs, getValues(trainNumeric),
+      getWeights(trainNumeric)) != null;
+  }
 
-        // set values for instance
-        Instance current = trainNumeric.instance(i);
-        current.setValue(trainNumeric.classIndex(), z);
-        current.setWeight(oldWeights[i] * w);
+  /**
+   * Performs a single iteration of LogitBoost on training data held in
+   * arrays, and updates the model accordingly. A simple regression function
+   * is fit to the response of each class and added to the m_regressions
+   * array.
+   * 
+   * @param trainYs the y-values (see description of LogitBoost) for the model
+   *          trained so far
+   * @param trainFs the F-values (see description of LogitBoost) for the model
+   *          trained so far
+   * @param probs the p-values (see description of LogitBoost) for the model
+   *          trained so far
+   * @param values the values of the training instances, see getValues()
+   * @param weights the weights of the training instances
+   * @return the simple regression functions fit for the classes, null if no
+   *         simple regression function could be fitted.
+   * @throws Exception if something goes wrong
+   */
+  protected SimpleLinearRegression[] performIteration(double[][] trainYs,
+    double[][] trainFs, double[][] probs, double[][] values, double[] weights)
+    throws Exception {
 
-        weightSum += current.weight();
-      }
+    SimpleLinearRegression[] linearRegressionForEachClass = fitRegressions(
+      trainYs, probs, values, weights);
+    if (linearRegressionForEachClass == null) {
+      // could not fit simple regression function
+      return null;
+    }
 
-      Instances instancesCopy = trainNumeric;
+    // Add each linear regression model to the sum
+    for (int i = 0; i < m_numClasses; i++) {
+      m_regressions[i][linearRegressionForEachClass[i].getAttributeIndex()]
+        .addModel(linearRegressionForEachClass[i]);
+    }
 
-      if (weightSum > 0) {
+    // Evaluate / increment trainFs from the classifier
+    updateFs(trainFs, linearRegressionForEachClass, values);
 
-        // Only the (1-beta)th quantile of instances are sent to the base
-        // classifier
-        if (m_weightTrimBeta > 0) {
+    // Compute the current probability estimates
+    for (int i = 0; i < trainYs.length; i++) {
+      probs[i] = probs(trainFs[i]);
+    }
+    return linearRegressionForEachClass;
+  }
 
-          // Need to make an empty dataset
-          instancesCopy = new Instances(trainNumeric,
-            trainNumeric.numInstances());
+  /**
+   * Fits a simple regression function to the LogitBoost response of each
+   * class. The classes are fit in parallel if an executor is available and
+   * the data is large enough.
+   * 
+   * @param trainYs the y-values for the model trained so far
+   * @param probs the p-values for the model trained so far
+   * @param values the values of the training instances
+   * @param weights the weights of the training instances
+   * @return the simple regression functions, null if no simple regression
+   *         function could be fitted for some class
+   * @throws Exception if something goes wrong
+   */
+  protected SimpleLinearRegression[] fitRegressions(final double[][] trainYs,
+    final double[][] probs, final double[][] values, final double[] weights)
+    throws Exception {
 
-          // Get weights
-          double[] weights = new double[oldWeights.length];
-          for (int i = 0; i < oldWeights.length; i++) {
-            weights[i] = trainNumeric.instance(i).weight();
+    SimpleLinearRegression[] linearRegressionForEachClass = new SimpleLinearRegression[m_numClasses];
+    if ((m_executor != null) && (m_numClasses > 1)
+      && ((long) weights.length * values[0].length >= PARALLEL_FIT_THRESHOLD)) {
+      List<Future<SimpleLinearRegression>> results = new ArrayList<Future<SimpleLinearRegression>>();
+      for (int j = 0; j < m_numClasses; j++) {
+        final int classIndex = j;
+        results.add(m_executor.submit(new Callable<SimpleLinearRegression>() {
+          @Override
+          public SimpleLinearRegression call() {
+            return fitRegression(classIndex, trainYs, probs, values, weights);
           }
+        }));
+      }
+      for (int j = 0; j < m_numClasses; j++) {
+        linearRegressionForEachClass[j] = results.get(j).get();
+      }
+    } else {
+      for (int j = 0; j < m_numClasses; j++) {
+        linearRegressionForEachClass[j] = fitRegression(j, trainYs, probs,
+          values, weights);
+        if (!linearRegressionForEachClass[j].foundUsefulAttribute()) {
+          return null;
+        }
+      }
+    }
+    for (SimpleLinearRegression regression : linearRegressionForEachClass) {
+      if (!regression.foundUsefulAttribute()) {
+        return null;
+      }
+    }
+    return linearRegressionForEachClass;
+  }
 
-          double weightPercentage = 0.0;
-          int[] weightsOrder = Utils.sort(weights);
-
-          for (int i = weightsOrder.length - 1; (i >= 0)
-            && (weightPercentage < (1 - m_weightTrimBeta)); i--) {
-            instancesCopy.add(trainNumeric.instance(weightsOrder[i]));
-            weightPercentage += (weights[weightsOrder[i]] / weightSum);
-
-          }
+  /**
+   * Fits a simple regression function to the LogitBoost response of a class.
+   * 
+   * @param j the class
+   * @param trainYs the y-values for the model trained so far
+   * @param probs the p-values for the model trained so far
+   * @param values the values of the training instances
+   * @param weights the weights of the training instances
+   * @return the simple regression function
+   */
+  protected SimpleLinearRegression fitRegression(int j, double[][] trainYs,
+    double[][] probs, double[][] values, double[] weights) {
+
+    // compute response and weights, keeping track of sum of weights
+    double[] response = new double[weights.length];
+    double[] classWeights = new double[weights.length];
+    double weightSum = 0.0;
+    for (int i = 0; i < weights.length; i++) {
+      double p = probs[i][j];
+      double actual = trainYs[i][j];
+      double z = getZ(actual, p);
+      double w = (actual - p) / z;
+      response[i] = z;
+      classWeights[i] = weights[i] * w;
+      weightSum += classWeights[i];
+    }
 
-          // Update the sum of weights
-          weightSum = instancesCopy.sumOfWeights();
+    int[] rows = null;
+    int numRows = weights.length;
+    if (weightSum > 0) {
+
+      // Only the (1-beta)th quantile of instances are sent to the base
+      // classifier
+      if (m_weightTrimBeta > 0) {
+        double weightPercentage = 0.0;
+        int[] weightsOrder = Utils.sort(classWeights);
+        rows = new int[weights.length];
+        numRows = 0;
+        for (int i = weightsOrder.length - 1; (i >= 0)
+          && (weightPercentage < (1 - m_weightTrimBeta)); i--) {
+          rows[numRows++] = weightsOrder[i];
+          weightPercentage += (classWeights[weightsOrder[i]] / weightSum);
         }
 
-        // Scale the weights
-        double multiplier = instancesCopy.numInstances() / weightSum;
-        for (Instance current : instancesCopy) {
-          current.setWeight(current.weight() * multiplier);
+        // Update the sum of weights
+        weightSum = 0;
+        for (int k = 0; k < numRows; k++) {
+          weightSum += classWeights[rows[k]];
         }
       }
 
-      // fit simple regression function
-      linearRegressionForEachClass[j] = new SimpleLinearRegression();
-      linearRegressionForEachClass[j].buildClassifier(instancesCopy);
-
-      boolean foundAttribute = linearRegressionForEachClass[j]
-        .foundUsefulAttribute();
-      if (!foundAttribute) {
-        // could not fit simple regression function
-
-        // Restore weights
-        for (int i = 0; i < oldWeights.length; i++) {
-          trainNumeric.instance(i).setWeight(oldWeights[i]);
-        }
-        return false;
+      // Scale the weights
+      double multiplier = numRows / weightSum;
+      for (int k = 0; k < numRows; k++) {
+        classWeights[(rows == null) ? k : rows[k]] *= multiplier;
       }
     }
 
-    // Add each linear regression model to the sum
-    for (int i = 0; i < m_numClasses; i++) {
-      m_regressions[i][linearRegressionForEachClass[i].getAttributeIndex()]
-        .addModel(linearRegressionForEachClass[i]);
-    }
+    // fit simple regression function
+    SimpleLinearRegression regression = new SimpleLinearRegression();
+    regression.buildClassifier(values, m_numericDataHeader.classIndex(),
+      response, classWeights, rows, numRows);
+    return regression;
+  }
 
-    // Evaluate / increment trainFs from the classifier
-    for (int i = 0; i < trainFs.length; i++) {
-      double[] pred = new double[m_numClasses];
+  /**
+   * Adds the predictions of the simple regression functions fit in a
+   * LogitBoost iteration to the F-values of a set of instances.
+   * 
+   * @param dataFs the F-values to update
+   * @param regressions the simple regression function for each class
+   * @param values the values of the instances
+   */
+  protected void updateFs(double[][] dataFs,
+    SimpleLinearRegression[] regressions, double[][] values) {
+
+    double[] pred = new double[m_numClasses];
+    for (int i = 0; i < dataFs.length; i++) {
       double predSum = 0;
       for (int j = 0; j < m_numClasses; j++) {
-        pred[j] = linearRegressionForEachClass[j].classifyInstance(trainNumeric
-          .instance(i));
+        pred[j] = regressions[j].getIntercept() + regressions[j].getSlope()
+          * values[i][regressions[j].getAttributeIndex()];
         predSum += pred[j];
       }
       predSum /= m_numClasses;
       for (int j = 0; j < m_numClasses; j++) {
-        trainFs[i][j] += (pred[j] - predSum) * (m_numClasses - 1)
+        dataFs[i][j] += (pred[j] - predSum) * (m_numClasses - 1)
           / m_numClasses;
       }
     }
+  }
 
-    // Compute the current probability estimates
-    for (int i = 0; i < trainYs.length; i++) {
-      probs[i] = probs(trainFs[i]);
+  /**
+   * Returns the values of a numeric version of a set of instances, held in
+   * one array per instance.
+   * 
+   * @param numericData the numeric version of the instances
+   * @return the values
+   */
+  protected double[][] getValues(Instances numericData) {
+
+    double[][] values = new double[numericData.numInstances()][];
+    for (int k = 0; k < numericData.numInstances(); k++) {
+      values[k] = numericData.instance(k).toDoubleArray();
     }
+    return values;
+  }
+
+  /**
+   * Returns the weights of a set of instances.
+   * 
+   * @param data the instances
+   * @return the weights
+   */
+  protected double[] getWeights(Instances data) {
 
-    // Restore weights
-    for (int i = 0; i < oldWeights.length; i++) {
-      trainNumeric.instance(i).setWeight(oldWeights[i]);
+    double[] weights = new double[data.numInstances()];
+    for (int k = 0; k < data.numInstances(); k++) {
+      weights[k] = data.instance(k).weight();
     }
-    return true;
+    return weights;
   }
 
   /**
@@ -890,6 +1113,53 @@ public class LogisticBase extends AbstractClassifier implements
     return instanceFs;
   }
 
+  /**
+   * Computes the F-values for a set of instances held in arrays, giving the
+   * same values as getFs() for the instances. Attributes the model does not
+   * use yet are skipped, as they contribute nothing.
+   * 
+   * @param values the values of the instances, see getValues()
+   * @param numInstances the number of instances
+   * @return the F-values
+   */
+  protected double[][] getFs(double[][] values, int numInstances) {
+
+    double[][] dataFs = new double[numInstances][m_numClasses];
+    double[] intercepts = new double[m_numClasses];
+    double[] slopes = new double[m_numClasses];
+    double[] pred = new double[m_numClasses];
+
+    // add up the predictions from the simple regression functions
+    for (int i = 0; i < m_numericDataHeader.numAttributes(); i++) {
+      if (i != m_numericDataHeader.classIndex()) {
+        boolean used = false;
+        for (int j = 0; j < m_numClasses; j++) {
+          intercepts[j] = m_regressions[j][i].getIntercept();
+          slopes[j] = m_regressions[j][i].getSlope();
+          used |= (intercepts[j] != 0) || (slopes[j] != 0);
+        }
+        if (!used) {
+          continue;
+        }
+        int index = m_regressions[0][i].getAttributeIndex();
+        for (int k = 0; k < numInstances; k++) {
+          double predSum = 0;
+          for (int j = 0; j < m_numClasses; j++) {
+            pred[j] = intercepts[j] + slopes[j] * values[k][index];
+            predSum += pred[j];
+          }
+          predSum /= m_numClasses;
+          for (int j = 0; j < m_numClasses; j++) {
+            dataFs[k][j] += (pred[j] - predSum) * (m_numClasses - 1)
+              / m_numClasses;
+          }
+        }
+      }
+    }
+
+    return dataFs;
+  }
+
   /**
    * Computes the F-values for a set of instances.
    * 
@@ -1057,6 +1327,16 @@ public class LogisticBase extends AbstractClassifier implements
     m_useAIC = c;
   }
 
+  /**
+   * Sets the executor used for fitting the regression functions of the
+   * different classes in parallel.
+   * 
+   * @param executor the executor, null to fit them sequentially
+   */
+  public void setExecutor(ExecutorService executor) {
+    m_executor = executor;
+  }
+
   /**
    * Returns the maxIterations parameter.
    * 
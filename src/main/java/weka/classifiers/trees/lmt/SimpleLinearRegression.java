@@ -180,6 +180,94 @@ public class SimpleLinearRegression implements Serializable {
     }
   }
 
+  /**
+   * Builds a simple linear regression model from the values of the instances
+   * held in arrays, giving the same model as buildClassifier() on the
+   * corresponding instances.
+   * 
+   * @param values the values of each instance
+   * @param classIndex the index of the class, whose values are ignored
+   * @param response the values of the class
+   * @param weights the weights of the instances
+   * @param rows the instances to use, in this order, or null to use all
+   * @param numRows the number of instances to use
+   */
+  public void buildClassifier(double[][] values, int classIndex,
+    double[] response, double[] weights, int[] rows, int numRows) {
+
+    // Compute relevant statistics
+    int numAttributes = values[0].length;
+    double[] means = new double[numAttributes];
+    double sumOfWeights = 0, meanResponse = 0;
+    for (int k = 0; k < numRows; k++) {
+      int j = (rows == null) ? k : rows[k];
+      double[] inst = values[j];
+      double weight = weights[j];
+      for (int i = 0; i < numAttributes; i++) {
+        means[i] += weight * inst[i];
+      }
+      meanResponse += weight * response[j];
+      sumOfWeights += weight;
+    }
+    for (int i = 0; i < numAttributes; i++) {
+      if (sumOfWeights > 0) {
+        means[i] /= sumOfWeights;
+      } else {
+        means[i] = 0.0;
+      }
+    }
+    if (sumOfWeights > 0) {
+      meanResponse /= sumOfWeights;
+    } else {
+      meanResponse = 0.0;
+    }
+    double[] slopes = new double[numAttributes];
+    double[] sumWeightedDiffsSquared = new double[numAttributes];
+    double responseSSE = 0;
+    for (int k = 0; k < numRows; k++) {
+      int j = (rows == null) ? k : rows[k];
+      double[] inst = values[j];
+      double weight = weights[j];
+
+      double yDiff = response[j] - meanResponse;
+      double weightedYDiff = weight * yDiff;
+      responseSSE += weightedYDiff * yDiff;
+      for (int i = 0; i < numAttributes; i++) {
+        double diff = inst[i] - means[i];
+        double weightedDiff = weight * diff;
+        slopes[i] += weightedYDiff * diff;
+        sumWeightedDiffsSquared[i] += weightedDiff * diff;
+      }
+    }
+
+    // Pick the best attribute
+    double minSSE = Double.MAX_VALUE;
+    m_attributeIndex = -1;
+    for (int i = 0; i < numAttributes; i++) {
+
+      // Should we skip this attribute?
+      if ((i == classIndex) || (sumWeightedDiffsSquared[i] == 0)) {
+        continue;
+      }
+
+      // Compute final slope and intercept
+      double numerator = slopes[i];
+      slopes[i] /= sumWeightedDiffsSquared[i];
+      double intercept = meanResponse - slopes[i] * means[i];
+
+      // Compute sum of squared errors
+      double sse = responseSSE - slopes[i] * numerator;
+
+      // Check whether this is the best attribute
+      if (sse < minSSE) {
+        minSSE = sse;
+        m_attributeIndex = i;
+        m_slope = slopes[i];
+        m_intercept = intercept;
+      }
+    }
+  }
+
   /**
    * Returns true if a usable attribute was found.
    * 
@@ -0,0 +1,461 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    LinearModelStats.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees.m5;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.UpperSPDDenseMatrix;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Sufficient statistics for fitting linear models to the (unweighted)
+ * instances reaching a node of a model tree: the means of a fixed set of
+ * attributes and the class, and the matrix of their centred sums of squares
+ * and cross products. The statistics of a node are obtained by merging those
+ * of its children, so that the linear models of all nodes can be fitted
+ * without another pass over the data. The fit reproduces the model that
+ * LinearRegression with default settings (M5 attribute selection, elimination
+ * of colinear attributes, ridge 1.0e-8) builds from the node's instances.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class LinearModelStats implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -6790342466120651497L;
+
+  /** The ridge parameter, as used by LinearRegression by default */
+  public static final double RIDGE = 1.0e-8;
+
+  /** The attributes covered, in ascending order (excluding the class) */
+  private final int[] m_attributes;
+
+  /** The index of the class attribute */
+  private final int m_classIndex;
+
+  /** The number of instances */
+  private int m_numInstances;
+
+  /** The means of the attributes, followed by the mean of the class */
+  private final double[] m_means;
+
+  /** The centred sums of squares and cross products (same layout) */
+  private final double[][] m_sums;
+
+  /** The minimum values, used for detecting constant attributes */
+  private final double[] m_min;
+
+  /** The maximum values, used for detecting constant attributes */
+  private final double[] m_max;
+
+  /**
+   * Creates empty statistics.
+   *
+   * @param attributes the attributes to cover, in ascending order
+   * @param classIndex the index of the class attribute
+   */
+  protected LinearModelStats(int[] attributes, int classIndex) {
+    m_attributes = attributes;
+    m_classIndex = classIndex;
+    m_means = new double[attributes.length + 1];
+    m_sums = new double[attributes.length + 1][attributes.length + 1];
+    m_min = new double[attributes.length + 1];
+    m_max = new double[attributes.length + 1];
+  }
+
+  /**
+   * Computes the statistics of the given instances.
+   *
+   * @param attributes the attributes to cover, in ascending order
+   * @param data the instances, none of them with missing values
+   */
+  public LinearModelStats(int[] attributes, Instances data) {
+    this(attributes, data.classIndex());
+
+    int d = m_means.length;
+    double[] values = new double[d];
+    m_numInstances = data.numInstances();
+    Arrays.fill(m_min, Double.POSITIVE_INFINITY);
+    Arrays.fill(m_max, Double.NEGATIVE_INFINITY);
+    for (int i = 0; i < m_numInstances; i++) {
+      getValues(data.instance(i), values);
+      for (int j = 0; j < d; j++) {
+        m_means[j] += values[j];
+        m_min[j] = Math.min(m_min[j], values[j]);
+        m_max[j] = Math.max(m_max[j], values[j]);
+      }
+    }
+    if (m_numInstances == 0) {
+      return;
+    }
+    for (int j = 0; j < d; j++) {
+      m_means[j] /= m_numInstances;
+    }
+
+    // second pass for the centred sums
+    for (int i = 0; i < m_numInstances; i++) {
+      getValues(data.instance(i), values);
+      for (int j = 0; j < d; j++) {
+        values[j] -= m_means[j];
+      }
+      for (int j = 0; j < d; j++) {
+        double[] row = m_sums[j];
+        double v = values[j];
+        for (int k = j; k < d; k++) {
+          row[k] += v * values[k];
+        }
+      }
+    }
+    for (int j = 0; j < d; j++) {
+      for (int k = j + 1; k < d; k++) {
+        m_sums[k][j] = m_sums[j][k];
+      }
+    }
+  }
+
+  /**
+   * Copies the values of the covered attributes and the class.
+   *
+   * @param inst the instance
+   * @param values the array to fill
+   */
+  private void getValues(Instance inst, double[] values) {
+    for (int j = 0; j < m_attributes.length; j++) {
+      values[j] = inst.value(m_attributes[j]);
+    }
+    values[m_attributes.length] = inst.value(m_classIndex);
+  }
+
+  /**
+   * Returns the statistics of the union of the instances summarized by this
+   * and the given statistics, which must cover the same attributes.
+   *
+   * @param other the other statistics
+   * @return the merged statistics
+   */
+  public LinearModelStats merge(LinearModelStats other) {
+    LinearModelStats result = new LinearModelStats(m_attributes, m_classIndex);
+    int d = m_means.length;
+    int n = m_numInstances + other.m_numInstances;
+    result.m_numInstances = n;
+    if (n == 0) {
+      return result;
+    }
+
+    double[] delta = new double[d];
+    double factor = (double) m_numInstances * other.m_numInstances / n;
+    for (int j = 0; j < d; j++) {
+      delta[j] = other.m_means[j] - m_means[j];
+      result.m_means[j] = m_means[j] + delta[j] * other.m_numInstances / n;
+      result.m_min[j] = Math.min(m_min[j], other.m_min[j]);
+      result.m_max[j] = Math.max(m_max[j], other.m_max[j]);
+    }
+    for (int j = 0; j < d; j++) {
+      for (int k = 0; k < d; k++) {
+        result.m_sums[j][k] = m_sums[j][k] + other.m_sums[j][k] + delta[j]
+          * delta[k] * factor;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of instances summarized.
+   *
+   * @return the number of instances
+   */
+  public int numInstances() {
+    return m_numInstances;
+  }
+
+  /**
+   * Returns the standard deviation of the attribute or class at the given
+   * position, zero for a constant attribute.
+   *
+   * @param pos the position
+   * @return the standard deviation
+   */
+  private double stdDev(int pos) {
+    if (m_min[pos] == m_max[pos]) {
+      return 0;
+    }
+    return Math.sqrt(Math.max(0, m_sums[pos][pos] / (m_numInstances - 1)));
+  }
+
+  /**
+   * Fits a linear model to the instances using the given attributes.
+   *
+   * @param indices the indices of the attributes to use, must be covered by
+   *          these statistics (the class index is ignored)
+   * @param numAttributes the total number of attributes in the data
+   * @return the coefficients of the model indexed by attribute, followed by
+   *         the intercept
+   * @throws Exception if the model cannot be fitted
+   */
+  public double[] fit(int[] indices, int numAttributes) throws Exception {
+    double[] result = new double[numAttributes + 1];
+    int c = m_attributes.length;
+    if (m_numInstances == 1) {
+      result[numAttributes] = m_means[c];
+      return result;
+    }
+
+    // positions of the candidate attributes, in ascending attribute order
+    int[] pos = new int[indices.length];
+    int numCandidates = 0;
+    for (int index : indices) {
+      if (index != m_classIndex) {
+        int p = Arrays.binarySearch(m_attributes, index);
+        if (p < 0) {
+          throw new IllegalArgumentException("Attribute " + index
+            + " is not covered by the statistics!");
+        }
+        pos[numCandidates++] = p;
+      }
+    }
+    pos = Arrays.copyOf(pos, numCandidates);
+    Arrays.sort(pos);
+
+    double[] stdDevs = new double[numCandidates];
+    boolean[] selected = new boolean[numCandidates];
+    for (int i = 0; i < numCandidates; i++) {
+      stdDevs[i] = stdDev(pos[i]);
+      selected[i] = (stdDevs[i] != 0);
+    }
+    double classStdDev = stdDev(c);
+
+    // full model, removing colinear attributes
+    double[] coefficients;
+    boolean removed;
+    do {
+      coefficients = regression(pos, selected, stdDevs);
+      removed = false;
+      double maxSC = 1.5;
+      int maxAttr = -1, coeff = 0;
+      for (int i = 0; i < numCandidates; i++) {
+        if (selected[i]) {
+          double SC = Math.abs(coefficients[coeff] * stdDevs[i] / classStdDev);
+          if (SC > maxSC) {
+            maxSC = SC;
+            maxAttr = i;
+          }
+          coeff++;
+        }
+      }
+      if (maxAttr >= 0) {
+        selected[maxAttr] = false;
+        removed = true;
+      }
+    } while (removed);
+
+    int numSelected = 1;
+    for (boolean s : selected) {
+      if (s) {
+        numSelected++;
+      }
+    }
+
+    // M5 attribute selection based on the Akaike criterion
+    double fullSE = squaredError(pos, selected, coefficients);
+    double akaike = (m_numInstances - numSelected) + 2 * numSelected;
+    int currentNumAttributes = numSelected;
+    boolean improved;
+    do {
+      improved = false;
+      currentNumAttributes--;
+
+      double minSC = 0;
+      int minAttr = -1, coeff = 0;
+      for (int i = 0; i < numCandidates; i++) {
+        if (selected[i]) {
+          double SC = Math.abs(coefficients[coeff] * stdDevs[i] / classStdDev);
+          if ((coeff == 0) || (SC < minSC)) {
+            minSC = SC;
+            minAttr = i;
+          }
+          coeff++;
+        }
+      }
+
+      if (minAttr >= 0) {
+        selected[minAttr] = false;
+        double[] currentCoeffs = regression(pos, selected, stdDevs);
+        double currentSE = squaredError(pos, selected, currentCoeffs);
+        double currentAkaike = currentSE / fullSE
+          * (m_numInstances - numSelected) + 2 * currentNumAttributes;
+        if (currentAkaike < akaike) {
+          improved = true;
+          akaike = currentAkaike;
+          coefficients = currentCoeffs;
+        } else {
+          selected[minAttr] = true;
+        }
+      }
+    } while (improved);
+
+    int coeff = 0;
+    for (int i = 0; i < numCandidates; i++) {
+      if (selected[i]) {
+        result[m_attributes[pos[i]]] = coefficients[coeff++];
+      }
+    }
+    result[numAttributes] = coefficients[coeff];
+    return result;
+  }
+
+  /**
+   * Computes the least squares coefficients for the selected attributes, on
+   * standardized attributes with a ridge added to the diagonal, and returns
+   * them in the original scale.
+   *
+   * @param pos the positions of the candidate attributes
+   * @param selected which candidates are selected
+   * @param stdDevs the standard deviations of the candidates
+   * @return the coefficients of the selected attributes, followed by the
+   *         intercept
+   * @throws Exception if the system cannot be solved
+   */
+  private double[] regression(int[] pos, boolean[] selected, double[] stdDevs)
+    throws Exception {
+
+    int c = m_attributes.length;
+    int[] sel = new int[pos.length];
+    int k = 0;
+    for (int i = 0; i < pos.length; i++) {
+      if (selected[i]) {
+        sel[k++] = i;
+      }
+    }
+
+    double[] coefficients = new double[k + 1];
+    if (k > 0) {
+      UpperSPDDenseMatrix aTa = new UpperSPDDenseMatrix(k);
+      DenseVector aTy = new DenseVector(k);
+      for (int a = 0; a < k; a++) {
+        int pa = pos[sel[a]];
+        double sa = stdDevs[sel[a]];
+        aTy.set(a, m_sums[pa][c] / sa);
+        for (int b = a; b < k; b++) {
+          aTa.set(a, b, m_sums[pa][pos[sel[b]]] / (sa * stdDevs[sel[b]]));
+        }
+        aTa.add(a, a, RIDGE);
+      }
+      DenseVector solution = (DenseVector) aTa.solve(aTy, new DenseVector(k));
+      System.arraycopy(solution.getData(), 0, coefficients, 0, k);
+    }
+
+    // convert to the original scale
+    coefficients[k] = m_means[c];
+    for (int a = 0; a < k; a++) {
+      coefficients[a] /= stdDevs[sel[a]];
+      coefficients[k] -= coefficients[a] * m_means[pos[sel[a]]];
+    }
+    return coefficients;
+  }
+
+  /**
+   * Computes the sum of squared errors of a model on the instances.
+   *
+   * @param pos the positions of the candidate attributes
+   * @param selected which candidates are used by the model
+   * @param coefficients the coefficients of the used attributes, followed by
+   *          the intercept
+   * @return the sum of squared errors
+   */
+  private double squaredError(int[] pos, boolean[] selected,
+    double[] coefficients) {
+
+    double[] weights = new double[m_means.length];
+    int coeff = 0;
+    for (int i = 0; i < pos.length; i++) {
+      if (selected[i]) {
+        weights[pos[i]] = coefficients[coeff++];
+      }
+    }
+    return squaredError(weights, coefficients[coeff]);
+  }
+
+  /**
+   * Computes the sum of squared errors of a model, given by coefficients per
+   * position, on the instances.
+   *
+   * @param weights the coefficients by position, the one for the class is
+   *          ignored
+   * @param intercept the intercept
+   * @return the sum of squared errors
+   */
+  private double squaredError(double[] weights, double intercept) {
+    int c = m_attributes.length;
+    weights[c] = -1;
+
+    // mean error plus the centred part
+    double meanError = intercept;
+    for (int j = 0; j < weights.length; j++) {
+      meanError += weights[j] * m_means[j];
+    }
+    double result = m_numInstances * meanError * meanError;
+    for (int j = 0; j < weights.length; j++) {
+      if (weights[j] != 0) {
+        double sum = 0;
+        for (int k = 0; k < weights.length; k++) {
+          sum += m_sums[j][k] * weights[k];
+        }
+        result += weights[j] * sum;
+      }
+    }
+    return Math.max(0, result);
+  }
+
+  /**
+   * Computes the root mean squared error of a linear model on the instances.
+   *
+   * @param coefficients the coefficients of the model indexed by attribute
+   * @param intercept the intercept of the model
+   * @return the root mean squared error
+   */
+  public double rootMeanSquaredError(double[] coefficients, double intercept) {
+    if (m_numInstances == 0) {
+      return 0;
+    }
+    double[] weights = new double[m_means.length];
+    for (int j = 0; j < m_attributes.length; j++) {
+      weights[j] = coefficients[m_attributes[j]];
+    }
+    return Math.sqrt(squaredError(weights, intercept) / m_numInstances);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -137,6 +137,17 @@ public abstract class M5Base extends AbstractClassifier implements
    */
   protected double m_minNumInstances = 4;
 
+  /**
+   * The number of threads used for evaluating splits (0 = one per processor)
+   */
+  protected int m_numExecutionSlots = 1;
+
+  /**
+   * Sort the instances once, evaluate splits in parallel and fit the linear
+   * models from sufficient statistics
+   */
+  protected boolean m_useFastBuild = false;
+
   /**
    * Constructor
    */
@@ -201,6 +212,15 @@ public abstract class M5Base extends AbstractClassifier implements
     newVector.add(new Option("\tSet minimum number of instances "
       + "per leaf\n\t(default 4)", "M", 1, "-M <minimum number of instances>"));
 
+    newVector.add(new Option("\tNumber of threads for evaluating the splits "
+      + "of large nodes\n\twith -fast-build (use 0 to auto-detect number of "
+      + "cores)\n\t(default 1)", "num-slots", 1, "-num-slots <num>"));
+
+    newVector.add(new Option("\tBuild faster: sort the instances once, "
+      + "evaluate the splits\n\tof large nodes in parallel and fit the linear "
+      + "models from\n\tsufficient statistics (results can differ in the last "
+      + "digits)", "fast-build", 0, "-fast-build"));
+
     newVector.addAll(Collections.list(super.listOptions()));
 
     return newVector.elements();
@@ -233,6 +253,13 @@ public abstract class M5Base extends AbstractClassifier implements
     if (optionString.length() != 0) {
       setMinNumInstances((new Double(optionString)).doubleValue());
     }
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    } else {
+      setNumExecutionSlots(1);
+    }
+    setUseFastBuild(Utils.getFlag("fast-build", options));
     super.setOptions(options);
   }
 
@@ -261,6 +288,13 @@ public abstract class M5Base extends AbstractClassifier implements
     result.add("-M");
     result.add("" + getMinNumInstances());
 
+    result.add("-num-slots");
+    result.add("" + getNumExecutionSlots());
+
+    if (getUseFastBuild()) {
+      result.add("-fast-build");
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -408,6 +442,68 @@ public abstract class M5Base extends AbstractClassifier implements
     return m_minNumInstances;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for evaluating the splits of large "
+      + "nodes when building fast (0 = one per processor).";
+  }
+
+  /**
+   * Set the number of threads to use for evaluating splits
+   * 
+   * @param numSlots the number of threads (0 = one per processor)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of threads to use for evaluating splits
+   * 
+   * @return the number of threads (0 = one per processor)
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String useFastBuildTipText() {
+    return "Whether to build faster: the instances are sorted once instead "
+      + "of at every node, the splits of large nodes are evaluated in "
+      + "parallel, and the linear models are fitted from sufficient "
+      + "statistics instead of running LinearRegression at every node. "
+      + "Predictions can differ from the default build in the last digits.";
+  }
+
+  /**
+   * Set whether to build faster, at the price of differences in the last
+   * digits
+   * 
+   * @param fast true to build faster
+   */
+  public void setUseFastBuild(boolean fast) {
+    m_useFastBuild = fast;
+  }
+
+  /**
+   * Get whether to build faster
+   * 
+   * @return true if building faster
+   */
+  public boolean getUseFastBuild() {
+    return m_useFastBuild;
+  }
+
   /**
    * Returns default capabilities of the classifier, i.e., of LinearRegression.
    * 
@@ -479,6 +575,8 @@ public abstract class M5Base extends AbstractClassifier implements
         tempRule.setSaveInstances(false);
         tempRule.setMinNumInstances(m_minNumInstances);
         tempRule.setNumDecimalPlaces(getNumDecimalPlaces());
+        tempRule.setNumExecutionSlots(m_numExecutionSlots);
+        tempRule.setUseFastBuild(m_useFastBuild);
         tempRule.buildClassifier(tempInst);
         m_ruleSet.add(tempRule);
         // System.err.println("Built rule : "+tempRule.toString());
@@ -497,6 +595,8 @@ public abstract class M5Base extends AbstractClassifier implements
       tempRule.setUnpruned(m_useUnpruned);
       tempRule.setMinNumInstances(m_minNumInstances);
       tempRule.setNumDecimalPlaces(getNumDecimalPlaces());
+      tempRule.setNumExecutionSlots(m_numExecutionSlots);
+      tempRule.setUseFastBuild(m_useFastBuild);
 
       Instances temp_train;
 
@@ -148,6 +148,17 @@ public class Rule implements Serializable, RevisionHandler {
    */
   private int m_numDecimalPlaces = 4;
 
+  /**
+   * The number of threads used for evaluating splits (0 = one per processor)
+   */
+  private int m_numExecutionSlots = 1;
+
+  /**
+   * Sort the instances once, evaluate splits in parallel and fit the linear
+   * models from sufficient statistics
+   */
+  private boolean m_useFastBuild = false;
+
   /**
    * Constructor declaration
    * 
@@ -188,6 +199,8 @@ public class Rule implements Serializable, RevisionHandler {
     m_topOfTree.setRegressionTree(m_regressionTree);
     m_topOfTree.setMinNumInstances(m_minNumInstances);
     m_topOfTree.setNumDecimalPlaces(getNumDecimalPlaces());
+    m_topOfTree.setNumExecutionSlots(m_numExecutionSlots);
+    m_topOfTree.setUseFastBuild(m_useFastBuild);
     m_topOfTree.buildClassifier(m_instances);
 
     if (!m_useUnpruned) {
@@ -632,6 +645,42 @@ public class Rule implements Serializable, RevisionHandler {
     m_numDecimalPlaces = num;
   }
 
+  /**
+   * Set the number of threads used for evaluating splits.
+   * 
+   * @param numSlots the number of threads (0 = one per processor)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of threads used for evaluating splits.
+   * 
+   * @return the number of threads (0 = one per processor)
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Set whether to build faster.
+   * 
+   * @param fast true to build faster
+   */
+  public void setUseFastBuild(boolean fast) {
+    m_useFastBuild = fast;
+  }
+
+  /**
+   * Get whether to build faster.
+   * 
+   * @return true if building faster
+   */
+  public boolean getUseFastBuild() {
+    return m_useFastBuild;
+  }
+
   public RuleNode getM5RootNode() {
     return m_topOfTree;
   }
@@ -22,6 +22,12 @@
 package weka.classifiers.trees.m5;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Evaluation;
@@ -167,6 +173,31 @@ public class RuleNode extends AbstractClassifier {
    */
   private boolean m_regressionTree;
 
+  /**
+   * The number of threads used for evaluating the splits of large nodes (0 =
+   * one per processor)
+   */
+  private int m_numExecutionSlots = 1;
+
+  /**
+   * The minimum number of attribute values at a node for evaluating its
+   * splits in parallel
+   */
+  private static final int PARALLEL_SPLIT_THRESHOLD = 50000;
+
+  /**
+   * Sort the instances once, evaluate the splits of large nodes in parallel
+   * and fit the linear models from sufficient statistics, instead of sorting
+   * the instances at every node and running LinearRegression
+   */
+  private boolean m_useFastBuild = false;
+
+  /**
+   * The sufficient statistics for fitting linear models to the instances at
+   * this node, only held while the models are installed
+   */
+  private transient LinearModelStats m_stats;
+
   /**
    * Creates a new <code>RuleNode</code> instance.
    * 
@@ -191,6 +222,32 @@ public class RuleNode extends AbstractClassifier {
    */
   @Override
   public void buildClassifier(Instances data) throws Exception {
+    int numThreads = (m_numExecutionSlots == 0) ? Runtime.getRuntime()
+      .availableProcessors() : Math.max(1, m_numExecutionSlots);
+    ExecutorService executor = (m_useFastBuild && (numThreads > 1)) ? Executors
+      .newFixedThreadPool(numThreads) : null;
+    try {
+      buildNode(data, null, executor);
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Build this node and the subtree below it
+   * 
+   * @param data the instances on which to build this node
+   * @param sorted for each attribute, the indices of the instances in
+   *          ascending order of the attribute's values (null if not computed
+   *          yet, or if not building fast)
+   * @param executor the executor for evaluating splits in parallel, null if
+   *          splits are evaluated sequentially
+   * @throws Exception if an error occurs
+   */
+  private void buildNode(Instances data, int[][] sorted,
+    ExecutorService executor) throws Exception {
 
     m_rootMeanSquaredError = Double.MAX_VALUE;
     // m_instances = new Instances(data);
@@ -209,7 +266,7 @@ public class RuleNode extends AbstractClassifier {
       m_isLeaf = false;
     }
 
-    split();
+    split(sorted, executor);
   }
 
   /**
@@ -263,6 +320,21 @@ public class RuleNode extends AbstractClassifier {
    * @throws Exception if an error occurs
    */
   public void split() throws Exception {
+    split(null, null);
+  }
+
+  /**
+   * Finds an attribute and split point for this node, and builds the subtrees
+   * 
+   * @param sorted for each attribute, the indices of the instances in
+   *          ascending order of the attribute's values (null if not computed
+   *          yet, or if not building fast)
+   * @param executor the executor for evaluating splits in parallel, null if
+   *          splits are evaluated sequentially
+   * @throws Exception if an error occurs
+   */
+  private void split(int[][] sorted, ExecutorService executor)
+    throws Exception {
     int i;
     Instances leftSubset, rightSubset;
     SplitEvaluate bestSplit, currentSplit;
@@ -270,20 +342,35 @@ public class RuleNode extends AbstractClassifier {
 
     if (!m_isLeaf) {
 
+      YongSplitInfo[] splits = null;
+      if (m_useFastBuild) {
+        if (sorted == null) {
+          sorted = presort();
+        }
+        double[] classValues = new double[m_numInstances];
+        for (i = 0; i < m_numInstances; i++) {
+          classValues[i] = m_instances.instance(i).classValue();
+        }
+        splits = findSplits(sorted, classValues, executor);
+      }
+
       bestSplit = new YongSplitInfo(0, m_numInstances - 1, -1);
       currentSplit = new YongSplitInfo(0, m_numInstances - 1, -1);
 
       // find the best attribute to split on
       for (i = 0; i < m_numAttributes; i++) {
         if (i != m_classIndex) {
-
-          // sort the instances by this attribute
-          m_instances.sort(i);
-          currentSplit.attrSplit(i, m_instances);
+          if (splits != null) {
+            currentSplit = splits[i];
+          } else {
+            // sort the instances by this attribute
+            m_instances.sort(i);
+            currentSplit.attrSplit(i, m_instances);
+          }
 
           if ((Math.abs(currentSplit.maxImpurity() - bestSplit.maxImpurity()) > 1.e-6)
             && (currentSplit.maxImpurity() > bestSplit.maxImpurity() + 1.e-6)) {
-            bestSplit = currentSplit.copy();
+            bestSplit = (splits != null) ? currentSplit : currentSplit.copy();
           }
         }
       }
@@ -298,10 +385,17 @@ public class RuleNode extends AbstractClassifier {
         leftSubset = new Instances(m_instances, m_numInstances);
         rightSubset = new Instances(m_instances, m_numInstances);
 
+        // the subsets keep the order of the instances, so that the sorted
+        // indices can be passed down when building fast
+        boolean[] goesLeft = new boolean[m_numInstances];
+        int[] newIndex = new int[m_numInstances];
         for (i = 0; i < m_numInstances; i++) {
           if (m_instances.instance(i).value(m_splitAtt) <= m_splitValue) {
+            goesLeft[i] = true;
+            newIndex[i] = leftSubset.numInstances();
             leftSubset.add(m_instances.instance(i));
           } else {
+            newIndex[i] = rightSubset.numInstances();
             rightSubset.add(m_instances.instance(i));
           }
         }
@@ -315,14 +409,20 @@ public class RuleNode extends AbstractClassifier {
         m_left.setRegressionTree(m_regressionTree);
         m_left.setSaveInstances(m_saveInstances);
         m_left.setNumDecimalPlaces(getNumDecimalPlaces());
-        m_left.buildClassifier(leftSubset);
+        m_left.setUseFastBuild(m_useFastBuild);
+        m_left.buildNode(leftSubset, (sorted == null) ? null : partition(
+          sorted, goesLeft, true, newIndex, leftSubset.numInstances()),
+          executor);
 
         m_right = new RuleNode(m_globalDeviation, m_globalAbsDeviation, this);
         m_right.setMinNumInstances(m_splitNum);
         m_right.setRegressionTree(m_regressionTree);
         m_right.setSaveInstances(m_saveInstances);
         m_right.setNumDecimalPlaces(getNumDecimalPlaces());
-        m_right.buildClassifier(rightSubset);
+        m_right.setUseFastBuild(m_useFastBuild);
+        m_right.buildNode(rightSubset, (sorted == null) ? null : partition(
+          sorted, goesLeft, false, newIndex, rightSubset.numInstances()),
+          executor);
 
         // now find out what attributes are tested in the left and right
         // subtrees and use them to learn a linear model for this node
@@ -368,6 +468,121 @@ public class RuleNode extends AbstractClassifier {
     }
   }
 
+  /**
+   * Sorts the instances at this node by each attribute, using a stable sort.
+   * 
+   * @return for each attribute, the indices of the instances in ascending
+   *         order of the attribute's values (null for the class)
+   */
+  private int[][] presort() {
+    int[][] sorted = new int[m_numAttributes][];
+    double[] vals = new double[m_numInstances];
+    for (int j = 0; j < m_numAttributes; j++) {
+      if (j != m_classIndex) {
+        for (int i = 0; i < m_numInstances; i++) {
+          vals[i] = m_instances.instance(i).value(j);
+        }
+        sorted[j] = Utils.stableSort(vals);
+      }
+    }
+    return sorted;
+  }
+
+  /**
+   * Selects the sorted indices of the instances going to one side of the
+   * split.
+   * 
+   * @param sorted the sorted indices at this node
+   * @param goesLeft whether each instance goes to the left
+   * @param left true for the left subset, false for the right one
+   * @param newIndex the index of each instance in its subset
+   * @param size the size of the subset
+   * @return the sorted indices for the subset
+   */
+  private static int[][] partition(int[][] sorted, boolean[] goesLeft,
+    boolean left, int[] newIndex, int size) {
+    int[][] result = new int[sorted.length][];
+    for (int j = 0; j < sorted.length; j++) {
+      if (sorted[j] != null) {
+        int[] subset = new int[size];
+        int k = 0;
+        for (int i : sorted[j]) {
+          if (goesLeft[i] == left) {
+            subset[k++] = newIndex[i];
+          }
+        }
+        result[j] = subset;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the best split point for each attribute. The attributes are
+   * evaluated in parallel if an executor is given and the node is large
+   * enough.
+   * 
+   * @param sorted the sorted indices of the instances for each attribute
+   * @param classValues the class values of the instances
+   * @param executor the executor to use, may be null
+   * @return the best split for each attribute (null for the class)
+   * @throws Exception if an error occurs
+   */
+  private YongSplitInfo[] findSplits(final int[][] sorted,
+    final double[] classValues, ExecutorService executor) throws Exception {
+    YongSplitInfo[] splits = new YongSplitInfo[m_numAttributes];
+
+    if ((executor != null)
+      && ((long) m_numInstances * (m_numAttributes - 1) >= PARALLEL_SPLIT_THRESHOLD)) {
+      List<Future<YongSplitInfo>> results = new ArrayList<Future<YongSplitInfo>>();
+      for (int j = 0; j < m_numAttributes; j++) {
+        if (j != m_classIndex) {
+          final int att = j;
+          results.add(executor.submit(new Callable<YongSplitInfo>() {
+            @Override
+            public YongSplitInfo call() throws Exception {
+              return evaluateSplit(att, sorted[att], classValues);
+            }
+          }));
+        }
+      }
+      int k = 0;
+      for (int j = 0; j < m_numAttributes; j++) {
+        if (j != m_classIndex) {
+          splits[j] = results.get(k++).get();
+        }
+      }
+    } else {
+      for (int j = 0; j < m_numAttributes; j++) {
+        if (j != m_classIndex) {
+          splits[j] = evaluateSplit(j, sorted[j], classValues);
+        }
+      }
+    }
+    return splits;
+  }
+
+  /**
+   * Finds the best split point for an attribute.
+   * 
+   * @param att the attribute
+   * @param order the indices of the instances sorted by the attribute
+   * @param classValues the class values of the instances
+   * @return the best split
+   */
+  private YongSplitInfo evaluateSplit(int att, int[] order,
+    double[] classValues) {
+    double[] values = new double[order.length];
+    double[] sortedClassValues = new double[order.length];
+    for (int k = 0; k < order.length; k++) {
+      values[k] = m_instances.instance(order[k]).value(att);
+      sortedClassValues[k] = classValues[order[k]];
+    }
+    YongSplitInfo split = new YongSplitInfo(0, m_numInstances - 1, -1);
+    split.attrSplit(att, values, sortedClassValues);
+    return split;
+  }
+
   /**
    * Build a linear model for this node using those attributes specified in
    * indices.
@@ -376,6 +591,15 @@ public class RuleNode extends AbstractClassifier {
    * @throws Exception if something goes wrong
    */
   private void buildLinearModel(int[] indices) throws Exception {
+    if (m_stats != null) {
+      double[] lmCoeffs = m_stats.fit(indices, m_numAttributes);
+      m_nodeModel = new PreConstructedLinearModel(Arrays.copyOf(lmCoeffs,
+        m_numAttributes), lmCoeffs[m_numAttributes]);
+      m_nodeModel.setNumDecimalPlaces(getNumDecimalPlaces());
+      m_nodeModel.buildClassifier(m_instances);
+      return;
+    }
+
     // copy the training instances and remove all but the tested
     // attributes
     Instances reducedInst = new Instances(m_instances);
@@ -397,9 +621,12 @@ public class RuleNode extends AbstractClassifier {
     double[] lmCoeffs = temp.coefficients();
     double[] coeffs = new double[m_instances.numAttributes()];
 
+    // the filter keeps the attributes in their original order
+    int[] kept = indices.clone();
+    Arrays.sort(kept);
     for (int i = 0; i < lmCoeffs.length - 1; i++) {
-      if (indices[i] != m_classIndex) {
-        coeffs[indices[i]] = lmCoeffs[i];
+      if (kept[i] != m_classIndex) {
+        coeffs[kept[i]] = lmCoeffs[i];
       }
     }
     m_nodeModel = new PreConstructedLinearModel(coeffs,
@@ -612,22 +839,35 @@ public class RuleNode extends AbstractClassifier {
    * @throws Exception if an error occurs
    */
   public void installLinearModels() throws Exception {
-    Evaluation nodeModelEval;
+    installLinearModels(statsAttributes());
+    m_stats = null;
+  }
+
+  /**
+   * Traverses the tree and installs linear models at each node.
+   * 
+   * @param statsAttributes the attributes to collect sufficient statistics
+   *          for, null if the models are built with LinearRegression
+   * @throws Exception if an error occurs
+   */
+  private void installLinearModels(int[] statsAttributes) throws Exception {
     if (m_isLeaf) {
+      if (statsAttributes != null) {
+        m_stats = new LinearModelStats(statsAttributes, m_instances);
+      }
       buildLinearModel(m_indices);
     } else {
       if (m_left != null) {
-        m_left.installLinearModels();
+        m_left.installLinearModels(statsAttributes);
       }
 
       if (m_right != null) {
-        m_right.installLinearModels();
+        m_right.installLinearModels(statsAttributes);
       }
+      mergeStats(statsAttributes);
       buildLinearModel(m_indices);
     }
-    nodeModelEval = new Evaluation(m_instances);
-    nodeModelEval.evaluateModel(m_nodeModel, m_instances);
-    m_rootMeanSquaredError = nodeModelEval.rootMeanSquaredError();
+    m_rootMeanSquaredError = modelError();
     // save space
     if (!m_saveInstances) {
       m_instances = new Instances(m_instances, 0);
@@ -696,49 +936,55 @@ public class RuleNode extends AbstractClassifier {
    * @throws Exception if an error occurs
    */
   public void prune() throws Exception {
-    Evaluation nodeModelEval = null;
+    prune(statsAttributes());
+    m_stats = null;
+  }
+
+  /**
+   * Recursively prune the tree
+   * 
+   * @param statsAttributes the attributes to collect sufficient statistics
+   *          for, null if the models are built with LinearRegression
+   * @throws Exception if an error occurs
+   */
+  private void prune(int[] statsAttributes) throws Exception {
 
     if (m_isLeaf) {
+      if (statsAttributes != null) {
+        m_stats = new LinearModelStats(statsAttributes, m_instances);
+      }
       buildLinearModel(m_indices);
-      nodeModelEval = new Evaluation(m_instances);
 
       // count the constant term as a paramter for a leaf
       // Evaluate the model
-      nodeModelEval.evaluateModel(m_nodeModel, m_instances);
-
-      m_rootMeanSquaredError = nodeModelEval.rootMeanSquaredError();
+      m_rootMeanSquaredError = modelError();
     } else {
 
       // Prune the left and right subtrees
       if (m_left != null) {
-        m_left.prune();
+        m_left.prune(statsAttributes);
       }
 
       if (m_right != null) {
-        m_right.prune();
+        m_right.prune(statsAttributes);
       }
 
+      mergeStats(statsAttributes);
       buildLinearModel(m_indices);
-      nodeModelEval = new Evaluation(m_instances);
 
       double rmsModel;
       double adjustedErrorModel;
 
-      nodeModelEval.evaluateModel(m_nodeModel, m_instances);
-
-      rmsModel = nodeModelEval.rootMeanSquaredError();
+      rmsModel = modelError();
       adjustedErrorModel = rmsModel
         * pruningFactor(m_numInstances, m_nodeModel.numParameters() + 1);
 
       // Evaluate this node (ie its left and right subtrees)
-      Evaluation nodeEval = new Evaluation(m_instances);
       double rmsSubTree;
       double adjustedErrorNode;
       int l_params = 0, r_params = 0;
 
-      nodeEval.evaluateModel(this, m_instances);
-
-      rmsSubTree = nodeEval.rootMeanSquaredError();
+      rmsSubTree = subtreeError();
 
       if (m_left != null) {
         l_params = m_left.numParameters();
@@ -771,6 +1017,88 @@ public class RuleNode extends AbstractClassifier {
     }
   }
 
+  /**
+   * Returns the attributes for which sufficient statistics are collected when
+   * installing the linear models in the tree below this node, i.e., all
+   * attributes tested in the tree. The statistics are only used when building
+   * fast and cannot be used with weighted instances; otherwise the models are
+   * built with LinearRegression.
+   * 
+   * @return the attributes in ascending order, or null if the models are
+   *         built with LinearRegression
+   */
+  private int[] statsAttributes() {
+    if (!m_useFastBuild) {
+      return null;
+    }
+    for (int i = 0; i < m_numInstances; i++) {
+      if (m_instances.instance(i).weight() != 1) {
+        return null;
+      }
+    }
+    int[] attributes = new int[m_indices.length - 1];
+    int count = 0;
+    for (int index : m_indices) {
+      if (index != m_classIndex) {
+        attributes[count++] = index;
+      }
+    }
+    Arrays.sort(attributes);
+    return attributes;
+  }
+
+  /**
+   * Obtains the sufficient statistics of this node by merging those of the
+   * child nodes, which are no longer needed afterwards.
+   * 
+   * @param statsAttributes the attributes covered by the statistics, null if
+   *          no statistics are collected
+   */
+  private void mergeStats(int[] statsAttributes) {
+    if (statsAttributes != null) {
+      m_stats = m_left.m_stats.merge(m_right.m_stats);
+      m_left.m_stats = null;
+      m_right.m_stats = null;
+    }
+  }
+
+  /**
+   * Computes the root mean squared error of the linear model at this node on
+   * the instances at this node.
+   * 
+   * @return the root mean squared error
+   * @throws Exception if an error occurs
+   */
+  private double modelError() throws Exception {
+    if (m_stats != null) {
+      return m_stats.rootMeanSquaredError(m_nodeModel.coefficients(),
+        m_nodeModel.intercept());
+    }
+    Evaluation nodeModelEval = new Evaluation(m_instances);
+    nodeModelEval.evaluateModel(m_nodeModel, m_instances);
+    return nodeModelEval.rootMeanSquaredError();
+  }
+
+  /**
+   * Computes the root mean squared error of the subtrees below this node on
+   * the instances at this node.
+   * 
+   * @return the root mean squared error
+   * @throws Exception if an error occurs
+   */
+  private double subtreeError() throws Exception {
+    if (m_stats != null) {
+      // the subsets are disjoint, so the squared errors add up
+      double sse = m_left.m_numInstances * m_left.m_rootMeanSquaredError
+        * m_left.m_rootMeanSquaredError + m_right.m_numInstances
+        * m_right.m_rootMeanSquaredError * m_right.m_rootMeanSquaredError;
+      return Math.sqrt(sse / m_numInstances);
+    }
+    Evaluation nodeEval = new Evaluation(m_instances);
+    nodeEval.evaluateModel(this, m_instances);
+    return nodeEval.rootMeanSquaredError();
+  }
+
   /**
    * Compute the pruning factor
    * 
@@ -969,6 +1297,43 @@ public class RuleNode extends AbstractClassifier {
     m_regressionTree = newregressionTree;
   }
 
+  /**
+   * Set the number of threads used for evaluating the splits of large nodes.
+   * 
+   * @param numSlots the number of threads (0 = one per processor)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of threads used for evaluating the splits of large nodes.
+   * 
+   * @return the number of threads (0 = one per processor)
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Set whether to build the tree below this node faster. The predictions can
+   * differ from the default build in the last digits.
+   * 
+   * @param fast true to build faster
+   */
+  public void setUseFastBuild(boolean fast) {
+    m_useFastBuild = fast;
+  }
+
+  /**
+   * Get whether to build the tree below this node faster.
+   * 
+   * @return true if building faster
+   */
+  public boolean getUseFastBuild() {
+    return m_useFastBuild;
+  }
+
   /**
    * Print all the linear models at the learf (debugging purposes)
    */
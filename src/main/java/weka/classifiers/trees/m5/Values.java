@@ -82,6 +82,36 @@ public final class Values
     }
   }
 
+  /**
+   * Constructs an object which stores the statistics of a range of values,
+   *      none of which may be missing
+   * @param low the index of the first value
+   * @param high the index of the last value
+   * @param values the values
+   */
+  public Values(int low,int high,double[] values){
+    double value;
+
+    numInstances = high-low+1;
+    missingInstances = 0;
+    first = low;
+    last = high;
+    attr = -1;
+    sum=0.0;
+    sqrSum=0.0;
+    for(int i=first;i<=last;i++){
+      value = values[i];
+      sum += value;
+      sqrSum += value * value;
+    }
+    if(numInstances >1){
+      va = (sqrSum - sum * sum/numInstances)/numInstances;
+      va = Math.abs(va);
+      sd = Math.sqrt(va);
+    }
+    else {va = 0.0;  sd = 0.0;}
+  }
+
   /**
    * Converts the stats to a string
    * @return the converted string
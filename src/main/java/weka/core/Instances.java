@@ -1457,6 +1457,56 @@ RevisionHandler {
   public Instances resampleWithWeights(Random random, double[] weights,
     boolean[] sampled, boolean representUsingWeights, double sampleSize) {
 
+    int[] drawn = resampleIndicesWithWeights(random, weights, sampleSize);
+    Instances newData = new Instances(this, numInstances());
+    if (sampled != null) {
+      for (int index : drawn) {
+        sampled[index] = true;
+      }
+    }
+
+    // Add data based on counts if weights should represent numbers of copies.
+    if (representUsingWeights) {
+      int[] counts = new int[numInstances()];
+      for (int index : drawn) {
+        counts[index]++;
+      }
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          newData.add(instance(i));
+          newData.instance(newData.numInstances() - 1).setWeight(counts[i]);
+        }
+      }
+    } else {
+      for (int index : drawn) {
+        newData.add(instance(index));
+        newData.instance(newData.numInstances() - 1).setWeight(1);
+      }
+    }
+
+    return newData;
+  }
+
+  /**
+   * Draws a random sample with replacement from this dataset according to the
+   * given weight vector, without copying any instances. The length of the
+   * weight vector has to be the same as the number of instances in the
+   * dataset, and all weights have to be positive. Uses Walker's method, see
+   * pp. 232 of "Stochastic Simulation" by B.D. Ripley (1987). Draws the same
+   * sample as resampleWithWeights(Random, double[], boolean[], boolean,
+   * double) given the same random number generator.
+   * 
+   * @param random a random number generator
+   * @param weights the weight vector
+   * @param sampleSize size of the sample as a percentage of the size of this
+   *          dataset
+   * @return the indices of the drawn instances, in the order they were drawn
+   * @throws IllegalArgumentException if the weights array is of the wrong
+   *           length or contains negative weights.
+   */
+  public int[] resampleIndicesWithWeights(Random random, double[] weights,
+    double sampleSize) {
+
     if (weights.length != numInstances()) {
       throw new IllegalArgumentException("weights.length != numInstances.");
     }
@@ -1465,9 +1515,8 @@ RevisionHandler {
       throw new IllegalArgumentException("Sample size must be a percentage.");
     }
 
-    Instances newData = new Instances(this, numInstances());
     if (numInstances() == 0) {
-      return newData;
+      return new int[0];
     }
 
     // Walker's method, see pp. 232 of "Stochastic Simulation" by B.D. Ripley
@@ -1511,47 +1560,15 @@ RevisionHandler {
       Q[I] += I;
     }
 
-    // Do we need to keep track of how many copies to use?
-    int[] counts = null;
-    if (representUsingWeights) {
-      counts = new int[M];
-    }
-
     int numToBeSampled = (int) (numInstances() * (sampleSize / 100.0));
-
+    int[] drawn = new int[numToBeSampled];
     for (int i = 0; i < numToBeSampled; i++) {
-      int ALRV;
       double U = M * random.nextDouble();
       int I = (int) U;
-      if (U < Q[I]) {
-        ALRV = I;
-      } else {
-        ALRV = A[I];
-      }
-      if (representUsingWeights) {
-        counts[ALRV]++;
-      } else {
-        newData.add(instance(ALRV));
-      }
-      if (sampled != null) {
-        sampled[ALRV] = true;
-      }
-      if (!representUsingWeights) {
-        newData.instance(newData.numInstances() - 1).setWeight(1);
-      }
+      drawn[i] = (U < Q[I]) ? I : A[I];
     }
 
-    // Add data based on counts if weights should represent numbers of copies.
-    if (representUsingWeights) {
-      for (int i = 0; i < counts.length; i++) {
-        if (counts[i] > 0) {
-          newData.add(instance(i));
-          newData.instance(newData.numInstances() - 1).setWeight(counts[i]);
-        }
-      }
-    }
-
-    return newData;
+    return drawn;
   }
 
   /**
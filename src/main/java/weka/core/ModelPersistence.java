@@ -0,0 +1,970 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ModelPersistence.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Writes and reads models in a more compact and faster format than plain Java
+ * serialization, as used by SerializationHelper. The format is still based on
+ * Java serialization, but objects of the classes that have a codec registered
+ * (see ObjectCodec) are written by that codec instead, e.g., the nodes of J48
+ * and RandomTree models, datasets and the estimators of NaiveBayes. All other
+ * objects are serialized as usual.<br/>
+ * Optionally, the data gets compressed, and the members of ensembles (arrays
+ * of classifiers or clusterers) get encoded and decoded in parallel. In the
+ * latter case, each member is written separately, i.e., objects shared by
+ * several members are written (and read) once per member.<br/>
+ * SerializationHelper.read recognizes files in this format.
+ * <p/>
+ * Example:
+ *
+ * <pre>
+ * ModelPersistence persistence = new ModelPersistence();
+ * persistence.setCompress(true);
+ * persistence.setNumExecutionSlots(4);
+ * persistence.serialize(new FileOutputStream(&quot;forest.model&quot;), forest);
+ * ...
+ * Classifier forest = (Classifier) SerializationHelper.read(&quot;forest.model&quot;);
+ * </pre>
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @see ObjectCodec
+ * @see SerializationHelper
+ */
+public class ModelPersistence implements RevisionHandler {
+
+  /** the bytes every stream in this format starts with. */
+  public final static byte[] MAGIC = { 'W', 'K', 'M', 'P' };
+
+  /** the current version of the format. */
+  public final static int VERSION = 1;
+
+  /** the flag for compressed data. */
+  protected final static int FLAG_COMPRESSED = 1;
+
+  /** the size of the blocks for compressing the data. */
+  protected final static int BLOCK_SIZE = 65536;
+
+  /** the default types of ensemble members that can be encoded in parallel. */
+  public final static String[] DEFAULT_MEMBER_TYPES = {
+    "weka.classifiers.Classifier", "weka.clusterers.Clusterer" };
+
+  /** the codecs, with the class they handle as key (copy on write). */
+  protected static volatile Map<Class<?>, ObjectCodec<?>> CODECS;
+
+  /** the instance reading in the current thread. */
+  protected static final ThreadLocal<ModelPersistence> READER =
+    new ThreadLocal<ModelPersistence>();
+
+  static {
+    String type = ObjectCodec.class.getName();
+    PluginManager.addPlugin(type, "Instances", InstancesCodec.class.getName());
+    PluginManager.addPlugin(type, "j48.Distribution",
+      "weka.classifiers.trees.j48.TreeCodecs$DistributionCodec");
+    PluginManager.addPlugin(type, "j48.ClassifierTree",
+      "weka.classifiers.trees.j48.TreeCodecs$ClassifierTreeCodec");
+    PluginManager.addPlugin(type, "j48.C45PruneableClassifierTree",
+      "weka.classifiers.trees.j48.TreeCodecs$C45PruneableClassifierTreeCodec");
+    PluginManager.addPlugin(type, "j48.PruneableClassifierTree",
+      "weka.classifiers.trees.j48.TreeCodecs$PruneableClassifierTreeCodec");
+    PluginManager.addPlugin(type, "j48.C45Split",
+      "weka.classifiers.trees.j48.TreeCodecs$C45SplitCodec");
+    PluginManager.addPlugin(type, "j48.BinC45Split",
+      "weka.classifiers.trees.j48.TreeCodecs$BinC45SplitCodec");
+    PluginManager.addPlugin(type, "j48.NoSplit",
+      "weka.classifiers.trees.j48.TreeCodecs$NoSplitCodec");
+    PluginManager.addPlugin(type, "RandomTree.Tree",
+      "weka.classifiers.trees.RandomTree$TreeCodec");
+    PluginManager.addPlugin(type, "DiscreteEstimator",
+      "weka.estimators.DiscreteEstimator$Codec");
+    PluginManager.addPlugin(type, "NormalEstimator",
+      "weka.estimators.NormalEstimator$Codec");
+    PluginManager.addPlugin(type, "KernelEstimator",
+      "weka.estimators.KernelEstimator$Codec");
+  }
+
+  /** whether to compress the data. */
+  protected boolean m_Compress = false;
+
+  /** the number of threads for encoding/decoding ensemble members. */
+  protected int m_NumExecutionSlots = 1;
+
+  /** the classnames of the ensemble members that can be encoded in parallel. */
+  protected Set<String> m_MemberTypes = new HashSet<String>();
+
+  /**
+   * Initializes the object with the default member types.
+   */
+  public ModelPersistence() {
+    for (String type : DEFAULT_MEMBER_TYPES) {
+      m_MemberTypes.add(type);
+    }
+  }
+
+  /**
+   * Sets whether to compress the data.
+   *
+   * @param value true if to compress
+   */
+  public void setCompress(boolean value) {
+    m_Compress = value;
+  }
+
+  /**
+   * Returns whether the data gets compressed.
+   *
+   * @return true if compressed
+   */
+  public boolean getCompress() {
+    return m_Compress;
+  }
+
+  /**
+   * Sets the number of threads to use for encoding/decoding the members of
+   * ensembles (1 = sequential, 0 = all available processors).
+   *
+   * @param value the number of threads
+   */
+  public void setNumExecutionSlots(int value) {
+    m_NumExecutionSlots = value;
+  }
+
+  /**
+   * Returns the number of threads to use for encoding/decoding the members of
+   * ensembles.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Adds the interface or class of ensemble members whose arrays get encoded
+   * and decoded in parallel.
+   *
+   * @param classname the classname of the array's component type
+   */
+  public void addMemberType(String classname) {
+    m_MemberTypes.add(classname);
+  }
+
+  /**
+   * Returns the number of threads that are actually used.
+   *
+   * @return the number of threads
+   */
+  protected int numThreads() {
+    if (m_NumExecutionSlots == 0) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return Math.max(1, m_NumExecutionSlots);
+  }
+
+  /**
+   * Returns whether arrays of the given class are ensembles whose members get
+   * encoded separately (and in parallel).
+   *
+   * @param c the class of the array
+   * @return true if to encode the members separately
+   */
+  protected boolean isMemberArray(Class<?> c) {
+    return (numThreads() > 1) && !c.getComponentType().isPrimitive()
+      && m_MemberTypes.contains(c.getComponentType().getName());
+  }
+
+  /**
+   * Serializes the given object to the specified stream, which gets closed
+   * afterwards.
+   *
+   * @param stream the stream to write the object to
+   * @param o the object to serialize
+   * @throws Exception if serialization fails
+   */
+  public void serialize(OutputStream stream, Object o) throws Exception {
+    Deflater deflater = null;
+    ObjectOutputStream oos = null;
+
+    if (!(stream instanceof BufferedOutputStream)) {
+      stream = new BufferedOutputStream(stream);
+    }
+
+    try {
+      stream.write(MAGIC);
+      stream.write(VERSION);
+      stream.write(m_Compress ? FLAG_COMPRESSED : 0);
+      if (m_Compress) {
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        stream = new DeflaterOutputStream(stream, deflater, BLOCK_SIZE);
+      }
+      oos = new CodecOutputStream(stream, this);
+      oos.writeObject(o);
+      oos.flush();
+    } finally {
+      if (oos != null) {
+        oos.close();
+      } else {
+        stream.close();
+      }
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+
+  /**
+   * Deserializes from the given stream, which gets closed afterwards, and
+   * returns the object from it.
+   *
+   * @param stream the stream to deserialize from
+   * @return the deserialized object
+   * @throws Exception if deserialization fails
+   */
+  public Object deserialize(InputStream stream) throws Exception {
+    Inflater inflater = null;
+    ObjectInputStream ois = null;
+    Object result;
+
+    if (!(stream instanceof BufferedInputStream)) {
+      stream = new BufferedInputStream(stream);
+    }
+
+    try {
+      byte[] header = new byte[MAGIC.length + 2];
+      int read = 0;
+      while (read < header.length) {
+        int n = stream.read(header, read, header.length - read);
+        if (n == -1) {
+          throw new IOException("Premature end of stream");
+        }
+        read += n;
+      }
+      for (int i = 0; i < MAGIC.length; i++) {
+        if (header[i] != MAGIC[i]) {
+          throw new IOException("Not a model persistence stream");
+        }
+      }
+      if (header[MAGIC.length] > VERSION) {
+        throw new IOException("Unsupported version: " + header[MAGIC.length]);
+      }
+      if ((header[MAGIC.length + 1] & FLAG_COMPRESSED) != 0) {
+        inflater = new Inflater();
+        stream = new InflaterInputStream(stream, inflater, BLOCK_SIZE);
+      }
+      ois = SerializationHelper.getObjectInputStream(stream);
+      READER.set(this);
+      result = ois.readObject();
+    } finally {
+      READER.remove();
+      if (ois != null) {
+        ois.close();
+      } else {
+        stream.close();
+      }
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks whether the given stream is in this format, without consuming any
+   * data.
+   *
+   * @param stream the stream to check, must support mark/reset
+   * @return true if the stream is in this format
+   * @throws IOException if reading from the stream fails
+   */
+  public static boolean isModelPersistenceStream(InputStream stream)
+    throws IOException {
+    byte[] header = new byte[MAGIC.length];
+    int read = 0;
+
+    stream.mark(header.length);
+    try {
+      while (read < header.length) {
+        int n = stream.read(header, read, header.length - read);
+        if (n == -1) {
+          return false;
+        }
+        read += n;
+      }
+    } finally {
+      stream.reset();
+    }
+
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (header[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Serializes the given object to the specified file, using the default
+   * settings.
+   *
+   * @param filename the file to write the object to
+   * @param o the object to serialize
+   * @throws Exception if serialization fails
+   */
+  public static void write(String filename, Object o) throws Exception {
+    write(new FileOutputStream(filename), o);
+  }
+
+  /**
+   * Serializes the given object to the specified stream, using the default
+   * settings.
+   *
+   * @param stream the stream to write the object to
+   * @param o the object to serialize
+   * @throws Exception if serialization fails
+   */
+  public static void write(OutputStream stream, Object o) throws Exception {
+    new ModelPersistence().serialize(stream, o);
+  }
+
+  /**
+   * Deserializes the given file and returns the object from it.
+   *
+   * @param filename the file to deserialize from
+   * @return the deserialized object
+   * @throws Exception if deserialization fails
+   */
+  public static Object read(String filename) throws Exception {
+    return read(new FileInputStream(filename));
+  }
+
+  /**
+   * Deserializes from the given stream and returns the object from it.
+   *
+   * @param stream the stream to deserialize from
+   * @return the deserialized object
+   * @throws Exception if deserialization fails
+   */
+  public static Object read(InputStream stream) throws Exception {
+    return new ModelPersistence().deserialize(stream);
+  }
+
+  /**
+   * Loads the codecs registered with the PluginManager, if not done yet.
+   */
+  protected static synchronized void loadCodecs() {
+    if (CODECS != null) {
+      return;
+    }
+
+    Map<Class<?>, ObjectCodec<?>> codecs =
+      new HashMap<Class<?>, ObjectCodec<?>>();
+    String type = ObjectCodec.class.getName();
+    Set<String> names = PluginManager.getPluginNamesOfType(type);
+    if (names != null) {
+      for (String name : names) {
+        try {
+          ObjectCodec<?> codec =
+            (ObjectCodec<?>) PluginManager.getPluginInstance(type, name);
+          if (codec != null) {
+            codecs.put(codec.getType(), codec);
+          }
+        } catch (Exception e) {
+          System.err.println("Failed to instantiate codec '" + name + "': "
+            + e);
+        }
+      }
+    }
+    CODECS = codecs;
+  }
+
+  /**
+   * Registers the given codec, replacing any codec for the same class.
+   *
+   * @param codec the codec to add
+   */
+  public static synchronized void registerCodec(ObjectCodec<?> codec) {
+    loadCodecs();
+    Map<Class<?>, ObjectCodec<?>> codecs =
+      new HashMap<Class<?>, ObjectCodec<?>>(CODECS);
+    codecs.put(codec.getType(), codec);
+    CODECS = codecs;
+  }
+
+  /**
+   * Returns the codec for the given class.
+   *
+   * @param c the class to get the codec for
+   * @return the codec, null if none registered
+   */
+  public static ObjectCodec<?> getCodec(Class<?> c) {
+    if (CODECS == null) {
+      loadCodecs();
+    }
+    return CODECS.get(c);
+  }
+
+  /**
+   * Writes the given array (which may be null).
+   *
+   * @param out the output to write to
+   * @param values the array to write
+   * @throws IOException if writing fails
+   */
+  public static void writeDoubles(ObjectOutput out, double[] values)
+    throws IOException {
+    if (values == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(values.length);
+    for (double value : values) {
+      out.writeDouble(value);
+    }
+  }
+
+  /**
+   * Reads an array written by <code>writeDoubles</code>.
+   *
+   * @param in the input to read from
+   * @return the array, may be null
+   * @throws IOException if reading fails
+   */
+  public static double[] readDoubles(ObjectInput in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) {
+      return null;
+    }
+    double[] result = new double[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = in.readDouble();
+    }
+    return result;
+  }
+
+  /**
+   * Writes the given array (which may be null).
+   *
+   * @param out the output to write to
+   * @param values the array to write
+   * @throws IOException if writing fails
+   */
+  public static void writeInts(ObjectOutput out, int[] values)
+    throws IOException {
+    if (values == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  /**
+   * Reads an array written by <code>writeInts</code>.
+   *
+   * @param in the input to read from
+   * @return the array, may be null
+   * @throws IOException if reading fails
+   */
+  public static int[] readInts(ObjectInput in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) {
+      return null;
+    }
+    int[] result = new int[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = in.readInt();
+    }
+    return result;
+  }
+
+  /**
+   * Runs the given tasks, using the specified number of threads, and returns
+   * their results in order.
+   *
+   * @param tasks the tasks to run
+   * @param numThreads the number of threads
+   * @return the results
+   * @throws IOException if a task fails
+   */
+  protected static <V> List<V> execute(List<Callable<V>> tasks, int numThreads)
+    throws IOException {
+    List<V> result = new ArrayList<V>(tasks.size());
+
+    try {
+      if (numThreads <= 1 || tasks.size() <= 1) {
+        for (Callable<V> task : tasks) {
+          result.add(task.call());
+        }
+        return result;
+      }
+
+      ExecutorService pool =
+        Executors.newFixedThreadPool(Math.min(numThreads, tasks.size()),
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, "ModelPersistence");
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      try {
+        LinkedList<Future<V>> futures = new LinkedList<Future<V>>();
+        for (Callable<V> task : tasks) {
+          futures.add(pool.submit(task));
+        }
+        while (!futures.isEmpty()) {
+          result.add(futures.removeFirst().get());
+        }
+      } finally {
+        pool.shutdownNow();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Object output stream that replaces objects with a codec and ensembles by
+   * their encoded form.
+   */
+  protected static class CodecOutputStream extends ObjectOutputStream {
+
+    /** the settings, null for not encoding ensemble members separately. */
+    protected ModelPersistence m_Owner;
+
+    /**
+     * Initializes the stream.
+     *
+     * @param out the stream to write to
+     * @param owner the settings, null to not encode ensemble members
+     *          separately
+     * @throws IOException if writing the stream header fails
+     */
+    protected CodecOutputStream(OutputStream out, ModelPersistence owner)
+      throws IOException {
+      super(out);
+      m_Owner = owner;
+      enableReplaceObject(true);
+    }
+
+    /**
+     * Replaces objects with a codec and ensembles.
+     *
+     * @param obj the object to write
+     * @return the object to write instead
+     */
+    @Override
+    protected Object replaceObject(Object obj) {
+      Class<?> c = obj.getClass();
+      if (c.isArray()) {
+        if ((m_Owner != null) && m_Owner.isMemberArray(c)
+          && (((Object[]) obj).length > 1)) {
+          return new Members(m_Owner, (Object[]) obj);
+        }
+        return obj;
+      }
+
+      ObjectCodec<?> codec = getCodec(c);
+      if (codec != null) {
+        return new Encoded(codec, obj);
+      }
+      return obj;
+    }
+  }
+
+  /**
+   * Stands in for an object that is written by its codec.
+   */
+  public static class Encoded implements Externalizable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = 5148390256217413982L;
+
+    /** the codec. */
+    protected transient ObjectCodec<Object> m_Codec;
+
+    /** the object. */
+    protected transient Object m_Object;
+
+    /**
+     * For deserialization only.
+     */
+    public Encoded() {
+    }
+
+    /**
+     * Initializes the object.
+     *
+     * @param codec the codec to use
+     * @param object the object to encode
+     */
+    @SuppressWarnings("unchecked")
+    protected Encoded(ObjectCodec<?> codec, Object object) {
+      m_Codec = (ObjectCodec<Object>) codec;
+      m_Object = object;
+    }
+
+    /**
+     * Writes the class of the object, followed by the encoded object.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+      out.writeObject(m_Codec.getType());
+      m_Codec.write(m_Object, out);
+    }
+
+    /**
+     * Reads the class of the object and decodes it.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a class is not available
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException,
+      ClassNotFoundException {
+      Class<?> type = (Class<?>) in.readObject();
+      ObjectCodec<?> codec = getCodec(type);
+      if (codec == null) {
+        throw new InvalidClassException(type.getName(), "No codec available");
+      }
+      m_Object = codec.read(in);
+    }
+
+    /**
+     * Returns the decoded object.
+     *
+     * @return the object
+     * @throws ObjectStreamException never
+     */
+    protected Object readResolve() throws ObjectStreamException {
+      return m_Object;
+    }
+  }
+
+  /**
+   * Stands in for an array of ensemble members, which get encoded
+   * separately and in parallel.
+   */
+  public static class Members implements Externalizable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = -2086914772535237146L;
+
+    /** the settings. */
+    protected transient ModelPersistence m_Owner;
+
+    /** the members. */
+    protected transient Object[] m_Members;
+
+    /**
+     * For deserialization only.
+     */
+    public Members() {
+    }
+
+    /**
+     * Initializes the object.
+     *
+     * @param owner the settings
+     * @param members the members to encode
+     */
+    protected Members(ModelPersistence owner, Object[] members) {
+      m_Owner = owner;
+      m_Members = members;
+    }
+
+    /**
+     * Writes the component type of the array, followed by the encoded
+     * members.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+      List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>();
+      for (final Object member : m_Members) {
+        tasks.add(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws Exception {
+            if (member == null) {
+              return null;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new CodecOutputStream(bytes, null);
+            oos.writeObject(member);
+            oos.close();
+            return bytes.toByteArray();
+          }
+        });
+      }
+
+      out.writeObject(m_Members.getClass().getComponentType());
+      out.writeInt(m_Members.length);
+      for (byte[] encoded : execute(tasks, m_Owner.numThreads())) {
+        if (encoded == null) {
+          out.writeInt(-1);
+        } else {
+          out.writeInt(encoded.length);
+          out.write(encoded);
+        }
+      }
+    }
+
+    /**
+     * Reads the component type of the array and decodes the members.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a class is not available
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException,
+      ClassNotFoundException {
+      Class<?> type = (Class<?>) in.readObject();
+      int length = in.readInt();
+
+      List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+      for (int i = 0; i < length; i++) {
+        int size = in.readInt();
+        if (size == -1) {
+          tasks.add(new Callable<Object>() {
+            @Override
+            public Object call() {
+              return null;
+            }
+          });
+          continue;
+        }
+        final byte[] encoded = new byte[size];
+        in.readFully(encoded);
+        tasks.add(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            ObjectInputStream ois =
+              SerializationHelper
+                .getObjectInputStream(new ByteArrayInputStream(encoded));
+            Object result = ois.readObject();
+            ois.close();
+            return result;
+          }
+        });
+      }
+
+      ModelPersistence reader = READER.get();
+      List<Object> members =
+        execute(tasks, (reader == null) ? 1 : reader.numThreads());
+      m_Members = (Object[]) Array.newInstance(type, length);
+      for (int i = 0; i < length; i++) {
+        m_Members[i] = members.get(i);
+      }
+    }
+
+    /**
+     * Returns the decoded array.
+     *
+     * @return the array
+     * @throws ObjectStreamException never
+     */
+    protected Object readResolve() throws ObjectStreamException {
+      return m_Members;
+    }
+  }
+
+  /**
+   * Codec for datasets. The value arrays are written as objects, since copies
+   * of instances share them. Instances of classes other than DenseInstance and
+   * SparseInstance are serialized as usual. All instances are attached to the
+   * decoded dataset.
+   */
+  public static class InstancesCodec implements ObjectCodec<Instances> {
+
+    /** marks a DenseInstance. */
+    protected static final int DENSE = 0;
+
+    /** marks a SparseInstance. */
+    protected static final int SPARSE = 1;
+
+    /** marks any other instance. */
+    protected static final int OTHER = 2;
+
+    /**
+     * Returns the class of the objects this codec handles.
+     *
+     * @return the class
+     */
+    @Override
+    public Class<Instances> getType() {
+      return Instances.class;
+    }
+
+    /**
+     * Writes the given dataset.
+     *
+     * @param data the dataset to write
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void write(Instances data, ObjectOutput out) throws IOException {
+      out.writeObject(data.m_RelationName);
+      out.writeObject(data.m_Attributes);
+      out.writeObject(data.m_NamesToAttributeIndices);
+      out.writeInt(data.m_ClassIndex);
+      out.writeInt(data.m_Lines);
+      out.writeInt(data.m_Instances.size());
+      for (Instance inst : data.m_Instances) {
+        if (inst.getClass() == DenseInstance.class) {
+          out.writeByte(DENSE);
+          out.writeDouble(inst.weight());
+          out.writeObject(((DenseInstance) inst).m_AttValues);
+        } else if (inst.getClass() == SparseInstance.class) {
+          out.writeByte(SPARSE);
+          out.writeDouble(inst.weight());
+          out.writeInt(((SparseInstance) inst).m_NumAttributes);
+          out.writeObject(((SparseInstance) inst).m_Indices);
+          out.writeObject(((SparseInstance) inst).m_AttValues);
+        } else {
+          Instance copy = (Instance) inst.copy();
+          copy.setDataset(null);
+          out.writeByte(OTHER);
+          out.writeObject(copy);
+        }
+      }
+    }
+
+    /**
+     * Reads a dataset.
+     *
+     * @param in the input to read from
+     * @return the dataset
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a class is not available
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Instances read(ObjectInput in) throws IOException,
+      ClassNotFoundException {
+      String name = (String) in.readObject();
+      ArrayList<Attribute> atts = (ArrayList<Attribute>) in.readObject();
+      HashMap<String, Integer> names = (HashMap<String, Integer>) in.readObject();
+      int classIndex = in.readInt();
+      int lines = in.readInt();
+      int numInstances = in.readInt();
+
+      // the attributes already have their indices set
+      Instances result =
+        new Instances(name, new ArrayList<Attribute>(), numInstances);
+      result.m_Attributes = atts;
+      result.m_NamesToAttributeIndices = names;
+      result.m_ClassIndex = classIndex;
+      result.m_Lines = lines;
+
+      for (int i = 0; i < numInstances; i++) {
+        Instance inst;
+        int type = in.readByte();
+        if (type == DENSE) {
+          double weight = in.readDouble();
+          inst = new DenseInstance(weight, (double[]) in.readObject());
+        } else if (type == SPARSE) {
+          SparseInstance sparse = new SparseInstance(0);
+          sparse.m_Weight = in.readDouble();
+          sparse.m_NumAttributes = in.readInt();
+          sparse.m_Indices = (int[]) in.readObject();
+          sparse.m_AttValues = (double[]) in.readObject();
+          inst = sparse;
+        } else if (type == OTHER) {
+          inst = (Instance) in.readObject();
+        } else {
+          throw new IOException("Unknown instance type: " + type);
+        }
+        inst.setDataset(result);
+        result.m_Instances.add(inst);
+      }
+
+      return result;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ObjectCodec.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Interface for classes that write objects of a specific class in a compact
+ * binary form, used by ModelPersistence instead of default Java
+ * serialization. A codec is only used for objects whose class is exactly the
+ * one returned by <code>getType()</code>. Referenced objects can be written
+ * with <code>writeObject</code>, in which case they are subject to the codecs
+ * as well; objects encoded by a codec must not be referenced by the objects
+ * they reference, i.e., there must be no cycles through them.
+ * <p/>
+ * Codecs are discovered via the PluginManager, using this interface's
+ * classname as type. Implementations need a public no-argument constructor
+ * and must be thread-safe.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @param <T> the type of object handled
+ * @see ModelPersistence
+ */
+public interface ObjectCodec<T> {
+
+  /**
+   * Returns the class of the objects this codec handles.
+   *
+   * @return the class
+   */
+  Class<T> getType();
+
+  /**
+   * Writes the given object.
+   *
+   * @param object the object to write
+   * @param out the output to write to
+   * @throws IOException if writing fails
+   */
+  void write(T object, ObjectOutput out) throws IOException;
+
+  /**
+   * Reads an object, as written by <code>write</code>.
+   *
+   * @param in the input to read from
+   * @return the object
+   * @throws IOException if reading fails
+   * @throws ClassNotFoundException if a referenced class is not available
+   */
+  T read(ObjectInput in) throws IOException, ClassNotFoundException;
+}
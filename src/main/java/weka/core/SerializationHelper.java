@@ -264,16 +264,25 @@ public class SerializationHelper implements RevisionHandler {
   }
 
   /**
-   * deserializes from the given stream and returns the object from it.
+   * deserializes from the given stream and returns the object from it. Streams
+   * written by ModelPersistence are recognized and read accordingly.
    * 
    * @param stream the stream to deserialize from
    * @return the deserialized object
    * @throws Exception if deserialization fails
+   * @see ModelPersistence
    */
   public static Object read(InputStream stream) throws Exception {
     ObjectInputStream ois;
     Object result;
 
+    if (!(stream instanceof BufferedInputStream)) {
+      stream = new BufferedInputStream(stream);
+    }
+    if (ModelPersistence.isModelPersistenceStream(stream)) {
+      return ModelPersistence.read(stream);
+    }
+
     ois = getObjectInputStream(stream);
     result = ois.readObject();
     ois.close();
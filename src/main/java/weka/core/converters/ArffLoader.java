@@ -23,6 +23,7 @@ package weka.core.converters;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -32,7 +33,14 @@ import java.io.StringReader;
 import java.net.URL;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.DenseInstance;
@@ -79,6 +87,15 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
    */
   protected boolean m_retainStringVals;
 
+  /**
+   * The number of execution slots (threads) to use for parsing the data
+   * section in batch mode (1 = sequential, 0 = all available processors)
+   */
+  protected int m_numExecutionSlots = 1;
+
+  /** The size (in characters) of the chunks handed to the parsing threads */
+  protected int m_chunkSize = 4 * 1024 * 1024;
+
   /**
    * Reads data from an ARFF file, either in incremental or batch mode.
    * <p/>
@@ -1055,6 +1072,53 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     }
   }
 
+  /**
+   * A reader that remembers the last character read. The parallel parse uses
+   * it to tell whether the header ended in the middle of a \r\n pair, as the
+   * tokenizer consumes the \r only.
+   */
+  protected static class LastCharReader extends FilterReader {
+
+    /** the last character read, -1 if none */
+    protected int m_Last = -1;
+
+    /**
+     * Initializes the reader.
+     * 
+     * @param in the reader to read from
+     */
+    public LastCharReader(Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int c = super.read();
+      if (c >= 0) {
+        m_Last = c;
+      }
+      return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int n = super.read(cbuf, off, len);
+      if (n > 0) {
+        m_Last = cbuf[off + n - 1];
+      }
+      return n;
+    }
+
+    /**
+     * Returns the last character read.
+     * 
+     * @return the character, -1 if none has been read yet
+     */
+    public int getLast() {
+      return m_Last;
+    }
+  }
+
   /**
    * Returns a string describing this Loader
    * 
@@ -1100,6 +1164,67 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     return m_retainStringVals;
   }
 
+  /**
+   * Tool tip text for this property
+   * 
+   * @return the tool tip for this property
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for parsing the "
+      + "data section when loading in batch mode. 1 parses sequentially, "
+      + "0 uses all available processors.";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use for parsing the data
+   * section when loading in batch mode.
+   * 
+   * @param numSlots the number of slots to use (0 = all processors)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use for parsing the data
+   * section when loading in batch mode.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Tool tip text for this property
+   * 
+   * @return the tool tip for this property
+   */
+  public String chunkSizeTipText() {
+    return "The approximate size (in characters) of the blocks of data lines "
+      + "handed to each thread when parsing in parallel.";
+  }
+
+  /**
+   * Set the approximate size (in characters) of the blocks of data lines that
+   * are parsed by each thread.
+   * 
+   * @param size the chunk size
+   */
+  public void setChunkSize(int size) {
+    m_chunkSize = size;
+  }
+
+  /**
+   * Get the approximate size (in characters) of the blocks of data lines that
+   * are parsed by each thread.
+   * 
+   * @return the chunk size
+   */
+  public int getChunkSize() {
+    return m_chunkSize;
+  }
+
   /**
    * Get the file extension used for arff files
    * 
@@ -1223,7 +1348,8 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     m_File = (new File(System.getProperty("user.dir"))).getAbsolutePath();
     m_URL = "http://";
 
-    m_sourceReader = new BufferedReader(new InputStreamReader(in));
+    m_sourceReader =
+      new LastCharReader(new BufferedReader(new InputStreamReader(in)));
   }
 
   /**
@@ -1282,9 +1408,13 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
 
       // Read all instances
       insts = new Instances(m_structure, 0);
-      Instance inst;
-      while ((inst = m_ArffReader.readInstance(m_structure)) != null) {
-        insts.add(inst);
+      if (canReadInParallel()) {
+        readDataParallel(insts);
+      } else {
+        Instance inst;
+        while ((inst = m_ArffReader.readInstance(m_structure)) != null) {
+          insts.add(inst);
+        }
       }
 
       // Instances readIn = new Instances(m_structure);
@@ -1299,6 +1429,275 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     return insts;
   }
 
+  /**
+   * Returns whether the data section can be parsed in parallel. This is the
+   * case if more than one execution slot has been requested and the values of
+   * any string attributes are retained (i.e. chunks can be merged by value).
+   * 
+   * @return true if the data can be read in parallel
+   */
+  protected boolean canReadInParallel() {
+    if (m_numExecutionSlots == 1 || m_numExecutionSlots < 0
+      || m_chunkSize <= 0) {
+      return false;
+    }
+
+    return m_ArffReader.m_batchMode || m_ArffReader.getRetainStringValues()
+      || !m_structure.checkForStringAttributes();
+  }
+
+  /**
+   * Reads the data section in parallel. The remaining input is split into
+   * blocks of whole lines which are tokenized and parsed concurrently by
+   * independent ArffReaders, each working on its own copy of the header. The
+   * parsed blocks are appended to the supplied dataset in file order, with the
+   * values of string and relational attributes being re-indexed against the
+   * dataset's header, so that the result is the same as a sequential read.
+   * 
+   * @param insts the dataset to add the instances to
+   * @throws IOException if reading or parsing fails
+   */
+  protected void readDataParallel(Instances insts) throws IOException {
+    int numSlots =
+      (m_numExecutionSlots == 0) ? Runtime.getRuntime().availableProcessors()
+        : m_numExecutionSlots;
+    final String header = new Instances(m_structure, 0).toString();
+    final boolean batch = m_ArffReader.m_batchMode;
+    final boolean retain = m_ArffReader.getRetainStringValues();
+
+    ExecutorService pool = Executors.newFixedThreadPool(numSlots);
+    LinkedList<Future<List<Instance>>> pending =
+      new LinkedList<Future<List<Instance>>>();
+    try {
+      char[] buffer = new char[m_chunkSize];
+      int filled = 0;
+      int line = m_ArffReader.getLineNo() + 1;
+      if ((m_sourceReader instanceof LastCharReader)
+        && (((LastCharReader) m_sourceReader).getLast() == '\r')) {
+        // skip the \n of a \r\n pair ending the header
+        int c = m_sourceReader.read();
+        if ((c >= 0) && (c != '\n')) {
+          buffer[filled++] = (char) c;
+        }
+      }
+      boolean eof = false;
+      while (!eof) {
+        int read = m_sourceReader.read(buffer, filled, buffer.length - filled);
+        int end;
+        if (read < 0) {
+          eof = true;
+          end = filled;
+        } else {
+          filled += read;
+          end = lineBlockEnd(buffer, filled);
+          if (end == 0) {
+            // no complete line in the buffer yet
+            if (filled == buffer.length) {
+              buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            continue;
+          }
+        }
+        if (end == 0) {
+          break;
+        }
+
+        final String chunk = new String(buffer, 0, end);
+        final int startLine = line;
+        pending.add(pool.submit(new Callable<List<Instance>>() {
+          @Override
+          public List<Instance> call() throws Exception {
+            return parseChunk(header, chunk, startLine, batch, retain);
+          }
+        }));
+        line += countLines(buffer, end);
+        filled -= end;
+        System.arraycopy(buffer, end, buffer, 0, filled);
+
+        // limit the number of parsed blocks held in memory
+        while (pending.size() > 2 * numSlots) {
+          addChunk(insts, pending.removeFirst());
+        }
+      }
+
+      while (pending.size() > 0) {
+        addChunk(insts, pending.removeFirst());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Parses a block of data lines using the given header.
+   * 
+   * @param header the header in ARFF format
+   * @param chunk the lines to parse
+   * @param startLine the line number of the first line in the block
+   * @param batch whether the reader operates in batch mode
+   * @param retain whether string values are retained
+   * @return the instances, referencing a private copy of the header
+   * @throws IOException if parsing fails
+   */
+  protected static List<Instance> parseChunk(String header, String chunk,
+    int startLine, boolean batch, boolean retain) throws IOException {
+    Instances structure = new Instances(new StringReader(header));
+
+    // occupy index 0 of string and relational attributes, so that parsed
+    // values are never confused with the implicit 0 of sparse instances
+    String placeholder = null;
+    for (int i = 0; i < structure.numAttributes(); i++) {
+      Attribute att = structure.attribute(i);
+      if (att.isString()) {
+        if (placeholder == null) {
+          placeholder = String.valueOf(unusedCharacter(chunk));
+        }
+        att.addStringValue(placeholder);
+      } else if (att.isRelationValued()) {
+        att.addRelation(new Instances(att.relation(), 0));
+      }
+    }
+
+    ArffReader reader =
+      new ArffReader(new StringReader(chunk), structure, startLine, 0, batch);
+    reader.setRetainStringValues(retain);
+
+    List<Instance> result = new ArrayList<Instance>();
+    Instance inst;
+    while ((inst = reader.readInstance(structure)) != null) {
+      result.add(inst);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a character that does not occur in the given text. Since the
+   * tokenizer's escape sequences only produce characters up to 0xFF, the
+   * returned character can never be part of a token parsed from the text.
+   * 
+   * @param text the text to check
+   * @return a character not present in the text
+   */
+  protected static char unusedCharacter(String text) {
+    char result = '\uE000';
+    while (text.indexOf(result) > -1) {
+      result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Waits for a parsed block and appends its instances to the dataset.
+   * 
+   * @param insts the dataset to add to
+   * @param chunk the pending block
+   * @throws IOException if parsing of the block failed
+   */
+  protected void addChunk(Instances insts, Future<List<Instance>> chunk)
+    throws IOException {
+    List<Instance> parsed;
+    try {
+      parsed = chunk.get();
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().toString());
+    }
+
+    boolean reindex =
+      insts.checkForStringAttributes()
+        || insts.checkForAttributeType(Attribute.RELATIONAL);
+    for (Instance inst : parsed) {
+      if (reindex) {
+        inst = reindexValues(insts, inst);
+      }
+      insts.add(inst);
+    }
+  }
+
+  /**
+   * Maps the values of string and relational attributes of an instance parsed
+   * against a private copy of the header onto the given dataset's header.
+   * 
+   * @param insts the dataset whose header receives the values
+   * @param inst the parsed instance
+   * @return the instance with re-indexed values
+   */
+  protected static Instance reindexValues(Instances insts, Instance inst) {
+    Instances source = inst.dataset();
+    int numValues = inst.numValues();
+    double[] values = new double[numValues];
+    int[] indices = new int[numValues];
+    for (int i = 0; i < numValues; i++) {
+      int index = inst.index(i);
+      double value = inst.valueSparse(i);
+      Attribute att = insts.attribute(index);
+      if (!Utils.isMissingValue(value) && (value != 0)) {
+        if (att.isString()) {
+          value =
+            att.addStringValue(source.attribute(index).value((int) value));
+        } else if (att.isRelationValued()) {
+          value = att.addRelation(source.attribute(index).relation((int) value));
+        }
+      }
+      values[i] = value;
+      indices[i] = index;
+    }
+
+    if (inst instanceof SparseInstance) {
+      return new SparseInstance(inst.weight(), values, indices,
+        inst.numAttributes());
+    }
+    return new DenseInstance(inst.weight(), values);
+  }
+
+  /**
+   * Determines the end of the last complete line in the buffer. A \r at the
+   * very end of the buffer does not count as a line terminator yet, as it may
+   * be the first half of a \r\n pair.
+   * 
+   * @param buffer the character buffer
+   * @param length the number of valid characters in the buffer
+   * @return the position after the last line terminator, 0 if none
+   */
+  protected static int lineBlockEnd(char[] buffer, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\n' || (buffer[i] == '\r' && i < length - 1)) {
+        return i + 1;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Counts the lines terminated in the first characters of the buffer, in the
+   * same way as the StreamTokenizer does (\n, \r or \r\n).
+   * 
+   * @param buffer the character buffer
+   * @param length the number of characters to inspect
+   * @return the number of lines
+   */
+  protected static int countLines(char[] buffer, int length) {
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      if (buffer[i] == '\n') {
+        result++;
+      } else if (buffer[i] == '\r') {
+        if (i + 1 >= length || buffer[i + 1] != '\n') {
+          result++;
+        }
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Read the data set incrementally---get the next instance in the data set or
    * returns null if there are no more instances to get. If the structure hasn't
@@ -39,6 +39,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -56,7 +57,7 @@ import weka.core.converters.ArffLoader.ArffReader;
 
 /**
  <!-- globalinfo-start -->
- * Reads a source that is in comma separated format (the default). One can also change the column separator from comma to tab or another character, specify string enclosures, specify whether aheader row is present or not and specify which attributes are to beforced to be nominal or date. Can operate in batch or incremental mode. In batch mode, a buffer is used to process a fixed number of rows in memory at any one time and the data is dumped to a temporary file. This allows the legal values for nominal attributes to be automatically determined. The final ARFF file is produced in a second pass over the temporary file using the structure determined on the first pass. In incremental mode, the first buffer full of rows is used to determine the structure automatically. Following this all rows are read and output incrementally. An error will occur if a row containing nominal values not seen in the initial buffer is encountered. In this case, the size of the initial buffer can be increased, or the user can explicitly provide the legal values of all nominal attributes using the -L (setNominalLabelSpecs) option.
+ * Reads a source that is in comma separated format (the default). One can also change the column separator from comma to tab or another character, specify string enclosures, specify whether aheader row is present or not and specify which attributes are to beforced to be nominal or date. Can operate in batch or incremental mode. In batch mode, a buffer is used to process a fixed number of rows in memory at any one time and the data is dumped to a temporary file. This allows the legal values for nominal attributes to be automatically determined. The final ARFF file is produced in a second pass over the temporary file using the structure determined on the first pass. In incremental mode, the first buffer full of rows is used to determine the structure automatically. Following this all rows are read and output incrementally. An error will occur if a row containing nominal values not seen in the initial buffer is encountered. In this case, the size of the initial buffer can be increased, or the user can explicitly provide the legal values of all nominal attributes using the -L (setNominalLabelSpecs) option. Batch mode can optionally read the data in a single pass instead: the first buffer full of rows is used as a sample to determine the structure, and the remaining rows are then parsed straight into instance values, adding legal values to nominal attributes and changing numeric attributes to string as required.
  * <p/>
  <!-- globalinfo-end -->
  * 
@@ -124,6 +125,10 @@ import weka.core.converters.ArffLoader.ArffReader;
  *  The size of the in memory buffer (in rows).
  *  (default: 100)</pre>
  * 
+ * <pre> -single-pass
+ *  Read the data in a single pass in batch mode, using the
+ *  first buffer full of rows to determine the structure.</pre>
+ * 
  <!-- options-end -->
  * 
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -186,6 +191,12 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
   /** The maximum number of rows to hold in memory at any one time */
   protected int m_bufferSize = 100;
 
+  /** Whether to read the data in a single pass in batch mode */
+  protected boolean m_singlePass = false;
+
+  /** The tokenized rows of the first buffer (single pass mode only) */
+  protected transient List<Object[]> m_sampleRows;
+
   /** Lookup for nominal values */
   protected Map<Integer, LinkedHashSet<String>> m_nominalVals;
 
@@ -243,7 +254,11 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       + "seen in the initial buffer is encountered. In this case, the size of the "
       + "initial buffer can be increased, or the user can explicitly provide the "
       + "legal values of all nominal attributes using the -L (setNominalLabelSpecs) "
-      + "option.";
+      + "option. Batch mode can optionally read the data in a single pass "
+      + "instead: the first buffer full of rows is used as a sample to determine "
+      + "the structure, and the remaining rows are then parsed straight into "
+      + "instance values, adding legal values to nominal attributes and changing "
+      + "numeric attributes to string as required.";
   }
 
   @Override
@@ -560,6 +575,41 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     return "The number of rows to process in memory at any one time.";
   }
 
+  /**
+   * Get whether to read the data in a single pass in batch mode.
+   *
+   * @return true if the data is read in a single pass
+   */
+  public boolean getSinglePass() {
+    return m_singlePass;
+  }
+
+  /**
+   * Set whether to read the data in a single pass in batch mode. The first
+   * buffer full of rows is used to determine the structure and the remaining
+   * rows are parsed straight into instances, rather than being dumped to a
+   * temporary file and read a second time.
+   *
+   * @param singlePass true to read the data in a single pass
+   */
+  public void setSinglePass(boolean singlePass) {
+    m_singlePass = singlePass;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String singlePassTipText() {
+    return "Read the data in a single pass in batch mode. The first buffer "
+      + "full of rows is used to determine the structure; nominal values not "
+      + "seen in it are added as they are read, and numeric attributes that "
+      + "turn out to contain non-numeric values are changed to string (values "
+      + "read before the change are converted back from their numeric form).";
+  }
+
   /**
    * Get label specifications for nominal attributes.
    *
@@ -666,6 +716,11 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     result.add(new Option("\tThe size of the in memory buffer (in rows).\n"
       + "\t(default: 100)", "B", 1, "-B <num>"));
 
+    result.add(new Option(
+      "\tRead the data in a single pass in batch mode, using the\n"
+        + "\tfirst buffer full of rows to determine the structure.",
+      "single-pass", 0, "-single-pass"));
+
     return result.elements();
   }
 
@@ -712,6 +767,10 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       result.add(spec);
     }
 
+    if (getSinglePass()) {
+      result.add("-single-pass");
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -777,6 +836,8 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       setEnclosureCharacters(tmpStr);
     }
 
+    setSinglePass(Utils.getFlag("single-pass", options));
+
     while (true) {
       tmpStr = Utils.getOption('L', options);
       if (tmpStr.length() == 0) {
@@ -877,6 +938,10 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       getStructure();
     }
 
+    if (m_singlePass) {
+      return readDataSinglePass();
+    }
+
     while (readData(true)) {
       ;
     }
@@ -913,6 +978,9 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       if (dump) {
         dumpRow(checked);
       }
+      if (m_sampleRows != null) {
+        m_sampleRows.add(m_current.toArray());
+      }
       m_rowBuffer.add(checked);
 
       if (m_rowBuffer.size() == m_bufferSize) {
@@ -1062,7 +1130,12 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     m_rowCount = 1;
     m_incrementalReader = null;
     m_current = new ArrayList<Object>();
-    openTempFiles();
+    if (m_singlePass) {
+      m_sampleRows = new ArrayList<Object[]>();
+    } else {
+      m_sampleRows = null;
+      openTempFiles();
+    }
 
     m_rowBuffer = new ArrayList<String>();
 
@@ -1197,12 +1270,16 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     // Prevents the first row from getting lost in the
     // case where there is no header row and we're
     // running in batch mode
-    if (m_noHeaderRow && getRetrieval() == BATCH) {
+    if (m_noHeaderRow && (getRetrieval() == BATCH || m_singlePass)) {
       StreamTokenizer tempT = new StreamTokenizer(new StringReader(firstRow));
       initTokenizer(tempT);
       tempT.ordinaryChar(m_FieldSeparator.charAt(0));
       String checked = getInstance(tempT);
-      dumpRow(checked);
+      if (m_singlePass) {
+        m_sampleRows.add(m_current.toArray());
+      } else {
+        dumpRow(checked);
+      }
     }
 
     m_st = new StreamTokenizer(m_sourceReader);
@@ -1210,10 +1287,158 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     m_st.ordinaryChar(m_FieldSeparator.charAt(0));
 
     // try and determine a more accurate structure from the first batch
-    readData(false || getRetrieval() == BATCH);
+    readData(getRetrieval() == BATCH && !m_singlePass);
     makeStructure();
   }
 
+  /**
+   * Reads the rest of the data in a single pass. The rows of the first buffer
+   * and all remaining rows are converted straight into instance values using
+   * the types inferred so far. Nominal and string values are indexed as they
+   * are encountered and, if a numeric attribute has to become a string one,
+   * the values already read for it are converted back from their numeric
+   * form.
+   *
+   * @return the data set
+   * @throws IOException if a problem occurs
+   */
+  protected Instances readDataSinglePass() throws IOException {
+    int numAtts = m_structure.numAttributes();
+    m_rowBuffer.clear();
+
+    // indexes of nominal and string values, in the order they are encountered
+    List<Map<String, Integer>> indexes = new ArrayList<Map<String, Integer>>();
+    Attribute[] dateAtts = new Attribute[numAtts];
+    for (int i = 0; i < numAtts; i++) {
+      Map<String, Integer> index = null;
+      if (m_types[i] == TYPE.NOMINAL) {
+        // legal values from the label specs come first
+        index = new LinkedHashMap<String, Integer>();
+        for (String v : m_nominalVals.get(i)) {
+          index.put(v, index.size());
+        }
+      } else if (m_types[i] == TYPE.DATE) {
+        dateAtts[i] = new Attribute(m_structure.attribute(i).name(),
+          m_dateFormat);
+      }
+      indexes.add(index);
+    }
+
+    List<double[]> rows = new ArrayList<double[]>();
+    for (Object[] row : m_sampleRows) {
+      rows.add(singlePassValues(row, indexes, dateAtts));
+    }
+    m_sampleRows = null;
+
+    TYPE[] previous = m_types.clone();
+    while (getInstance(m_st) != null) {
+      for (int i = 0; i < numAtts; i++) {
+        if (previous[i] == TYPE.NUMERIC && m_types[i] == TYPE.STRING) {
+          Map<String, Integer> index = new LinkedHashMap<String, Integer>();
+          indexes.set(i, index);
+          for (double[] vals : rows) {
+            if (!Utils.isMissingValue(vals[i])) {
+              vals[i] = indexOf(index, numberToString(vals[i]));
+            }
+          }
+        }
+        previous[i] = m_types[i];
+      }
+      rows.add(singlePassValues(m_current.toArray(), indexes, dateAtts));
+    }
+
+    makeStructure();
+    for (int i = 0; i < numAtts; i++) {
+      if (m_types[i] == TYPE.STRING && indexes.get(i) != null) {
+        for (String v : indexes.get(i).keySet()) {
+          m_structure.attribute(i).addStringValue(v);
+        }
+      }
+    }
+
+    Instances result = new Instances(m_structure, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      result.add(new DenseInstance(1.0, rows.get(i)));
+      rows.set(i, null);
+    }
+
+    return result;
+  }
+
+  /**
+   * Converts the values of a tokenized row into instance values.
+   *
+   * @param row the tokenized row
+   * @param indexes the indexes of nominal and string values
+   * @param dateAtts the attributes used to parse date values
+   * @return the instance values
+   * @throws IOException if a date value can't be parsed
+   */
+  private double[] singlePassValues(Object[] row,
+    List<Map<String, Integer>> indexes, Attribute[] dateAtts)
+    throws IOException {
+
+    double[] vals = new double[row.length];
+    for (int i = 0; i < row.length; i++) {
+      String val = row[i].toString();
+      if (val.equals("?")) {
+        vals[i] = Utils.missingValue();
+      } else if (m_types[i] == TYPE.NUMERIC) {
+        vals[i] = Double.parseDouble(val);
+      } else if (m_types[i] == TYPE.DATE) {
+        String dateVal = Utils.unquote(val);
+        try {
+          vals[i] = dateAtts[i].parseDate(dateVal);
+        } catch (ParseException e) {
+          throw new IOException("Unable to parse date value " + dateVal
+            + " using date format " + m_dateFormat + " for date attribute "
+            + dateAtts[i].name() + " (line: " + m_rowCount + ")");
+        }
+      } else {
+        Map<String, Integer> index = indexes.get(i);
+        if (index == null) {
+          index = new LinkedHashMap<String, Integer>();
+          indexes.set(i, index);
+        }
+        vals[i] = indexOf(index, Utils.unquote(val));
+      }
+    }
+
+    return vals;
+  }
+
+  /**
+   * Returns the index of a value, adding it if it hasn't been seen before.
+   *
+   * @param index the index of values seen so far
+   * @param value the value
+   * @return the index of the value
+   */
+  private static int indexOf(Map<String, Integer> index, String value) {
+    Integer result = index.get(value);
+    if (result == null) {
+      result = index.size();
+      index.put(value, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Converts a numeric value back to a string, without a fractional part for
+   * whole numbers.
+   *
+   * @param value the value
+   * @return the value as a string
+   */
+  private static String numberToString(double value) {
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+
+    return Double.toString(value);
+  }
+
   protected void openTempFiles() throws IOException {
     String tempPrefix = "" + Math.random() + "arffOut";
     m_tempFile = File.createTempFile(tempPrefix, null);
@@ -0,0 +1,431 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ColumnarInstancesFormat.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import weka.core.Attribute;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Constants and helper methods for the binary columnar instances format read
+ * by ColumnarInstancesLoader and written by ColumnarInstancesSaver.
+ * <p/>
+ *
+ * A file consists of the following parts (all numbers big-endian):
+ *
+ * <pre>
+ * int     magic number
+ * int     format version
+ * string  header in ARFF format (without data)
+ * int     class index
+ * int     number of rows per block
+ * blocks  sequence of blocks, terminated by a row count of -1
+ * index   int number of blocks, then per block: long offset, int rows
+ * long    offset of the block terminator (i.e. the end of the last block)
+ * int     magic number
+ * </pre>
+ *
+ * Each block starts with its number of rows, followed by a chunk with the
+ * instance weights, a chunk flagging sparse rows and one chunk per attribute.
+ * A chunk is made up of an encoding byte, a compression byte, the raw and the
+ * stored length (ints) and the stored bytes. Since every chunk is length
+ * prefixed, unwanted columns can be skipped without being decoded.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @see ColumnarInstancesLoader
+ * @see ColumnarInstancesSaver
+ */
+public class ColumnarInstancesFormat implements RevisionHandler {
+
+  /** the file extension. */
+  public static String FILE_EXTENSION = ".bci";
+
+  /** the magic number at the start and end of a file ("WBCI"). */
+  public final static int MAGIC = 0x57424349;
+
+  /** the current version of the format. */
+  public final static int VERSION = 1;
+
+  /** the row count marking the end of the blocks. */
+  public final static int END_OF_BLOCKS = -1;
+
+  /** the size of the trailer (offset of the index and magic number). */
+  public final static int TRAILER_SIZE = 12;
+
+  /** the size of the chunk header. */
+  public final static int CHUNK_HEADER_SIZE = 10;
+
+  /** chunk without content (weights all 1, rows all dense). */
+  public final static byte ENC_NONE = 0;
+
+  /** chunk with one double per row. */
+  public final static byte ENC_DOUBLE = 1;
+
+  /** chunk with row numbers and values of the non-zero doubles only. */
+  public final static byte ENC_SPARSE_DOUBLE = 2;
+
+  /** chunk with one byte code per row (-1 is missing). */
+  public final static byte ENC_BYTE = 3;
+
+  /** chunk with one short code per row (-1 is missing). */
+  public final static byte ENC_SHORT = 4;
+
+  /** chunk with one int code per row (-1 is missing). */
+  public final static byte ENC_INT = 5;
+
+  /** chunk with one length prefixed UTF-8 string per row (-1 is missing). */
+  public final static byte ENC_TEXT = 6;
+
+  /** the charset for strings. */
+  public final static Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Writes a length prefixed UTF-8 string.
+   *
+   * @param out the output to write to
+   * @param s the string to write
+   * @throws IOException if writing fails
+   */
+  public static void writeString(DataOutput out, String s) throws IOException {
+    byte[] bytes = s.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a length prefixed UTF-8 string.
+   *
+   * @param in the input to read from
+   * @return the string
+   * @throws IOException if reading fails
+   */
+  public static String readString(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  /**
+   * Returns the encoding to use for the codes of a nominal attribute.
+   *
+   * @param att the nominal attribute
+   * @return the encoding
+   */
+  public static byte codeEncoding(Attribute att) {
+    if (att.numValues() <= Byte.MAX_VALUE) {
+      return ENC_BYTE;
+    } else if (att.numValues() <= Short.MAX_VALUE) {
+      return ENC_SHORT;
+    } else {
+      return ENC_INT;
+    }
+  }
+
+  /**
+   * Encodes the first values of a numeric column, using the sparse encoding
+   * if that is smaller.
+   *
+   * @param values the values
+   * @param rows the number of rows to encode
+   * @param buffer the buffer to encode into
+   * @return the encoding
+   */
+  public static byte encodeDoubles(double[] values, int rows,
+    ByteArrayOutputStream buffer) {
+    int nonZero = 0;
+    for (int i = 0; i < rows; i++) {
+      if (values[i] != 0) {
+        nonZero++;
+      }
+    }
+
+    ByteBuffer bb;
+    byte result;
+    if (4 + nonZero * 12 < rows * 8) {
+      result = ENC_SPARSE_DOUBLE;
+      bb = ByteBuffer.allocate(4 + nonZero * 12);
+      bb.putInt(nonZero);
+      for (int i = 0; i < rows; i++) {
+        if (values[i] != 0) {
+          bb.putInt(i);
+        }
+      }
+      for (int i = 0; i < rows; i++) {
+        if (values[i] != 0) {
+          bb.putDouble(values[i]);
+        }
+      }
+    } else {
+      result = ENC_DOUBLE;
+      bb = ByteBuffer.allocate(rows * 8);
+      bb.asDoubleBuffer().put(values, 0, rows);
+    }
+    buffer.write(bb.array(), 0, bb.capacity());
+
+    return result;
+  }
+
+  /**
+   * Encodes the first values of a column of codes (e.g. nominal values) with
+   * the given encoding. Missing values are stored as -1.
+   *
+   * @param values the values
+   * @param rows the number of rows to encode
+   * @param encoding the encoding (ENC_BYTE, ENC_SHORT or ENC_INT)
+   * @param buffer the buffer to encode into
+   */
+  public static void encodeCodes(double[] values, int rows, byte encoding,
+    ByteArrayOutputStream buffer) {
+    ByteBuffer bb;
+    switch (encoding) {
+    case ENC_BYTE:
+      bb = ByteBuffer.allocate(rows);
+      for (int i = 0; i < rows; i++) {
+        bb.put((byte) code(values[i]));
+      }
+      break;
+    case ENC_SHORT:
+      bb = ByteBuffer.allocate(rows * 2);
+      for (int i = 0; i < rows; i++) {
+        bb.putShort((short) code(values[i]));
+      }
+      break;
+    default:
+      bb = ByteBuffer.allocate(rows * 4);
+      for (int i = 0; i < rows; i++) {
+        bb.putInt(code(values[i]));
+      }
+    }
+    buffer.write(bb.array(), 0, bb.capacity());
+  }
+
+  /**
+   * Turns an internal value into a code, using -1 for missing values.
+   *
+   * @param value the internal value
+   * @return the code
+   */
+  protected static int code(double value) {
+    if (Double.isNaN(value)) {
+      return -1;
+    }
+    return (int) value;
+  }
+
+  /**
+   * Encodes the first strings of a column. Missing values are stored with a
+   * length of -1.
+   *
+   * @param values the strings, null for missing
+   * @param rows the number of rows to encode
+   * @param buffer the buffer to encode into
+   */
+  public static void encodeText(String[] values, int rows,
+    ByteArrayOutputStream buffer) {
+    ByteBuffer len = ByteBuffer.allocate(4);
+    for (int i = 0; i < rows; i++) {
+      len.clear();
+      if (values[i] == null) {
+        len.putInt(-1);
+        buffer.write(len.array(), 0, 4);
+      } else {
+        byte[] bytes = values[i].getBytes(UTF8);
+        len.putInt(bytes.length);
+        buffer.write(len.array(), 0, 4);
+        buffer.write(bytes, 0, bytes.length);
+      }
+    }
+  }
+
+  /**
+   * Decodes a chunk of doubles (dense, sparse or empty).
+   *
+   * @param encoding the encoding of the chunk
+   * @param data the chunk content
+   * @param values the array to decode into
+   * @param rows the number of rows in the chunk
+   * @param empty the value to use for rows without content
+   * @throws IOException if the encoding is not supported
+   */
+  public static void decodeDoubles(byte encoding, ByteBuffer data,
+    double[] values, int rows, double empty) throws IOException {
+    switch (encoding) {
+    case ENC_NONE:
+      Arrays.fill(values, 0, rows, empty);
+      break;
+    case ENC_DOUBLE:
+      data.asDoubleBuffer().get(values, 0, rows);
+      break;
+    case ENC_SPARSE_DOUBLE:
+      Arrays.fill(values, 0, rows, 0);
+      int count = data.getInt();
+      int rowPos = data.position();
+      int valuePos = rowPos + count * 4;
+      for (int i = 0; i < count; i++) {
+        values[data.getInt(rowPos + i * 4)] = data.getDouble(valuePos + i * 8);
+      }
+      break;
+    default:
+      decodeCodes(encoding, data, values, rows);
+    }
+  }
+
+  /**
+   * Decodes a chunk of codes, turning -1 into missing values.
+   *
+   * @param encoding the encoding of the chunk
+   * @param data the chunk content
+   * @param values the array to decode into
+   * @param rows the number of rows in the chunk
+   * @throws IOException if the encoding is not supported
+   */
+  public static void decodeCodes(byte encoding, ByteBuffer data,
+    double[] values, int rows) throws IOException {
+    int code;
+    for (int i = 0; i < rows; i++) {
+      switch (encoding) {
+      case ENC_BYTE:
+        code = data.get();
+        break;
+      case ENC_SHORT:
+        code = data.getShort();
+        break;
+      case ENC_INT:
+        code = data.getInt();
+        break;
+      default:
+        throw new IOException("Unsupported chunk encoding: " + encoding);
+      }
+      values[i] = (code == -1) ? weka.core.Utils.missingValue() : code;
+    }
+  }
+
+  /**
+   * Decodes a chunk of strings.
+   *
+   * @param data the chunk content
+   * @param values the array to decode into, null for missing values
+   * @param rows the number of rows in the chunk
+   */
+  public static void decodeText(ByteBuffer data, String[] values, int rows) {
+    for (int i = 0; i < rows; i++) {
+      int len = data.getInt();
+      if (len == -1) {
+        values[i] = null;
+      } else {
+        byte[] bytes = new byte[len];
+        data.get(bytes);
+        values[i] = new String(bytes, UTF8);
+      }
+    }
+  }
+
+  /**
+   * Compresses the given bytes.
+   *
+   * @param raw the bytes to compress
+   * @param length the number of bytes
+   * @param deflater the deflater to use
+   * @return the compressed bytes, null if compression does not save space
+   */
+  public static byte[] compress(byte[] raw, int length, Deflater deflater) {
+    deflater.reset();
+    deflater.setInput(raw, 0, length);
+    deflater.finish();
+    byte[] result = new byte[length];
+    int size = 0;
+    while (!deflater.finished() && size < result.length) {
+      size += deflater.deflate(result, size, result.length - size);
+    }
+    if (!deflater.finished()) {
+      return null;
+    }
+
+    return Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Decompresses the given chunk content.
+   *
+   * @param stored the compressed bytes
+   * @param rawLength the length of the decompressed content
+   * @param inflater the inflater to use
+   * @return the decompressed content
+   * @throws IOException if the content cannot be decompressed
+   */
+  public static ByteBuffer decompress(ByteBuffer stored, int rawLength,
+    Inflater inflater) throws IOException {
+    byte[] input;
+    int offset;
+    if (stored.hasArray()) {
+      input = stored.array();
+      offset = stored.arrayOffset() + stored.position();
+    } else {
+      input = new byte[stored.remaining()];
+      stored.duplicate().get(input);
+      offset = 0;
+    }
+
+    byte[] result = new byte[rawLength];
+    inflater.reset();
+    inflater.setInput(input, offset, stored.remaining());
+    try {
+      int size = 0;
+      while (size < rawLength && !inflater.finished()) {
+        int n = inflater.inflate(result, size, rawLength - size);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        size += n;
+      }
+      if (size != rawLength) {
+        throw new IOException("Truncated compressed chunk");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(e.toString());
+    }
+
+    return ByteBuffer.wrap(result);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,759 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ColumnarInstancesLoader.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Vector;
+import java.util.zip.Inflater;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Environment;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.OptionHandler;
+import weka.core.Range;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+
+/**
+ <!-- globalinfo-start -->
+ * Reads a source that is in the binary columnar format written by the ColumnarInstancesSaver. The data can be read in batch or incremental mode (one block of rows is buffered), a subset of the attributes can be loaded without decoding the other columns, and local files are read via memory mapping.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -R &lt;range&gt;
+ *  The range of attributes to load.
+ *  'first' and 'last' are accepted as well.
+ *  Examples: "first-last", "1,4,5-27,50-last"
+ *  (default: first-last)</pre>
+ *
+ * <pre> -no-mmap
+ *  Reads files via a stream rather than via memory mapping.</pre>
+ *
+ <!-- options-end -->
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @see Loader
+ * @see ColumnarInstancesFormat
+ */
+public class ColumnarInstancesLoader extends AbstractFileLoader implements
+  BatchConverter, IncrementalConverter, OptionHandler {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -2730361563094427539L;
+
+  /** the file extension. */
+  public static String FILE_EXTENSION = ColumnarInstancesFormat.FILE_EXTENSION;
+
+  /** the attributes to load. */
+  protected Range m_AttributeRange = new Range("first-last");
+
+  /** whether to use memory mapping for local files. */
+  protected boolean m_UseMemoryMapping = true;
+
+  /** the stream to read from (if not memory mapped). */
+  protected transient DataInputStream m_Input;
+
+  /** the uncompressed local file to map (if any). */
+  protected transient File m_MappableFile;
+
+  /** the mapped file. */
+  protected transient RandomAccessFile m_MappedFile;
+
+  /** the offsets of the blocks in the mapped file. */
+  protected transient long[] m_BlockOffsets;
+
+  /** the number of rows of the blocks in the mapped file. */
+  protected transient int[] m_BlockSizes;
+
+  /** the end of the last block in the mapped file. */
+  protected transient long m_BlocksEnd;
+
+  /** the next block to read from the mapped file. */
+  protected transient int m_NextBlock;
+
+  /** the currently mapped block. */
+  protected transient ByteBuffer m_Block;
+
+  /** the header stored in the file. */
+  protected transient Instances m_FileStructure;
+
+  /** the indices of the loaded attributes in the file. */
+  protected transient int[] m_Selected;
+
+  /** the values of the current block (loaded attribute x row). */
+  protected transient double[][] m_Columns;
+
+  /** buffer for decoding strings. */
+  protected transient String[] m_Texts;
+
+  /** the weights of the current block. */
+  protected transient double[] m_Weights;
+
+  /** the sparse flags of the current block. */
+  protected transient double[] m_Sparse;
+
+  /** the number of rows in the current block. */
+  protected transient int m_NumRows;
+
+  /** the next row of the current block to return. */
+  protected transient int m_NextRow;
+
+  /** whether all blocks have been read. */
+  protected transient boolean m_EndOfBlocks;
+
+  /** the encoding of the chunk last read. */
+  protected transient byte m_ChunkEncoding;
+
+  /** the decompressor. */
+  protected transient Inflater m_Inflater;
+
+  /**
+   * Returns a string describing this Loader.
+   *
+   * @return a description of the Loader suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return "Reads a source that is in the binary columnar format written by "
+      + "the ColumnarInstancesSaver. The data can be read in batch or "
+      + "incremental mode (one block of rows is buffered), a subset of the "
+      + "attributes can be loaded without decoding the other columns, and "
+      + "local files are read via memory mapping.";
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.add(new Option("\tThe range of attributes to load.\n"
+      + "\t'first' and 'last' are accepted as well.\n"
+      + "\tExamples: \"first-last\", \"1,4,5-27,50-last\"\n"
+      + "\t(default: first-last)", "R", 1, "-R <range>"));
+
+    result.add(new Option(
+      "\tReads files via a stream rather than via memory mapping.",
+      "no-mmap", 0, "-no-mmap"));
+
+    return result.elements();
+  }
+
+  /**
+   * Parses a given list of options.
+   * <p/>
+   *
+   <!-- options-start -->
+   * Valid options are: <p/>
+   *
+   * <pre> -R &lt;range&gt;
+   *  The range of attributes to load.
+   *  'first' and 'last' are accepted as well.
+   *  Examples: "first-last", "1,4,5-27,50-last"
+   *  (default: first-last)</pre>
+   *
+   * <pre> -no-mmap
+   *  Reads files via a stream rather than via memory mapping.</pre>
+   *
+   <!-- options-end -->
+   *
+   * @param options the list of options as an array of strings
+   * @throws Exception if an option is not supported
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    String tmpStr = Utils.getOption('R', options);
+    if (tmpStr.length() > 0) {
+      setAttributeIndices(tmpStr);
+    } else {
+      setAttributeIndices("first-last");
+    }
+
+    setUseMemoryMapping(!Utils.getFlag("no-mmap", options));
+  }
+
+  /**
+   * Gets the current settings of the Loader.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  @Override
+  public String[] getOptions() {
+    Vector<String> result = new Vector<String>();
+
+    result.add("-R");
+    result.add(getAttributeIndices());
+
+    if (!getUseMemoryMapping()) {
+      result.add("-no-mmap");
+    }
+
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String attributeIndicesTipText() {
+    return "The range of attributes to load; the columns of all other "
+      + "attributes are skipped without being decoded.";
+  }
+
+  /**
+   * Sets the range of attributes to load.
+   *
+   * @param value the range
+   */
+  public void setAttributeIndices(String value) {
+    m_AttributeRange.setRanges(value);
+  }
+
+  /**
+   * Gets the range of attributes to load.
+   *
+   * @return the range
+   */
+  public String getAttributeIndices() {
+    return m_AttributeRange.getRanges();
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String useMemoryMappingTipText() {
+    return "Whether to read uncompressed local files via memory mapping.";
+  }
+
+  /**
+   * Sets whether to read local files via memory mapping.
+   *
+   * @param value true if to use memory mapping
+   */
+  public void setUseMemoryMapping(boolean value) {
+    m_UseMemoryMapping = value;
+  }
+
+  /**
+   * Gets whether to read local files via memory mapping.
+   *
+   * @return true if memory mapping is used
+   */
+  public boolean getUseMemoryMapping() {
+    return m_UseMemoryMapping;
+  }
+
+  /**
+   * Get the file extension used for binary columnar files.
+   *
+   * @return the file extension
+   */
+  @Override
+  public String getFileExtension() {
+    return FILE_EXTENSION;
+  }
+
+  /**
+   * Gets all the file extensions used for this type of file.
+   *
+   * @return the file extensions
+   */
+  @Override
+  public String[] getFileExtensions() {
+    return new String[] { FILE_EXTENSION };
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  @Override
+  public String getFileDescription() {
+    return "Binary columnar instances";
+  }
+
+  /**
+   * Resets the Loader ready to read a new data set or the same data set again.
+   *
+   * @throws IOException if something goes wrong
+   */
+  @Override
+  public void reset() throws IOException {
+    m_structure = null;
+    closeSource();
+    setRetrieval(NONE);
+
+    if (m_File != null && new File(m_File).isFile()) {
+      setFile(new File(m_File));
+    }
+  }
+
+  /**
+   * Resets the Loader object and sets the source of the data set to be the
+   * supplied File object. Uncompressed local files are remembered for memory
+   * mapping.
+   *
+   * @param file the source file.
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public void setSource(File file) throws IOException {
+    super.setSource(file);
+
+    m_MappableFile = null;
+    String fName = file.getPath();
+    try {
+      fName = Environment.getSystemWide().substitute(fName);
+    } catch (Exception e) {
+      // ignored, the file simply won't be mapped
+    }
+    File resolved = new File(fName);
+    if (resolved.isFile()
+      && !resolved.getName().endsWith(FILE_EXTENSION_COMPRESSED)) {
+      m_MappableFile = resolved;
+    }
+  }
+
+  /**
+   * Resets the Loader object and sets the source of the data set to be the
+   * supplied InputStream.
+   *
+   * @param in the source InputStream.
+   * @throws IOException if there is a problem with IO
+   */
+  @Override
+  public void setSource(InputStream in) throws IOException {
+    closeSource();
+    m_structure = null;
+    m_MappableFile = null;
+    m_Input = new DataInputStream(new BufferedInputStream(in, 65536));
+  }
+
+  /**
+   * Closes the stream or mapped file.
+   */
+  protected void closeSource() {
+    try {
+      if (m_Input != null) {
+        m_Input.close();
+      }
+      if (m_MappedFile != null) {
+        m_MappedFile.close();
+      }
+    } catch (IOException e) {
+      // ignored
+    }
+    m_Input = null;
+    m_MappedFile = null;
+    m_Block = null;
+    if (m_Inflater != null) {
+      m_Inflater.end();
+      m_Inflater = null;
+    }
+  }
+
+  /**
+   * Determines and returns (if possible) the structure (internally the header)
+   * of the data set as an empty set of instances.
+   *
+   * @return the structure of the data set as an empty set of Instances
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public Instances getStructure() throws IOException {
+    if (m_structure == null) {
+      if (m_Input == null) {
+        throw new IOException("No source has been specified");
+      }
+
+      readHeader();
+      if (m_UseMemoryMapping && m_MappableFile != null) {
+        // the blocks are read from the mapped file instead
+        m_Input.close();
+        m_Input = null;
+        m_MappedFile = new RandomAccessFile(m_MappableFile, "r");
+        readBlockIndex();
+      }
+    }
+
+    return new Instances(m_structure, 0);
+  }
+
+  /**
+   * Reads the header and sets up the structure of the selected attributes.
+   *
+   * @throws IOException if the header cannot be read
+   */
+  protected void readHeader() throws IOException {
+    if (m_Input.readInt() != ColumnarInstancesFormat.MAGIC) {
+      throw new IOException("Not a binary columnar instances file!");
+    }
+    int version = m_Input.readInt();
+    if (version > ColumnarInstancesFormat.VERSION) {
+      throw new IOException("Unsupported format version: " + version);
+    }
+    m_FileStructure =
+      new Instances(new StringReader(
+        ColumnarInstancesFormat.readString(m_Input)));
+    int classIndex = m_Input.readInt();
+    int blockSize = m_Input.readInt();
+
+    m_AttributeRange.setUpper(m_FileStructure.numAttributes() - 1);
+    m_Selected = m_AttributeRange.getSelection();
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    int newClassIndex = -1;
+    for (int i = 0; i < m_Selected.length; i++) {
+      atts.add((Attribute) m_FileStructure.attribute(m_Selected[i]).copy());
+      if (m_Selected[i] == classIndex) {
+        newClassIndex = i;
+      }
+    }
+    m_structure =
+      new Instances(m_FileStructure.relationName(), atts, 0);
+    m_structure.setClassIndex(newClassIndex);
+
+    m_Columns = new double[m_Selected.length][blockSize];
+    m_Texts = new String[blockSize];
+    m_Weights = new double[blockSize];
+    m_Sparse = new double[blockSize];
+    m_NumRows = 0;
+    m_NextRow = 0;
+    m_NextBlock = 0;
+    m_EndOfBlocks = false;
+  }
+
+  /**
+   * Reads the index of the blocks from the end of the mapped file.
+   *
+   * @throws IOException if the index cannot be read
+   */
+  protected void readBlockIndex() throws IOException {
+    long length = m_MappedFile.length();
+    m_MappedFile.seek(length - ColumnarInstancesFormat.TRAILER_SIZE);
+    m_BlocksEnd = m_MappedFile.readLong();
+    if (m_MappedFile.readInt() != ColumnarInstancesFormat.MAGIC) {
+      throw new IOException("Binary columnar instances file is truncated!");
+    }
+
+    m_MappedFile.seek(m_BlocksEnd + 4);
+    int numBlocks = m_MappedFile.readInt();
+    ByteBuffer index =
+      m_MappedFile.getChannel().map(FileChannel.MapMode.READ_ONLY,
+        m_BlocksEnd + 8, numBlocks * 12L);
+    m_BlockOffsets = new long[numBlocks];
+    m_BlockSizes = new int[numBlocks];
+    for (int i = 0; i < numBlocks; i++) {
+      m_BlockOffsets[i] = index.getLong();
+      m_BlockSizes[i] = index.getInt();
+    }
+  }
+
+  /**
+   * Reads and decodes the next block.
+   *
+   * @return false if there are no more blocks
+   * @throws IOException if the block cannot be read
+   */
+  protected boolean readBlock() throws IOException {
+    if (m_EndOfBlocks) {
+      return false;
+    }
+
+    if (m_MappedFile != null) {
+      if (m_NextBlock == m_BlockOffsets.length) {
+        m_EndOfBlocks = true;
+        return false;
+      }
+      long start = m_BlockOffsets[m_NextBlock];
+      long end =
+        (m_NextBlock + 1 < m_BlockOffsets.length) ? m_BlockOffsets[m_NextBlock + 1]
+          : m_BlocksEnd;
+      m_Block =
+        m_MappedFile.getChannel().map(FileChannel.MapMode.READ_ONLY, start,
+          end - start);
+      m_NextBlock++;
+      m_NumRows = m_Block.getInt();
+    } else {
+      m_NumRows = m_Input.readInt();
+      if (m_NumRows == ColumnarInstancesFormat.END_OF_BLOCKS) {
+        m_EndOfBlocks = true;
+        return false;
+      }
+    }
+    ensureCapacity(m_NumRows);
+
+    ByteBuffer data = nextChunk(true);
+    ColumnarInstancesFormat.decodeDoubles(m_ChunkEncoding, data, m_Weights,
+      m_NumRows, 1.0);
+    data = nextChunk(true);
+    ColumnarInstancesFormat.decodeDoubles(m_ChunkEncoding, data, m_Sparse,
+      m_NumRows, 0.0);
+
+    int sel = 0;
+    for (int i = 0; i < m_FileStructure.numAttributes(); i++) {
+      boolean wanted = (sel < m_Selected.length) && (m_Selected[sel] == i);
+      data = nextChunk(wanted);
+      if (!wanted) {
+        continue;
+      }
+
+      Attribute att = m_structure.attribute(sel);
+      double[] values = m_Columns[sel];
+      if (m_ChunkEncoding == ColumnarInstancesFormat.ENC_TEXT) {
+        ColumnarInstancesFormat.decodeText(data, m_Texts, m_NumRows);
+        for (int n = 0; n < m_NumRows; n++) {
+          if (m_Texts[n] == null) {
+            values[n] = Utils.missingValue();
+          } else if (att.isString()) {
+            values[n] = att.addStringValue(m_Texts[n]);
+          } else {
+            values[n] =
+              att.addRelation(new Instances(new StringReader(m_Texts[n])));
+          }
+        }
+      } else {
+        ColumnarInstancesFormat.decodeDoubles(m_ChunkEncoding, data, values,
+          m_NumRows, 0.0);
+      }
+      sel++;
+    }
+    m_NextRow = 0;
+    m_Block = null;
+
+    return true;
+  }
+
+  /**
+   * Reads the next chunk of the current block.
+   *
+   * @param wanted whether the content is needed, otherwise it is skipped
+   * @return the (decompressed) content, null if skipped
+   * @throws IOException if the chunk cannot be read
+   */
+  protected ByteBuffer nextChunk(boolean wanted) throws IOException {
+    byte compressed;
+    int rawLength;
+    int storedLength;
+    ByteBuffer result = null;
+
+    if (m_Block != null) {
+      m_ChunkEncoding = m_Block.get();
+      compressed = m_Block.get();
+      rawLength = m_Block.getInt();
+      storedLength = m_Block.getInt();
+      if (wanted) {
+        result = m_Block.slice();
+        result.limit(storedLength);
+      }
+      m_Block.position(m_Block.position() + storedLength);
+    } else {
+      m_ChunkEncoding = m_Input.readByte();
+      compressed = m_Input.readByte();
+      rawLength = m_Input.readInt();
+      storedLength = m_Input.readInt();
+      if (wanted) {
+        byte[] stored = new byte[storedLength];
+        m_Input.readFully(stored);
+        result = ByteBuffer.wrap(stored);
+      } else {
+        int skipped = 0;
+        while (skipped < storedLength) {
+          int n = m_Input.skipBytes(storedLength - skipped);
+          if (n <= 0) {
+            throw new IOException("Premature end of file");
+          }
+          skipped += n;
+        }
+      }
+    }
+
+    if (result != null && compressed != 0) {
+      if (m_Inflater == null) {
+        m_Inflater = new Inflater();
+      }
+      result =
+        ColumnarInstancesFormat.decompress(result, rawLength, m_Inflater);
+    }
+
+    return result;
+  }
+
+  /**
+   * Makes sure that the block buffers can hold the given number of rows.
+   *
+   * @param rows the number of rows
+   */
+  protected void ensureCapacity(int rows) {
+    if (m_Weights.length >= rows) {
+      return;
+    }
+    for (int i = 0; i < m_Columns.length; i++) {
+      m_Columns[i] = new double[rows];
+    }
+    m_Texts = new String[rows];
+    m_Weights = new double[rows];
+    m_Sparse = new double[rows];
+  }
+
+  /**
+   * Creates the instance for the given row of the current block.
+   *
+   * @param row the row
+   * @return the instance
+   */
+  protected Instance makeInstance(int row) {
+    double[] values = new double[m_Columns.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = m_Columns[i][row];
+    }
+
+    if (m_Sparse[row] != 0) {
+      return new SparseInstance(m_Weights[row], values);
+    } else {
+      return new DenseInstance(m_Weights[row], values);
+    }
+  }
+
+  /**
+   * Return the full data set. If the structure hasn't yet been determined by a
+   * call to getStructure then method should do so before processing the rest of
+   * the data set.
+   *
+   * @return the structure of the data set as an empty set of Instances
+   * @throws IOException if there is no source or parsing fails
+   */
+  @Override
+  public Instances getDataSet() throws IOException {
+    if (getRetrieval() == INCREMENTAL) {
+      throw new IOException(
+        "Cannot mix getting Instances in both incremental and batch modes");
+    }
+    setRetrieval(BATCH);
+    if (m_structure == null) {
+      getStructure();
+    }
+
+    int capacity = 0;
+    if (m_BlockSizes != null) {
+      for (int size : m_BlockSizes) {
+        capacity += size;
+      }
+    }
+
+    Instances result = new Instances(m_structure, capacity);
+    try {
+      while (readBlock()) {
+        for (int i = 0; i < m_NumRows; i++) {
+          Instance inst = makeInstance(i);
+          inst.setDataset(result);
+          result.add(inst);
+        }
+      }
+    } finally {
+      closeSource();
+    }
+
+    return result;
+  }
+
+  /**
+   * Read the data set incrementally---get the next instance in the data set or
+   * returns null if there are no more instances to get. If the structure hasn't
+   * yet been determined by a call to getStructure then method should do so
+   * before returning the next instance in the data set.
+   *
+   * @param structure the dataset header information, will get updated in case
+   *          of string or relational attributes
+   * @return the next instance in the data set as an Instance object or null if
+   *         there are no more instances to be read
+   * @throws IOException if there is an error during parsing
+   */
+  @Override
+  public Instance getNextInstance(Instances structure) throws IOException {
+    if (getRetrieval() == BATCH) {
+      throw new IOException(
+        "Cannot mix getting Instances in both incremental and batch modes");
+    }
+    setRetrieval(INCREMENTAL);
+    if (m_structure == null) {
+      getStructure();
+    }
+
+    if (m_NextRow >= m_NumRows) {
+      if ((m_Input == null && m_MappedFile == null) || !readBlock()) {
+        closeSource();
+        return null;
+      }
+    }
+
+    Instance inst = makeInstance(m_NextRow++);
+    inst.setDataset(structure);
+
+    return inst;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the name of an input file.
+   */
+  public static void main(String[] args) {
+    runFileLoader(new ColumnarInstancesLoader(), args);
+  }
+}
@@ -0,0 +1,669 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ColumnarInstancesSaver.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Vector;
+import java.util.zip.Deflater;
+
+import weka.core.Attribute;
+import weka.core.Capabilities;
+import weka.core.Capabilities.Capability;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+import weka.core.WeightedInstancesHandler;
+
+/**
+ <!-- globalinfo-start -->
+ * Writes the instances to a binary columnar file with extension .bci. The data is stored in blocks of rows, with each attribute being stored as a separate column of primitive values. Columns can optionally be compressed. Files can be read incrementally, partially (selected columns only) and via memory mapping with the ColumnarInstancesLoader.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -compress
+ *  Compresses the columns of each block.
+ *  (default: off)</pre>
+ *
+ * <pre> -block-size &lt;num&gt;
+ *  The number of rows per block.
+ *  (default: 8192)</pre>
+ *
+ * <pre> -i &lt;the input file&gt;
+ *  The input file</pre>
+ *
+ * <pre> -o &lt;the output file&gt;
+ *  The output file</pre>
+ *
+ <!-- options-end -->
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @see Saver
+ * @see ColumnarInstancesFormat
+ */
+public class ColumnarInstancesSaver extends AbstractFileSaver implements
+  BatchConverter, IncrementalConverter, WeightedInstancesHandler {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 3186094227563409232L;
+
+  /** whether to compress the columns. */
+  protected boolean m_CompressOutput = false;
+
+  /** the number of rows per block. */
+  protected int m_BlockSize = 8192;
+
+  /** the output stream. */
+  protected transient DataOutputStream m_Output;
+
+  /** the number of bytes written so far. */
+  protected transient long m_Position;
+
+  /** the offsets of the blocks written so far. */
+  protected transient List<Long> m_BlockOffsets;
+
+  /** the number of rows of the blocks written so far. */
+  protected transient List<Integer> m_BlockRows;
+
+  /** the values of the current block (attribute x row). */
+  protected transient double[][] m_Columns;
+
+  /** the strings of string and relational attributes of the current block. */
+  protected transient String[][] m_Texts;
+
+  /** the weights of the current block. */
+  protected transient double[] m_Weights;
+
+  /** which rows of the current block are sparse. */
+  protected transient boolean[] m_Sparse;
+
+  /** the number of rows in the current block. */
+  protected transient int m_NumRows;
+
+  /** the compressor. */
+  protected transient Deflater m_Deflater;
+
+  /** Constructor. */
+  public ColumnarInstancesSaver() {
+    resetOptions();
+  }
+
+  /**
+   * Returns a string describing this Saver.
+   *
+   * @return a description of the Saver suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return "Writes the instances to a binary columnar file with extension "
+      + ColumnarInstancesFormat.FILE_EXTENSION + ". The data is stored in "
+      + "blocks of rows, with each attribute being stored as a separate "
+      + "column of primitive values. Columns can optionally be compressed. "
+      + "Files can be read incrementally, partially (selected columns only) "
+      + "and via memory mapping with the ColumnarInstancesLoader.";
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  @Override
+  public String getFileDescription() {
+    return "Binary columnar instances";
+  }
+
+  /**
+   * Resets the Saver.
+   */
+  @Override
+  public void resetOptions() {
+    super.resetOptions();
+    setFileExtension(ColumnarInstancesFormat.FILE_EXTENSION);
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  @Override
+  public Enumeration<Option> listOptions() {
+    Vector<Option> result = new Vector<Option>();
+
+    result.addElement(new Option("\tCompresses the columns of each block.\n"
+      + "\t(default: off)", "compress", 0, "-compress"));
+
+    result.addElement(new Option("\tThe number of rows per block.\n"
+      + "\t(default: 8192)", "block-size", 1, "-block-size <num>"));
+
+    result.addAll(Collections.list(super.listOptions()));
+
+    return result.elements();
+  }
+
+  /**
+   * returns the options of the current setup
+   *
+   * @return the current options
+   */
+  @Override
+  public String[] getOptions() {
+    Vector<String> result = new Vector<String>();
+
+    if (getCompressOutput()) {
+      result.add("-compress");
+    }
+
+    result.add("-block-size");
+    result.add("" + getBlockSize());
+
+    Collections.addAll(result, super.getOptions());
+
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Parses the options for this object.
+   * <p/>
+   *
+   <!-- options-start -->
+   * Valid options are: <p/>
+   *
+   * <pre> -compress
+   *  Compresses the columns of each block.
+   *  (default: off)</pre>
+   *
+   * <pre> -block-size &lt;num&gt;
+   *  The number of rows per block.
+   *  (default: 8192)</pre>
+   *
+   * <pre> -i &lt;the input file&gt;
+   *  The input file</pre>
+   *
+   * <pre> -o &lt;the output file&gt;
+   *  The output file</pre>
+   *
+   <!-- options-end -->
+   *
+   * @param options the options to use
+   * @throws Exception if setting of options fails
+   */
+  @Override
+  public void setOptions(String[] options) throws Exception {
+    setCompressOutput(Utils.getFlag("compress", options));
+
+    String tmpStr = Utils.getOption("block-size", options);
+    if (tmpStr.length() > 0) {
+      setBlockSize(Integer.parseInt(tmpStr));
+    } else {
+      setBlockSize(8192);
+    }
+
+    super.setOptions(options);
+
+    Utils.checkForRemainingOptions(options);
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String compressOutputTipText() {
+    return "Optional compression of the columns of each block.";
+  }
+
+  /**
+   * Gets whether the columns are compressed.
+   *
+   * @return true if the columns are compressed
+   */
+  public boolean getCompressOutput() {
+    return m_CompressOutput;
+  }
+
+  /**
+   * Sets whether to compress the columns.
+   *
+   * @param value if true the columns will be compressed
+   */
+  public void setCompressOutput(boolean value) {
+    m_CompressOutput = value;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String blockSizeTipText() {
+    return "The number of rows that are stored together in a block; "
+      + "incremental reading and writing buffers one block in memory.";
+  }
+
+  /**
+   * Gets the number of rows per block.
+   *
+   * @return the number of rows
+   */
+  public int getBlockSize() {
+    return m_BlockSize;
+  }
+
+  /**
+   * Sets the number of rows per block.
+   *
+   * @param value the number of rows
+   */
+  public void setBlockSize(int value) {
+    if (value > 0) {
+      m_BlockSize = value;
+    } else {
+      System.err.println("Block size has to be greater than zero!");
+    }
+  }
+
+  /**
+   * Returns the Capabilities of this saver.
+   *
+   * @return the capabilities of this object
+   * @see Capabilities
+   */
+  @Override
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+
+    // attributes
+    result.enableAllAttributes();
+    result.enable(Capability.MISSING_VALUES);
+
+    // class
+    result.enableAllClasses();
+    result.enable(Capability.MISSING_CLASS_VALUES);
+    result.enable(Capability.NO_CLASS);
+
+    return result;
+  }
+
+  /**
+   * Resets the writer, setting writer and output stream to null.
+   */
+  @Override
+  public void resetWriter() {
+    super.resetWriter();
+
+    m_Output = null;
+    m_Columns = null;
+    m_Texts = null;
+    m_Weights = null;
+    m_Sparse = null;
+    m_BlockOffsets = null;
+    m_BlockRows = null;
+  }
+
+  /**
+   * Sets the destination output stream.
+   *
+   * @param output the output stream.
+   * @throws IOException throws an IOException if destination cannot be set
+   */
+  @Override
+  public void setDestination(OutputStream output) throws IOException {
+    super.setDestination(output);
+
+    m_Output = new DataOutputStream(new BufferedOutputStream(output, 65536));
+  }
+
+  /**
+   * Writes the file header and initializes the block buffers.
+   *
+   * @param structure the structure of the data
+   * @throws IOException if writing fails
+   */
+  protected void writeHeader(Instances structure) throws IOException {
+    if (m_Output == null) {
+      throw new IOException("No output for binary columnar instances.");
+    }
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(header);
+    out.writeInt(ColumnarInstancesFormat.MAGIC);
+    out.writeInt(ColumnarInstancesFormat.VERSION);
+    ColumnarInstancesFormat.writeString(out,
+      new Instances(structure, 0).toString());
+    out.writeInt(structure.classIndex());
+    out.writeInt(m_BlockSize);
+    out.flush();
+    header.writeTo(m_Output);
+    m_Position = header.size();
+
+    int numAtts = structure.numAttributes();
+    m_Columns = new double[numAtts][];
+    m_Texts = new String[numAtts][];
+    for (int i = 0; i < numAtts; i++) {
+      Attribute att = structure.attribute(i);
+      if (att.isString() || att.isRelationValued()) {
+        m_Texts[i] = new String[m_BlockSize];
+      } else {
+        m_Columns[i] = new double[m_BlockSize];
+      }
+    }
+    m_Weights = new double[m_BlockSize];
+    m_Sparse = new boolean[m_BlockSize];
+    m_NumRows = 0;
+    m_BlockOffsets = new ArrayList<Long>();
+    m_BlockRows = new ArrayList<Integer>();
+    m_Deflater =
+      m_CompressOutput ? new Deflater(Deflater.BEST_SPEED) : null;
+  }
+
+  /**
+   * Adds the instance to the current block, writing the block once it is
+   * full.
+   *
+   * @param inst the instance to add
+   * @throws IOException if writing fails
+   */
+  protected void addRow(Instance inst) throws IOException {
+    int row = m_NumRows;
+    m_Weights[row] = inst.weight();
+    m_Sparse[row] = (inst instanceof SparseInstance);
+
+    if (m_Sparse[row]) {
+      for (int i = 0; i < m_Columns.length; i++) {
+        if (m_Columns[i] != null) {
+          m_Columns[i][row] = 0;
+        }
+      }
+      for (int i = 0; i < inst.numValues(); i++) {
+        int index = inst.index(i);
+        if (m_Columns[index] != null) {
+          m_Columns[index][row] = inst.valueSparse(i);
+        }
+      }
+    } else {
+      for (int i = 0; i < m_Columns.length; i++) {
+        if (m_Columns[i] != null) {
+          m_Columns[i][row] = inst.value(i);
+        }
+      }
+    }
+
+    for (int i = 0; i < m_Texts.length; i++) {
+      if (m_Texts[i] != null) {
+        if (inst.isMissing(i)) {
+          m_Texts[i][row] = null;
+        } else if (inst.attribute(i).isString()) {
+          m_Texts[i][row] = inst.stringValue(i);
+        } else {
+          m_Texts[i][row] = inst.relationalValue(i).toString();
+        }
+      }
+    }
+
+    m_NumRows++;
+    if (m_NumRows == m_BlockSize) {
+      writeBlock();
+    }
+  }
+
+  /**
+   * Writes the rows of the current block.
+   *
+   * @throws IOException if writing fails
+   */
+  protected void writeBlock() throws IOException {
+    if (m_NumRows == 0) {
+      return;
+    }
+
+    Instances structure = getInstances();
+    m_BlockOffsets.add(m_Position);
+    m_BlockRows.add(m_NumRows);
+    m_Output.writeInt(m_NumRows);
+    m_Position += 4;
+
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    // weights
+    byte encoding = ColumnarInstancesFormat.ENC_NONE;
+    for (int i = 0; i < m_NumRows; i++) {
+      if (m_Weights[i] != 1.0) {
+        encoding = ColumnarInstancesFormat.encodeDoubles(m_Weights, m_NumRows,
+          buffer);
+        break;
+      }
+    }
+    writeChunk(encoding, buffer);
+
+    // sparse rows
+    encoding = ColumnarInstancesFormat.ENC_NONE;
+    for (int i = 0; i < m_NumRows; i++) {
+      if (m_Sparse[i]) {
+        encoding = ColumnarInstancesFormat.ENC_BYTE;
+        for (int n = 0; n < m_NumRows; n++) {
+          buffer.write(m_Sparse[n] ? 1 : 0);
+        }
+        break;
+      }
+    }
+    writeChunk(encoding, buffer);
+
+    // attributes
+    for (int i = 0; i < structure.numAttributes(); i++) {
+      Attribute att = structure.attribute(i);
+      if (m_Texts[i] != null) {
+        ColumnarInstancesFormat.encodeText(m_Texts[i], m_NumRows, buffer);
+        encoding = ColumnarInstancesFormat.ENC_TEXT;
+      } else if (att.isNominal()) {
+        encoding = ColumnarInstancesFormat.codeEncoding(att);
+        ColumnarInstancesFormat.encodeCodes(m_Columns[i], m_NumRows, encoding,
+          buffer);
+      } else {
+        encoding =
+          ColumnarInstancesFormat.encodeDoubles(m_Columns[i], m_NumRows, buffer);
+      }
+      writeChunk(encoding, buffer);
+    }
+
+    m_NumRows = 0;
+  }
+
+  /**
+   * Writes a chunk with the content of the buffer (compressed if requested)
+   * and clears the buffer.
+   *
+   * @param encoding the encoding of the content
+   * @param buffer the content
+   * @throws IOException if writing fails
+   */
+  protected void writeChunk(byte encoding, ByteArrayOutputStream buffer)
+    throws IOException {
+    byte[] raw = buffer.toByteArray();
+    byte[] stored = null;
+    if (m_Deflater != null && raw.length > 0) {
+      stored = ColumnarInstancesFormat.compress(raw, raw.length, m_Deflater);
+    }
+
+    m_Output.writeByte(encoding);
+    m_Output.writeByte((stored != null) ? 1 : 0);
+    m_Output.writeInt(raw.length);
+    if (stored != null) {
+      m_Output.writeInt(stored.length);
+      m_Output.write(stored);
+    } else {
+      m_Output.writeInt(raw.length);
+      m_Output.write(raw);
+      stored = raw;
+    }
+    m_Position += ColumnarInstancesFormat.CHUNK_HEADER_SIZE + stored.length;
+    buffer.reset();
+  }
+
+  /**
+   * Writes any buffered rows, the block index and the trailer, and closes the
+   * output.
+   *
+   * @throws IOException if writing fails
+   */
+  protected void writeTrailer() throws IOException {
+    writeBlock();
+
+    long indexOffset = m_Position;
+    m_Output.writeInt(ColumnarInstancesFormat.END_OF_BLOCKS);
+    m_Output.writeInt(m_BlockOffsets.size());
+    for (int i = 0; i < m_BlockOffsets.size(); i++) {
+      m_Output.writeLong(m_BlockOffsets.get(i));
+      m_Output.writeInt(m_BlockRows.get(i));
+    }
+    m_Output.writeLong(indexOffset);
+    m_Output.writeInt(ColumnarInstancesFormat.MAGIC);
+    m_Output.flush();
+    m_Output.close();
+
+    if (m_Deflater != null) {
+      m_Deflater.end();
+      m_Deflater = null;
+    }
+  }
+
+  /**
+   * Saves an instances incrementally. Structure has to be set by using the
+   * setStructure() method or setInstances() method.
+   *
+   * @param inst the instance to save
+   * @throws IOException throws IOEXception if an instance cannot be saved
+   *           incrementally.
+   */
+  @Override
+  public void writeIncremental(Instance inst) throws IOException {
+    int writeMode = getWriteMode();
+    Instances structure = getInstances();
+
+    if (getRetrieval() == BATCH || getRetrieval() == NONE) {
+      throw new IOException("Batch and incremental saving cannot be mixed.");
+    }
+
+    if (writeMode == WAIT) {
+      if (structure == null) {
+        setWriteMode(CANCEL);
+        if (inst != null) {
+          System.err
+            .println("Structure(Header Information) has to be set in advance");
+        }
+      } else {
+        setWriteMode(STRUCTURE_READY);
+      }
+      writeMode = getWriteMode();
+    }
+    if (writeMode == CANCEL) {
+      if (m_Output != null) {
+        m_Output.close();
+      }
+      cancel();
+    }
+    if (writeMode == STRUCTURE_READY) {
+      setWriteMode(WRITE);
+      writeHeader(structure);
+      writeMode = getWriteMode();
+    }
+    if (writeMode == WRITE) {
+      if (structure == null) {
+        throw new IOException("No instances information available.");
+      }
+      if (inst != null) {
+        addRow(inst);
+      } else {
+        writeTrailer();
+        resetStructure();
+        resetWriter();
+      }
+    }
+  }
+
+  /**
+   * Writes a Batch of instances.
+   *
+   * @throws IOException throws IOException if saving in batch mode is not
+   *           possible
+   */
+  @Override
+  public void writeBatch() throws IOException {
+    if (getInstances() == null) {
+      throw new IOException("No instances to save");
+    }
+    if (getRetrieval() == INCREMENTAL) {
+      throw new IOException("Batch and incremental saving cannot be mixed.");
+    }
+    if (m_Output == null) {
+      throw new IOException("No output for binary columnar instances.");
+    }
+
+    setRetrieval(BATCH);
+    setWriteMode(WRITE);
+    Instances data = getInstances();
+    writeHeader(data);
+    for (int i = 0; i < data.numInstances(); i++) {
+      addRow(data.instance(i));
+    }
+    writeTrailer();
+    setWriteMode(WAIT);
+    resetWriter();
+    setWriteMode(CANCEL);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the options of a Saver.
+   */
+  public static void main(String[] args) {
+    runFileSaver(new ColumnarInstancesSaver(), args);
+  }
+}
@@ -35,8 +35,7 @@ import java.util.zip.GZIPInputStream;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.RevisionUtils;
-import weka.core.json.JSONInstances;
-import weka.core.json.JSONNode;
+import weka.core.json.JSONInstancesReader;
 
 /**
  <!-- globalinfo-start -->
@@ -54,7 +53,7 @@ import weka.core.json.JSONNode;
  */
 public class JSONLoader 
   extends AbstractFileLoader 
-  implements BatchConverter, URLSourcedLoader {
+  implements BatchConverter, IncrementalConverter, URLSourcedLoader {
 
   /** for serialization. */
   private static final long serialVersionUID = 3764533621135196582L;
@@ -71,8 +70,8 @@ public class JSONLoader
   /** The reader for the source file. */
   protected transient Reader m_sourceReader = null;
 
-  /** the loaded JSON object. */
-  protected JSONNode m_JSON;
+  /** the reader for the JSON data. */
+  protected transient JSONInstancesReader m_JSONReader;
   
   /**
    * Returns a string describing this Loader.
@@ -123,7 +122,7 @@ public class JSONLoader
    */
   public void reset() throws IOException {
     m_structure = null;
-    m_JSON      = null;
+    m_JSONReader = null;
 
     setRetrieval(NONE);
     
@@ -144,7 +143,7 @@ public class JSONLoader
    */
   public void setSource(File file) throws IOException {
     m_structure = null;
-    m_JSON      = null;
+    m_JSONReader = null;
     
     setRetrieval(NONE);
 
@@ -174,7 +173,7 @@ public class JSONLoader
    */
   public void setSource(URL url) throws IOException {
     m_structure = null;
-    m_JSON      = null;
+    m_JSONReader = null;
     
     setRetrieval(NONE);
     
@@ -231,8 +230,8 @@ public class JSONLoader
 
     if (m_structure == null) {
       try {
-	m_JSON      = JSONNode.read(m_sourceReader);
-	m_structure = new Instances(JSONInstances.toHeader(m_JSON), 0);
+	m_JSONReader = new JSONInstancesReader(m_sourceReader);
+	m_structure  = new Instances(m_JSONReader.getStructure(), 0);
       }
       catch (IOException ioe) {
 	// just re-throw it
@@ -266,25 +265,58 @@ public class JSONLoader
     if (m_structure == null)
       getStructure();
 
+    // fresh copies of string attributes, as their values get added
+    Instances result = m_structure.stringFreeStructure();
+    Instance inst;
+    while ((inst = m_JSONReader.readInstance(result, true)) != null)
+      result.add(inst);
+    result.compactify();
+
     try {
       // close the stream
       m_sourceReader.close();
     } catch (Exception ex) {
     }
 
-    return JSONInstances.toInstances(m_JSON);
+    return result;
   }
 
   /**
-   * JSONLoader is unable to process a data set incrementally.
+   * Read the data set incrementally---get the next instance in the data 
+   * set or returns null if there are no more instances to get. If the 
+   * structure hasn't yet been determined by a call to getStructure then 
+   * method should do so before returning the next instance in the data set.
+   * For string attributes, only the value of the current instance is kept
+   * in the header.
    *
-   * @param structure		ignored
-   * @return 			never returns without throwing an exception
-   * @throws IOException 	always. JSONLoader is unable to process a 
-   * 				data set incrementally.
+   * @param structure		the dataset header information, will get updated 
+   * 				in case of string attributes
+   * @return 			the next instance in the data set as an Instance
+   * 				object or null if there are no more instances to
+   * 				be read
+   * @throws IOException 	if there is an error during parsing
    */
   public Instance getNextInstance(Instances structure) throws IOException {
-    throw new IOException("JSONLoader can't read data sets incrementally.");
+    if (m_sourceReader == null)
+      throw new IOException("No source has been specified");
+    
+    if (getRetrieval() == BATCH)
+      throw new IOException("Cannot mix getting Instances in both incremental and batch modes");
+
+    setRetrieval(INCREMENTAL);
+    if (m_structure == null)
+      getStructure();
+
+    Instance result = m_JSONReader.readInstance(structure, false);
+    if (result == null) {
+      try {
+	// close the stream
+	m_sourceReader.close();
+      } catch (Exception ex) {
+      }
+    }
+
+    return result;
   }
   
   /**
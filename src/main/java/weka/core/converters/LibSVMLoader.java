@@ -29,21 +29,21 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
-import java.util.Vector;
+import java.util.List;
 
 import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.RevisionUtils;
-import weka.core.SparseInstance;
 
 /**
  * <!-- globalinfo-start --> Reads a source that is in libsvm format.<br/>
  * <br/>
  * For more information about libsvm see:<br/>
  * <br/>
- * http://www.csie.ntu.edu.tw/~cjlin/libsvm/
+ * http://www.csie.ntu.edu.tw/~cjlin/libsvm/<br/>
+ * <br/>
+ * The data is parsed in blocks of lines, optionally in parallel. If the number of features is known, it can be supplied to avoid having to read the data before the structure is available.
  * <p/>
  * <!-- globalinfo-end -->
  * 
@@ -67,8 +67,23 @@ public class LibSVMLoader
   /** The reader for the source file. */
   protected transient Reader m_sourceReader = null;
 
-  /** the buffer of the rows read so far. */
-  protected Vector<double[]> m_Buffer = null;
+  /** The stream for the source file. */
+  protected transient InputStream m_sourceStream = null;
+
+  /** the blocks of rows parsed so far. */
+  protected transient List<SparseFormatReader.Block> m_Blocks = null;
+
+  /**
+   * The number of execution slots (threads) to use for parsing (1 =
+   * sequential, 0 = all available processors).
+   */
+  protected int m_numExecutionSlots = 1;
+
+  /** The size (in bytes) of the blocks handed to the parsing threads. */
+  protected int m_chunkSize = 4 * 1024 * 1024;
+
+  /** The number of features (0 = determine from the data). */
+  protected int m_numFeatures = 0;
 
   /**
    * Returns a string describing this Loader.
@@ -80,7 +95,100 @@ public class LibSVMLoader
     return
     "Reads a source that is in libsvm format.\n\n"
       + "For more information about libsvm see:\n\n"
-      + "http://www.csie.ntu.edu.tw/~cjlin/libsvm/";
+      + "http://www.csie.ntu.edu.tw/~cjlin/libsvm/\n\n"
+      + "The data is parsed in blocks of lines, optionally in parallel. If "
+      + "the number of features is known, it can be supplied to avoid having "
+      + "to read the data before the structure is available.";
+  }
+
+  /**
+   * Returns the tip text for this property.
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for parsing the "
+      + "data. 1 parses sequentially, 0 uses all available processors.";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use for parsing.
+   * 
+   * @param numSlots the number of slots to use (0 = all processors)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use for parsing.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String chunkSizeTipText() {
+    return "The approximate size (in bytes) of the blocks of lines handed to "
+      + "each thread.";
+  }
+
+  /**
+   * Set the approximate size (in bytes) of the blocks of lines that are
+   * parsed by each thread.
+   * 
+   * @param size the chunk size
+   */
+  public void setChunkSize(int size) {
+    m_chunkSize = size;
+  }
+
+  /**
+   * Get the approximate size (in bytes) of the blocks of lines that are
+   * parsed by each thread.
+   * 
+   * @return the chunk size
+   */
+  public int getChunkSize() {
+    return m_chunkSize;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numFeaturesTipText() {
+    return "The number of features, i.e., the largest feature index; "
+      + "0 determines it from the data. If supplied, the structure is "
+      + "available without reading the data.";
+  }
+
+  /**
+   * Set the number of features (the largest feature index).
+   * 
+   * @param value the number of features, 0 to determine it from the data
+   */
+  public void setNumFeatures(int value) {
+    m_numFeatures = value;
+  }
+
+  /**
+   * Get the number of features (the largest feature index).
+   * 
+   * @return the number of features, 0 if determined from the data
+   */
+  public int getNumFeatures() {
+    return m_numFeatures;
   }
 
   /**
@@ -121,7 +229,7 @@ public class LibSVMLoader
   @Override
   public void reset() throws IOException {
     m_structure = null;
-    m_Buffer = null;
+    m_Blocks = null;
 
     setRetrieval(NONE);
 
@@ -142,7 +250,7 @@ public class LibSVMLoader
    */
   public void setSource(URL url) throws IOException {
     m_structure = null;
-    m_Buffer = null;
+    m_Blocks = null;
 
     setRetrieval(NONE);
 
@@ -185,74 +293,18 @@ public class LibSVMLoader
     m_File = (new File(System.getProperty("user.dir"))).getAbsolutePath();
     m_URL = "http://";
 
+    m_sourceStream = in;
     m_sourceReader = new BufferedReader(new InputStreamReader(in));
   }
 
   /**
-   * turns a libsvm row into a double array with the class as the last entry.
+   * Returns a reader for parsing the source.
    * 
-   * @param row the row to turn into a double array
-   * @return the corresponding double array
+   * @return the reader
    */
-  protected double[] libsvmToArray(String row) {
-    double[] result;
-    StringTokenizer tok;
-    int index;
-    int max;
-    String col;
-    double value;
-
-    // determine max index
-    max = 0;
-    tok = new StringTokenizer(row, " \t");
-    tok.nextToken(); // skip class
-    while (tok.hasMoreTokens()) {
-      col = tok.nextToken();
-      index = Integer.parseInt(col.substring(0, col.indexOf(":")));
-      if (index > max) {
-        max = index;
-      }
-    }
-
-    // read values into array
-    tok = new StringTokenizer(row, " \t");
-    result = new double[max + 1];
-
-    // 1. class
-    result[result.length - 1] = Double.parseDouble(tok.nextToken());
-
-    // 2. attributes
-    while (tok.hasMoreTokens()) {
-      col = tok.nextToken();
-      index = Integer.parseInt(col.substring(0, col.indexOf(":")));
-      value = Double.parseDouble(col.substring(col.indexOf(":") + 1));
-      result[index - 1] = value;
-    }
-
-    return result;
-  }
-
-  /**
-   * determines the number of attributes, if the number of attributes in the
-   * given row is greater than the current amount then this number will be
-   * returned, otherwise the current number.
-   * 
-   * @param row row to determine the number of attributes from
-   * @param num the current number of attributes
-   * @return the new number of attributes
-   */
-  protected int determineNumAttributes(String row, int num) {
-    int result;
-    int count;
-
-    result = num;
-
-    count = libsvmToArray(row).length;
-    if (count > result) {
-      result = count;
-    }
-
-    return result;
+  protected SparseFormatReader getSparseReader() {
+    return new SparseFormatReader(m_sourceStream, false, m_numExecutionSlots,
+      m_chunkSize);
   }
 
   /**
@@ -264,9 +316,6 @@ public class LibSVMLoader
    */
   @Override
   public Instances getStructure() throws IOException {
-    String line;
-    int cInt;
-    char c;
     int numAtt;
     ArrayList<Attribute> atts;
     int i;
@@ -277,52 +326,16 @@ public class LibSVMLoader
     }
 
     if (m_structure == null) {
-      m_Buffer = new Vector<double[]>();
       try {
         // determine number of attributes
-        numAtt = 0;
-        int len = 1024 * 1024 * 8; // 8 MB
-        char[] cbuf = new char[len];
-        int iter = 0;
-        String linesplitter = null;
-        String[] lines;
-        String oldLine = null;
-        String read = null;
-        while ((cInt = m_sourceReader.read(cbuf, 0, len)) != -1) {
-          read = String.valueOf(cbuf, 0, cInt);
-
-          if (oldLine != null) {
-            read = oldLine + read;
-          }
-
-          if (linesplitter == null) {
-            if (read.contains("\r\n")) {
-              linesplitter = "\r\n";
-            } else if (read.contains("\n")) {
-              linesplitter = "\n";
-            }
-          }
-
-          if (linesplitter != null) {
-            lines = read.split(linesplitter, -1);
-          } else {
-            lines = new String[] { read };
-          }
-
-          for (int j = 0; j < lines.length - 1; j++) {
-            line = lines[j];
-
-            m_Buffer.add(libsvmToArray(line));
-            numAtt = determineNumAttributes(line, numAtt);
+        if (m_numFeatures > 0) {
+          numAtt = m_numFeatures + 1;
+        } else {
+          m_Blocks = getSparseReader().read();
+          numAtt = 1;
+          for (SparseFormatReader.Block block : m_Blocks) {
+            numAtt = Math.max(numAtt, block.getMaxIndex() + 1);
           }
-
-          oldLine = lines[lines.length - 1];
-        }
-
-        // last line?
-        if (oldLine != null && oldLine.length() != 0) {
-          m_Buffer.add(libsvmToArray(oldLine));
-          numAtt = determineNumAttributes(oldLine, numAtt);
         }
 
         // generate header
@@ -360,9 +373,6 @@ public class LibSVMLoader
   @Override
   public Instances getDataSet() throws IOException {
     Instances result;
-    double[] sparse;
-    double[] data;
-    int i;
 
     if (m_sourceReader == null) {
       throw new IOException("No source has been specified");
@@ -378,25 +388,11 @@ public class LibSVMLoader
       getStructure();
     }
 
-    result = new Instances(m_structure, 0);
-
-    // create instances from buffered arrays
-    for (i = 0; i < m_Buffer.size(); i++) {
-      sparse = m_Buffer.get(i);
-
-      if (sparse.length != m_structure.numAttributes()) {
-        data = new double[m_structure.numAttributes()];
-        // attributes
-        System.arraycopy(sparse, 0, data, 0, sparse.length - 1);
-        // class
-        data[data.length - 1] = sparse[sparse.length - 1];
-      }
-      else {
-        data = sparse;
-      }
-
-      result.add(new SparseInstance(1, data));
+    if (m_Blocks == null) {
+      m_Blocks = getSparseReader().read();
     }
+    result = getSparseReader().toInstances(m_Blocks, m_structure, false);
+    m_Blocks = null;
 
     try {
       // close the stream
@@ -23,6 +23,7 @@ package weka.core.converters;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
@@ -82,6 +83,12 @@ public class LibSVMSaver extends AbstractFileSaver implements BatchConverter,
   /** the class index */
   protected SingleIndex m_ClassIndex = new SingleIndex("last");
 
+  /** the buffer for assembling a row, reused for all rows. */
+  protected transient StringBuffer m_Row;
+
+  /** the characters of the current row, reused for all rows. */
+  protected transient char[] m_RowChars;
+
   /**
    * Constructor
    */
@@ -271,23 +278,66 @@ public class LibSVMSaver extends AbstractFileSaver implements BatchConverter,
    */
   protected String instanceToLibsvm(Instance inst) {
     StringBuffer result;
+
+    result = new StringBuffer();
+    appendLibsvm(result, inst);
+
+    return result.toString();
+  }
+
+  /**
+   * appends the libsvm row of the instance to the buffer. Only the stored
+   * values of sparse instances are visited.
+   * 
+   * @param buffer the buffer to append to
+   * @param inst the instance to transform
+   */
+  protected void appendLibsvm(StringBuffer buffer, Instance inst) {
     int i;
+    int index;
+    double value;
 
     // class
-    result = new StringBuffer("" + inst.classValue());
+    buffer.append(inst.classValue());
 
     // attributes
-    for (i = 0; i < inst.numAttributes(); i++) {
-      if (i == inst.classIndex()) {
+    for (i = 0; i < inst.numValues(); i++) {
+      index = inst.index(i);
+      if (index == inst.classIndex()) {
         continue;
       }
-      if (inst.value(i) == 0) {
+      value = inst.valueSparse(i);
+      if (value == 0) {
         continue;
       }
-      result.append(" " + (i + 1) + ":" + inst.value(i));
+      buffer.append(' ').append(index + 1).append(':').append(value);
     }
+  }
 
-    return result.toString();
+  /**
+   * writes the libsvm row of the instance, followed by a line separator. The
+   * row is assembled in a buffer that is reused for all rows.
+   * 
+   * @param writer the writer to write to
+   * @param inst the instance to write
+   * @throws IOException if writing fails
+   */
+  protected void writeLibsvm(Writer writer, Instance inst) throws IOException {
+    int length;
+
+    if (m_Row == null) {
+      m_Row = new StringBuffer();
+    }
+    m_Row.setLength(0);
+    appendLibsvm(m_Row, inst);
+    m_Row.append(System.lineSeparator());
+
+    length = m_Row.length();
+    if ((m_RowChars == null) || (m_RowChars.length < length)) {
+      m_RowChars = new char[Math.max(length, 256)];
+    }
+    m_Row.getChars(0, length, m_RowChars, 0);
+    writer.write(m_RowChars, 0, length);
   }
 
   /**
@@ -302,16 +352,12 @@ public class LibSVMSaver extends AbstractFileSaver implements BatchConverter,
   public void writeIncremental(Instance inst) throws IOException {
     int writeMode = getWriteMode();
     Instances structure = getInstances();
-    PrintWriter outW = null;
+    Writer outW = getWriter();
 
     if ((getRetrieval() == BATCH) || (getRetrieval() == NONE)) {
       throw new IOException("Batch and incremental saving cannot be mixed.");
     }
 
-    if (getWriter() != null) {
-      outW = new PrintWriter(getWriter());
-    }
-
     if (writeMode == WAIT) {
       if (structure == null) {
         setWriteMode(CANCEL);
@@ -350,7 +396,7 @@ public class LibSVMSaver extends AbstractFileSaver implements BatchConverter,
         if ((retrieveFile() == null) && (outW == null)) {
           System.out.println(instanceToLibsvm(inst));
         } else {
-          outW.println(instanceToLibsvm(inst));
+          writeLibsvm(outW, inst);
           m_incrementalCounter++;
           // flush every 100 instances
           if (m_incrementalCounter > 100) {
@@ -399,7 +445,7 @@ public class LibSVMSaver extends AbstractFileSaver implements BatchConverter,
     } else {
       PrintWriter outW = new PrintWriter(getWriter());
       for (int i = 0; i < getInstances().numInstances(); i++) {
-        outW.println(instanceToLibsvm(getInstances().instance(i)));
+        writeLibsvm(outW, getInstances().instance(i));
       }
       outW.flush();
       outW.close();
@@ -0,0 +1,324 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    PrefetchingLoader.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionUtils;
+
+/**
+ * Wraps an incremental loader and reads instances ahead on a background
+ * thread, so that parsing the data overlaps with whatever the caller does with
+ * each instance (e.g. updating a classifier). Instances are handed over
+ * through a bounded buffer: the reading thread blocks once the buffer is full
+ * and resumes as the caller takes instances out of it.<br/>
+ * Incremental loaders only keep the value of the current instance in the
+ * header for string and relational attributes, so data containing such
+ * attributes is read on the caller's thread instead.
+ * <p/>
+ * Example:
+ *
+ * <pre>
+ * Loader loader = new PrefetchingLoader(new DataSource(&quot;data.arff&quot;).getLoader());
+ * Instances structure = loader.getStructure();
+ * Instance inst;
+ * while ((inst = loader.getNextInstance(structure)) != null) {
+ *   ...
+ * }
+ * </pre>
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class PrefetchingLoader extends AbstractLoader implements
+  BatchConverter, IncrementalConverter {
+
+  /** for serialization */
+  private static final long serialVersionUID = -3264839473720395187L;
+
+  /** marks the end of the data in the buffer */
+  protected static final Instance END_OF_DATA = new DenseInstance(0);
+
+  /** the wrapped loader */
+  protected Loader m_Loader;
+
+  /** the maximum number of instances to read ahead */
+  protected int m_BufferSize = 1000;
+
+  /** the instances read ahead */
+  protected transient BlockingQueue<Instance> m_Buffer;
+
+  /** the thread reading ahead */
+  protected transient Thread m_Reader;
+
+  /** the exception that stopped the reading thread, if any */
+  protected transient volatile Exception m_ReadError;
+
+  /** whether the instances are read on the caller's thread */
+  protected transient boolean m_ReadDirectly;
+
+  /** whether the end of the data has been reached */
+  protected transient boolean m_Finished;
+
+  /**
+   * Initializes the loader.
+   *
+   * @param loader the incremental loader to wrap
+   */
+  public PrefetchingLoader(Loader loader) {
+    this(loader, 1000);
+  }
+
+  /**
+   * Initializes the loader.
+   *
+   * @param loader the incremental loader to wrap
+   * @param bufferSize the maximum number of instances to read ahead
+   */
+  public PrefetchingLoader(Loader loader, int bufferSize) {
+    if (!(loader instanceof IncrementalConverter)) {
+      throw new IllegalArgumentException(loader.getClass().getName()
+        + " can't read data incrementally!");
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be >= 1");
+    }
+
+    m_Loader = loader;
+    m_BufferSize = bufferSize;
+  }
+
+  /**
+   * Returns the wrapped loader.
+   *
+   * @return the loader
+   */
+  public Loader getLoader() {
+    return m_Loader;
+  }
+
+  /**
+   * Returns the maximum number of instances to read ahead.
+   *
+   * @return the buffer size
+   */
+  public int getBufferSize() {
+    return m_BufferSize;
+  }
+
+  /**
+   * Sets the retrieval mode of the wrapped loader.
+   *
+   * @param mode the retrieval mode
+   */
+  @Override
+  public void setRetrieval(int mode) {
+    super.setRetrieval(mode);
+    m_Loader.setRetrieval(mode);
+  }
+
+  /**
+   * Stops reading ahead and resets the wrapped loader.
+   *
+   * @throws Exception if resetting fails
+   */
+  @Override
+  public void reset() throws Exception {
+    stopReading();
+    super.reset();
+    m_Loader.reset();
+  }
+
+  /**
+   * Stops reading ahead and sets the source of the wrapped loader.
+   *
+   * @param file the source file
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public void setSource(File file) throws IOException {
+    stopReading();
+    m_Loader.setSource(file);
+  }
+
+  /**
+   * Stops reading ahead and sets the source of the wrapped loader.
+   *
+   * @param input the input stream
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public void setSource(InputStream input) throws IOException {
+    stopReading();
+    m_Loader.setSource(input);
+  }
+
+  /**
+   * Returns the structure of the data, as determined by the wrapped loader.
+   *
+   * @return the structure of the data
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public Instances getStructure() throws IOException {
+    return m_Loader.getStructure();
+  }
+
+  /**
+   * Returns the full data set, as read by the wrapped loader.
+   *
+   * @return the data set
+   * @throws IOException if an error occurs
+   */
+  @Override
+  public Instances getDataSet() throws IOException {
+    stopReading();
+    return m_Loader.getDataSet();
+  }
+
+  /**
+   * Returns the next instance in the data set. The first call starts the
+   * thread that reads ahead, using the given structure for all instances.
+   *
+   * @param structure the structure of the data
+   * @return the next instance, null if there are no more instances
+   * @throws IOException if the wrapped loader fails
+   */
+  @Override
+  public Instance getNextInstance(Instances structure) throws IOException {
+    if (m_Finished) {
+      return null;
+    }
+
+    if (m_Buffer == null && !m_ReadDirectly) {
+      if (structure.checkForStringAttributes()
+        || structure.checkForAttributeType(Attribute.RELATIONAL)) {
+        m_ReadDirectly = true;
+      } else {
+        startReading(structure);
+      }
+    }
+
+    if (m_ReadDirectly) {
+      return m_Loader.getNextInstance(structure);
+    }
+
+    Instance result;
+    try {
+      result = m_Buffer.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the next instance");
+    }
+
+    if (result == END_OF_DATA) {
+      m_Finished = true;
+      m_Reader = null;
+      m_Buffer = null;
+      if (m_ReadError != null) {
+        if (m_ReadError instanceof IOException) {
+          throw (IOException) m_ReadError;
+        }
+        throw new IOException(m_ReadError);
+      }
+      return null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Starts the thread that reads ahead.
+   *
+   * @param structure the structure to pass on to the wrapped loader
+   */
+  protected void startReading(final Instances structure) {
+    final BlockingQueue<Instance> buffer =
+      new ArrayBlockingQueue<Instance>(m_BufferSize);
+    m_Buffer = buffer;
+    m_ReadError = null;
+    m_Reader = new Thread("PrefetchingLoader") {
+      @Override
+      public void run() {
+        try {
+          Instance inst;
+          while ((inst = m_Loader.getNextInstance(structure)) != null) {
+            buffer.put(inst);
+          }
+        } catch (InterruptedException e) {
+          // reading was stopped
+          return;
+        } catch (Exception e) {
+          if (isInterrupted()) {
+            return;
+          }
+          m_ReadError = e;
+        }
+        try {
+          buffer.put(END_OF_DATA);
+        } catch (InterruptedException e) {
+          // reading was stopped
+        }
+      }
+    };
+    m_Reader.setDaemon(true);
+    m_Reader.start();
+  }
+
+  /**
+   * Stops the thread that reads ahead (if any) and discards the instances
+   * that haven't been collected.
+   */
+  protected void stopReading() {
+    if (m_Reader != null) {
+      m_Reader.interrupt();
+      try {
+        m_Reader.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    m_Reader = null;
+    m_Buffer = null;
+    m_ReadError = null;
+    m_ReadDirectly = false;
+    m_Finished = false;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -29,14 +29,12 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
-import java.util.Vector;
+import java.util.List;
 
 import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.RevisionUtils;
-import weka.core.SparseInstance;
 
 /**
  <!-- globalinfo-start -->
@@ -44,7 +42,9 @@ import weka.core.SparseInstance;
  * <br/>
  * For more information about svm light see:<br/>
  * <br/>
- * http://svmlight.joachims.org/
+ * http://svmlight.joachims.org/<br/>
+ * <br/>
+ * The data is parsed in blocks of lines, optionally in parallel.
  * <p/>
  <!-- globalinfo-end -->
  *
@@ -68,8 +68,20 @@ public class SVMLightLoader
   /** The reader for the source file. */
   protected transient Reader m_sourceReader = null;
 
-  /** the buffer of the rows read so far. */
-  protected Vector<double[]> m_Buffer = null;
+  /** The stream for the source file. */
+  protected transient InputStream m_sourceStream = null;
+
+  /** the blocks of rows parsed so far. */
+  protected transient List<SparseFormatReader.Block> m_Blocks = null;
+
+  /** The number of threads to use for parsing (1 = sequential, 0 = all processors). */
+  protected int m_numExecutionSlots = 1;
+
+  /** The size (in bytes) of the blocks handed to the parsing threads. */
+  protected int m_chunkSize = 4 * 1024 * 1024;
+
+  /** The number of features (0 = determine from the data). */
+  protected int m_numFeatures = 0;
   
   /**
    * Returns a string describing this Loader.
@@ -81,7 +93,97 @@ public class SVMLightLoader
     return 
         "Reads a source that is in svm light format.\n\n"
       + "For more information about svm light see:\n\n"
-      + "http://svmlight.joachims.org/";
+      + "http://svmlight.joachims.org/\n\n"
+      + "The data is parsed in blocks of lines, optionally in parallel.";
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for parsing the "
+      + "data. 1 parses sequentially, 0 uses all available processors.";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use for parsing.
+   *
+   * @param numSlots	the number of slots to use (0 = all processors)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use for parsing.
+   *
+   * @return		the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String chunkSizeTipText() {
+    return "The approximate size (in bytes) of the blocks of lines handed to "
+      + "each thread.";
+  }
+
+  /**
+   * Set the approximate size (in bytes) of the blocks of lines that are
+   * parsed by each thread.
+   *
+   * @param size	the chunk size
+   */
+  public void setChunkSize(int size) {
+    m_chunkSize = size;
+  }
+
+  /**
+   * Get the approximate size (in bytes) of the blocks of lines that are
+   * parsed by each thread.
+   *
+   * @return		the chunk size
+   */
+  public int getChunkSize() {
+    return m_chunkSize;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numFeaturesTipText() {
+    return "The number of features, i.e., the largest feature index; "
+      + "0 determines it from the data.";
+  }
+
+  /**
+   * Set the number of features (the largest feature index).
+   *
+   * @param value	the number of features, 0 to determine it from the data
+   */
+  public void setNumFeatures(int value) {
+    m_numFeatures = value;
+  }
+
+  /**
+   * Get the number of features (the largest feature index).
+   *
+   * @return		the number of features, 0 if determined from the data
+   */
+  public int getNumFeatures() {
+    return m_numFeatures;
   }
 
   /**
@@ -118,7 +220,7 @@ public class SVMLightLoader
    */
   public void reset() throws IOException {
     m_structure = null;
-    m_Buffer    = null;
+    m_Blocks    = null;
     
     setRetrieval(NONE);
     
@@ -139,7 +241,7 @@ public class SVMLightLoader
    */
   public void setSource(URL url) throws IOException {
     m_structure = null;
-    m_Buffer    = null;
+    m_Blocks    = null;
     
     setRetrieval(NONE);
     
@@ -179,98 +281,19 @@ public class SVMLightLoader
     m_File = (new File(System.getProperty("user.dir"))).getAbsolutePath();
     m_URL  = "http://";
 
+    m_sourceStream = in;
     m_sourceReader = new BufferedReader(new InputStreamReader(in));
   }
 
   /**
-   * turns a svm light row into a double array with the class as the last
-   * entry.
-   * 
-   * @param row		the row to turn into a double array
-   * @return		the corresponding double array
-   * @throws Exception	if a parsing error is encountered 
-   */
-  protected double[] svmlightToArray(String row) throws Exception {
-    double[]		result;
-    StringTokenizer	tok;
-    int			index;
-    int			max;
-    String		col;
-    double		value;
-
-    // actual data
-    try {
-      // determine max index
-      max = 0;
-      tok = new StringTokenizer(row, " \t");
-      tok.nextToken();  // skip class
-      while (tok.hasMoreTokens()) {
-	col = tok.nextToken();
-	// finished?
-	if (col.startsWith("#"))
-	  break;
-	// qid is not supported
-	if (col.startsWith("qid:"))
-	  continue;
-	// actual value
-	index = Integer.parseInt(col.substring(0, col.indexOf(":")));
-	if (index > max)
-	  max = index;
-      }
-
-      // read values into array
-      tok    = new StringTokenizer(row, " \t");
-      result = new double[max + 1];
-
-      // 1. class
-      result[result.length - 1] = Double.parseDouble(tok.nextToken());
-
-      // 2. attributes
-      while (tok.hasMoreTokens()) {
-	col  = tok.nextToken();
-	// finished?
-	if (col.startsWith("#"))
-	  break;
-	// qid is not supported
-	if (col.startsWith("qid:"))
-	  continue;
-	// actual value
-	index = Integer.parseInt(col.substring(0, col.indexOf(":")));
-	value = Double.parseDouble(col.substring(col.indexOf(":") + 1));
-	result[index - 1] = value;
-      }
-    }
-    catch (Exception e) {
-      System.err.println("Error parsing line '" + row + "': " + e);
-      throw new Exception(e);
-    }
-    
-    return result;
-  }
-  
-  /**
-   * determines the number of attributes, if the number of attributes in the
-   * given row is greater than the current amount then this number will be
-   * returned, otherwise the current number.
-   * 
-   * @param values	the parsed values
-   * @param num		the current number of attributes
-   * @return 		the new number of attributes
-   * @throws Exception	if parsing fails
+   * Returns a reader for parsing the source.
+   *
+   * @return		the reader
    */
-  protected int determineNumAttributes(double[] values, int num) throws Exception {
-    int		result;
-    int		count;
-    
-    result = num;
-    
-    count = values.length;
-    if (count > result)
-      result = count;
-    
-    return result;
+  protected SparseFormatReader getSparseReader() {
+    return new SparseFormatReader(m_sourceStream, true, m_numExecutionSlots, m_chunkSize);
   }
-  
+
   /**
    * Determines the class attribute, either a binary +1/-1 or numeric attribute.
    * 
@@ -279,17 +302,12 @@ public class SVMLightLoader
   protected Attribute determineClassAttribute() {
     Attribute	result;
     boolean	binary;
-    int		i;
     ArrayList<String>	values;
-    double[]	dbls;
-    double	cls;
     
     binary = true;
     
-    for (i = 0; i < m_Buffer.size(); i++) {
-      dbls = (double[]) m_Buffer.get(i);
-      cls  = dbls[dbls.length - 1];
-      if ((cls != -1.0) && (cls != +1.0)) {
+    for (SparseFormatReader.Block block: m_Blocks) {
+      if (!block.isBinaryClass()) {
 	binary = false;
 	break;
       }
@@ -317,9 +335,6 @@ public class SVMLightLoader
    * @throws IOException 	if an error occurs
    */
   public Instances getStructure() throws IOException {
-    StringBuffer	line;
-    int			cInt;
-    char		c;
     int			numAtt;
     ArrayList<Attribute>		atts;
     int			i;
@@ -329,35 +344,16 @@ public class SVMLightLoader
       throw new IOException("No source has been specified");
 
     if (m_structure == null) {
-      m_Buffer = new Vector<double[]>();
       try {
 	// determine number of attributes
-	numAtt = 0;
-	line   = new StringBuffer();
-	while ((cInt = m_sourceReader.read()) != -1) {
-	  c = (char) cInt;
-	  if ((c == '\n') || (c == '\r')) {
-	    if ((line.length() > 0) && (line.charAt(0) != '#')) {
-	      // actual data
-	      try {
-		m_Buffer.add(svmlightToArray(line.toString()));
-		numAtt = determineNumAttributes((double[]) m_Buffer.lastElement(), numAtt);
-	      }
-	      catch (Exception e) {
-		throw new Exception("Error parsing line '" + line + "': " + e);
-	      }
-	    }
-	    line = new StringBuffer();
-	  }
-	  else {
-	    line.append(c);
-	  }
-	}
-	
-	// last line?
-	if ((line.length() != 0) && (line.charAt(0) != '#')) {
-	  m_Buffer.add(svmlightToArray(line.toString()));
-	  numAtt = determineNumAttributes((double[]) m_Buffer.lastElement(), numAtt);
+	m_Blocks = getSparseReader().read();
+	numAtt   = 1;
+	for (SparseFormatReader.Block block: m_Blocks)
+	  numAtt = Math.max(numAtt, block.getMaxIndex() + 1);
+	if (m_numFeatures > 0) {
+	  if (numAtt > m_numFeatures + 1)
+	    throw new IOException("Feature index " + (numAtt - 1) + " exceeds the number of features (" + m_numFeatures + ")");
+	  numAtt = m_numFeatures + 1;
 	}
 	
 	// generate header
@@ -394,9 +390,6 @@ public class SVMLightLoader
    */
   public Instances getDataSet() throws IOException {
     Instances 	result;
-    double[]	sparse;
-    double[]	data;
-    int		i;
 
     if (m_sourceReader == null)
       throw new IOException("No source has been specified");
@@ -408,35 +401,10 @@ public class SVMLightLoader
     if (m_structure == null)
       getStructure();
 
-    result = new Instances(m_structure, 0);
-
-    // create instances from buffered arrays
-    for (i = 0; i < m_Buffer.size(); i++) {
-      sparse = (double[]) m_Buffer.get(i);
-      
-      if (sparse.length != m_structure.numAttributes()) {
-	data = new double[m_structure.numAttributes()];
-	// attributes
-	System.arraycopy(sparse, 0, data, 0, sparse.length - 1);
-	// class
-	data[data.length - 1] = sparse[sparse.length - 1];
-      }
-      else {
-	data = sparse;
-      }
-      
-      // fix class
-      if (result.classAttribute().isNominal()) {
-	if (data[data.length - 1] == 1.0)
-	  data[data.length - 1] = result.classAttribute().indexOfValue("+1");
-	else if (data[data.length - 1] == -1)
-	  data[data.length - 1] = result.classAttribute().indexOfValue("-1");
-	else
-	  throw new IllegalStateException("Class is not binary!");
-      }
-      
-      result.add(new SparseInstance(1, data));
-    }
+    if (m_Blocks == null)
+      m_Blocks = getSparseReader().read();
+    result   = getSparseReader().toInstances(m_Blocks, m_structure, m_structure.classAttribute().isNominal());
+    m_Blocks = null;
 
     try {
       // close the stream
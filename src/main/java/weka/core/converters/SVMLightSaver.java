@@ -23,6 +23,11 @@ package weka.core.converters;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
@@ -86,6 +91,21 @@ public class SVMLightSaver extends AbstractFileSaver implements BatchConverter,
   /** the class index. */
   protected SingleIndex m_ClassIndex = new SingleIndex("last");
 
+  /** the buffer for assembling a row, reused for all rows. */
+  protected transient StringBuffer m_Row;
+
+  /** the characters of the current row, reused for all rows. */
+  protected transient char[] m_RowChars;
+
+  /** for formatting numbers without creating strings. */
+  protected transient DecimalFormat m_Format;
+
+  /** for formatting numbers, ignored. */
+  protected transient FieldPosition m_FieldPosition;
+
+  /** whether integral numbers can be formatted as longs. */
+  protected transient boolean m_PlainIntegers;
+
   /**
    * Constructor.
    */
@@ -275,34 +295,113 @@ public class SVMLightSaver extends AbstractFileSaver implements BatchConverter,
    */
   protected String instanceToSvmlight(Instance inst) {
     StringBuffer result;
-    int i;
 
     result = new StringBuffer();
+    appendSvmlight(result, inst);
+
+    return result.toString();
+  }
+
+  /**
+   * appends the number to the buffer, formatted the same way as
+   * Utils.doubleToString(value, MAX_DIGITS).
+   * 
+   * @param buffer the buffer to append to
+   * @param value the number to append
+   */
+  protected void appendNumber(StringBuffer buffer, double value) {
+    DecimalFormatSymbols symbols;
+
+    if (m_Format == null) {
+      m_Format = new DecimalFormat();
+      symbols = m_Format.getDecimalFormatSymbols();
+      symbols.setDecimalSeparator('.');
+      symbols.setNaN("NaN");
+      symbols.setInfinity("Infinity");
+      m_Format.setGroupingUsed(false);
+      m_Format.setRoundingMode(RoundingMode.HALF_UP);
+      m_Format.setDecimalFormatSymbols(symbols);
+      m_FieldPosition = new FieldPosition(0);
+      m_PlainIntegers = (symbols.getMinusSign() == '-')
+        && m_Format.getNegativePrefix().equals("-")
+        && m_Format.getPositivePrefix().isEmpty()
+        && m_Format.getNegativeSuffix().isEmpty()
+        && m_Format.getPositiveSuffix().isEmpty()
+        && (symbols.getZeroDigit() == '0');
+    }
+
+    if (m_PlainIntegers && (value != 0) && (value == (long) value)
+      && (Math.abs(value) < 1e15)) {
+      buffer.append((long) value);
+    } else {
+      m_Format.setMaximumFractionDigits(MAX_DIGITS);
+      m_Format.format(value, buffer, m_FieldPosition);
+    }
+  }
+
+  /**
+   * appends the svm light row of the instance to the buffer. Only the stored
+   * values of sparse instances are visited.
+   * 
+   * @param buffer the buffer to append to
+   * @param inst the instance to transform
+   */
+  protected void appendSvmlight(StringBuffer buffer, Instance inst) {
+    int i;
+    int index;
+    double value;
 
     // class
     if (inst.classAttribute().isNominal()) {
       if (inst.classValue() == 0) {
-        result.append("1");
+        buffer.append("1");
       } else if (inst.classValue() == 1) {
-        result.append("-1");
+        buffer.append("-1");
       }
     } else {
-      result.append("" + Utils.doubleToString(inst.classValue(), MAX_DIGITS));
+      appendNumber(buffer, inst.classValue());
     }
 
     // attributes
-    for (i = 0; i < inst.numAttributes(); i++) {
-      if (i == inst.classIndex()) {
+    for (i = 0; i < inst.numValues(); i++) {
+      index = inst.index(i);
+      if (index == inst.classIndex()) {
         continue;
       }
-      if (inst.value(i) == 0) {
+      value = inst.valueSparse(i);
+      if (value == 0) {
         continue;
       }
-      result.append(" " + (i + 1) + ":"
-        + Utils.doubleToString(inst.value(i), MAX_DIGITS));
+      buffer.append(' ').append(index + 1).append(':');
+      appendNumber(buffer, value);
     }
+  }
 
-    return result.toString();
+  /**
+   * writes the svm light row of the instance, followed by a line separator.
+   * The row is assembled in a buffer that is reused for all rows.
+   * 
+   * @param writer the writer to write to
+   * @param inst the instance to write
+   * @throws IOException if writing fails
+   */
+  protected void writeSvmlight(Writer writer, Instance inst)
+    throws IOException {
+    int length;
+
+    if (m_Row == null) {
+      m_Row = new StringBuffer();
+    }
+    m_Row.setLength(0);
+    appendSvmlight(m_Row, inst);
+    m_Row.append(System.lineSeparator());
+
+    length = m_Row.length();
+    if ((m_RowChars == null) || (m_RowChars.length < length)) {
+      m_RowChars = new char[Math.max(length, 256)];
+    }
+    m_Row.getChars(0, length, m_RowChars, 0);
+    writer.write(m_RowChars, 0, length);
   }
 
   /**
@@ -317,16 +416,12 @@ public class SVMLightSaver extends AbstractFileSaver implements BatchConverter,
   public void writeIncremental(Instance inst) throws IOException {
     int writeMode = getWriteMode();
     Instances structure = getInstances();
-    PrintWriter outW = null;
+    Writer outW = getWriter();
 
     if ((getRetrieval() == BATCH) || (getRetrieval() == NONE)) {
       throw new IOException("Batch and incremental saving cannot be mixed.");
     }
 
-    if (getWriter() != null) {
-      outW = new PrintWriter(getWriter());
-    }
-
     if (writeMode == WAIT) {
       if (structure == null) {
         setWriteMode(CANCEL);
@@ -365,7 +460,7 @@ public class SVMLightSaver extends AbstractFileSaver implements BatchConverter,
         if ((retrieveFile() == null) && (outW == null)) {
           System.out.println(instanceToSvmlight(inst));
         } else {
-          outW.println(instanceToSvmlight(inst));
+          writeSvmlight(outW, inst);
           m_incrementalCounter++;
           // flush every 100 instances
           if (m_incrementalCounter > 100) {
@@ -414,7 +509,7 @@ public class SVMLightSaver extends AbstractFileSaver implements BatchConverter,
     } else {
       PrintWriter outW = new PrintWriter(getWriter());
       for (int i = 0; i < getInstances().numInstances(); i++) {
-        outW.println(instanceToSvmlight(getInstances().instance(i)));
+        writeSvmlight(outW, getInstances().instance(i));
       }
       outW.flush();
       outW.close();
@@ -0,0 +1,869 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    SparseFormatReader.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+
+/**
+ * Parses data in the sparse &lt;class&gt; &lt;index&gt;:&lt;value&gt; ...
+ * format used by libsvm and svm light directly from the bytes of the input.
+ * The input is split into blocks of whole lines, which are parsed (optionally
+ * in parallel) into primitive arrays without creating a String for each
+ * token. Numbers that cannot be converted exactly by the fast path are handed
+ * to Double.parseDouble, hence the values are the same as with a
+ * String-based parser.<br/>
+ * In svm light mode, lines starting with '#' and everything after a '#' in a
+ * line is ignored, as are "qid:" entries.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ * @see LibSVMLoader
+ * @see SVMLightLoader
+ */
+public class SparseFormatReader implements RevisionHandler {
+
+  /** the powers of ten that can be represented exactly as doubles */
+  protected static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+    1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+    1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  /** the largest mantissa that can be represented exactly as a double */
+  protected static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  /**
+   * The rows of a block of lines, stored in primitive arrays. The feature
+   * indices are 0-based, the class value is stored separately.
+   */
+  public static class Block {
+
+    /** the number of rows */
+    protected int m_NumRows;
+
+    /** the class value of each row */
+    protected double[] m_Classes;
+
+    /** the end offset of each row in the index/value arrays */
+    protected int[] m_RowEnds;
+
+    /** the number of index/value pairs */
+    protected int m_NumValues;
+
+    /** the (0-based) feature indices */
+    protected int[] m_Indices;
+
+    /** the feature values */
+    protected double[] m_Values;
+
+    /** the largest (1-based) feature index */
+    protected int m_MaxIndex;
+
+    /** whether all class values are either +1 or -1 */
+    protected boolean m_BinaryClass = true;
+
+    /** the number of lines in the block */
+    protected int m_NumLines;
+
+    /**
+     * Initializes the block.
+     *
+     * @param numBytes the size of the text the block is parsed from, for
+     *          estimating the capacity
+     */
+    protected Block(int numBytes) {
+      int rows = Math.max(16, numBytes / 64);
+      int values = Math.max(16, numBytes / 8);
+      m_Classes = new double[rows];
+      m_RowEnds = new int[rows];
+      m_Indices = new int[values];
+      m_Values = new double[values];
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int numRows() {
+      return m_NumRows;
+    }
+
+    /**
+     * Returns the largest (1-based) feature index in this block.
+     *
+     * @return the largest index, 0 if no features
+     */
+    public int getMaxIndex() {
+      return m_MaxIndex;
+    }
+
+    /**
+     * Returns whether all class values are either +1 or -1.
+     *
+     * @return true if the class is binary
+     */
+    public boolean isBinaryClass() {
+      return m_BinaryClass;
+    }
+
+    /**
+     * Adds an index/value pair to the current row.
+     *
+     * @param index the 0-based index
+     * @param value the value
+     */
+    protected void addValue(int index, double value) {
+      if (m_NumValues == m_Indices.length) {
+        m_Indices = Arrays.copyOf(m_Indices, m_Indices.length * 2);
+        m_Values = Arrays.copyOf(m_Values, m_Values.length * 2);
+      }
+      m_Indices[m_NumValues] = index;
+      m_Values[m_NumValues] = value;
+      m_NumValues++;
+      if (index >= m_MaxIndex) {
+        m_MaxIndex = index + 1;
+      }
+    }
+
+    /**
+     * Finishes the current row.
+     *
+     * @param classValue the class value of the row
+     */
+    protected void endRow(double classValue) {
+      if (m_NumRows == m_Classes.length) {
+        m_Classes = Arrays.copyOf(m_Classes, m_Classes.length * 2);
+        m_RowEnds = Arrays.copyOf(m_RowEnds, m_RowEnds.length * 2);
+      }
+      int start = (m_NumRows == 0) ? 0 : m_RowEnds[m_NumRows - 1];
+      m_NumValues = sortRow(m_Indices, m_Values, start, m_NumValues);
+      m_Classes[m_NumRows] = classValue;
+      m_RowEnds[m_NumRows] = m_NumValues;
+      m_NumRows++;
+      if ((classValue != 1.0) && (classValue != -1.0)) {
+        m_BinaryClass = false;
+      }
+    }
+
+    /**
+     * Turns the given row into an instance, with the class as the last
+     * attribute.
+     *
+     * @param row the row
+     * @param numAttributes the number of attributes, including the class
+     * @param binaryClass whether to map class values +1/-1 to the labels of a
+     *          nominal class attribute with values "+1" and "-1"
+     * @return the instance
+     */
+    protected Instance toInstance(int row, int numAttributes,
+      boolean binaryClass) {
+      int start = (row == 0) ? 0 : m_RowEnds[row - 1];
+      int count = m_RowEnds[row] - start;
+      double[] values = new double[count + 1];
+      int[] indices = new int[count + 1];
+      System.arraycopy(m_Values, start, values, 0, count);
+      System.arraycopy(m_Indices, start, indices, 0, count);
+
+      double cls = m_Classes[row];
+      if (binaryClass) {
+        if (cls == 1.0) {
+          cls = 0;
+        } else if (cls == -1.0) {
+          cls = 1;
+        } else {
+          throw new IllegalStateException("Class is not binary!");
+        }
+      }
+      values[count] = cls;
+      indices[count] = numAttributes - 1;
+
+      // zeros (incl. the class) get dropped by the constructor
+      return new SparseInstance(1, values, indices, numAttributes);
+    }
+
+    /**
+     * Turns all rows into instances.
+     *
+     * @param numAttributes the number of attributes, including the class
+     * @param binaryClass whether to map +1/-1 class values to label indices
+     * @return the instances
+     */
+    protected List<Instance> toInstances(int numAttributes,
+      boolean binaryClass) {
+      List<Instance> result = new ArrayList<Instance>(m_NumRows);
+      for (int i = 0; i < m_NumRows; i++) {
+        result.add(toInstance(i, numAttributes, binaryClass));
+      }
+
+      return result;
+    }
+  }
+
+  /** the stream to read from */
+  protected InputStream m_Input;
+
+  /** whether to parse svm light (comments, qid) */
+  protected boolean m_SVMLight;
+
+  /** the number of threads to use (1 = sequential, 0 = all processors) */
+  protected int m_NumExecutionSlots;
+
+  /** the approximate size of the blocks in bytes */
+  protected int m_ChunkSize;
+
+  /**
+   * Initializes the reader.
+   *
+   * @param input the stream to read from
+   * @param svmLight whether the data is in svm light format
+   * @param numSlots the number of threads to use for parsing (1 =
+   *          sequential, 0 = all available processors)
+   * @param chunkSize the approximate size of the blocks in bytes (blocks
+   *          grow to hold at least one line)
+   */
+  public SparseFormatReader(InputStream input, boolean svmLight,
+    int numSlots, int chunkSize) {
+    m_Input = input;
+    m_SVMLight = svmLight;
+    m_NumExecutionSlots = numSlots;
+    m_ChunkSize = (chunkSize > 0) ? chunkSize : 4 * 1024 * 1024;
+  }
+
+  /**
+   * Returns the number of threads to use.
+   *
+   * @return the number of threads, at least 1
+   */
+  protected int getNumThreads() {
+    if (m_NumExecutionSlots == 0) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return Math.max(1, m_NumExecutionSlots);
+  }
+
+  /**
+   * Reads and parses the whole input.
+   *
+   * @return the parsed blocks, in the order of the input
+   * @throws IOException if reading or parsing fails
+   */
+  public List<Block> read() throws IOException {
+    final int numThreads = getNumThreads();
+    List<Block> result = new ArrayList<Block>();
+    ExecutorService pool =
+      (numThreads > 1) ? Executors.newFixedThreadPool(numThreads) : null;
+    LinkedList<Future<Block>> pending = new LinkedList<Future<Block>>();
+    int[] lines = new int[1];
+
+    try {
+      byte[] buffer = new byte[m_ChunkSize];
+      int filled = 0;
+      boolean eof = false;
+      while (!eof) {
+        int read = m_Input.read(buffer, filled, buffer.length - filled);
+        int end;
+        if (read < 0) {
+          eof = true;
+          end = filled;
+        } else {
+          filled += read;
+          if (filled < buffer.length) {
+            continue;
+          }
+          end = lineBlockEnd(buffer, filled);
+          if (end == 0) {
+            // no complete line in the buffer yet
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            continue;
+          }
+        }
+        if (end == 0) {
+          break;
+        }
+
+        final byte[] chunk = Arrays.copyOf(buffer, end);
+        if (pool == null) {
+          addBlock(result, parseBlock(chunk, chunk.length, m_SVMLight), lines);
+        } else {
+          final boolean svmLight = m_SVMLight;
+          pending.add(pool.submit(new Callable<Block>() {
+            @Override
+            public Block call() throws Exception {
+              return parseBlock(chunk, chunk.length, svmLight);
+            }
+          }));
+          // limit the number of unparsed blocks held in memory
+          while (pending.size() > 2 * numThreads) {
+            addBlock(result, get(pending.removeFirst()), lines);
+          }
+        }
+        filled -= end;
+        System.arraycopy(buffer, end, buffer, 0, filled);
+      }
+
+      while (pending.size() > 0) {
+        addBlock(result, get(pending.removeFirst()), lines);
+      }
+    } catch (BlockException e) {
+      throw new IOException(e.getMessage() + ", line " + (lines[0] + e.m_Line));
+    } finally {
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Turns the parsed blocks into instances, using as many threads as for
+   * parsing.
+   *
+   * @param blocks the parsed blocks, get released in the process
+   * @param structure the structure of the data, the class is the last
+   *          attribute
+   * @param binaryClass whether to map +1/-1 class values to the labels of a
+   *          nominal class attribute with values "+1" and "-1"
+   * @return the dataset
+   * @throws IOException if a row has a feature index that exceeds the number
+   *           of attributes
+   */
+  public Instances toInstances(List<Block> blocks, Instances structure,
+    final boolean binaryClass) throws IOException {
+    final int numAttributes = structure.numAttributes();
+    int numThreads = getNumThreads();
+    int numRows = 0;
+
+    for (Block block : blocks) {
+      if (block.getMaxIndex() > numAttributes - 1) {
+        throw new IOException("Feature index " + block.getMaxIndex()
+          + " exceeds the number of features (" + (numAttributes - 1) + ")");
+      }
+      numRows += block.numRows();
+    }
+    Instances result = new Instances(structure, numRows);
+
+    if ((numThreads == 1) || (blocks.size() < 2)) {
+      for (int i = 0; i < blocks.size(); i++) {
+        for (Instance inst : blocks.get(i).toInstances(numAttributes,
+          binaryClass)) {
+          result.add(inst);
+        }
+        blocks.set(i, null);
+      }
+      return result;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<List<Instance>>> converted =
+        new ArrayList<Future<List<Instance>>>();
+      for (final Block block : blocks) {
+        converted.add(pool.submit(new Callable<List<Instance>>() {
+          @Override
+          public List<Instance> call() {
+            return block.toInstances(numAttributes, binaryClass);
+          }
+        }));
+      }
+      blocks.clear();
+      for (Future<List<Instance>> future : converted) {
+        for (Instance inst : get(future)) {
+          result.add(inst);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return result;
+  }
+
+  /**
+   * Appends a parsed block to the list and keeps track of the line count.
+   *
+   * @param blocks the blocks so far
+   * @param block the block to add
+   * @param lines the number of lines so far, gets updated
+   */
+  protected static void addBlock(List<Block> blocks, Block block, int[] lines) {
+    blocks.add(block);
+    lines[0] += block.m_NumLines;
+  }
+
+  /**
+   * Waits for a parsed block.
+   *
+   * @param future the pending block
+   * @param <T> the type of the result
+   * @return the result
+   * @throws IOException if interrupted or if the parsing failed with an
+   *           I/O error
+   */
+  protected static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof BlockException) {
+        throw (BlockException) e.getCause();
+      }
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().toString());
+    }
+  }
+
+  /**
+   * Returns the end of the last complete line in the buffer.
+   *
+   * @param buffer the buffer
+   * @param length the number of bytes in the buffer
+   * @return the position after the last line terminator, 0 if none
+   */
+  protected static int lineBlockEnd(byte[] buffer, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\n') {
+        return i + 1;
+      }
+    }
+    // old-style Mac line endings
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\r') {
+        return i + 1;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Signals a parse error in a block, with the line relative to the start of
+   * the block.
+   */
+  protected static class BlockException extends IOException {
+
+    /** for serialization */
+    private static final long serialVersionUID = -2047553316012436722L;
+
+    /** the line (1-based) within the block */
+    protected int m_Line;
+
+    /**
+     * Initializes the exception.
+     *
+     * @param msg the error message
+     * @param line the line within the block
+     */
+    protected BlockException(String msg, int line) {
+      super(msg);
+      m_Line = line;
+    }
+  }
+
+  /**
+   * Parses a block of lines.
+   *
+   * @param buf the bytes of the lines
+   * @param length the number of bytes to parse
+   * @param svmLight whether the data is in svm light format
+   * @return the parsed rows
+   * @throws BlockException if parsing fails
+   */
+  protected static Block parseBlock(byte[] buf, int length, boolean svmLight)
+    throws BlockException {
+    Block result = new Block(length);
+    int line = 1;
+    int pos = 0;
+
+    while (pos < length) {
+      pos = skipBlanks(buf, pos, length);
+
+      // empty line or comment
+      if ((pos == length) || isLineEnd(buf[pos])
+        || (svmLight && (buf[pos] == '#'))) {
+        pos = skipLine(buf, pos, length);
+        line++;
+        continue;
+      }
+
+      // class
+      int end = tokenEnd(buf, pos, length);
+      double cls;
+      try {
+        cls = parseDouble(buf, pos, end);
+      } catch (NumberFormatException e) {
+        throw new BlockException("Invalid class value '"
+          + new String(buf, pos, end - pos) + "'", line);
+      }
+      pos = end;
+
+      // features
+      while (true) {
+        pos = skipBlanks(buf, pos, length);
+        if ((pos == length) || isLineEnd(buf[pos])) {
+          break;
+        }
+        // rest of line is a comment
+        if (svmLight && (buf[pos] == '#')) {
+          while ((pos < length) && !isLineEnd(buf[pos])) {
+            pos++;
+          }
+          break;
+        }
+        end = tokenEnd(buf, pos, length);
+        int colon = pos;
+        while ((colon < end) && (buf[colon] != ':')) {
+          colon++;
+        }
+        // qid is not supported
+        if (svmLight && (colon - pos == 3) && (buf[pos] == 'q')
+          && (buf[pos + 1] == 'i') && (buf[pos + 2] == 'd')) {
+          pos = end;
+          continue;
+        }
+        if (colon == end) {
+          throw new BlockException("Invalid entry '"
+            + new String(buf, pos, end - pos) + "', <index>:<value> expected",
+            line);
+        }
+        int index;
+        double value;
+        try {
+          index = parseInt(buf, pos, colon);
+          value = parseDouble(buf, colon + 1, end);
+        } catch (NumberFormatException e) {
+          throw new BlockException("Invalid entry '"
+            + new String(buf, pos, end - pos) + "'", line);
+        }
+        if (index < 1) {
+          throw new BlockException("Invalid feature index " + index
+            + ", indices start at 1", line);
+        }
+        result.addValue(index - 1, value);
+        pos = end;
+      }
+      result.endRow(cls);
+
+      pos = skipLine(buf, pos, length);
+      line++;
+    }
+    result.m_NumLines = countLines(buf, length);
+
+    return result;
+  }
+
+  /**
+   * Counts the line terminators in the buffer ("\n", "\r\n" or "\r").
+   *
+   * @param buf the buffer
+   * @param length the number of bytes
+   * @return the number of lines
+   */
+  protected static int countLines(byte[] buf, int length) {
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      if (buf[i] == '\n') {
+        result++;
+      } else if ((buf[i] == '\r') && ((i + 1 == length) || (buf[i + 1] != '\n'))) {
+        result++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks whether the byte is a line terminator.
+   *
+   * @param b the byte
+   * @return true if '\n' or '\r'
+   */
+  protected static boolean isLineEnd(byte b) {
+    return (b == '\n') || (b == '\r');
+  }
+
+  /**
+   * Skips spaces and tabs.
+   *
+   * @param buf the buffer
+   * @param pos the current position
+   * @param length the number of bytes
+   * @return the position of the next other character
+   */
+  protected static int skipBlanks(byte[] buf, int pos, int length) {
+    while ((pos < length) && ((buf[pos] == ' ') || (buf[pos] == '\t'))) {
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the end of the token starting at the given position.
+   *
+   * @param buf the buffer
+   * @param pos the start of the token
+   * @param length the number of bytes
+   * @return the position after the token
+   */
+  protected static int tokenEnd(byte[] buf, int pos, int length) {
+    while ((pos < length) && (buf[pos] != ' ') && (buf[pos] != '\t')
+      && !isLineEnd(buf[pos])) {
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Moves past the end of the current line.
+   *
+   * @param buf the buffer
+   * @param pos the current position
+   * @param length the number of bytes
+   * @return the start of the next line
+   */
+  protected static int skipLine(byte[] buf, int pos, int length) {
+    while ((pos < length) && !isLineEnd(buf[pos])) {
+      pos++;
+    }
+    if (pos < length) {
+      if ((buf[pos] == '\r') && (pos + 1 < length) && (buf[pos + 1] == '\n')) {
+        pos++;
+      }
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Parses a (decimal) integer.
+   *
+   * @param buf the buffer
+   * @param start the start of the number
+   * @param end the end of the number
+   * @return the parsed number
+   * @throws NumberFormatException if not a valid integer
+   */
+  protected static int parseInt(byte[] buf, int start, int end) {
+    if ((end - start > 0) && (end - start < 10)) {
+      int result = 0;
+      int i;
+      for (i = start; i < end; i++) {
+        int digit = buf[i] - '0';
+        if ((digit < 0) || (digit > 9)) {
+          break;
+        }
+        result = result * 10 + digit;
+      }
+      if (i == end) {
+        return result;
+      }
+    }
+
+    return Integer.parseInt(new String(buf, start, end - start));
+  }
+
+  /**
+   * Parses a number the same way as Double.parseDouble(String). Plain decimal
+   * numbers whose digits and exponent allow an exact conversion are parsed
+   * directly, anything else is passed on to Double.parseDouble.
+   *
+   * @param buf the buffer
+   * @param start the start of the number
+   * @param end the end of the number
+   * @return the parsed number
+   * @throws NumberFormatException if not a valid number
+   */
+  protected static double parseDouble(byte[] buf, int start, int end) {
+    int pos = start;
+    boolean negative = false;
+    long mantissa = 0;
+    int digits = 0;
+    int significant = 0;
+    int scale = 0;
+    boolean exact = true;
+
+    if ((pos < end) && ((buf[pos] == '-') || (buf[pos] == '+'))) {
+      negative = (buf[pos] == '-');
+      pos++;
+    }
+
+    // integer part
+    for (; pos < end; pos++) {
+      int digit = buf[pos] - '0';
+      if ((digit < 0) || (digit > 9)) {
+        break;
+      }
+      digits++;
+      if ((significant > 0) || (digit > 0)) {
+        significant++;
+        if (significant > 18) {
+          exact = false;
+        } else {
+          mantissa = mantissa * 10 + digit;
+        }
+      }
+    }
+
+    // fraction
+    if ((pos < end) && (buf[pos] == '.')) {
+      pos++;
+      for (; pos < end; pos++) {
+        int digit = buf[pos] - '0';
+        if ((digit < 0) || (digit > 9)) {
+          break;
+        }
+        digits++;
+        scale--;
+        if ((significant > 0) || (digit > 0)) {
+          significant++;
+          if (significant > 18) {
+            exact = false;
+          } else {
+            mantissa = mantissa * 10 + digit;
+          }
+        }
+      }
+    }
+
+    // exponent
+    if ((digits > 0) && (pos < end) && ((buf[pos] == 'e') || (buf[pos] == 'E'))) {
+      pos++;
+      boolean negExp = false;
+      if ((pos < end) && ((buf[pos] == '-') || (buf[pos] == '+'))) {
+        negExp = (buf[pos] == '-');
+        pos++;
+      }
+      int exp = 0;
+      int expDigits = 0;
+      for (; pos < end; pos++) {
+        int digit = buf[pos] - '0';
+        if ((digit < 0) || (digit > 9)) {
+          break;
+        }
+        expDigits++;
+        if (exp < 10000) {
+          exp = exp * 10 + digit;
+        }
+      }
+      if (expDigits == 0) {
+        exact = false;
+      }
+      scale += negExp ? -exp : exp;
+    }
+
+    if (exact && (digits > 0) && (pos == end)) {
+      if (mantissa == 0) {
+        return negative ? -0.0 : 0.0;
+      }
+      if ((mantissa < MAX_EXACT_MANTISSA) && (scale >= -22) && (scale <= 22)) {
+        double result;
+        if (scale >= 0) {
+          result = mantissa * POWERS_OF_TEN[scale];
+        } else {
+          result = mantissa / POWERS_OF_TEN[-scale];
+        }
+        return negative ? -result : result;
+      }
+    }
+
+    return Double.parseDouble(new String(buf, start, end - start));
+  }
+
+  /**
+   * Sorts the index/value pairs of a row by index, if necessary. For
+   * duplicate indices, only the last value is kept.
+   *
+   * @param indices the indices
+   * @param values the values
+   * @param start the start of the row
+   * @param end the end of the row
+   * @return the new end of the row
+   */
+  protected static int sortRow(int[] indices, double[] values, int start,
+    int end) {
+    boolean sorted = true;
+    for (int i = start + 1; i < end; i++) {
+      if (indices[i] <= indices[i - 1]) {
+        sorted = false;
+        break;
+      }
+    }
+    if (sorted) {
+      return end;
+    }
+
+    // stable insertion sort, rows are short
+    for (int i = start + 1; i < end; i++) {
+      int index = indices[i];
+      double value = values[i];
+      int j = i - 1;
+      while ((j >= start) && (indices[j] > index)) {
+        indices[j + 1] = indices[j];
+        values[j + 1] = values[j];
+        j--;
+      }
+      indices[j + 1] = index;
+      values[j + 1] = value;
+    }
+
+    // remove duplicates, keeping the last value
+    int result = start;
+    for (int i = start; i < end; i++) {
+      if ((i + 1 < end) && (indices[i + 1] == indices[i])) {
+        continue;
+      }
+      indices[result] = indices[i];
+      values[result] = values[i];
+      result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
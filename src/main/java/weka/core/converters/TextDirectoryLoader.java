@@ -26,11 +26,19 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import weka.core.Attribute;
 import weka.core.CommandlineRunnable;
@@ -40,13 +48,15 @@ import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
-import weka.core.SerializedObject;
 import weka.core.Utils;
 
 /**
  * <!-- globalinfo-start --> Loads all text files in a directory and uses the
  * subdirectory names as class labels. The content of the text files will be
- * stored in a String attribute, the filename can be stored as well.
+ * stored in a String attribute, the filename can be stored as well. The files
+ * of each subdirectory are processed in the order of their names, taking the
+ * subdirectories in turn; they can be read by several threads in parallel,
+ * without affecting the order.
  * <p/>
  * <!-- globalinfo-end -->
  * 
@@ -78,6 +88,12 @@ import weka.core.Utils;
  * </pre>
  * 
  * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots for reading files.
+ *  (default 1 - i.e. no parallelism)
+ * </pre>
+ * 
+ * <pre>
  * -R
  *  Retain all string attribute values when reading incrementally.
  * </pre>
@@ -121,6 +137,58 @@ public class TextDirectoryLoader extends AbstractLoader implements
    */
   protected String m_charSet = "";
 
+  /**
+   * The number of execution slots (threads) to use for reading files (1 =
+   * sequential).
+   */
+  protected int m_numExecutionSlots = 1;
+
+  /** The documents to load, in the order they are output. */
+  protected transient List<Document> m_Documents;
+
+  /** The index of the next document to output. */
+  protected transient int m_NextDocument;
+
+  /** The index of the next document to hand to the reading threads. */
+  protected transient int m_NextSubmitted;
+
+  /** The threads reading ahead, null if reading sequentially. */
+  protected transient ExecutorService m_ReadPool;
+
+  /** The contents of the documents being read ahead. */
+  protected transient LinkedList<Future<String>> m_Pending;
+
+  /** The maximum number of documents to read ahead. */
+  protected transient int m_ReadAhead;
+
+  /**
+   * A text file to load.
+   */
+  protected static class Document {
+
+    /** the file */
+    protected File m_File;
+
+    /** the name of the file, relative to the source directory */
+    protected String m_Name;
+
+    /** the index of the class label */
+    protected int m_ClassIndex;
+
+    /**
+     * Initializes the document.
+     * 
+     * @param file the file
+     * @param name the relative name of the file
+     * @param classIndex the index of the class label
+     */
+    protected Document(File file, String name, int classIndex) {
+      m_File = file;
+      m_Name = name;
+      m_ClassIndex = classIndex;
+    }
+  }
+
   /**
    * default constructor
    */
@@ -138,7 +206,10 @@ public class TextDirectoryLoader extends AbstractLoader implements
   public String globalInfo() {
     return "Loads all text files in a directory and uses the subdirectory names "
       + "as class labels. The content of the text files will be stored in a "
-      + "String attribute, the filename can be stored as well.";
+      + "String attribute, the filename can be stored as well. The files of "
+      + "each subdirectory are processed in the order of their names, taking "
+      + "the subdirectories in turn; they can be read by several threads in "
+      + "parallel, without affecting the order.";
   }
 
   /**
@@ -164,6 +235,10 @@ public class TextDirectoryLoader extends AbstractLoader implements
       + "(default: use the default character set)", "charset", 1,
       "-charset <charset name>"));
 
+    result.add(new Option("\tNumber of execution slots for reading files.\n"
+      + "\t(default 1 - i.e. no parallelism)", "num-slots", 1,
+      "-num-slots <num>"));
+
     return result.elements();
   }
 
@@ -198,6 +273,12 @@ public class TextDirectoryLoader extends AbstractLoader implements
    *  (default: use the default character set)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots for reading files.
+   *  (default 1 - i.e. no parallelism)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the options
@@ -216,6 +297,13 @@ public class TextDirectoryLoader extends AbstractLoader implements
     if (charSet.length() > 0) {
       m_charSet = charSet;
     }
+
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(slots));
+    } else {
+      setNumExecutionSlots(1);
+    }
   }
 
   /**
@@ -243,6 +331,9 @@ public class TextDirectoryLoader extends AbstractLoader implements
       options.add(m_charSet);
     }
 
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
+
     return options.toArray(new String[options.size()]);
   }
 
@@ -277,6 +368,35 @@ public class TextDirectoryLoader extends AbstractLoader implements
     return m_charSet;
   }
 
+  /**
+   * the tip text for this property
+   * 
+   * @return the tip text
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for reading the "
+      + "files; 0 uses all available processors. The order of the "
+      + "instances is not affected.";
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use for reading files.
+   * 
+   * @param value the number of slots (0 = all available processors)
+   */
+  public void setNumExecutionSlots(int value) {
+    m_numExecutionSlots = value;
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use for reading files.
+   * 
+   * @return the number of slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Sets whether to print some debug information.
    * 
@@ -365,9 +485,8 @@ public class TextDirectoryLoader extends AbstractLoader implements
    */
   @Override
   public void reset() {
+    stopReading();
     m_structure = null;
-    m_filesByClass = null;
-    m_lastClassDir = 0;
     setRetrieval(NONE);
   }
 
@@ -441,7 +560,8 @@ public class TextDirectoryLoader extends AbstractLoader implements
   /**
    * Return the full data set. If the structure hasn't yet been determined by a
    * call to getStructure then method should do so before processing the rest of
-   * the data set.
+   * the data set. The documents are output in the same order as by
+   * getNextInstance(), i.e., the classes are interleaved.
    * 
    * @return the structure of the data set as an empty set of Instances
    * @throws IOException if there is no source or parsing fails
@@ -453,30 +573,18 @@ public class TextDirectoryLoader extends AbstractLoader implements
     }
 
     String directoryPath = getDirectory().getAbsolutePath();
-    ArrayList<String> classes = new ArrayList<String>();
-    Enumeration<Object> enm = getStructure().classAttribute().enumerateValues();
-    while (enm.hasMoreElements()) {
-      Object oo = enm.nextElement();
-      if (oo instanceof SerializedObject) {
-        classes.add(((SerializedObject) oo).getObject().toString());
-      } else {
-        classes.add(oo.toString());
-      }
-    }
-
     Instances data = getStructure();
-    int fileCount = 0;
-    for (int k = 0; k < classes.size(); k++) {
-      String subdirPath = classes.get(k);
-      File subdir = new File(directoryPath + File.separator + subdirPath);
-      String[] files = subdir.list();
-      for (String file : files) {
+    startReading(listDocuments(data));
+    try {
+      while (m_NextDocument < m_Documents.size()) {
+        Document doc = m_Documents.get(m_NextDocument);
         try {
-          fileCount++;
           if (getDebug()) {
-            System.err.println("processing " + fileCount + " : " + subdirPath
-              + " : " + file);
+            System.err.println("processing " + (m_NextDocument + 1) + " : "
+              + data.classAttribute().value(doc.m_ClassIndex) + " : "
+              + doc.m_File.getName());
           }
+          String text = readNextDocument();
 
           double[] newInst = null;
           if (m_OutputFilename) {
@@ -484,148 +592,225 @@ public class TextDirectoryLoader extends AbstractLoader implements
           } else {
             newInst = new double[2];
           }
-          File txt =
-            new File(directoryPath + File.separator + subdirPath
-              + File.separator + file);
-          BufferedReader is;
-          if (m_charSet == null || m_charSet.length() == 0) {
-            is =
-              new BufferedReader(
-                new InputStreamReader(new FileInputStream(txt)));
-          } else {
-            is =
-              new BufferedReader(new InputStreamReader(
-                new FileInputStream(txt), m_charSet));
-          }
-          StringBuffer txtStr = new StringBuffer();
-          int c;
-          while ((c = is.read()) != -1) {
-            txtStr.append((char) c);
-          }
-
-          newInst[0] = data.attribute(0).addStringValue(txtStr.toString());
+          newInst[0] = data.attribute(0).addStringValue(text);
           if (m_OutputFilename) {
-            newInst[1] =
-              data.attribute(1).addStringValue(
-                subdirPath + File.separator + file);
+            newInst[1] = data.attribute(1).addStringValue(doc.m_Name);
           }
-          newInst[data.classIndex()] = k;
+          newInst[data.classIndex()] = doc.m_ClassIndex;
           data.add(new DenseInstance(1.0, newInst));
-          is.close();
         } catch (Exception e) {
           System.err.println("failed to convert file: " + directoryPath
-            + File.separator + subdirPath + File.separator + file);
+            + File.separator + doc.m_Name);
         }
       }
+    } finally {
+      stopReading();
     }
 
     return data;
   }
 
-  protected List<LinkedList<String>> m_filesByClass;
-  protected int m_lastClassDir = 0;
-
   /**
-   * Process input directories/files incrementally.
+   * Process input directories/files incrementally. The documents of the
+   * classes are output in turn, i.e., the first document of each class, then
+   * the second one of each class, etc.
    * 
-   * @param structure ignored
-   * @return never returns without throwing an exception
+   * @param structure the structure of the data, gets updated with the string
+   *          values of the current instance
+   * @return the next instance, null if there are no more documents
    * @throws IOException if a problem occurs
    */
   @Override
   public Instance getNextInstance(Instances structure) throws IOException {
-    // throw new
-    // IOException("TextDirectoryLoader can't read data sets incrementally.");
+    if (m_Documents == null) {
+      startReading(listDocuments(structure));
+    }
+
+    if (m_NextDocument == m_Documents.size()) {
+      stopReading();
+      m_Documents = new ArrayList<Document>();
+      m_NextDocument = 0;
+      return null; // done!
+    }
 
+    Document doc = m_Documents.get(m_NextDocument);
+    String text = readNextDocument();
+
+    double[] newInst = null;
+    if (m_OutputFilename) {
+      newInst = new double[3];
+    } else {
+      newInst = new double[2];
+    }
+
+    newInst[0] = 0;
+    structure.attribute(0).setStringValue(text);
+
+    if (m_OutputFilename) {
+      newInst[1] = 0;
+      structure.attribute(1).setStringValue(doc.m_File.getAbsolutePath());
+    }
+    newInst[structure.classIndex()] = doc.m_ClassIndex;
+    Instance inst = new DenseInstance(1.0, newInst);
+    inst.setDataset(structure);
+
+    return inst;
+  }
+
+  /**
+   * Lists the files in the class directories, sorted by name. The classes are
+   * interleaved, i.e., first document of each class, second document of each
+   * class, etc.
+   * 
+   * @param structure the structure of the data
+   * @return the documents, in the order they are to be output
+   */
+  protected List<Document> listDocuments(Instances structure) {
     String directoryPath = getDirectory().getAbsolutePath();
     Attribute classAtt = structure.classAttribute();
-    if (m_filesByClass == null) {
-      m_filesByClass = new ArrayList<LinkedList<String>>();
-      for (int i = 0; i < classAtt.numValues(); i++) {
-        File classDir =
-          new File(directoryPath + File.separator + classAtt.value(i));
-        String[] files = classDir.list();
-        LinkedList<String> classDocs = new LinkedList<String>();
-        for (String cd : files) {
-          File txt =
-            new File(directoryPath + File.separator + classAtt.value(i)
-              + File.separator + cd);
+    List<List<Document>> byClass = new ArrayList<List<Document>>();
+    int max = 0;
+
+    for (int i = 0; i < classAtt.numValues(); i++) {
+      String subdirPath = classAtt.value(i);
+      File classDir = new File(directoryPath + File.separator + subdirPath);
+      String[] files = classDir.list();
+      List<Document> classDocs = new ArrayList<Document>();
+      if (files != null) {
+        Arrays.sort(files);
+        for (String file : files) {
+          File txt = new File(classDir, file);
           if (txt.isFile()) {
-            classDocs.add(cd);
+            classDocs.add(new Document(txt, subdirPath + File.separator + file,
+              i));
           }
         }
-        m_filesByClass.add(classDocs);
       }
+      byClass.add(classDocs);
+      max = Math.max(max, classDocs.size());
     }
 
-    // cycle through the classes
-    int count = 0;
-    LinkedList<String> classContents = m_filesByClass.get(m_lastClassDir);
-    boolean found = (classContents.size() > 0);
-    while (classContents.size() == 0) {
-      m_lastClassDir++;
-      count++;
-      if (m_lastClassDir == structure.classAttribute().numValues()) {
-        m_lastClassDir = 0;
-      }
-      classContents = m_filesByClass.get(m_lastClassDir);
-      if (classContents.size() > 0) {
-        found = true; // we have an instance we can create
-        break;
-      }
-      if (count == structure.classAttribute().numValues()) {
-        break; // must be finished
+    List<Document> result = new ArrayList<Document>();
+    for (int n = 0; n < max; n++) {
+      for (List<Document> classDocs : byClass) {
+        if (n < classDocs.size()) {
+          result.add(classDocs.get(n));
+        }
       }
     }
 
-    if (found) {
-      String nextDoc = classContents.poll();
-      File txt =
-        new File(directoryPath + File.separator
-          + classAtt.value(m_lastClassDir) + File.separator + nextDoc);
-
-      BufferedReader is;
-      if (m_charSet == null || m_charSet.length() == 0) {
-        is =
-          new BufferedReader(new InputStreamReader(new FileInputStream(txt)));
-      } else {
-        is =
-          new BufferedReader(new InputStreamReader(new FileInputStream(txt),
-            m_charSet));
-      }
-      StringBuffer txtStr = new StringBuffer();
-      int c;
-      while ((c = is.read()) != -1) {
-        txtStr.append((char) c);
-      }
+    return result;
+  }
 
-      double[] newInst = null;
-      if (m_OutputFilename) {
-        newInst = new double[3];
-      } else {
-        newInst = new double[2];
-      }
+  /**
+   * Starts reading the given documents, using a pool of threads that read
+   * ahead if more than one execution slot is to be used.
+   * 
+   * @param documents the documents to read
+   */
+  protected void startReading(List<Document> documents) {
+    stopReading();
 
-      newInst[0] = 0;
-      structure.attribute(0).setStringValue(txtStr.toString());
+    m_Documents = documents;
+    m_NextDocument = 0;
+    m_NextSubmitted = 0;
 
-      if (m_OutputFilename) {
-        newInst[1] = 0;
-        structure.attribute(1).setStringValue(txt.getAbsolutePath());
-      }
-      newInst[structure.classIndex()] = m_lastClassDir;
-      Instance inst = new DenseInstance(1.0, newInst);
-      inst.setDataset(structure);
-      is.close();
+    int numSlots = m_numExecutionSlots;
+    if (numSlots == 0) {
+      numSlots = Runtime.getRuntime().availableProcessors();
+    }
+    if (numSlots > 1) {
+      m_ReadPool = Executors.newFixedThreadPool(numSlots, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread result = new Thread(r, "TextDirectoryLoader");
+          result.setDaemon(true);
+          return result;
+        }
+      });
+      m_Pending = new LinkedList<Future<String>>();
+      m_ReadAhead = 4 * numSlots;
+    }
+  }
 
-      m_lastClassDir++;
-      if (m_lastClassDir == structure.classAttribute().numValues()) {
-        m_lastClassDir = 0;
+  /**
+   * Returns the content of the next document and advances to the following
+   * one. When reading in parallel, up to four documents per thread are read
+   * ahead.
+   * 
+   * @return the content of the document
+   * @throws IOException if the document cannot be read
+   */
+  protected String readNextDocument() throws IOException {
+    Document doc = m_Documents.get(m_NextDocument++);
+    if (m_ReadPool == null) {
+      m_NextSubmitted = m_NextDocument;
+      return readDocument(doc.m_File);
+    }
+
+    while ((m_NextSubmitted < m_Documents.size())
+      && (m_Pending.size() < m_ReadAhead)) {
+      final File file = m_Documents.get(m_NextSubmitted++).m_File;
+      m_Pending.add(m_ReadPool.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return readDocument(file);
+        }
+      }));
+    }
+
+    try {
+      return m_Pending.removeFirst().get();
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
       }
+      throw new IOException(e.getCause().toString());
+    }
+  }
 
-      return inst;
+  /**
+   * Stops the threads reading ahead (if any) and forgets the documents.
+   */
+  protected void stopReading() {
+    if (m_ReadPool != null) {
+      m_ReadPool.shutdownNow();
+    }
+    m_ReadPool = null;
+    m_Pending = null;
+    m_Documents = null;
+  }
+
+  /**
+   * Reads the content of a text file, using the character set of the loader.
+   * 
+   * @param file the file to read
+   * @return the content
+   * @throws IOException if the file cannot be read
+   */
+  protected String readDocument(File file) throws IOException {
+    Reader is;
+    if (m_charSet == null || m_charSet.length() == 0) {
+      is = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
     } else {
-      return null; // done!
+      is =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file),
+          m_charSet));
+    }
+
+    try {
+      StringBuilder txtStr = new StringBuilder((int) Math.min(file.length(),
+        Integer.MAX_VALUE - 8));
+      char[] buffer = new char[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        txtStr.append(buffer, 0, read);
+      }
+      return txtStr.toString();
+    } finally {
+      is.close();
     }
   }
 
@@ -36,10 +36,11 @@ import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.RevisionUtils;
 import weka.core.xml.XMLInstances;
+import weka.core.xml.XMLInstancesReader;
 
 /**
  <!-- globalinfo-start -->
- * Reads a source that is in the XML version of the ARFF format. It automatically decompresses the data if the extension is '.xrff.gz'.
+ * Reads a source that is in the XML version of the ARFF format. It automatically decompresses the data if the extension is '.xrff.gz'. The data is parsed as a stream, hence it can also be read incrementally.
  * <p/>
  <!-- globalinfo-end -->
  *
@@ -49,7 +50,7 @@ import weka.core.xml.XMLInstances;
  */
 public class XRFFLoader 
   extends AbstractFileLoader 
-  implements BatchConverter, URLSourcedLoader {
+  implements BatchConverter, IncrementalConverter, URLSourcedLoader {
 
   /** for serialization */
   private static final long serialVersionUID = 3764533621135196582L;
@@ -66,8 +67,8 @@ public class XRFFLoader
   /** The reader for the source file. */
   protected transient Reader m_sourceReader = null;
 
-  /** the loaded XML document */
-  protected XMLInstances m_XMLInstances;
+  /** the streaming reader for the XML data */
+  protected transient XMLInstancesReader m_XMLReader;
   
   /**
    * Returns a string describing this Loader
@@ -79,7 +80,8 @@ public class XRFFLoader
     return 
         "Reads a source that is in the XML version of the ARFF format. "
       + "It automatically decompresses the data if the extension is '" 
-      + FILE_EXTENSION_COMPRESSED + "'.";
+      + FILE_EXTENSION_COMPRESSED + "'. The data is parsed as a stream, "
+      + "hence it can also be read incrementally.";
   }
 
   /**
@@ -116,7 +118,7 @@ public class XRFFLoader
    */
   public void reset() throws IOException {
     m_structure    = null;
-    m_XMLInstances = null;
+    m_XMLReader    = null;
 
     setRetrieval(NONE);
     
@@ -137,7 +139,7 @@ public class XRFFLoader
    */
   public void setSource(File file) throws IOException {
     m_structure    = null;
-    m_XMLInstances = null;
+    m_XMLReader    = null;
     
     setRetrieval(NONE);
 
@@ -167,7 +169,7 @@ public class XRFFLoader
    */
   public void setSource(URL url) throws IOException {
     m_structure    = null;
-    m_XMLInstances = null;
+    m_XMLReader    = null;
     
     setRetrieval(NONE);
     
@@ -224,8 +226,8 @@ public class XRFFLoader
 
     if (m_structure == null) {
       try {
-	m_XMLInstances = new XMLInstances(m_sourceReader);
-	m_structure    = new Instances(m_XMLInstances.getInstances(), 0);
+	m_XMLReader = new XMLInstancesReader(m_sourceReader);
+	m_structure = new Instances(m_XMLReader.getStructure(), 0);
       }
       catch (IOException ioe) {
 	// just re-throw it
@@ -259,25 +261,60 @@ public class XRFFLoader
     if (m_structure == null)
       getStructure();
 
+    // fresh copies of string attributes, as their values get added
+    Instances result = m_structure.stringFreeStructure();
+    Instance inst;
+    while ((inst = m_XMLReader.readInstance(result, true)) != null)
+      result.add(inst);
+    result.compactify();
+
     try {
       // close the stream
+      m_XMLReader.close();
       m_sourceReader.close();
     } catch (Exception ex) {
     }
 
-    return m_XMLInstances.getInstances();
+    return result;
   }
 
   /**
-   * XRFFLoader is unable to process a data set incrementally.
+   * Read the data set incrementally---get the next instance in the data 
+   * set or returns null if there are no more instances to get. If the 
+   * structure hasn't yet been determined by a call to getStructure then 
+   * method should do so before returning the next instance in the data set.
+   * For string attributes, only the value of the current instance is kept
+   * in the header.
    *
-   * @param structure		ignored
-   * @return 			never returns without throwing an exception
-   * @throws IOException 	always. XRFFLoader is unable to process a 
-   * 				data set incrementally.
+   * @param structure		the dataset header information, will get updated 
+   * 				in case of string attributes
+   * @return 			the next instance in the data set as an Instance
+   * 				object or null if there are no more instances to
+   * 				be read
+   * @throws IOException 	if there is an error during parsing
    */
   public Instance getNextInstance(Instances structure) throws IOException {
-    throw new IOException("XRFFLoader can't read data sets incrementally.");
+    if (m_sourceReader == null)
+      throw new IOException("No source has been specified");
+    
+    if (getRetrieval() == BATCH)
+      throw new IOException("Cannot mix getting Instances in both incremental and batch modes");
+
+    setRetrieval(INCREMENTAL);
+    if (m_structure == null)
+      getStructure();
+
+    Instance result = m_XMLReader.readInstance(structure, false);
+    if (result == null) {
+      try {
+	// close the stream
+	m_XMLReader.close();
+	m_sourceReader.close();
+      } catch (Exception ex) {
+      }
+    }
+
+    return result;
   }
   
   /**
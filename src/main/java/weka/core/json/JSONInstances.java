@@ -21,6 +21,7 @@
 package weka.core.json;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import weka.core.Attribute;
 import weka.core.DenseInstance;
@@ -103,14 +104,43 @@ public class JSONInstances {
     name   = (String) att.getChild(NAME).getValue("noname");
     type   = (String) att.getChild(TYPE).getValue("");
     weight = (Double) att.getChild(WEIGHT).getValue(new Double(1.0));
+    values = null;
+    if (type.equals(Attribute.typeToString(Attribute.NOMINAL))) {
+      labels = att.getChild(LABELS);
+      values = new ArrayList<String>();
+      for (i = 0; i < labels.getChildCount(); i++) {
+	label = (String)((JSONNode) labels.getChildAt(i)).getValue();
+	values.add(label);
+      }
+    }
+    dateformat = null;
+    if (type.equals(Attribute.typeToString(Attribute.DATE)))
+      dateformat = (String) att.getChild(DATEFORMAT).getValue("yyyy-MM-dd'T'HH:mm:ss");
+    
+    return toAttribute(name, type, weight, values, dateformat);
+  }
+
+  /**
+   * Turns the parts of an attribute definition into an Attribute, if possible.
+   * 
+   * @param name	the name of the attribute
+   * @param type	the type of the attribute
+   * @param weight	the weight of the attribute
+   * @param labels	the labels of a nominal attribute, otherwise ignored
+   * @param dateformat	the format of a date attribute, otherwise ignored
+   * @return		the Attribute, null in case of an error
+   */
+  public static Attribute toAttribute(String name, String type, double weight, 
+      List<String> labels, String dateformat) {
+    Attribute		result;
+    ArrayList<String>	values;
+    
     if (type.equals(Attribute.typeToString(Attribute.NUMERIC))) {
       result = new Attribute(name);
     }
     else if (type.equals(Attribute.typeToString(Attribute.NOMINAL))) {
-      labels = att.getChild(LABELS);
       values = new ArrayList<String>();
-      for (i = 0; i < labels.getChildCount(); i++) {
-	label = (String)((JSONNode) labels.getChildAt(i)).getValue();
+      for (String label: labels) {
 	if (label.equals("'" + MISSING_VALUE + "'"))
 	  values.add(MISSING_VALUE);
 	else
@@ -119,8 +149,7 @@ public class JSONInstances {
       result = new Attribute(name, values);
     }
     else if (type.equals(Attribute.typeToString(Attribute.DATE))) {
-      dateformat = (String) att.getChild(DATEFORMAT).getValue("yyyy-MM-dd'T'HH:mm:ss");
-      result     = new Attribute(name, dateformat);
+      result = new Attribute(name, dateformat);
     }
     else if (type.equals(Attribute.typeToString(Attribute.STRING))) {
       result = new Attribute(name, (ArrayList<String>) null);
@@ -142,30 +171,53 @@ public class JSONInstances {
    * @return		the Instance, null in case of an error
    */
   protected static Instance toInstance(JSONNode inst, Instances data) {
+    boolean		sparse;
+    double		weight;
+    JSONNode		values;
+    ArrayList<String>	strings;
+    int			i;
+
+    sparse  = (Boolean) inst.getChild(SPARSE).getValue(new Boolean(false));
+    weight  = (Double) inst.getChild(WEIGHT).getValue(new Double(1.0));
+    values  = inst.getChild(VALUES);
+    strings = new ArrayList<String>();
+    for (i = 0; i < values.getChildCount(); i++)
+      strings.add("" + ((JSONNode) values.getChildAt(i)).getValue());
+    
+    return toInstance(sparse, weight, strings, data, true);
+  }
+
+  /**
+   * Turns the parts of an instance definition into an Instance, if possible.
+   * 
+   * @param sparse	whether the values are in sparse format
+   * @param weight	the weight of the instance
+   * @param values	the values, as stored in the JSON object
+   * @param data	the data so far (only used for header information)
+   * @param retainStringValues	if false, only the current value is kept
+   * 			for string attributes (i.e., for incremental reading)
+   * @return		the Instance, null in case of an error
+   */
+  public static Instance toInstance(boolean sparse, double weight, 
+      List<String> values, Instances data, boolean retainStringValues) {
     Instance	result;
-    boolean	sparse;
-    double	weight;
-    JSONNode	values;
     int		i;
     int		index;
     int		pos;
     String	value;
     double[]	vals;
 
-    sparse = (Boolean) inst.getChild(SPARSE).getValue(new Boolean(false));
-    weight = (Double) inst.getChild(WEIGHT).getValue(new Double(1.0));
-    values = inst.getChild(VALUES);
-    vals   = new double[data.numAttributes()];
-    for (i = 0; i < values.getChildCount(); i++) {
+    vals = new double[data.numAttributes()];
+    for (i = 0; i < values.size(); i++) {
       if (sparse) {
-	value = "" + ((JSONNode) values.getChildAt(i)).getValue();
+	value = values.get(i);
 	pos   = value.indexOf(SPARSE_SEPARATOR);
 	index = Integer.parseInt(value.substring(0, pos));
 	value = value.substring(pos + 1);
       }
       else {
 	index = i;
-	value = "" + ((JSONNode) values.getChildAt(i)).getValue();
+	value = values.get(i);
       }
       
       try {
@@ -195,7 +247,13 @@ public class JSONInstances {
 	    vals[index] = data.attribute(index).parseDate(value);
 	  }
 	  else if (data.attribute(index).isString()) {
-	    vals[index] = data.attribute(index).addStringValue(value);
+	    if (retainStringValues) {
+	      vals[index] = data.attribute(index).addStringValue(value);
+	    }
+	    else {
+	      data.attribute(index).setStringValue(value);
+	      vals[index] = 0;
+	    }
 	  }
 	  else {
 	    System.err.println("Unhandled attribute type '" + Attribute.typeToString(data.attribute(index).type()) + "'!");
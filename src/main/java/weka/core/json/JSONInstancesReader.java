@@ -0,0 +1,584 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * JSONInstancesReader.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Reads data in the JSON format generated by {@link JSONInstances} as a
+ * stream, i.e., without building a {@link JSONNode} tree of the whole
+ * document. The header section is read first, and the instances of the data
+ * section are then converted one at a time. The header section therefore has
+ * to precede the data section (as written by the JSONSaver). Values are
+ * interpreted the same way as by the {@link Parser}.
+ *
+ * @author  The WEKA Team
+ * @version $Revision$
+ */
+public class JSONInstancesReader {
+
+  /** the token type for the end of the input. */
+  protected static final int EOF = -1;
+
+  /** the token type for strings. */
+  protected static final int STRING = -2;
+
+  /** the token type for primitive values other than strings. */
+  protected static final int PRIMITIVE = -3;
+
+  /** the reader to read from. */
+  protected Reader m_Reader;
+
+  /** the read buffer. */
+  protected char[] m_Buffer = new char[8192];
+
+  /** the position in the read buffer. */
+  protected int m_Pos;
+
+  /** the number of characters in the read buffer. */
+  protected int m_Limit;
+
+  /** the current line (for error messages). */
+  protected int m_Line = 1;
+
+  /** the value of the last string or primitive token. */
+  protected String m_Value;
+
+  /** for building string values. */
+  protected StringBuilder m_String = new StringBuilder();
+
+  /** for unescaping string values the same way as the JSONNode does. */
+  protected JSONNode m_Unescaper = new JSONNode();
+
+  /** the structure of the data, null if not read yet. */
+  protected Instances m_Structure;
+
+  /** the number of instances read so far. */
+  protected int m_NumInstances;
+
+  /** whether the end of the data section has been reached. */
+  protected boolean m_Finished;
+
+  /** the values of the current instance. */
+  protected ArrayList<String> m_Values = new ArrayList<String>();
+
+  /**
+   * Initializes the reader.
+   *
+   * @param reader	the reader to read the JSON data from
+   */
+  public JSONInstancesReader(Reader reader) {
+    m_Reader = reader;
+  }
+
+  /**
+   * Reads the header section and positions the reader at the start of the
+   * data section, if not already done.
+   *
+   * @return		the structure of the data
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  public Instances getStructure() throws IOException {
+    String	key;
+    int		token;
+
+    if (m_Structure != null)
+      return m_Structure;
+
+    expect('{');
+    token = nextToken();
+    while (token != '}') {
+      key = toKey(token);
+      if (key.equals(JSONInstances.HEADER)) {
+	m_Structure = readHeader();
+      }
+      else if (key.equals(JSONInstances.DATA)) {
+	if (m_Structure == null)
+	  error("The '" + JSONInstances.HEADER + "' section must precede the '" + JSONInstances.DATA + "' section");
+	expect('[');
+	return m_Structure;
+      }
+      else {
+	skipValue(nextToken());
+      }
+      token = nextPair();
+    }
+    m_Finished = true;
+
+    if (m_Structure == null)
+      error("No '" + JSONInstances.HEADER + "' section");
+
+    return m_Structure;
+  }
+
+  /**
+   * Reads the next instance from the data section.
+   *
+   * @param structure	the dataset the instance is for
+   * @param retainStringValues	if false, only the current value is kept for
+   * 			string attributes (i.e., for incremental reading)
+   * @return		the next instance, null if there are no more instances
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  public Instance readInstance(Instances structure, boolean retainStringValues) throws IOException {
+    int		token;
+    String	key;
+    boolean	sparse;
+    double	weight;
+    Instance	result;
+
+    getStructure();
+    if (m_Finished)
+      return null;
+
+    token = nextToken();
+    if (m_NumInstances > 0) {
+      if (token == ',')
+	token = nextToken();
+      else if (token != ']')
+	error("',' or ']' expected");
+    }
+    if (token == ']') {
+      m_Finished = true;
+      return null;
+    }
+    if (token != '{')
+      error("'{' expected");
+
+    sparse = false;
+    weight = 1.0;
+    m_Values.clear();
+    token = nextToken();
+    while (token != '}') {
+      key = toKey(token);
+      token = nextToken();
+      if (key.equals(JSONInstances.SPARSE) && (token == PRIMITIVE)) {
+	sparse = m_Value.equals("true");
+      }
+      else if (key.equals(JSONInstances.WEIGHT) && (token == PRIMITIVE)) {
+	weight = toDouble(m_Value);
+      }
+      else if (key.equals(JSONInstances.VALUES) && (token == '[')) {
+	readPrimitives(m_Values);
+      }
+      else {
+	skipValue(token);
+      }
+      token = nextPair();
+    }
+
+    m_NumInstances++;
+    if (!sparse && (m_Values.size() != structure.numAttributes()))
+      error("Instance #" + m_NumInstances + " has " + m_Values.size()
+	  + " values, expected " + structure.numAttributes() + "!");
+    result = JSONInstances.toInstance(sparse, weight, m_Values, structure, retainStringValues);
+    if (result == null)
+      error("Could not convert instance #" + m_NumInstances + "!");
+
+    return result;
+  }
+
+  /**
+   * Reads the header object.
+   *
+   * @return		the structure
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  protected Instances readHeader() throws IOException {
+    String		relation;
+    ArrayList<Attribute>	atts;
+    String		key;
+    int			token;
+
+    relation = "unknown";
+    atts     = null;
+    expect('{');
+    token = nextToken();
+    while (token != '}') {
+      key = toKey(token);
+      token = nextToken();
+      if (key.equals(JSONInstances.RELATION) && (token == STRING || token == PRIMITIVE)) {
+	relation = m_Value;
+      }
+      else if (key.equals(JSONInstances.ATTRIBUTES) && (token == '[')) {
+	atts  = new ArrayList<Attribute>();
+	token = nextToken();
+	while (token != ']') {
+	  if (token != '{')
+	    error("'{' expected");
+	  atts.add(readAttribute(atts.size()));
+	  token = nextElement();
+	}
+      }
+      else {
+	skipValue(token);
+      }
+      token = nextPair();
+    }
+
+    if (atts == null)
+      error("No '" + JSONInstances.ATTRIBUTES + "' array!");
+
+    return new Instances(relation, atts, 0);
+  }
+
+  /**
+   * Reads an attribute object, the opening bracket has already been read.
+   *
+   * @param index	the index of the attribute
+   * @return		the attribute
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  protected Attribute readAttribute(int index) throws IOException {
+    String		name;
+    String		type;
+    double		weight;
+    ArrayList<String>	labels;
+    String		dateformat;
+    String		key;
+    int			token;
+    Attribute		result;
+
+    name       = "noname";
+    type       = "";
+    weight     = 1.0;
+    labels     = new ArrayList<String>();
+    dateformat = "yyyy-MM-dd'T'HH:mm:ss";
+    token      = nextToken();
+    while (token != '}') {
+      key = toKey(token);
+      token = nextToken();
+      if (key.equals(JSONInstances.NAME) && (token == STRING || token == PRIMITIVE)) {
+	name = m_Value;
+      }
+      else if (key.equals(JSONInstances.TYPE) && (token == STRING || token == PRIMITIVE)) {
+	type = m_Value;
+      }
+      else if (key.equals(JSONInstances.WEIGHT) && (token == PRIMITIVE)) {
+	weight = toDouble(m_Value);
+      }
+      else if (key.equals(JSONInstances.LABELS) && (token == '[')) {
+	readPrimitives(labels);
+      }
+      else if (key.equals(JSONInstances.DATEFORMAT) && (token == STRING || token == PRIMITIVE)) {
+	dateformat = m_Value;
+      }
+      else {
+	skipValue(token);
+      }
+      token = nextPair();
+    }
+
+    result = JSONInstances.toAttribute(name, type, weight, labels, dateformat);
+    if (result == null)
+      error("Could not convert attribute #" + (index + 1) + "!");
+
+    return result;
+  }
+
+  /**
+   * Reads the elements of an array of primitive values, the opening bracket
+   * has already been read.
+   *
+   * @param values	the list to add the values to
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  protected void readPrimitives(ArrayList<String> values) throws IOException {
+    int		token;
+
+    token = nextToken();
+    while (token != ']') {
+      if (token != STRING && token != PRIMITIVE)
+	error("Primitive value expected");
+      values.add(m_Value);
+      token = nextElement();
+    }
+  }
+
+  /**
+   * Skips the value that starts with the given token.
+   *
+   * @param token	the first token of the value
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  protected void skipValue(int token) throws IOException {
+    int		depth;
+
+    if (token == STRING || token == PRIMITIVE)
+      return;
+    if (token != '{' && token != '[')
+      error("Value expected");
+
+    depth = 1;
+    while (depth > 0) {
+      token = nextToken();
+      if (token == '{' || token == '[')
+	depth++;
+      else if (token == '}' || token == ']')
+	depth--;
+      else if (token == EOF)
+	error("Premature end of file");
+    }
+  }
+
+  /**
+   * Returns the key of a pair and reads the colon following it.
+   *
+   * @param token	the token read for the key
+   * @return		the key
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  protected String toKey(int token) throws IOException {
+    String	result;
+
+    if (token != STRING)
+      error("Name expected");
+    result = m_String.toString();
+    expect(':');
+
+    return result;
+  }
+
+  /**
+   * Reads the separator after a pair of an object and returns the first
+   * token of the next pair, or '}' at the end of the object.
+   *
+   * @return		the token
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  protected int nextPair() throws IOException {
+    int		token;
+
+    token = nextToken();
+    if (token == ',')
+      return nextToken();
+    if (token != '}')
+      error("',' or '}' expected");
+
+    return token;
+  }
+
+  /**
+   * Reads the separator after an element of an array and returns the first
+   * token of the next element, or ']' at the end of the array.
+   *
+   * @return		the token
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  protected int nextElement() throws IOException {
+    int		token;
+
+    token = nextToken();
+    if (token == ',')
+      return nextToken();
+    if (token != ']')
+      error("',' or ']' expected");
+
+    return token;
+  }
+
+  /**
+   * Reads the next token and checks that it is the given character.
+   *
+   * @param c		the expected character
+   * @throws IOException	if reading fails or the token differs
+   */
+  protected void expect(char c) throws IOException {
+    if (nextToken() != c)
+      error("'" + c + "' expected");
+  }
+
+  /**
+   * Converts the value of a primitive token into a double.
+   *
+   * @param value	the value
+   * @return		the number
+   * @throws IOException	if the value is not a number
+   */
+  protected double toDouble(String value) throws IOException {
+    try {
+      return Double.parseDouble(value);
+    }
+    catch (NumberFormatException e) {
+      error("Number expected");
+      return 0;
+    }
+  }
+
+  /**
+   * Throws an exception with the given message and the current line.
+   *
+   * @param msg		the message
+   * @throws IOException	always
+   */
+  protected void error(String msg) throws IOException {
+    throw new IOException(msg + ", read " + m_Value + ", line " + m_Line);
+  }
+
+  /**
+   * Returns the next character, -1 at the end of the input.
+   *
+   * @return		the character
+   * @throws IOException	if reading fails
+   */
+  protected int read() throws IOException {
+    if (m_Pos == m_Limit) {
+      m_Limit = m_Reader.read(m_Buffer, 0, m_Buffer.length);
+      m_Pos   = 0;
+      if (m_Limit <= 0) {
+	m_Limit = 0;
+	return -1;
+      }
+    }
+
+    return m_Buffer[m_Pos++];
+  }
+
+  /**
+   * Returns the last character again with the next call of read().
+   */
+  protected void pushBack() {
+    m_Pos--;
+  }
+
+  /**
+   * Reads the next token. Brackets, commas and colons are returned as the
+   * character itself, strings and other primitive values as STRING and
+   * PRIMITIVE with their value stored in m_Value.
+   *
+   * @return		the token type
+   * @throws IOException	if reading fails or an illegal character is
+   * 			encountered
+   */
+  protected int nextToken() throws IOException {
+    int		c;
+    int		start;
+
+    do {
+      c = read();
+      if (c == '\n')
+	m_Line++;
+    }
+    while (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f');
+
+    switch (c) {
+      case -1:
+	return EOF;
+
+      case '{':
+      case '}':
+      case '[':
+      case ']':
+      case ',':
+      case ':':
+	return c;
+
+      case '"':
+	readString();
+	return STRING;
+
+      default:
+	m_String.setLength(0);
+	m_String.append((char) c);
+	while (true) {
+	  c = read();
+	  if (c == -1)
+	    break;
+	  if (!Character.isLetterOrDigit(c) && (c != '.') && (c != '-') && (c != '+')) {
+	    pushBack();
+	    break;
+	  }
+	  m_String.append((char) c);
+	}
+	m_Value = m_String.toString();
+	if (m_Value.equals("null") || m_Value.equals("true") || m_Value.equals("false"))
+	  return PRIMITIVE;
+	start = (m_Value.charAt(0) == '-') ? 1 : 0;
+	if ((m_Value.length() > start) && Character.isDigit(m_Value.charAt(start))) {
+	  try {
+	    // same string representation as the Integer and Double objects
+	    // created by the parser
+	    if ((start == 0) && (m_Value.indexOf('.') == -1) && (m_Value.indexOf('e') == -1) && (m_Value.indexOf('E') == -1))
+	      m_Value = Long.toString(Long.parseLong(m_Value));
+	    else
+	      m_Value = Double.toString(Double.parseDouble(m_Value));
+	    return PRIMITIVE;
+	  }
+	  catch (NumberFormatException e) {
+	    // illegal
+	  }
+	}
+	error("Illegal character");
+	return EOF;
+    }
+  }
+
+  /**
+   * Reads a string, the opening quote has already been read. Escape sequences
+   * are processed like the JSON scanner and the JSONNode do.
+   *
+   * @throws IOException	if reading fails or the string is not terminated
+   */
+  protected void readString() throws IOException {
+    int		c;
+    int		next;
+    String	value;
+    boolean	escaped;
+
+    m_String.setLength(0);
+    escaped = false;
+    while (true) {
+      c = read();
+      if (c == '"')
+	break;
+      if (c == -1 || c == '\n' || c == '\r')
+	error("Unterminated string");
+      if (c == '\\') {
+	next = read();
+	switch (next) {
+	  case '"':  m_String.append('"');  continue;
+	  case 'b':  m_String.append('\b'); continue;
+	  case 'f':  m_String.append('\f'); continue;
+	  case 'n':  m_String.append('\n'); continue;
+	  case 'r':  m_String.append('\r'); continue;
+	  case 't':  m_String.append('\t'); continue;
+	  default:
+	    // a lone backslash is kept, the next character is read normally
+	    if (next != -1)
+	      pushBack();
+	    escaped = true;
+	}
+      }
+      m_String.append((char) c);
+    }
+
+    value = m_String.toString();
+    if (escaped || value.indexOf('\\') > -1 || value.indexOf("@@-@@") > -1)
+      value = m_Unescaper.unescape(value);
+    m_Value = value;
+  }
+}
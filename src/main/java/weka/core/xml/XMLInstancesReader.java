@@ -0,0 +1,618 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * XMLInstancesReader.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.ProtectedProperties;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+import weka.core.Version;
+
+/**
+ * Reads data in the XRFF format generated by {@link XMLInstances} as a stream
+ * of XML events, i.e., without building a DOM tree of the whole document. The
+ * header is read first, and the instances of the body are then converted one
+ * at a time as they are encountered. Attributes, instances and values are
+ * interpreted the same way as by {@link XMLInstances}. The document is not
+ * validated against the DTD.
+ *
+ * @author  The WEKA Team
+ * @version $Revision$
+ */
+public class XMLInstancesReader
+  implements RevisionHandler {
+
+  /** the reader for the XML events. */
+  protected XMLStreamReader m_Reader;
+
+  /** the structure of the data, null if not read yet. */
+  protected Instances m_Structure;
+
+  /** the number of instances read so far. */
+  protected int m_NumInstances;
+
+  /** whether the end of the instances has been reached. */
+  protected boolean m_Finished;
+
+  /** for collecting the text content of elements. */
+  protected StringBuilder m_Content = new StringBuilder();
+
+  /**
+   * Initializes the reader.
+   *
+   * @param reader	the reader to read the XML data from
+   * @throws IOException	if the XML parser cannot be initialized
+   */
+  public XMLInstancesReader(Reader reader) throws IOException {
+    XMLInputFactory	factory;
+
+    factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    try {
+      m_Reader = factory.createXMLStreamReader(reader);
+    }
+    catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Reads the header and positions the reader at the start of the
+   * instances, if not already done.
+   *
+   * @return		the structure of the data
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  public Instances getStructure() throws IOException {
+    String			name;
+    String			tag;
+    Version			version;
+    ArrayList<Attribute>	atts;
+    int[]			classIndex;
+
+    if (m_Structure != null)
+      return m_Structure;
+
+    try {
+      if (nextTag() != XMLStreamConstants.START_ELEMENT || !isTag(XMLInstances.TAG_DATASET))
+	error("<" + XMLInstances.TAG_DATASET + "> expected");
+
+      // check version
+      version = new Version();
+      if (version.isOlder(getAttribute(XMLInstances.ATT_VERSION))) {
+	System.out.println("WARNING: loading data of version "
+	  + getAttribute(XMLInstances.ATT_VERSION) + " with version " + Version.VERSION);
+      }
+      name = getAttribute(XMLInstances.ATT_NAME);
+
+      atts       = null;
+      classIndex = new int[]{-1};
+      while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+	tag = m_Reader.getLocalName();
+	if (tag.equals(XMLInstances.TAG_HEADER)) {
+	  while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+	    if (isTag(XMLInstances.TAG_ATTRIBUTES) && (atts == null))
+	      atts = readAttributes(classIndex);
+	    else
+	      skipElement();
+	  }
+	}
+	else if (tag.equals(XMLInstances.TAG_BODY)) {
+	  if (atts == null)
+	    error("The <" + XMLInstances.TAG_HEADER + "> must precede the <" + XMLInstances.TAG_BODY + ">");
+	  m_Structure = new Instances(name, atts, 0);
+	  m_Structure.setClassIndex(classIndex[0]);
+	  while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+	    if (isTag(XMLInstances.TAG_INSTANCES))
+	      return m_Structure;
+	    skipElement();
+	  }
+	  error("No <" + XMLInstances.TAG_INSTANCES + "> in <" + XMLInstances.TAG_BODY + ">");
+	}
+	else {
+	  skipElement();
+	}
+      }
+    }
+    catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+
+    error("No <" + XMLInstances.TAG_BODY + "> found");
+    return null;
+  }
+
+  /**
+   * Reads the next instance from the body.
+   *
+   * @param structure	the dataset the instance is for
+   * @param retainStringValues	if false, only the current value is kept for
+   * 			string attributes (i.e., for incremental reading)
+   * @return		the next instance, null if there are no more instances
+   * @throws IOException	if reading fails or the format is not valid
+   */
+  public Instance readInstance(Instances structure, boolean retainStringValues) throws IOException {
+    int		event;
+    Instance	result;
+
+    getStructure();
+    if (m_Finished)
+      return null;
+
+    try {
+      while ((event = nextTag()) == XMLStreamConstants.START_ELEMENT) {
+	if (isTag(XMLInstances.TAG_INSTANCE)) {
+	  m_NumInstances++;
+	  result = readInstanceElement(structure, retainStringValues);
+	  result.setDataset(structure);
+	  return result;
+	}
+	skipElement();
+      }
+      if (event != XMLStreamConstants.END_ELEMENT)
+	error("Unexpected end of document in <" + XMLInstances.TAG_INSTANCES + ">");
+
+      // make sure the rest of the document is well-formed, too
+      while (m_Reader.hasNext())
+	m_Reader.next();
+    }
+    catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+
+    m_Finished = true;
+    return null;
+  }
+
+  /**
+   * Reads the attribute elements underneath the current attributes element.
+   *
+   * @param classIndex	array of length 1 to return the class index, if any
+   * @return		the attributes
+   * @throws IOException	if the format is not valid
+   * @throws XMLStreamException	if reading fails
+   */
+  protected ArrayList<Attribute> readAttributes(int[] classIndex) throws IOException, XMLStreamException {
+    ArrayList<Attribute>	result;
+
+    result        = new ArrayList<Attribute>();
+    classIndex[0] = -1;
+    while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (isTag(XMLInstances.TAG_ATTRIBUTE)) {
+	if (getAttribute(XMLInstances.ATT_CLASS).equals(XMLInstances.VAL_YES))
+	  classIndex[0] = result.size();
+	result.add(readAttribute());
+      }
+      else {
+	skipElement();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the current attribute element.
+   *
+   * @return		the configured attribute
+   * @throws IOException	if the format is not valid, e.g., due to
+   * 			an unknown attribute type
+   * @throws XMLStreamException	if reading fails
+   */
+  protected Attribute readAttribute() throws IOException, XMLStreamException {
+    String			name;
+    String			type;
+    String			format;
+    ArrayList<String>		labels;
+    ProtectedProperties		metadata;
+    ArrayList<Attribute>	atts;
+
+    name   = getAttribute(XMLInstances.ATT_NAME);
+    type   = getAttribute(XMLInstances.ATT_TYPE);
+    format = getAttribute(XMLInstances.ATT_FORMAT);
+
+    labels   = null;
+    metadata = null;
+    atts     = null;
+    while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (isTag(XMLInstances.TAG_LABELS) && (labels == null))
+	labels = readLabels();
+      else if (isTag(XMLInstances.TAG_METADATA) && (metadata == null))
+	metadata = readMetadata();
+      else if (isTag(XMLInstances.TAG_ATTRIBUTES) && (atts == null))
+	atts = readAttributes(new int[1]);
+      else
+	skipElement();
+    }
+
+    if (type.equals(XMLInstances.VAL_NUMERIC)) {
+      if (metadata == null)
+	return new Attribute(name);
+      else
+	return new Attribute(name, metadata);
+    }
+    else if (type.equals(XMLInstances.VAL_DATE)) {
+      if (metadata == null)
+	return new Attribute(name, format);
+      else
+	return new Attribute(name, format, metadata);
+    }
+    else if (type.equals(XMLInstances.VAL_NOMINAL)) {
+      if (labels == null)
+	labels = new ArrayList<String>();
+      if (metadata == null)
+	return new Attribute(name, labels);
+      else
+	return new Attribute(name, labels, metadata);
+    }
+    else if (type.equals(XMLInstances.VAL_STRING)) {
+      if (metadata == null)
+	return new Attribute(name, (ArrayList<String>) null);
+      else
+	return new Attribute(name, (ArrayList<String>) null, metadata);
+    }
+    else if (type.equals(XMLInstances.VAL_RELATIONAL)) {
+      if (atts == null)
+	error("No <" + XMLInstances.TAG_ATTRIBUTES + "> for relational attribute '" + name + "'");
+      if (metadata == null)
+	return new Attribute(name, new Instances(name, atts, 0));
+      else
+	return new Attribute(name, new Instances(name, atts, 0), metadata);
+    }
+
+    error("Attribute type '" + type + "' is not supported!");
+    return null;
+  }
+
+  /**
+   * Reads the label elements underneath the current labels element.
+   *
+   * @return		the labels
+   * @throws XMLStreamException	if reading fails
+   */
+  protected ArrayList<String> readLabels() throws XMLStreamException {
+    ArrayList<String>	result;
+
+    result = new ArrayList<String>();
+    while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (isTag(XMLInstances.TAG_LABEL))
+	result.add(readContent());
+      else
+	skipElement();
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the property elements underneath the current metadata element.
+   *
+   * @return		the metadata
+   * @throws XMLStreamException	if reading fails
+   */
+  protected ProtectedProperties readMetadata() throws XMLStreamException {
+    Properties	props;
+    String	name;
+
+    props = new Properties();
+    while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (isTag(XMLInstances.TAG_PROPERTY)) {
+	name = getAttribute(XMLInstances.ATT_NAME);
+	props.setProperty(name, readContent());
+      }
+      else {
+	skipElement();
+      }
+    }
+
+    return new ProtectedProperties(props);
+  }
+
+  /**
+   * Reads the current instance element.
+   *
+   * @param header	the dataset the instance is for
+   * @param retainStringValues	if false, only the current value is kept for
+   * 			string attributes
+   * @return		the instance
+   * @throws IOException	if the format is not valid
+   * @throws XMLStreamException	if reading fails
+   */
+  protected Instance readInstanceElement(Instances header, boolean retainStringValues) throws IOException, XMLStreamException {
+    boolean	sparse;
+    String	weightStr;
+    double	weight;
+    double[]	values;
+    int		count;
+    int		index;
+    int		event;
+    Attribute	att;
+    String	content;
+
+    sparse    = getAttribute(XMLInstances.ATT_TYPE).equals(XMLInstances.VAL_SPARSE);
+    weightStr = getAttribute(XMLInstances.ATT_WEIGHT);
+    weight    = 1.0;
+    if (weightStr.length() != 0) {
+      try {
+	weight = Double.parseDouble(weightStr);
+      }
+      catch (NumberFormatException e) {
+	error("Invalid weight '" + weightStr + "' in instance #" + m_NumInstances);
+      }
+    }
+
+    values = new double[header.numAttributes()];
+    count  = 0;
+    while ((event = nextTag()) == XMLStreamConstants.START_ELEMENT) {
+      if (!isTag(XMLInstances.TAG_VALUE)) {
+	skipElement();
+	continue;
+      }
+
+      // determine index
+      index = count;
+      if (sparse) {
+	try {
+	  index = Integer.parseInt(getAttribute(XMLInstances.ATT_INDEX)) - 1;
+	}
+	catch (NumberFormatException e) {
+	  error("Invalid value index '" + getAttribute(XMLInstances.ATT_INDEX) + "' in instance #" + m_NumInstances);
+	}
+      }
+      count++;
+      if ((index < 0) || (index >= values.length))
+	error("Value index " + (index + 1) + " out of range in instance #" + m_NumInstances);
+      att = header.attribute(index);
+
+      // set value
+      if (getAttribute(XMLInstances.ATT_MISSING).equals(XMLInstances.VAL_YES)) {
+	values[index] = Utils.missingValue();
+	skipElement();
+      }
+      else if (att.type() == Attribute.RELATIONAL) {
+	values[index] = att.addRelation(readRelation(att.relation()));
+      }
+      else {
+	content = readContent();
+	switch (att.type()) {
+	  case Attribute.NUMERIC:
+	    try {
+	      values[index] = Double.parseDouble(content);
+	    }
+	    catch (NumberFormatException e) {
+	      error("Number expected instead of '" + content + "' in instance #" + m_NumInstances);
+	    }
+	    break;
+
+	  case Attribute.DATE:
+	    try {
+	      values[index] = att.parseDate(content);
+	    }
+	    catch (Exception e) {
+	      error("Unparseable date '" + content + "' in instance #" + m_NumInstances);
+	    }
+	    break;
+
+	  case Attribute.NOMINAL:
+	    values[index] = att.indexOfValue(content);
+	    if (values[index] == -1)
+	      error("Label '" + content + "' not declared for attribute '" + att.name() + "' in instance #" + m_NumInstances);
+	    break;
+
+	  case Attribute.STRING:
+	    if (retainStringValues) {
+	      values[index] = att.addStringValue(content);
+	    }
+	    else {
+	      att.setStringValue(content);
+	      values[index] = 0;
+	    }
+	    break;
+
+	  default:
+	    error("Attribute type " + att.type() + " is not supported!");
+	}
+      }
+    }
+
+    if (event != XMLStreamConstants.END_ELEMENT)
+      error("Unexpected end of document in instance #" + m_NumInstances);
+    if (!sparse && (count != values.length))
+      error("Instance #" + m_NumInstances + " has " + count + " values, expected " + values.length);
+
+    if (sparse)
+      return new SparseInstance(weight, values);
+    else
+      return new DenseInstance(weight, values);
+  }
+
+  /**
+   * Reads the instances element underneath the current value element of a
+   * relational attribute.
+   *
+   * @param header	the structure of the relation
+   * @return		the relation
+   * @throws IOException	if the format is not valid
+   * @throws XMLStreamException	if reading fails
+   */
+  protected Instances readRelation(Instances header) throws IOException, XMLStreamException {
+    Instances	result;
+
+    result = null;
+    while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if (isTag(XMLInstances.TAG_INSTANCES) && (result == null)) {
+	result = new Instances(header, 0);
+	while (nextTag() == XMLStreamConstants.START_ELEMENT) {
+	  if (isTag(XMLInstances.TAG_INSTANCE))
+	    result.add(readInstanceElement(result, true));
+	  else
+	    skipElement();
+	}
+      }
+      else {
+	skipElement();
+      }
+    }
+
+    if (result == null)
+      error("No <" + XMLInstances.TAG_INSTANCES + "> for relational value in instance #" + m_NumInstances);
+
+    return result;
+  }
+
+  /**
+   * Advances to the next start or end tag, skipping text, comments, etc.
+   *
+   * @return		the event type, START_ELEMENT, END_ELEMENT or
+   * 			END_DOCUMENT
+   * @throws XMLStreamException	if reading fails
+   */
+  protected int nextTag() throws XMLStreamException {
+    int		event;
+
+    while (m_Reader.hasNext()) {
+      event = m_Reader.next();
+      if ((event == XMLStreamConstants.START_ELEMENT) || (event == XMLStreamConstants.END_ELEMENT))
+	return event;
+    }
+
+    return XMLStreamConstants.END_DOCUMENT;
+  }
+
+  /**
+   * Skips the current element, including all its children.
+   *
+   * @throws XMLStreamException	if reading fails
+   */
+  protected void skipElement() throws XMLStreamException {
+    int		depth;
+    int		event;
+
+    depth = 1;
+    while (depth > 0) {
+      event = nextTag();
+      if (event == XMLStreamConstants.START_ELEMENT)
+	depth++;
+      else if (event == XMLStreamConstants.END_ELEMENT)
+	depth--;
+      else
+	return;
+    }
+  }
+
+  /**
+   * Returns the text directly underneath the current element and moves past
+   * the end of the element. Text in nested elements is ignored.
+   *
+   * @return		the trimmed text
+   * @throws XMLStreamException	if reading fails
+   */
+  protected String readContent() throws XMLStreamException {
+    int		event;
+
+    m_Content.setLength(0);
+    while (m_Reader.hasNext()) {
+      event = m_Reader.next();
+      if ((event == XMLStreamConstants.CHARACTERS) || (event == XMLStreamConstants.CDATA) || (event == XMLStreamConstants.SPACE))
+	m_Content.append(m_Reader.getText());
+      else if (event == XMLStreamConstants.START_ELEMENT)
+	skipElement();
+      else if (event == XMLStreamConstants.END_ELEMENT)
+	break;
+    }
+
+    return m_Content.toString().trim();
+  }
+
+  /**
+   * Checks whether the current element has the given name.
+   *
+   * @param name	the name of the tag
+   * @return		true if the names match
+   */
+  protected boolean isTag(String name) {
+    return m_Reader.getLocalName().equals(name);
+  }
+
+  /**
+   * Returns the value of the given attribute of the current element.
+   *
+   * @param name	the name of the attribute
+   * @return		the value, empty string if not present
+   */
+  protected String getAttribute(String name) {
+    String	result;
+
+    result = m_Reader.getAttributeValue(null, name);
+    if (result == null)
+      result = "";
+
+    return result;
+  }
+
+  /**
+   * Throws an exception with the given message and the current location.
+   *
+   * @param msg		the error message
+   * @throws IOException	always
+   */
+  protected void error(String msg) throws IOException {
+    throw new IOException(msg + ", line " + m_Reader.getLocation().getLineNumber());
+  }
+
+  /**
+   * Closes the underlying XML reader.
+   */
+  public void close() {
+    try {
+      m_Reader.close();
+    }
+    catch (Exception e) {
+      // ignored
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
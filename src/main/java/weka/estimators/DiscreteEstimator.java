@@ -21,9 +21,15 @@
 
 package weka.estimators;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Aggregateable;
+import weka.core.ModelPersistence;
+import weka.core.ObjectCodec;
 import weka.core.RevisionUtils;
 import weka.core.Utils;
 
@@ -279,6 +285,37 @@ public class DiscreteEstimator extends Estimator implements
     }
   }
 
+  /**
+   * Codec for writing discrete estimators with ModelPersistence.
+   */
+  public static class Codec implements ObjectCodec<DiscreteEstimator> {
+
+    @Override
+    public Class<DiscreteEstimator> getType() {
+      return DiscreteEstimator.class;
+    }
+
+    @Override
+    public void write(DiscreteEstimator estimator, ObjectOutput out)
+      throws IOException {
+      out.writeDouble(estimator.m_FPrior);
+      ModelPersistence.writeDoubles(out, estimator.m_Counts);
+      out.writeDouble(estimator.m_SumOfCounts);
+      writeSettings(estimator, out);
+    }
+
+    @Override
+    public DiscreteEstimator read(ObjectInput in) throws IOException {
+      double fPrior = in.readDouble();
+      double[] counts = ModelPersistence.readDoubles(in);
+      DiscreteEstimator result = new DiscreteEstimator(counts.length, fPrior);
+      System.arraycopy(counts, 0, result.m_Counts, 0, counts.length);
+      result.m_SumOfCounts = in.readDouble();
+      readSettings(result, in);
+      return result;
+    }
+  }
+
   /**
    * Main method for testing this class.
    *
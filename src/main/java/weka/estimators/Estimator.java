@@ -23,7 +23,10 @@ package weka.estimators;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Reader;
 import java.io.Serializable;
 import java.util.Enumeration;
@@ -175,6 +178,37 @@ public abstract class Estimator implements Cloneable, Serializable,
     return m_DoNotCheckCapabilities;
   }
 
+  /**
+   * Writes the settings common to all estimators, for the codecs of the
+   * subclasses.
+   * 
+   * @param estimator the estimator to write the settings for
+   * @param out the output to write to
+   * @throws IOException if writing fails
+   */
+  protected static void writeSettings(Estimator estimator, ObjectOutput out)
+    throws IOException {
+    out.writeBoolean(estimator.m_Debug);
+    out.writeDouble(estimator.m_classValueIndex);
+    out.writeBoolean(estimator.m_noClass);
+    out.writeBoolean(estimator.m_DoNotCheckCapabilities);
+  }
+
+  /**
+   * Reads the settings written by <code>writeSettings</code>.
+   * 
+   * @param estimator the estimator to read the settings into
+   * @param in the input to read from
+   * @throws IOException if reading fails
+   */
+  protected static void readSettings(Estimator estimator, ObjectInput in)
+    throws IOException {
+    estimator.m_Debug = in.readBoolean();
+    estimator.m_classValueIndex = in.readDouble();
+    estimator.m_noClass = in.readBoolean();
+    estimator.m_DoNotCheckCapabilities = in.readBoolean();
+  }
+
   /**
    * Add a new data value to the current estimator.
    * 
@@ -21,9 +21,15 @@
 
 package weka.estimators;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Aggregateable;
+import weka.core.ModelPersistence;
+import weka.core.ObjectCodec;
 import weka.core.RevisionUtils;
 import weka.core.Statistics;
 import weka.core.Utils;
@@ -417,6 +423,58 @@ public class KernelEstimator extends Estimator implements IncrementalEstimator,
     }
   }
 
+  /**
+   * Codec for writing kernel estimators with ModelPersistence.
+   */
+  public static class Codec implements ObjectCodec<KernelEstimator> {
+
+    @Override
+    public Class<KernelEstimator> getType() {
+      return KernelEstimator.class;
+    }
+
+    @Override
+    public void write(KernelEstimator estimator, ObjectOutput out)
+      throws IOException {
+      int n = estimator.m_NumValues;
+      out.writeInt(n);
+      out.writeInt(estimator.m_Values.length);
+      for (int i = 0; i < n; i++) {
+        out.writeDouble(estimator.m_Values[i]);
+      }
+      out.writeInt(estimator.m_Weights.length);
+      for (int i = 0; i < n; i++) {
+        out.writeDouble(estimator.m_Weights[i]);
+      }
+      out.writeDouble(estimator.m_SumOfWeights);
+      out.writeDouble(estimator.m_StandardDev);
+      out.writeDouble(estimator.m_Precision);
+      out.writeBoolean(estimator.m_AllWeightsOne);
+      writeSettings(estimator, out);
+    }
+
+    @Override
+    public KernelEstimator read(ObjectInput in) throws IOException {
+      KernelEstimator result = new KernelEstimator();
+      int n = in.readInt();
+      result.m_NumValues = n;
+      result.m_Values = new double[in.readInt()];
+      for (int i = 0; i < n; i++) {
+        result.m_Values[i] = in.readDouble();
+      }
+      result.m_Weights = new double[in.readInt()];
+      for (int i = 0; i < n; i++) {
+        result.m_Weights[i] = in.readDouble();
+      }
+      result.m_SumOfWeights = in.readDouble();
+      result.m_StandardDev = in.readDouble();
+      result.m_Precision = in.readDouble();
+      result.m_AllWeightsOne = in.readBoolean();
+      readSettings(result, in);
+      return result;
+    }
+  }
+
   /**
    * Main method for testing this class.
    *
@@ -21,9 +21,15 @@
 
 package weka.estimators;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Aggregateable;
+import weka.core.ModelPersistence;
+import weka.core.ObjectCodec;
 import weka.core.RevisionUtils;
 import weka.core.Statistics;
 import weka.core.Utils;
@@ -309,6 +315,42 @@ public class NormalEstimator extends Estimator implements IncrementalEstimator,
     }
   }
 
+  /**
+   * Codec for writing normal estimators with ModelPersistence.
+   */
+  public static class Codec implements ObjectCodec<NormalEstimator> {
+
+    @Override
+    public Class<NormalEstimator> getType() {
+      return NormalEstimator.class;
+    }
+
+    @Override
+    public void write(NormalEstimator estimator, ObjectOutput out)
+      throws IOException {
+      out.writeDouble(estimator.m_SumOfWeights);
+      out.writeDouble(estimator.m_SumOfValues);
+      out.writeDouble(estimator.m_SumOfValuesSq);
+      out.writeDouble(estimator.m_Mean);
+      out.writeDouble(estimator.m_StandardDev);
+      out.writeDouble(estimator.m_Precision);
+      writeSettings(estimator, out);
+    }
+
+    @Override
+    public NormalEstimator read(ObjectInput in) throws IOException {
+      NormalEstimator result = new NormalEstimator();
+      result.m_SumOfWeights = in.readDouble();
+      result.m_SumOfValues = in.readDouble();
+      result.m_SumOfValuesSq = in.readDouble();
+      result.m_Mean = in.readDouble();
+      result.m_StandardDev = in.readDouble();
+      result.m_Precision = in.readDouble();
+      readSettings(result, in);
+      return result;
+    }
+  }
+
   /**
    * Main method for testing this class.
    *
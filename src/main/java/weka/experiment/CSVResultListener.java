@@ -52,6 +52,11 @@ import javax.swing.*;
  *  (default temp file)
  * </pre>
  * 
+ * <pre>
+ * -resume
+ *  Skips results that are already in the output file.
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
@@ -75,6 +80,12 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   /** The destination for results (typically connected to the output file) */
   protected transient PrintWriter m_Out = new PrintWriter(System.out, true);
 
+  /** Whether to skip results that are already in the output file */
+  protected boolean m_Resume = false;
+
+  /** The keys of the results in the output file, null if not resuming */
+  protected transient ResultKeyIndex m_KeyIndex;
+
   /**
    * Sets temporary file.
    */
@@ -111,11 +122,14 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   @Override
   public Enumeration<Option> listOptions() {
 
-    Vector<Option> newVector = new Vector<Option>(1);
+    Vector<Option> newVector = new Vector<Option>(2);
 
     newVector.addElement(new Option(
       "\tThe filename where output will be stored. Use - for stdout.\n"
         + "\t(default temp file)", "O", 1, "-O <file name>"));
+    newVector.addElement(new Option(
+      "\tSkips results that are already in the output file.", "resume", 0,
+      "-resume"));
 
     return newVector.elements();
   }
@@ -133,6 +147,11 @@ public class CSVResultListener implements ResultListener, OptionHandler,
    *  (default temp file)
    * </pre>
    * 
+   * <pre>
+   * -resume
+   *  Skips results that are already in the output file.
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -156,6 +175,8 @@ public class CSVResultListener implements ResultListener, OptionHandler,
       setOutputFile(resultsFile);
       setOutputFileName("");
     }
+
+    setResume(Utils.getFlag("resume", options));
   }
 
   /**
@@ -166,11 +187,14 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   @Override
   public String[] getOptions() {
 
-    String[] options = new String[2];
+    String[] options = new String[3];
     int current = 0;
 
     options[current++] = "-O";
     options[current++] = getOutputFile().getName();
+    if (getResume()) {
+      options[current++] = "-resume";
+    }
     while (current < options.length) {
       options[current++] = "";
     }
@@ -229,6 +253,60 @@ public class CSVResultListener implements ResultListener, OptionHandler,
     m_OutputFileName = name;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String resumeTipText() {
+    return "Whether to skip results that are already in the output file. The "
+      + "keys of the results are recorded in an index file next to the output "
+      + "file (output file name + " + ResultKeyIndex.FILE_EXTENSION + "), so "
+      + "that an interrupted experiment can be continued by running it again.";
+  }
+
+  /**
+   * Get whether results already in the output file are skipped.
+   * 
+   * @return true if resuming
+   */
+  public boolean getResume() {
+
+    return m_Resume;
+  }
+
+  /**
+   * Set whether results already in the output file are skipped.
+   * 
+   * @param value true if to resume
+   */
+  public void setResume(boolean value) {
+
+    m_Resume = value;
+  }
+
+  /**
+   * Returns whether results are written to a file that already contains
+   * results to resume from.
+   * 
+   * @return true if resuming from the output file
+   * @throws Exception if the output file cannot be resumed from
+   */
+  protected boolean isResumingOutputFile() throws Exception {
+
+    if (!m_Resume || (m_OutputFile == null)
+      || m_OutputFile.getName().equals("-") || !m_OutputFile.exists()
+      || (m_OutputFile.length() == 0)) {
+      return false;
+    }
+    if (!ResultKeyIndex.indexFileFor(m_OutputFile).exists()) {
+      throw new Exception("Cannot resume, no key index found for "
+        + m_OutputFile + "!");
+    }
+    return true;
+  }
+
   /**
    * Prepare for the results to be received.
    * 
@@ -239,11 +317,20 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   public void preProcess(ResultProducer rp) throws Exception {
 
     m_RP = rp;
+    m_KeyIndex = null;
     if ((m_OutputFile == null) || (m_OutputFile.getName().equals("-"))) {
       m_Out = new PrintWriter(System.out, true);
     } else {
+      boolean resuming = isResumingOutputFile();
+      if (m_Resume) {
+        m_KeyIndex = new ResultKeyIndex(
+          ResultKeyIndex.indexFileFor(m_OutputFile), resuming);
+      }
       m_Out = new PrintWriter(new BufferedOutputStream(new FileOutputStream(
-        m_OutputFile)), true);
+        m_OutputFile, resuming)), true);
+      if (resuming) {
+        return;
+      }
     }
     printResultNames(m_RP);
   }
@@ -261,6 +348,10 @@ public class CSVResultListener implements ResultListener, OptionHandler,
     if (!(m_OutputFile == null) && !(m_OutputFile.getName().equals("-"))) {
       m_Out.close();
     }
+    if (m_KeyIndex != null) {
+      m_KeyIndex.close();
+      m_KeyIndex = null;
+    }
   }
 
   /**
@@ -314,11 +405,14 @@ public class CSVResultListener implements ResultListener, OptionHandler,
       }
     }
     m_Out.println("");
+    if (m_KeyIndex != null) {
+      m_KeyIndex.add(key);
+    }
   }
 
   /**
-   * Always says a result is required. If this is the first call, prints out the
-   * header for the csv output.
+   * Says a result is required, unless resuming and the result is already in
+   * the output file.
    * 
    * @param rp the ResultProducer wanting to generate the result
    * @param key The key for which a result may be needed.
@@ -329,7 +423,7 @@ public class CSVResultListener implements ResultListener, OptionHandler,
   public boolean isResultRequired(ResultProducer rp, Object[] key)
     throws Exception {
 
-    return true;
+    return (m_KeyIndex == null) || !m_KeyIndex.contains(key);
   }
 
   /**
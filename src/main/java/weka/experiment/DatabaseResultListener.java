@@ -60,6 +60,12 @@ public class DatabaseResultListener extends DatabaseUtils implements
   /** Stores the cached values */
   protected ArrayList<String> m_Cache = new ArrayList<String>();
 
+  /** Whether to load all keys of the results table with a single query */
+  protected boolean m_PreloadKeys = false;
+
+  /** The keys of the results table, if preloaded */
+  protected transient ResultKeyIndex m_KeyIndex;
+
   /**
    * Returns a string describing this result listener
    * 
@@ -91,6 +97,7 @@ public class DatabaseResultListener extends DatabaseUtils implements
   public void preProcess(ResultProducer rp) throws Exception {
 
     m_ResultProducer = rp;
+    m_KeyIndex = null;
     // Connect to the database and find out what table corresponds to this
     // ResultProducer
     updateResultsTableName(m_ResultProducer);
@@ -183,6 +190,9 @@ public class DatabaseResultListener extends DatabaseUtils implements
     // null result could occur from a chain of doRunKeys calls
     if (result != null) {
       putResultInTable(m_ResultsTableName, rp, key, result);
+      if (m_KeyIndex != null) {
+        m_KeyIndex.add(key);
+      }
     }
   }
 
@@ -217,6 +227,11 @@ public class DatabaseResultListener extends DatabaseUtils implements
         loadCache(rp, key);
       }
       retval = !isKeyInCache(rp, key);
+    } else if (m_PreloadKeys && isCompleteKey(key)) {
+      if (m_KeyIndex == null) {
+        loadKeyIndex(rp);
+      }
+      retval = !m_KeyIndex.contains(key);
     } else {
       // Ask whether the results are needed
       retval = !isKeyInTable(m_ResultsTableName, rp, key);
@@ -388,6 +403,94 @@ public class DatabaseResultListener extends DatabaseUtils implements
     m_CacheKey = key.clone();
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String preloadKeysTipText() {
+    return "Whether to load the keys of all results in the table with a "
+      + "single query, instead of querying the database for each key. Only "
+      + "used if no cache key name is set. Results stored by other processes "
+      + "while running are not taken into account.";
+  }
+
+  /**
+   * Get whether the keys of the results table are loaded at once.
+   * 
+   * @return true if the keys are preloaded
+   */
+  public boolean getPreloadKeys() {
+
+    return m_PreloadKeys;
+  }
+
+  /**
+   * Set whether the keys of the results table are loaded at once.
+   * 
+   * @param value true if to preload the keys
+   */
+  public void setPreloadKeys(boolean value) {
+
+    m_PreloadKeys = value;
+  }
+
+  /**
+   * Returns whether all values of the key are set, i.e., whether it can be
+   * looked up in the preloaded keys.
+   * 
+   * @param key the result key
+   * @return true if no value is missing
+   */
+  protected boolean isCompleteKey(Object[] key) {
+
+    for (Object element : key) {
+      if (element == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Executes a single database query to load the keys of all results in the
+   * results table.
+   * 
+   * @param rp the ResultProducer the keys belong to
+   * @throws Exception if an error occurs
+   */
+  protected void loadKeyIndex(ResultProducer rp) throws Exception {
+
+    String[] keyNames = rp.getKeyNames();
+    Object[] keyTypes = rp.getKeyTypes();
+    String query = "SELECT ";
+    for (int i = 0; i < keyNames.length; i++) {
+      if (i != 0) {
+        query += ", ";
+      }
+      query += "Key_" + keyNames[i];
+    }
+    query += " FROM " + m_ResultsTableName;
+
+    m_KeyIndex = new ResultKeyIndex();
+    Object[] key = new Object[keyNames.length];
+    ResultSet rs = select(query);
+    while (rs.next()) {
+      for (int i = 0; i < key.length; i++) {
+        if (keyTypes[i] instanceof Double) {
+          double value = rs.getDouble(i + 1);
+          key[i] = rs.wasNull() ? null : new Double(value);
+        } else {
+          String value = rs.getString(i + 1);
+          key[i] = rs.wasNull() ? null : value;
+        }
+      }
+      m_KeyIndex.add(key);
+    }
+    close(rs);
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -35,7 +35,12 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.DefaultListModel;
 
@@ -46,6 +51,7 @@ import weka.core.OptionHandler;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.SerializationHelper;
+import weka.core.SerializedObject;
 import weka.core.Utils;
 import weka.core.converters.AbstractFileLoader;
 import weka.core.converters.ConverterUtils;
@@ -516,15 +522,31 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
   protected void setProperty(int propertyDepth, Object origValue)
     throws Exception {
 
+    setProperty(propertyDepth, origValue,
+      Array.get(m_PropertyArray, m_PropertyNumber));
+  }
+
+  /**
+   * Recursively sets the given custom property value, by setting all values
+   * along the property path.
+   * 
+   * @param propertyDepth the current position along the property path
+   * @param origValue the value to set the property to
+   * @param value the value for the end of the property path
+   * @throws Exception if an error occurs
+   */
+  protected void setProperty(int propertyDepth, Object origValue, Object value)
+    throws Exception {
+
     PropertyDescriptor current = m_PropertyPath[propertyDepth].property;
     Object subVal = null;
     if (propertyDepth < m_PropertyPath.length - 1) {
       Method getter = current.getReadMethod();
       Object getArgs[] = {};
       subVal = getter.invoke(origValue, getArgs);
-      setProperty(propertyDepth + 1, subVal);
+      setProperty(propertyDepth + 1, subVal, value);
     } else {
-      subVal = Array.get(m_PropertyArray, m_PropertyNumber);
+      subVal = value;
     }
     Method setter = current.getWriteMethod();
     Object[] args = { subVal };
@@ -556,19 +578,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
 
     if (m_CurrentInstances == null) {
-      File currentFile = (File) getDatasets().elementAt(m_DatasetNumber);
-      AbstractFileLoader loader = ConverterUtils.getLoaderForFile(currentFile);
-      loader.setFile(currentFile);
-      Instances data = new Instances(loader.getDataSet());
-      // only set class attribute if not already done by loader
-      if (data.classIndex() == -1) {
-        if (m_ClassFirst) {
-          data.setClassIndex(0);
-        } else {
-          data.setClassIndex(data.numAttributes() - 1);
-        }
-      }
-      m_CurrentInstances = data;
+      m_CurrentInstances = loadDataset(m_DatasetNumber);
       m_ResultProducer.setInstances(m_CurrentInstances);
     }
 
@@ -577,6 +587,31 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     advanceCounters();
   }
 
+  /**
+   * Loads the specified dataset and sets its class attribute, if not already
+   * done by the loader.
+   * 
+   * @param index the index of the dataset
+   * @return the dataset
+   * @throws Exception if the dataset could not be loaded
+   */
+  protected Instances loadDataset(int index) throws Exception {
+
+    File currentFile = (File) getDatasets().elementAt(index);
+    AbstractFileLoader loader = ConverterUtils.getLoaderForFile(currentFile);
+    loader.setFile(currentFile);
+    Instances data = new Instances(loader.getDataSet());
+    // only set class attribute if not already done by loader
+    if (data.classIndex() == -1) {
+      if (m_ClassFirst) {
+        data.setClassIndex(0);
+      } else {
+        data.setClassIndex(data.numAttributes() - 1);
+      }
+    }
+    return data;
+  }
+
   /**
    * Increments iteration counters appropriately.
    */
@@ -625,29 +660,45 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
   }
 
+  /**
+   * Returns a description of the current iteration, as output in verbose
+   * mode.
+   * 
+   * @return the description
+   */
+  protected String currentIterationDescription() {
+
+    String current = "Iteration:";
+    if (getUsePropertyIterator()) {
+      int cnum = getCurrentPropertyNumber();
+      String ctype = getPropertyArray().getClass().getComponentType()
+        .getName();
+      int lastDot = ctype.lastIndexOf('.');
+      if (lastDot != -1) {
+        ctype = ctype.substring(lastDot + 1);
+      }
+      String cname = " " + ctype + "=" + (cnum + 1) + ":"
+        + getPropertyArrayValue(cnum).getClass().getName();
+      current += cname;
+    }
+    String dname = ((File) getDatasets().elementAt(
+      getCurrentDatasetNumber())).getName();
+    current += " Dataset=" + dname + " Run=" + (getCurrentRunNumber());
+
+    return current;
+  }
+
+  /**
+   * Runs all iterations of the experiment, continuing past errors.
+   * 
+   * @param verbose whether to output progress information to std out
+   */
   public void runExperiment(boolean verbose) {
 
     while (hasMoreIterations()) {
       try {
         if (verbose) {
-          String current = "Iteration:";
-          if (getUsePropertyIterator()) {
-            int cnum = getCurrentPropertyNumber();
-            String ctype = getPropertyArray().getClass().getComponentType()
-              .getName();
-            int lastDot = ctype.lastIndexOf('.');
-            if (lastDot != -1) {
-              ctype = ctype.substring(lastDot + 1);
-            }
-            String cname = " " + ctype + "=" + (cnum + 1) + ":"
-              + getPropertyArrayValue(cnum).getClass().getName();
-            current += cname;
-          }
-          String dname = ((File) getDatasets().elementAt(
-            getCurrentDatasetNumber())).getName();
-          current += " Dataset=" + dname + " Run=" + (getCurrentRunNumber());
-
-          System.out.println(current);
+          System.out.println(currentIterationDescription());
         }
 
         nextIteration();
@@ -666,6 +717,244 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     runExperiment(false);
   }
 
+  /**
+   * Runs all iterations of the experiment, continuing past errors, using the
+   * given number of threads. Each iteration, i.e., each combination of custom
+   * property value, dataset and run, is a separate task that uses its own copy
+   * of the result producer. The results of the tasks are sent to the result
+   * listener in the same order as when running sequentially, so the output is
+   * the same. Result producers that write raw output are always run
+   * sequentially.
+   * 
+   * @param verbose whether to output progress information to std out
+   * @param numThreads the number of threads (1 = sequential, 0 = all
+   *          available processors)
+   */
+  public void runExperiment(boolean verbose, int numThreads) {
+
+    if (numThreads == 0) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    if ((numThreads <= 1) || writesRawOutput(m_ResultProducer)) {
+      runExperiment(verbose);
+      return;
+    }
+
+    // copies of the result producer and the property values for the tasks,
+    // without the result listener
+    final SerializedObject producer;
+    final SerializedObject[] propertyValues;
+    try {
+      m_ResultProducer.setResultListener(null);
+      try {
+        producer = new SerializedObject(m_ResultProducer);
+      } finally {
+        m_ResultProducer.setResultListener(m_ResultListener);
+      }
+      if (m_UsePropertyIterator) {
+        propertyValues = new SerializedObject[Array.getLength(m_PropertyArray)];
+        for (int i = 0; i < propertyValues.length; i++) {
+          propertyValues[i] = new SerializedObject(Array.get(m_PropertyArray, i));
+        }
+      } else {
+        propertyValues = null;
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      System.err.println(ex.getMessage());
+      return;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    LinkedList<Future<ResultBuffer>> pending =
+      new LinkedList<Future<ResultBuffer>>();
+    try {
+      Instances data = null;
+      int dataIndex = -1;
+      while (hasMoreIterations() || !pending.isEmpty()) {
+        if (hasMoreIterations() && (pending.size() < 2 * numThreads)) {
+          try {
+            if (verbose) {
+              System.out.println(currentIterationDescription());
+            }
+            if (m_DatasetNumber != dataIndex) {
+              data = loadDataset(m_DatasetNumber);
+              dataIndex = m_DatasetNumber;
+            }
+            final Instances taskData = new Instances(data);
+            final int property = m_PropertyNumber;
+            final int run = m_RunNumber;
+            final ResultBuffer buffer = new ResultBuffer(m_ResultListener,
+              m_ResultProducer);
+            pending.add(pool.submit(new Callable<ResultBuffer>() {
+              @Override
+              public ResultBuffer call() {
+                try {
+                  ResultProducer rp = (ResultProducer) producer.getObject();
+                  rp.setResultListener(buffer);
+                  rp.preProcess();
+                  if (propertyValues != null) {
+                    setProperty(0, rp, propertyValues[property].getObject());
+                  }
+                  rp.setInstances(taskData);
+                  rp.doRun(run);
+                  rp.postProcess();
+                } catch (Exception ex) {
+                  buffer.m_Exception = ex;
+                }
+                return buffer;
+              }
+            }));
+          } catch (Exception ex) {
+            ex.printStackTrace();
+            System.err.println(ex.getMessage());
+            dataIndex = -1;
+          }
+          advanceCounters();
+          continue;
+        }
+
+        // pass on the results of the oldest task
+        try {
+          ResultBuffer buffer = pending.removeFirst().get();
+          buffer.forward();
+          if (buffer.m_Exception != null) {
+            throw buffer.m_Exception;
+          }
+        } catch (Exception ex) {
+          ex.printStackTrace();
+          System.err.println(ex.getMessage());
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns whether the given result producer writes raw output, which
+   * cannot be shared by concurrent copies of the producer.
+   * 
+   * @param rp the result producer to check
+   * @return true if the producer writes raw output
+   */
+  protected static boolean writesRawOutput(ResultProducer rp) {
+
+    try {
+      Method getter = rp.getClass().getMethod("getRawOutput");
+      return Boolean.TRUE.equals(getter.invoke(rp));
+    } catch (Exception ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Collects the results of a task of a parallel experiment run, to be passed
+   * on to the actual result listener later on.
+   */
+  protected static class ResultBuffer implements ResultListener {
+
+    /** for serialization. */
+    private static final long serialVersionUID = 2609245728403373815L;
+
+    /** the actual result listener. */
+    protected ResultListener m_Listener;
+
+    /** the result producer the actual listener has been set up with. */
+    protected ResultProducer m_Producer;
+
+    /** the collected keys. */
+    protected ArrayList<Object[]> m_Keys = new ArrayList<Object[]>();
+
+    /** the collected results. */
+    protected ArrayList<Object[]> m_Results = new ArrayList<Object[]>();
+
+    /** the exception the task failed with, if any. */
+    protected Exception m_Exception;
+
+    /**
+     * Initializes the buffer.
+     * 
+     * @param listener the actual result listener
+     * @param producer the result producer the listener has been set up with
+     */
+    public ResultBuffer(ResultListener listener, ResultProducer producer) {
+      m_Listener = listener;
+      m_Producer = producer;
+    }
+
+    /**
+     * Does nothing, the actual listener has already been prepared.
+     * 
+     * @param rp the ResultProducer that will generate the results
+     */
+    @Override
+    public void preProcess(ResultProducer rp) {
+    }
+
+    /**
+     * Does nothing, the actual listener is finished by the experiment.
+     * 
+     * @param rp the ResultProducer that generated the results
+     */
+    @Override
+    public void postProcess(ResultProducer rp) {
+    }
+
+    /**
+     * Does not constrain the columns.
+     * 
+     * @param rp the ResultProducer
+     * @return null
+     */
+    @Override
+    public String[] determineColumnConstraints(ResultProducer rp) {
+      return null;
+    }
+
+    /**
+     * Stores the result.
+     * 
+     * @param rp the ResultProducer that generated the result
+     * @param key the key for the results
+     * @param result the results
+     */
+    @Override
+    public void acceptResult(ResultProducer rp, Object[] key, Object[] result) {
+      m_Keys.add(key);
+      m_Results.add(result);
+    }
+
+    /**
+     * Asks the actual listener whether the result is required.
+     * 
+     * @param rp the ResultProducer wanting to generate the result
+     * @param key the key for the result
+     * @return true if the result should be generated
+     * @throws Exception if the listener could not determine it
+     */
+    @Override
+    public boolean isResultRequired(ResultProducer rp, Object[] key)
+      throws Exception {
+      synchronized (m_Listener) {
+        return m_Listener.isResultRequired(m_Producer, key);
+      }
+    }
+
+    /**
+     * Passes the collected results on to the actual listener.
+     * 
+     * @throws Exception if the listener fails
+     */
+    public void forward() throws Exception {
+      synchronized (m_Listener) {
+        for (int i = 0; i < m_Keys.size(); i++) {
+          m_Listener.acceptResult(m_Producer, m_Keys.get(i), m_Results.get(i));
+        }
+      }
+    }
+  }
+
   /**
    * Signals that the experiment is finished running, so that cleanup can be
    * done.
@@ -1219,6 +1508,9 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
       String saveFile = Utils.getOption('s', args);
       boolean runExp = Utils.getFlag('r', args);
       boolean verbose = Utils.getFlag("verbose", args);
+      String numSlotsString = Utils.getOption("num-slots", args);
+      int numSlots = (numSlotsString.length() > 0) ? Integer
+        .parseInt(numSlotsString) : 1;
       if (expFile.length() == 0) {
         exp = new Experiment();
         try {
@@ -1236,7 +1528,10 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
             + "-r\n" + "\tRun experiment (default don't run)\n"
             + "-xml <filename | xml-string>\n"
             + "\tget options from XML-Data instead from parameters.\n"
-            + "-verbose\n" + "\toutput progress information to std out." + "\n";
+            + "-verbose\n" + "\toutput progress information to std out.\n"
+            + "-num-slots <num>\n"
+            + "\tNumber of threads for running the experiment\n"
+            + "\t(0 = all processors; default 1).\n";
           Enumeration<Option> enm = ((OptionHandler) exp).listOptions();
           while (enm.hasMoreElements()) {
             Option option = enm.nextElement();
@@ -1274,7 +1569,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
         System.err.println("Initializing...");
         exp.initialize();
         System.err.println("Iterating...");
-        exp.runExperiment(verbose);
+        exp.runExperiment(verbose, numSlots);
         System.err.println("Postprocessing...");
         exp.postProcess();
       }
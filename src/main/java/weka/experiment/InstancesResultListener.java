@@ -22,8 +22,10 @@
 package weka.experiment;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Hashtable;
@@ -50,6 +52,11 @@ import weka.core.Utils;
  *  (default temp file)
  * </pre>
  * 
+ * <pre>
+ * -resume
+ *  Skips results that are already in the output file.
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
@@ -102,6 +109,20 @@ public class InstancesResultListener extends CSVResultListener {
       + "written out.";
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  @Override
+  public String resumeTipText() {
+    return "Whether to keep the results of an existing output file and skip "
+      + "generating them again. As the output is only written once all "
+      + "results have been received, this allows for adding results to a "
+      + "completed experiment, e.g., further runs or failed ones.";
+  }
+
   /**
    * Prepare for the results to be received.
    * 
@@ -113,11 +134,17 @@ public class InstancesResultListener extends CSVResultListener {
   public void preProcess(ResultProducer rp) throws Exception {
 
     m_RP = rp;
-    if ((m_OutputFile == null) || (m_OutputFile.getName().equals("-"))) {
+    m_KeyIndex = null;
+    boolean toFile = (m_OutputFile != null)
+      && !m_OutputFile.getName().equals("-");
+    if (!toFile) {
       m_Out = new PrintWriter(System.out, true);
-    } else {
+    } else if (!m_Resume) {
       m_Out = new PrintWriter(new BufferedOutputStream(new FileOutputStream(
         m_OutputFile)), true);
+    } else {
+      // the existing results are only overwritten in postProcess
+      m_Out = null;
     }
 
     Object[] keyTypes = m_RP.getKeyTypes();
@@ -145,6 +172,63 @@ public class InstancesResultListener extends CSVResultListener {
         throw new Exception("Unknown attribute type in column " + (i + 1));
       }
     }
+
+    if (m_Resume) {
+      m_KeyIndex = new ResultKeyIndex();
+      if (toFile && m_OutputFile.exists() && (m_OutputFile.length() > 0)) {
+        loadResults(keyTypes.length);
+      }
+    }
+  }
+
+  /**
+   * Loads the results of the existing output file, to be written out again
+   * together with the new ones.
+   * 
+   * @param numKeys the number of key columns
+   * @throws Exception if the results cannot be loaded or do not match the
+   *           result producer
+   */
+  protected void loadResults(int numKeys) throws Exception {
+
+    Instances existing;
+    BufferedReader reader = new BufferedReader(new FileReader(m_OutputFile));
+    try {
+      existing = new Instances(reader);
+    } finally {
+      reader.close();
+    }
+    if (existing.numAttributes() != m_AttributeTypes.length) {
+      throw new Exception("Results in " + m_OutputFile
+        + " do not match the result producer!");
+    }
+
+    for (int n = 0; n < existing.numInstances(); n++) {
+      Instance inst = existing.instance(n);
+      Object[] key = new Object[numKeys];
+      Object[] result = new Object[m_AttributeTypes.length - numKeys];
+      for (int i = 0; i < m_AttributeTypes.length; i++) {
+        Object val = null;
+        if (!inst.isMissing(i)) {
+          if (m_AttributeTypes[i] == Attribute.NUMERIC) {
+            if (!existing.attribute(i).isNumeric()) {
+              throw new Exception("Results in " + m_OutputFile
+                + " do not match the result producer!");
+            }
+            val = new Double(inst.value(i));
+          } else {
+            val = inst.stringValue(i);
+          }
+        }
+        if (i < numKeys) {
+          key[i] = val;
+        } else {
+          result[i - numKeys] = val;
+        }
+      }
+      addResult(key, result);
+      m_KeyIndex.add(key);
+    }
   }
 
   /**
@@ -160,6 +244,10 @@ public class InstancesResultListener extends CSVResultListener {
     if (m_RP != rp) {
       throw new Error("Unrecognized ResultProducer sending results!!");
     }
+    if (m_Out == null) {
+      m_Out = new PrintWriter(new BufferedOutputStream(new FileOutputStream(
+        m_OutputFile)), true);
+    }
     String[] keyNames = m_RP.getKeyNames();
     String[] resultNames = m_RP.getResultNames();
     ArrayList<Attribute> attribInfo = new ArrayList<Attribute>();
@@ -204,6 +292,7 @@ public class InstancesResultListener extends CSVResultListener {
     if (!(m_OutputFile == null) && !(m_OutputFile.getName().equals("-"))) {
       m_Out.close();
     }
+    m_KeyIndex = null;
   }
 
   /**
@@ -222,6 +311,20 @@ public class InstancesResultListener extends CSVResultListener {
       throw new Error("Unrecognized ResultProducer sending results!!");
     }
 
+    addResult(key, result);
+    if (m_KeyIndex != null) {
+      m_KeyIndex.add(key);
+    }
+  }
+
+  /**
+   * Turns a result into an instance and adjusts the header information.
+   * 
+   * @param key The key for the results.
+   * @param result The actual results.
+   */
+  protected void addResult(Object[] key, Object[] result) {
+
     Instance newInst = new DenseInstance(m_AttributeTypes.length);
     for (int i = 0; i < m_AttributeTypes.length; i++) {
       Object val = null;
@@ -0,0 +1,269 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ResultKeyIndex.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.experiment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * A set of result keys, as generated by result producers, for quickly
+ * determining which results are already available. Keys are stored as 64 bit
+ * hashes in an open addressing hash table, i.e., eight bytes per key plus
+ * slack. Optionally, the index is backed by a file to which every added key is
+ * appended, so that an experiment writing to a file can be resumed after an
+ * interruption.
+ * <p/>
+ * Key values are compared by type and value: strings by their characters,
+ * numbers by their double value. A missing (null) value only matches another
+ * missing value.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class ResultKeyIndex implements RevisionHandler {
+
+  /** the extension of index files. */
+  public static final String FILE_EXTENSION = ".keys";
+
+  /** the magic number at the start of index files. */
+  protected static final int MAGIC = 0x574b524b;
+
+  /** the 64 bit FNV offset basis. */
+  protected static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+  /** the 64 bit FNV prime. */
+  protected static final long FNV_PRIME = 0x100000001b3L;
+
+  /** the hash table, 0 denotes an empty slot. */
+  protected long[] m_Table = new long[64];
+
+  /** the number of keys in the table. */
+  protected int m_Size;
+
+  /** the stream the added keys are appended to, null if not file based. */
+  protected DataOutputStream m_Out;
+
+  /**
+   * Initializes an empty index that is held in memory only.
+   */
+  public ResultKeyIndex() {
+  }
+
+  /**
+   * Opens an index backed by the given file. If the index is resumed, the
+   * keys in the file are loaded and further keys are appended, otherwise the
+   * file is overwritten.
+   *
+   * @param file the index file
+   * @param resume whether to load and append to an existing file
+   * @throws IOException if the file cannot be read or written
+   */
+  public ResultKeyIndex(File file, boolean resume) throws IOException {
+    boolean exists = resume && file.exists() && (file.length() > 0);
+    if (exists) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(file)));
+      try {
+        if (in.readInt() != MAGIC) {
+          throw new IOException("Not a result key index: " + file);
+        }
+        // a partially written last key is ignored
+        while (true) {
+          insert(in.readLong());
+        }
+      } catch (EOFException e) {
+        // end of index reached
+      } finally {
+        in.close();
+      }
+    }
+    if (exists && ((file.length() - 4) % 8 != 0)) {
+      // drop a partially written key
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(file.length() - (file.length() - 4) % 8);
+      } finally {
+        raf.close();
+      }
+    }
+    m_Out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+      file, exists)));
+    if (!exists) {
+      m_Out.writeInt(MAGIC);
+      m_Out.flush();
+    }
+  }
+
+  /**
+   * Returns the file an index for the given output file is stored in.
+   *
+   * @param output the output file
+   * @return the index file
+   */
+  public static File indexFileFor(File output) {
+    return new File(output.getPath() + FILE_EXTENSION);
+  }
+
+  /**
+   * Computes the hash of a key.
+   *
+   * @param key the key
+   * @return the hash, never 0
+   */
+  public static long hash(Object[] key) {
+    long h = FNV_OFFSET;
+    for (Object value : key) {
+      if (value == null) {
+        h = (h ^ 1) * FNV_PRIME;
+      } else if (value instanceof Number) {
+        long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+        h = (h ^ 2) * FNV_PRIME;
+        for (int i = 0; i < 64; i += 16) {
+          h = (h ^ ((bits >>> i) & 0xffff)) * FNV_PRIME;
+        }
+      } else {
+        String str = value.toString();
+        h = (h ^ 3) * FNV_PRIME;
+        h = (h ^ str.length()) * FNV_PRIME;
+        for (int i = 0; i < str.length(); i++) {
+          h = (h ^ str.charAt(i)) * FNV_PRIME;
+        }
+      }
+    }
+
+    // spread the bits for the table
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (h == 0) ? 1 : h;
+  }
+
+  /**
+   * Inserts a hash into the table.
+   *
+   * @param h the hash
+   * @return true if the hash was not present yet
+   */
+  protected boolean insert(long h) {
+    if (h == 0) {
+      return false;
+    }
+    if (2 * (m_Size + 1) > m_Table.length) {
+      long[] old = m_Table;
+      m_Table = new long[old.length * 2];
+      m_Size = 0;
+      for (long o : old) {
+        if (o != 0) {
+          insert(o);
+        }
+      }
+    }
+    int mask = m_Table.length - 1;
+    int i = (int) h & mask;
+    while (m_Table[i] != 0) {
+      if (m_Table[i] == h) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    m_Table[i] = h;
+    m_Size++;
+    return true;
+  }
+
+  /**
+   * Returns whether the index contains the given key.
+   *
+   * @param key the key
+   * @return true if the key is in the index
+   */
+  public boolean contains(Object[] key) {
+    long h = hash(key);
+    int mask = m_Table.length - 1;
+    int i = (int) h & mask;
+    while (m_Table[i] != 0) {
+      if (m_Table[i] == h) {
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Adds a key to the index, and appends it to the index file, if any.
+   *
+   * @param key the key
+   * @throws IOException if the key cannot be written to the file
+   */
+  public void add(Object[] key) throws IOException {
+    long h = hash(key);
+    if (insert(h) && (m_Out != null)) {
+      m_Out.writeLong(h);
+      m_Out.flush();
+    }
+  }
+
+  /**
+   * Returns the number of keys in the index.
+   *
+   * @return the number of keys
+   */
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Closes the index file, if any.
+   *
+   * @throws IOException if closing fails
+   */
+  public void close() throws IOException {
+    if (m_Out != null) {
+      m_Out.close();
+      m_Out = null;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -21,6 +21,7 @@
 
 package weka.knowledgeflow.steps;
 
+import weka.core.Attribute;
 import weka.core.Environment;
 import weka.core.EnvironmentHandler;
 import weka.core.Instance;
@@ -28,6 +29,8 @@ import weka.core.Instances;
 import weka.core.SerializedObject;
 import weka.core.WekaException;
 import weka.core.converters.FileSourcedConverter;
+import weka.core.converters.IncrementalConverter;
+import weka.core.converters.PrefetchingLoader;
 import weka.gui.ProgrammaticProperty;
 import weka.gui.beans.StreamThroughput;
 import weka.gui.knowledgeflow.StepVisual;
@@ -191,6 +194,7 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
       Instances structureCopy = null;
       Instances currentStructure = null;
       boolean stringAttsPresent = false;
+      weka.core.converters.Loader source = theLoader;
 
       try {
         theLoader.reset();
@@ -200,6 +204,11 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
           structureCopy =
             (Instances) (new SerializedObject(structure).getObject());
           stringAttsPresent = true;
+        } else if (theLoader instanceof IncrementalConverter
+          && !structure.checkForAttributeType(Attribute.RELATIONAL)) {
+          // parse ahead on a background thread while downstream steps
+          // process the current instance
+          source = new PrefetchingLoader(theLoader);
         }
         currentStructure = structure;
       } catch (Exception ex) {
@@ -211,7 +220,7 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
       }
 
       try {
-        nextInstance = theLoader.getNextInstance(structure);
+        nextInstance = source.getNextInstance(structure);
       } catch (Exception ex) {
         // getStepManager().throughputFinished(m_instanceData);
         throw new WekaException(ex);
@@ -233,7 +242,7 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
           .setPayloadElement(StepManager.CON_INSTANCE, nextInstance);
 
         try {
-          nextInstance = theLoader.getNextInstance(currentStructure);
+          nextInstance = source.getNextInstance(currentStructure);
         } catch (Exception ex) {
           getStepManager().throughputFinished(m_instanceData);
           throw new WekaException(ex);
@@ -246,6 +255,14 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
       }
 
       if (isStopRequested()) {
+        if (source != theLoader) {
+          try {
+            // stop reading ahead
+            source.reset();
+          } catch (Exception ex) {
+            // ignore
+          }
+        }
         ((StepManagerImpl) getStepManager()).getLog().statusMessage(
           stm + "remove");
         return;
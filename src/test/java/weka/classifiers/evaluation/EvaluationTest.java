@@ -19,12 +19,23 @@
 
 package weka.classifiers.evaluation;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Instance;
 import weka.core.Instances;
 
 /**
@@ -80,6 +91,240 @@ public class EvaluationTest extends TestCase {
     }
   }
 
+  public void testParallelCrossValidation() throws Exception {
+    Instances inst = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    inst.setClassIndex(inst.numAttributes() - 1);
+
+    Evaluation sequential = new Evaluation(inst);
+    sequential.crossValidateModel(new J48(), inst, 10, new Random(1));
+    Evaluation parallel = new Evaluation(inst);
+    parallel.setNumExecutionSlots(4);
+    parallel.crossValidateModel(new J48(), inst, 10, new Random(1));
+
+    assertEquals(sequential.toSummaryString(true), parallel.toSummaryString(true));
+    assertEquals(sequential.toClassDetailsString(), parallel.toClassDetailsString());
+    assertEquals(sequential.toMatrixString(), parallel.toMatrixString());
+    assertEquals(sequential.predictions().size(), parallel.predictions().size());
+    for (int i = 0; i < sequential.predictions().size(); i++) {
+      assertEquals(sequential.predictions().get(i).actual(),
+        parallel.predictions().get(i).actual(), 0.0);
+      assertEquals(sequential.predictions().get(i).predicted(),
+        parallel.predictions().get(i).predicted(), 0.0);
+    }
+  }
+
+  public void testCurveSketch() throws Exception {
+    Instances inst = new Instances(new StringReader(DATA));
+    inst.setClassIndex(inst.numAttributes() - 1);
+    Evaluation exact = new Evaluation(inst);
+    Evaluation sketched = new Evaluation(inst);
+    sketched.setDiscardPredictions(true);
+    sketched.setNumCurveBins(100);
+    AggregateableEvaluation aggregated = new AggregateableEvaluation(inst);
+    for (int i = 0; i < inst.numInstances(); i++) {
+      exact.evaluateModelOnceAndRecordPrediction(PREDS[i], inst.instance(i));
+      sketched.evaluateModelOnceAndRecordPrediction(PREDS[i], inst.instance(i));
+      Evaluation single = new Evaluation(inst);
+      single.setDiscardPredictions(true);
+      single.setNumCurveBins(100);
+      single.evaluateModelOnceAndRecordPrediction(PREDS[i], inst.instance(i));
+      aggregated.aggregate(single);
+    }
+
+    // all probabilities fall into different bins, hence the areas are exact
+    assertNull(sketched.predictions());
+    for (int i = 0; i < inst.numClasses(); i++) {
+      assertEquals(0, sketched.getCurveSketch().getROCAreaErrorBound(i), 0);
+      assertEquals(exact.areaUnderROC(i), sketched.areaUnderROC(i), 1e-12);
+      assertEquals(exact.areaUnderPRC(i), sketched.areaUnderPRC(i), 1e-12);
+      assertEquals(exact.areaUnderROC(i), aggregated.areaUnderROC(i), 1e-12);
+      assertEquals(exact.areaUnderPRC(i), aggregated.areaUnderPRC(i), 1e-12);
+    }
+
+    Instances anneal = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    anneal.setClassIndex(anneal.numAttributes() - 1);
+    exact = new Evaluation(anneal);
+    exact.crossValidateModel(new J48(), anneal, 10, new Random(1));
+    sketched = new Evaluation(anneal);
+    sketched.setDiscardPredictions(true);
+    sketched.setNumCurveBins(20);
+    sketched.crossValidateModel(new J48(), anneal, 10, new Random(1));
+    for (int i = 0; i < anneal.numClasses(); i++) {
+      double bound = sketched.getCurveSketch().getROCAreaErrorBound(i);
+      if (Double.isNaN(bound)) {
+        assertTrue(Double.isNaN(sketched.areaUnderROC(i)));
+      } else {
+        assertEquals(exact.areaUnderROC(i), sketched.areaUnderROC(i),
+          bound + 1e-12);
+      }
+    }
+  }
+
+  public void testCurveAreas() throws Exception {
+    Instances anneal = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    anneal.setClassIndex(anneal.numAttributes() - 1);
+    Random random = new Random(1);
+    for (int i = 0; i < anneal.numInstances(); i++) {
+      anneal.instance(i).setWeight(random.nextDouble() * 2);
+    }
+    Evaluation eval = new Evaluation(anneal);
+    eval.crossValidateModel(new J48(), anneal, 10, new Random(1));
+
+    ThresholdCurve tc = new ThresholdCurve();
+    int n = eval.predictions().size();
+    for (int c = 0; c < anneal.numClasses(); c++) {
+      double[] probs = new double[n];
+      double[] actual = new double[n];
+      double[] weights = new double[n];
+      for (int i = 0; i < n; i++) {
+        NominalPrediction pred = (NominalPrediction) eval.predictions().get(i);
+        probs[i] = pred.distribution()[c];
+        actual[i] = pred.actual();
+        weights[i] = pred.weight();
+      }
+      double[] areas =
+        ThresholdCurve.getCurveAreas(probs, actual, weights, c);
+      Instances curve = tc.getCurve(eval.predictions(), c);
+      assertEquals(ThresholdCurve.getROCArea(curve), areas[0], 0);
+      assertEquals(ThresholdCurve.getPRCArea(curve), areas[1], 0);
+      assertEquals(areas[0], eval.areaUnderROC(c), 0);
+      assertEquals(areas[1], eval.areaUnderPRC(c), 0);
+
+      int index = ThresholdCurve.getThresholdInstance(curve, 0.5);
+      double threshold = curve.instance(index).value(
+        curve.attribute(ThresholdCurve.THRESHOLD_NAME));
+      TwoClassStats stats = ThresholdCurve.getOperatingPoint(probs, actual,
+        weights, c, threshold);
+      assertEquals(curve.instance(index).value(
+        curve.attribute(ThresholdCurve.TRUE_POS_NAME)),
+        stats.getTruePositive(), 1e-9);
+      assertEquals(curve.instance(index).value(
+        curve.attribute(ThresholdCurve.FALSE_POS_NAME)),
+        stats.getFalsePositive(), 1e-9);
+    }
+  }
+
+  public void testBatchPrediction() throws Exception {
+    Instances anneal = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    anneal.setClassIndex(anneal.numAttributes() - 1);
+    J48 classifier = new J48() {
+      @Override
+      public boolean implementsMoreEfficientBatchPrediction() {
+        return true;
+      }
+    };
+    classifier.buildClassifier(anneal);
+
+    Evaluation all = new Evaluation(anneal);
+    double[] expected = all.evaluateModel(classifier, anneal);
+    for (boolean pipeline : new boolean[] { false, true }) {
+      Evaluation batched = new Evaluation(anneal);
+      batched.setPredictionBatchSize(64);
+      batched.setPipelinePredictions(pipeline);
+      double[] actual = batched.evaluateModel(classifier, anneal);
+
+      assertEquals(expected.length, actual.length);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i], actual[i], 0.0);
+      }
+      assertEquals(all.toSummaryString(), batched.toSummaryString());
+      assertEquals(all.toClassDetailsString(), batched.toClassDetailsString());
+      assertEquals(all.predictions().size(), batched.predictions().size());
+    }
+  }
+
+  public void testBatchPredictionOptions() throws Exception {
+    File file = File.createTempFile("anneal", ".arff");
+    file.deleteOnExit();
+    Instances anneal = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    Writer writer = new BufferedWriter(new FileWriter(file));
+    writer.write(anneal.toString());
+    writer.close();
+
+    String[] common = { "-t", file.getPath(), "-T", file.getPath(), "-o",
+      "-I", "10" };
+    String expected = withoutTimes(Evaluation.evaluateModel(
+      new RandomForest(), common.clone()));
+    String[] batched = Arrays.copyOf(common, common.length + 3);
+    batched[common.length] = "-prediction-batch-size";
+    batched[common.length + 1] = "64";
+    batched[common.length + 2] = "-pipeline-predictions";
+    String actual = withoutTimes(Evaluation.evaluateModel(new RandomForest(),
+      batched));
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Updateable classifier that fails after a given number of updates.
+   */
+  protected static class FailingUpdateable extends NaiveBayesUpdateable {
+
+    private static final long serialVersionUID = -3155287387462493620L;
+
+    /** the number of updates before failing */
+    protected int m_Remaining = 10;
+
+    @Override
+    public void updateClassifier(Instance instance) throws Exception {
+      if (--m_Remaining < 0) {
+        throw new Exception("update failed");
+      }
+      super.updateClassifier(instance);
+    }
+  }
+
+  public void testIncrementalFailureStopsReading() throws Exception {
+    File file = File.createTempFile("anneal", ".arff");
+    file.deleteOnExit();
+    Instances anneal = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    // more instances than the read-ahead buffer holds
+    Instances data = new Instances(anneal);
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < anneal.numInstances(); j++) {
+        data.add(anneal.instance(j));
+      }
+    }
+    Writer writer = new BufferedWriter(new FileWriter(file));
+    writer.write(data.toString());
+    writer.close();
+
+    try {
+      Evaluation.evaluateModel(new FailingUpdateable(), new String[] { "-t",
+        file.getPath(), "-no-cv" });
+      fail("Failure while updating the classifier wasn't passed on");
+    } catch (Exception ex) {
+      assertEquals("update failed", ex.getMessage());
+    }
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("PrefetchingLoader")) {
+        assertFalse("Reader thread still running", thread.isAlive());
+      }
+    }
+  }
+
+  /**
+   * Removes the lines with timing information from the output of an
+   * evaluation.
+   *
+   * @param output the output
+   * @return the output without timing information
+   */
+  protected static String withoutTimes(String output) {
+    StringBuilder result = new StringBuilder();
+    for (String line : output.split("\n")) {
+      if (!line.startsWith("Time taken")) {
+        result.append(line).append("\n");
+      }
+    }
+    return result.toString();
+  }
+
   public static Test suite() {
     return new TestSuite(weka.classifiers.evaluation.EvaluationTest.class);
   }
@@ -19,8 +19,13 @@
 
 package weka.classifiers.meta;
 
+import java.io.InputStreamReader;
+import java.util.List;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.evaluation.Prediction;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +46,38 @@ public class BaggingTest extends AbstractClassifierTest {
     return new Bagging();
   }
 
+  /**
+   * Tests that collecting the out-of-bag votes in parallel yields the same
+   * out-of-bag evaluation as collecting them sequentially.
+   */
+  public void testParallelOutOfBag() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    for (int classIndex : new int[] { data.numAttributes() - 1, 3 }) {
+      data.setClassIndex(classIndex);
+      Bagging[] bagging = new Bagging[2];
+      for (int i = 0; i < bagging.length; i++) {
+        bagging[i] = new Bagging();
+        bagging[i].setNumIterations(10);
+        bagging[i].setCalcOutOfBag(true);
+        bagging[i].setStoreOutOfBagPredictions(true);
+        bagging[i].setNumExecutionSlots(1 + 2 * i);
+        bagging[i].buildClassifier(data);
+      }
+
+      assertEquals(bagging[0].measureOutOfBagError(),
+        bagging[1].measureOutOfBagError(), 0);
+      List<Prediction> expected =
+        bagging[0].getOutOfBagEvaluationObject().predictions();
+      List<Prediction> actual =
+        bagging[1].getOutOfBagEvaluationObject().predictions();
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).predicted(), actual.get(i).predicted(), 0);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(BaggingTest.class);
   }
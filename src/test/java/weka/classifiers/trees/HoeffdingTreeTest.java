@@ -19,8 +19,12 @@
 
 package weka.classifiers.trees;
 
+import java.io.InputStreamReader;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +45,116 @@ public class HoeffdingTreeTest extends AbstractClassifierTest {
     return new HoeffdingTree();
   }
 
+  /**
+   * Returns the anneal data, repeated the given number of times.
+   */
+  protected Instances annealStream(int repeats) throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    data.setClassIndex(data.numAttributes() - 1);
+    Instances stream = new Instances(data, data.numInstances() * repeats);
+    for (int r = 0; r < repeats; r++) {
+      for (int i = 0; i < data.numInstances(); i++) {
+        stream.add(data.instance((i * 7 + r) % data.numInstances()));
+      }
+    }
+    return stream;
+  }
+
+  /**
+   * Returns the accuracy of the tree on the given data.
+   */
+  protected double accuracy(HoeffdingTree tree, Instances data)
+    throws Exception {
+    int correct = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (tree.classifyInstance(data.instance(i)) == data.instance(i)
+        .classValue()) {
+        correct++;
+      }
+    }
+    return (double) correct / data.numInstances();
+  }
+
+  /**
+   * Tests that adding the training instances with several threads gives a
+   * tree as accurate as adding them sequentially.
+   */
+  public void testConcurrentBuild() throws Exception {
+    Instances data = annealStream(10);
+
+    HoeffdingTree sequential = new HoeffdingTree();
+    sequential.buildClassifier(data);
+    HoeffdingTree concurrent = new HoeffdingTree();
+    concurrent.setNumExecutionSlots(4);
+    concurrent.buildClassifier(data);
+
+    assertEquals(accuracy(sequential, data), accuracy(concurrent, data), 0.05);
+    assertTrue(accuracy(concurrent, data) > 0.7);
+  }
+
+  /**
+   * Tests updating and querying the tree from several threads at once.
+   */
+  public void testConcurrentUpdate() throws Exception {
+    final Instances data = annealStream(5);
+    final HoeffdingTree tree = new HoeffdingTree();
+    tree.setNumExecutionSlots(3);
+    tree.buildClassifier(new Instances(data, 0));
+
+    final Exception[] failure = new Exception[1];
+    Thread[] threads = new Thread[3];
+    for (int t = 0; t < threads.length; t++) {
+      final int first = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = first; i < data.numInstances(); i += 3) {
+              Instance inst = data.instance(i);
+              tree.updateClassifier(inst);
+              double[] dist = tree.distributionForInstance(inst);
+              assertEquals(data.numClasses(), dist.length);
+            }
+          } catch (Exception e) {
+            failure[0] = e;
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    assertTrue(accuracy(tree, data) > 0.7);
+  }
+
+  /**
+   * Tests that the least promising leaves are deactivated to keep the tree
+   * within the memory limit.
+   */
+  public void testMemoryLimit() throws Exception {
+    Instances data = annealStream(10);
+
+    HoeffdingTree unlimited = new HoeffdingTree();
+    unlimited.setOptions(new String[] { "-L", "0", "-G", "50" });
+    unlimited.buildClassifier(data);
+    long size = unlimited.m_root.calcByteSizeIncludingSubtree();
+    assertEquals(0, unlimited.m_inactiveLeafCount);
+
+    HoeffdingTree limited = new HoeffdingTree();
+    limited.setOptions(new String[] { "-L", "0", "-G", "50",
+      "-memory-limit", "" + (size / 2 / 1024.0 / 1024.0) });
+    assertEquals(size / 2 / 1024.0 / 1024.0, limited.getMemoryLimit(), 0);
+    limited.buildClassifier(data);
+    assertTrue(limited.m_inactiveLeafCount > 0);
+    assertTrue(limited.m_root.calcByteSizeIncludingSubtree() <= size / 2);
+    assertTrue(accuracy(limited, data) > 0.5);
+  }
+
   public static Test suite() {
     return new TestSuite(HoeffdingTreeTest.class);
   }
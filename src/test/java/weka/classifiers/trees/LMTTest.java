@@ -19,8 +19,11 @@
 
 package weka.classifiers.trees;
 
+import java.io.InputStreamReader;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +47,29 @@ public class LMTTest
     return new LMT();
   }
 
+  /**
+   * Tests that fitting the classes in parallel gives the same tree as
+   * fitting them sequentially.
+   */
+  public void testParallelBuild() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    data.setClassIndex(data.numAttributes() - 1);
+
+    // make the data large enough for the classes to be fit in parallel
+    Instances copy = new Instances(data);
+    for (int i = 0; i < copy.numInstances(); i++) {
+      data.add(copy.instance(i));
+    }
+
+    LMT sequential = new LMT();
+    sequential.buildClassifier(data);
+    LMT parallel = new LMT();
+    parallel.setNumExecutionSlots(4);
+    parallel.buildClassifier(data);
+    assertEquals(sequential.toString(), parallel.toString());
+  }
+
   public static Test suite() {
     return new TestSuite(LMTTest.class);
   }
@@ -19,8 +19,16 @@
 
 package weka.classifiers.trees;
 
+import java.util.ArrayList;
+import java.util.Random;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Reorder;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +49,90 @@ public class M5PTest extends AbstractClassifierTest {
     return new M5P();
   }
 
+  /**
+   * Generates piecewise linear regression data.
+   *
+   * @param numInstances the number of instances
+   * @param numAttributes the number of attributes besides the class
+   * @return the data, with the class last
+   */
+  protected Instances regressionData(int numInstances, int numAttributes) {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int j = 0; j < numAttributes; j++) {
+      atts.add(new Attribute("x" + j));
+    }
+    atts.add(new Attribute("y"));
+    Instances data = new Instances("regression", atts, numInstances);
+    data.setClassIndex(numAttributes);
+    Random random = new Random(1);
+    for (int i = 0; i < numInstances; i++) {
+      double[] values = new double[numAttributes + 1];
+      for (int j = 0; j < numAttributes; j++) {
+        values[j] = random.nextInt(100) / 10.0;
+      }
+      values[numAttributes] = (values[0] > 5) ? 3 * values[1] - values[2] + 10
+        : -2 * values[1] + values[3];
+      values[numAttributes] += random.nextGaussian();
+      data.add(new DenseInstance(1, values));
+    }
+    return data;
+  }
+
+  public void testParallelBuild() throws Exception {
+    Instances data = regressionData(3000, 20);
+
+    M5P sequential = new M5P();
+    sequential.setUseFastBuild(true);
+    sequential.buildClassifier(data);
+    M5P parallel = new M5P();
+    parallel.setUseFastBuild(true);
+    parallel.setNumExecutionSlots(4);
+    parallel.buildClassifier(data);
+
+    assertEquals(sequential.toString(), parallel.toString());
+  }
+
+  public void testClassPosition() throws Exception {
+    Instances data = regressionData(1000, 5);
+    Reorder reorder = new Reorder();
+    reorder.setAttributeIndices("last,first-5");
+    reorder.setInputFormat(data);
+    Instances classFirst = Filter.useFilter(data, reorder);
+    classFirst.setClassIndex(0);
+
+    for (boolean fast : new boolean[] { false, true }) {
+      M5P last = new M5P();
+      last.setUseFastBuild(fast);
+      last.buildClassifier(data);
+      M5P first = new M5P();
+      first.setUseFastBuild(fast);
+      first.buildClassifier(classFirst);
+
+      assertEquals(last.measureNumRules(), first.measureNumRules(), 0);
+      for (int i = 0; i < data.numInstances(); i++) {
+        assertEquals(last.classifyInstance(data.instance(i)),
+          first.classifyInstance(classFirst.instance(i)), 1e-6);
+      }
+    }
+  }
+
+  public void testFastBuild() throws Exception {
+    Instances data = regressionData(3000, 20);
+
+    M5P normal = new M5P();
+    normal.buildClassifier(data);
+    M5P fast = new M5P();
+    fast.setUseFastBuild(true);
+    fast.buildClassifier(data);
+
+    assertEquals(normal.measureNumRules(), fast.measureNumRules(), 0);
+    for (int i = 0; i < data.numInstances(); i++) {
+      double expected = normal.classifyInstance(data.instance(i));
+      assertEquals(expected, fast.classifyInstance(data.instance(i)),
+        1e-12 * Math.max(1, Math.abs(expected)));
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(M5PTest.class);
   }
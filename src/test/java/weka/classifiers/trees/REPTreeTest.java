@@ -19,8 +19,12 @@
 
 package weka.classifiers.trees;
 
+import java.io.InputStreamReader;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +45,70 @@ public class REPTreeTest extends AbstractClassifierTest {
     return new REPTree();
   }
 
+  /**
+   * Tests that binning does not change the tree if all attributes have fewer
+   * distinct values than bins.
+   */
+  public void testBinnedSplits() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    data.setClassIndex(data.numAttributes() - 1);
+
+    REPTree exact = new REPTree();
+    exact.buildClassifier(data);
+    REPTree binned = new REPTree();
+    binned.setMaxBins(255);
+    binned.buildClassifier(data);
+    assertEquals(exact.toString(), binned.toString());
+  }
+
+  /**
+   * Tests that binning does not change the tree for a numeric class if the
+   * sums of the class values are exact, i.e., for integer class values.
+   * Otherwise the sums per bin may round differently from the ones per
+   * instance, which can change the choice between nearly equal splits.
+   */
+  public void testBinnedSplitsNumericClass() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    int classIndex = data.attribute("thick").index();
+    data.setClassIndex(classIndex);
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      inst.setValue(classIndex, Math.rint(inst.value(classIndex) * 10));
+    }
+
+    REPTree exact = new REPTree();
+    exact.buildClassifier(data);
+    REPTree binned = new REPTree();
+    binned.setMaxBins(255);
+    binned.buildClassifier(data);
+    assertEquals(exact.toString(), binned.toString());
+  }
+
+  /**
+   * Tests that growing the tree with several threads gives the same tree as
+   * growing it sequentially.
+   */
+  public void testParallelBuild() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    data.setClassIndex(data.numAttributes() - 1);
+
+    // make the data large enough for the root to be split in parallel
+    Instances copy = new Instances(data);
+    for (int i = 0; i < copy.numInstances(); i++) {
+      data.add(copy.instance(i));
+    }
+
+    REPTree sequential = new REPTree();
+    sequential.buildClassifier(data);
+    REPTree parallel = new REPTree();
+    parallel.setNumExecutionSlots(4);
+    parallel.buildClassifier(data);
+    assertEquals(sequential.toString(), parallel.toString());
+  }
+
   public static Test suite() {
     return new TestSuite(REPTreeTest.class);
   }
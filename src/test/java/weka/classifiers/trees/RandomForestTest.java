@@ -19,8 +19,16 @@
 
 package weka.classifiers.trees;
 
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.meta.Bagging;
+import weka.core.Instances;
+import weka.core.WekaException;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +52,148 @@ public class RandomForestTest
     return new RandomForest();
   }
 
+  /**
+   * Tests that growing the trees from data shared by all trees yields the
+   * same forest as bagging copies of the data, for a nominal and a numeric
+   * class.
+   */
+  public void testSharedData() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    for (int classIndex : new int[] { data.numAttributes() - 1,
+      data.attribute("thick").index() }) {
+      data.setClassIndex(classIndex);
+      for (int i = 0; i < data.numInstances(); i++) {
+        if (i % 10 == 0) {
+          data.instance(i).setClassMissing();
+        }
+      }
+
+      RandomForest forest = new RandomForest();
+      forest.setNumIterations(10);
+      forest.setCalcOutOfBag(true);
+      forest.setNumExecutionSlots(2);
+      forest.buildClassifier(data);
+      Bagging bagging = new Bagging();
+      bagging.setClassifier(AbstractClassifier.makeCopy(forest.getClassifier()));
+      bagging.setRepresentCopiesUsingWeights(true);
+      bagging.setNumIterations(10);
+      bagging.setCalcOutOfBag(true);
+      bagging.buildClassifier(data);
+
+      assertEquals(bagging.measureOutOfBagError(),
+        forest.measureOutOfBagError(), 0);
+      for (int i = 0; i < data.numInstances(); i++) {
+        double[] expected = bagging.distributionForInstance(data.instance(i));
+        double[] actual = forest.distributionForInstance(data.instance(i));
+        for (int j = 0; j < expected.length; j++) {
+          assertEquals(expected[j], actual[j], 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that the flattened trees predict the same as the trees, for a
+   * nominal and a numeric class, on instances with missing values. Numeric
+   * predictions must be identical, class probabilities may differ by
+   * rounding. Batch predictions must be identical to the ones for single
+   * instances, whatever the number of execution slots.
+   */
+  public void testFlattenedForest() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    final boolean[] flatten = new boolean[1];
+    for (int classIndex : new int[] { data.numAttributes() - 1, 3 }) {
+      data.setClassIndex(classIndex);
+      RandomForest forest = new RandomForest() {
+        @Override
+        protected FlattenedForest getFlattenedForest() {
+          return flatten[0] ? super.getFlattenedForest() : null;
+        }
+      };
+      forest.setNumIterations(10);
+      forest.setNumExecutionSlots(2);
+      forest.buildClassifier(data);
+
+      // instances with missing values are split up in the trees
+      Instances test = new Instances(data);
+      Random random = new Random(1);
+      for (int i = 0; i < test.numInstances(); i++) {
+        for (int j = 0; j < test.numAttributes(); j++) {
+          if ((j != classIndex) && (random.nextDouble() < 0.2)) {
+            test.instance(i).setMissing(j);
+          }
+        }
+      }
+      double tolerance = data.classAttribute().isNumeric() ? 0 : 1e-12;
+
+      flatten[0] = true;
+      double[][] batch = forest.distributionsForInstances(test);
+      for (int i = 0; i < test.numInstances(); i++) {
+        flatten[0] = false;
+        double[] expected = forest.distributionForInstance(test.instance(i));
+        flatten[0] = true;
+        double[] actual = forest.distributionForInstance(test.instance(i));
+        assertEquals(expected.length, actual.length);
+        assertEquals(expected.length, batch[i].length);
+        for (int j = 0; j < expected.length; j++) {
+          assertEquals(expected[j], actual[j], tolerance);
+          assertEquals(actual[j], batch[i][j], 0);
+        }
+      }
+
+      // batch predictions do not depend on the number of execution slots
+      for (int slots : new int[] { 1, 4 }) {
+        forest.setNumExecutionSlots(slots);
+        double[][] other = forest.distributionsForInstances(test);
+        for (int i = 0; i < test.numInstances(); i++) {
+          assertTrue(Arrays.equals(batch[i], other[i]));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests the out-of-bag permutation importance.
+   */
+  public void testPermutationImportance() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    data.setClassIndex(data.numAttributes() - 1);
+
+    double[][] importance = new double[2][];
+    for (int i = 0; i < importance.length; i++) {
+      RandomForest forest = new RandomForest();
+      forest.setNumIterations(10);
+      forest.setComputePermutationImportance(true);
+      forest.setNumExecutionSlots(1 + i);
+      forest.buildClassifier(data);
+      importance[i] = forest.getPermutationImportance();
+      assertTrue(forest.toString().contains("out-of-bag error when permuting"));
+    }
+
+    // the results do not depend on the number of threads
+    assertEquals(data.numAttributes(), importance[0].length);
+    double max = 0;
+    for (int i = 0; i < data.numAttributes(); i++) {
+      assertEquals(importance[0][i], importance[1][i], 0);
+      max = Math.max(max, importance[0][i]);
+    }
+    assertEquals(0, importance[0][data.classIndex()], 0);
+    assertTrue(max > 0);
+
+    RandomForest forest = new RandomForest();
+    forest.setNumIterations(10);
+    forest.buildClassifier(data);
+    try {
+      forest.getPermutationImportance();
+      fail("Permutation importance should not be available");
+    } catch (WekaException e) {
+      // expected
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(RandomForestTest.class);
   }
@@ -19,8 +19,12 @@
 
 package weka.classifiers.trees;
 
+import java.io.InputStreamReader;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +48,76 @@ public class RandomTreeTest
     return new RandomTree();
   }
 
+  /**
+   * Tests that binning does not change the tree if all attributes have fewer
+   * distinct values than bins.
+   */
+  public void testBinnedSplits() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    data.setClassIndex(data.numAttributes() - 1);
+
+    RandomTree exact = new RandomTree();
+    exact.buildClassifier(data);
+    RandomTree binned = new RandomTree();
+    binned.setMaxBins(255);
+    binned.buildClassifier(data);
+    assertEquals(exact.toString(), binned.toString());
+  }
+
+  /**
+   * Tests that binning does not change the tree for a numeric class if the
+   * sums of the class values are exact, i.e., for integer class values.
+   * Otherwise the sums per bin may round differently from the ones per
+   * instance, which can change the choice between nearly equal splits.
+   */
+  public void testBinnedSplitsNumericClass() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    int classIndex = data.attribute("thick").index();
+    data.setClassIndex(classIndex);
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      inst.setValue(classIndex, Math.rint(inst.value(classIndex) * 10));
+    }
+
+    RandomTree exact = new RandomTree();
+    exact.buildClassifier(data);
+    RandomTree binned = new RandomTree();
+    binned.setMaxBins(255);
+    binned.buildClassifier(data);
+    assertEquals(exact.toString(), binned.toString());
+  }
+
+  /**
+   * Tests that batch prediction with the flattened tree yields the same
+   * distributions as the tree.
+   */
+  public void testFlattenedTree() throws Exception {
+    Instances data = new Instances(new InputStreamReader(ClassLoader
+      .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    for (int classIndex : new int[] { data.numAttributes() - 1, 3 }) {
+      data.setClassIndex(classIndex);
+      for (boolean allowUnclassified : new boolean[] { false, true }) {
+        RandomTree tree = new RandomTree();
+        tree.setAllowUnclassifiedInstances(allowUnclassified);
+        tree.buildClassifier(data);
+        double[][] batch = tree.distributionsForInstances(data);
+        for (int i = 0; i < data.numInstances(); i++) {
+          double[] expected = tree.distributionForInstance(data.instance(i));
+          if (expected == null) {
+            assertNull(batch[i]);
+            continue;
+          }
+          assertEquals(expected.length, batch[i].length);
+          for (int j = 0; j < expected.length; j++) {
+            assertEquals(expected[j], batch[i][j], 1e-12);
+          }
+        }
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(RandomTreeTest.class);
   }
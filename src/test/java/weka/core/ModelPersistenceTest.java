@@ -0,0 +1,219 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ModelPersistenceTest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.RandomForest;
+
+/**
+ * Tests ModelPersistence. Run from the command line with:
+ * <p/>
+ * java weka.core.ModelPersistenceTest
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class ModelPersistenceTest extends TestCase {
+
+  /** the data to build the models on */
+  protected Instances m_Data;
+
+  /**
+   * Constructs the <code>ModelPersistenceTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public ModelPersistenceTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_Data =
+      new Instances(new java.io.InputStreamReader(ClassLoader
+        .getSystemResourceAsStream("weka/core/neighboursearch/anneal.arff")));
+    m_Data.setClassIndex(m_Data.numAttributes() - 1);
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_Data = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * Writes the object with the given settings and reads it back via
+   * SerializationHelper.
+   *
+   * @param o the object to write
+   * @param compress whether to compress the data
+   * @param numSlots the number of threads to use
+   * @return the object read back
+   * @throws Exception if writing or reading fails
+   */
+  protected Object roundTrip(Object o, boolean compress, int numSlots)
+    throws Exception {
+    ModelPersistence persistence = new ModelPersistence();
+    persistence.setCompress(compress);
+    persistence.setNumExecutionSlots(numSlots);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    persistence.serialize(out, o);
+
+    return SerializationHelper.read(new ByteArrayInputStream(out
+      .toByteArray()));
+  }
+
+  /**
+   * Builds the classifier, writes and reads it back with the various
+   * settings and compares the output and the predictions.
+   *
+   * @param cls the classifier to test
+   * @throws Exception if an error occurs
+   */
+  protected void checkClassifier(Classifier cls) throws Exception {
+    cls.buildClassifier(m_Data);
+
+    for (int i = 0; i < 3; i++) {
+      Classifier read = (Classifier) roundTrip(cls, i == 1, (i == 2) ? 2 : 1);
+      assertEquals(cls.toString(), read.toString());
+      for (Instance inst : m_Data) {
+        double[] expected = cls.distributionForInstance(inst);
+        double[] actual = read.distributionForInstance(inst);
+        for (int n = 0; n < expected.length; n++) {
+          assertEquals(expected[n], actual[n], 0.0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests writing and reading a dataset.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testInstances() throws Exception {
+    Instances read = (Instances) roundTrip(m_Data, false, 1);
+
+    assertNull(m_Data.equalHeadersMsg(read));
+    assertEquals(m_Data.toString(), read.toString());
+    assertSame(read, read.instance(0).dataset());
+  }
+
+  /**
+   * Tests J48.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testJ48() throws Exception {
+    checkClassifier(new J48());
+  }
+
+  /**
+   * Tests J48 with reduced error pruning and binary splits.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testJ48ReducedErrorPruning() throws Exception {
+    J48 cls = new J48();
+    cls.setReducedErrorPruning(true);
+    cls.setBinarySplits(true);
+    checkClassifier(cls);
+  }
+
+  /**
+   * Tests NaiveBayes, with normal and with kernel estimators.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testNaiveBayes() throws Exception {
+    checkClassifier(new NaiveBayes());
+
+    NaiveBayes cls = new NaiveBayes();
+    cls.setUseKernelEstimator(true);
+    checkClassifier(cls);
+  }
+
+  /**
+   * Tests RandomForest, whose trees get encoded in parallel.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testRandomForest() throws Exception {
+    RandomForest cls = new RandomForest();
+    cls.setNumIterations(10);
+    checkClassifier(cls);
+  }
+
+  /**
+   * Tests that streams in plain Java serialization format are still read.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testJavaSerialization() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SerializationHelper.write(out, m_Data);
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+
+    assertFalse(ModelPersistence.isModelPersistenceStream(in));
+    assertEquals(m_Data.toString(),
+      SerializationHelper.read(in).toString());
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ModelPersistenceTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -19,8 +19,15 @@
 
 package weka.core.converters;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  * Tests ArffLoader/ArffSaver. Run from the command line with:<p/>
@@ -59,6 +66,148 @@ public class ArffTest
     return new ArffSaver();
   }
 
+  /**
+   * tests whether parsing the data section in parallel produces the same
+   * dataset as the sequential parse.
+   */
+  public void testParallelBatch() {
+    try {
+      m_Saver.setInstances(m_Instances);
+      m_Saver.setFile(new File(m_ExportFilename));
+      m_Saver.writeBatch();
+
+      ArffLoader loader = new ArffLoader();
+      loader.setFile(new File(m_ExportFilename));
+      Instances sequential = loader.getDataSet();
+
+      // small chunks to force many blocks
+      loader = new ArffLoader();
+      loader.setNumExecutionSlots(4);
+      loader.setChunkSize(64);
+      loader.setFile(new File(m_ExportFilename));
+      Instances parallel = loader.getDataSet();
+
+      compareDatasets(sequential, parallel);
+      assertEquals("Datasets differ", sequential.toString(),
+        parallel.toString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Parallel batch load failed: " + e.toString());
+    }
+
+    // CRLF line endings, with blocks that may end between \r and \n
+    try {
+      StringBuilder text = new StringBuilder();
+      text.append("@relation crlf\r\n\r\n@attribute a numeric\r\n"
+        + "@attribute b {x,y}\r\n\r\n@data\r\n");
+      for (int i = 0; i < 50; i++) {
+        text.append(i).append(",").append((i % 2 == 0) ? "x" : "y")
+          .append("\r\n");
+      }
+      writeFile(text.toString());
+      ArffLoader loader = new ArffLoader();
+      loader.setFile(new File(m_ExportFilename));
+      Instances sequential = loader.getDataSet();
+      for (int size = 8; size < 24; size++) {
+        loader = new ArffLoader();
+        loader.setNumExecutionSlots(4);
+        loader.setChunkSize(size);
+        loader.setFile(new File(m_ExportFilename));
+        assertEquals("Datasets differ (chunk size " + size + ")",
+          sequential.toString(), loader.getDataSet().toString());
+      }
+
+      // the line number reported for a parse error must not drift
+      text.append("50,z\r\n");
+      writeFile(text.toString());
+      String expected = parseError(1, 1024);
+      assertNotNull("No parse error", expected);
+      for (int size = 8; size < 24; size++) {
+        assertEquals("Error messages differ (chunk size " + size + ")",
+          expected, parseError(4, size));
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Parallel batch load of CRLF data failed: " + e.toString());
+    }
+  }
+
+  /**
+   * writes the given text to the export file.
+   * 
+   * @param text the text to write
+   * @throws IOException if writing fails
+   */
+  protected void writeFile(String text) throws IOException {
+    FileWriter writer = new FileWriter(m_ExportFilename);
+    writer.write(text);
+    writer.close();
+  }
+
+  /**
+   * loads the export file and returns the message of the parse error.
+   * 
+   * @param slots the number of execution slots
+   * @param size the chunk size
+   * @return the error message, null if the file was parsed
+   * @throws Exception if setting up the loader fails
+   */
+  protected String parseError(int slots, int size) throws Exception {
+    ArffLoader loader = new ArffLoader();
+    loader.setNumExecutionSlots(slots);
+    loader.setChunkSize(size);
+    loader.setFile(new File(m_ExportFilename));
+    try {
+      loader.getDataSet();
+    } catch (IOException e) {
+      return e.getMessage();
+    }
+    return null;
+  }
+
+  /**
+   * tests reading the data incrementally through a PrefetchingLoader.
+   */
+  public void testPrefetchingIncremental() {
+    try {
+      // string and relational values are read on the caller's thread
+      Instances data = new Instances(m_Instances);
+      data.deleteStringAttributes();
+      data.deleteAttributeType(Attribute.RELATIONAL);
+      m_Saver.setInstances(data);
+      m_Saver.setFile(new File(m_ExportFilename));
+      m_Saver.writeBatch();
+
+      ArffLoader loader = new ArffLoader();
+      loader.setFile(new File(m_ExportFilename));
+      Instances structure = loader.getStructure();
+      Instances sequential = new Instances(structure, 0);
+      Instance inst;
+      while ((inst = loader.getNextInstance(structure)) != null) {
+        sequential.add(inst);
+      }
+
+      loader = new ArffLoader();
+      loader.setFile(new File(m_ExportFilename));
+      PrefetchingLoader prefetching = new PrefetchingLoader(loader, 2);
+      structure = prefetching.getStructure();
+      Instances prefetched = new Instances(structure, 0);
+      while ((inst = prefetching.getNextInstance(structure)) != null) {
+        prefetched.add(inst);
+      }
+      assertNull("More instances after end of data",
+        prefetching.getNextInstance(structure));
+
+      prefetched.setClassIndex(data.classIndex());
+      compareDatasets(data, prefetched);
+      assertEquals("Datasets differ", sequential.toString(),
+        prefetched.toString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Prefetching incremental load failed: " + e.toString());
+    }
+  }
+
   /**
    * returns a test suite
    * 
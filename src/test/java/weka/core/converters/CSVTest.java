@@ -19,8 +19,11 @@
 
 package weka.core.converters;
 
+import java.io.File;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Instances;
 
 /**
  * Tests CSVLoader/CSVSaver. Run from the command line with:<p/>
@@ -72,6 +75,35 @@ public class CSVTest
     m_CompareValuesAsString = true;
   }
 
+  /**
+   * tests whether reading in a single pass gives the same data as the default
+   * batch mode.
+   */
+  public void testSinglePassBatch() {
+    try {
+      m_Saver.setInstances(m_Instances);
+      m_Saver.setFile(new File(m_ExportFilename));
+      m_Saver.writeBatch();
+
+      CSVLoader loader = new CSVLoader();
+      loader.setFile(new File(m_ExportFilename));
+      Instances twoPass = loader.getDataSet();
+
+      // small buffer so that the structure changes after the sample
+      loader = new CSVLoader();
+      loader.setSinglePass(true);
+      loader.setBufferSize(2);
+      loader.setFile(new File(m_ExportFilename));
+      Instances singlePass = loader.getDataSet();
+
+      assertEquals("Datasets differ", twoPass.toString(),
+        singlePass.toString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Single pass batch load failed: " + e.toString());
+    }
+  }
+
   /**
    * returns a test suite.
    * 
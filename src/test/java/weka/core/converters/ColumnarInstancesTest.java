@@ -0,0 +1,113 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.converters;
+
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import weka.core.Instances;
+
+/**
+ * Tests ColumnarInstancesLoader/ColumnarInstancesSaver. Run from the command line with:<p/>
+ * java weka.core.converters.ColumnarInstancesTest
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class ColumnarInstancesTest 
+  extends AbstractFileConverterTest {
+
+  /**
+   * Constructs the <code>ColumnarInstancesTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public ColumnarInstancesTest(String name) { 
+    super(name);  
+  }
+
+  /**
+   * returns the loader used in the tests
+   * 
+   * @return the configured loader
+   */
+  public AbstractLoader getLoader() {
+    return new ColumnarInstancesLoader();
+  }
+
+  /**
+   * returns the saver used in the tests
+   * 
+   * @return the configured saver
+   */
+  public AbstractSaver getSaver() {
+    return new ColumnarInstancesSaver();
+  }
+
+  /**
+   * tests a compressed file with small blocks, read back with and without
+   * memory mapping.
+   */
+  public void testCompressedBlocks() {
+    try {
+      ColumnarInstancesSaver saver = new ColumnarInstancesSaver();
+      saver.setCompressOutput(true);
+      saver.setBlockSize(3);
+      saver.setInstances(m_Instances);
+      saver.setFile(new File(m_ExportFilename));
+      saver.writeBatch();
+
+      ColumnarInstancesLoader loader = new ColumnarInstancesLoader();
+      loader.setFile(new File(m_ExportFilename));
+      Instances mapped = loader.getDataSet();
+      compareDatasets(m_Instances, mapped);
+
+      loader = new ColumnarInstancesLoader();
+      loader.setUseMemoryMapping(false);
+      loader.setFile(new File(m_ExportFilename));
+      Instances streamed = loader.getDataSet();
+      compareDatasets(m_Instances, streamed);
+      assertEquals("Datasets differ", mapped.toString(), streamed.toString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Compressed round trip failed: " + e.toString());
+    }
+  }
+
+  /**
+   * returns a test suite
+   * 
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ColumnarInstancesTest.class);
+  }
+
+  /**
+   * for running the test from commandline
+   * 
+   * @param args the commandline arguments - ignored
+   */
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+}
+
@@ -19,8 +19,15 @@
 
 package weka.core.converters;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
 
 /**
  * Tests JSONLoader/JSONSaver. Run from the command line with:<p/>
@@ -71,6 +78,110 @@ public class JSONTest
     m_CompareValuesAsString = true;
   }
 
+  /** the header used by the incremental tests */
+  protected static final String HEADER = "{\"header\":{\"relation\":\"rel\","
+    + "\"attributes\":["
+    + "{\"name\":\"num\",\"type\":\"numeric\",\"class\":false,\"weight\":1.0},"
+    + "{\"name\":\"nom\",\"type\":\"nominal\",\"class\":false,\"weight\":1.0,"
+    + "\"labels\":[\"a\",\"b\"]},"
+    + "{\"name\":\"str\",\"type\":\"string\",\"class\":false,\"weight\":1.0}"
+    + "]},\"data\":[";
+
+  /**
+   * reads the given JSON document incrementally. The values of the string
+   * attribute are collected as they are read, since only the current one is
+   * kept in incremental mode.
+   * 
+   * @param json the document
+   * @param strings the list to add the string values to
+   * @return the instances read
+   * @throws IOException if reading fails
+   */
+  protected ArrayList<Instance> readIncremental(String json,
+    ArrayList<String> strings) throws IOException {
+    JSONLoader loader = new JSONLoader();
+    loader.setSource(new ByteArrayInputStream(json.getBytes("UTF-8")));
+    Instances structure = loader.getStructure();
+    ArrayList<Instance> result = new ArrayList<Instance>();
+    Instance inst;
+    while ((inst = loader.getNextInstance(structure)) != null) {
+      result.add(inst);
+      strings.add(inst.isMissing(2) ? null : inst.stringValue(2));
+    }
+    return result;
+  }
+
+  /**
+   * tests reading dense and sparse instances with weights incrementally.
+   */
+  public void testIncrementalSparseAndWeights() {
+    String json = HEADER
+      + "{\"sparse\":false,\"weight\":2.5,\"values\":[\"1.5\",\"b\",\"hello\"]},"
+      + "{\"sparse\":true,\"weight\":0.5,\"values\":[\"1:b\",\"2:world\"]},"
+      + "{\"sparse\":false,\"weight\":1.0,\"values\":[\"?\",\"a\",\"x\"]}"
+      + "]}";
+    try {
+      ArrayList<String> strings = new ArrayList<String>();
+      ArrayList<Instance> insts = readIncremental(json, strings);
+      assertEquals("Number of instances", 3, insts.size());
+
+      Instance inst = insts.get(0);
+      assertFalse("Dense instance read as sparse",
+        inst instanceof SparseInstance);
+      assertEquals("Weight", 2.5, inst.weight(), 0.0);
+      assertEquals("Numeric value", 1.5, inst.value(0), 0.0);
+      assertEquals("Nominal value", "b", inst.stringValue(1));
+      assertEquals("String value", "hello", strings.get(0));
+
+      inst = insts.get(1);
+      assertTrue("Sparse instance read as dense",
+        inst instanceof SparseInstance);
+      assertEquals("Weight", 0.5, inst.weight(), 0.0);
+      assertEquals("Implicit value", 0.0, inst.value(0), 0.0);
+      assertEquals("Nominal value", "b", inst.stringValue(1));
+      assertEquals("String value", "world", strings.get(1));
+
+      inst = insts.get(2);
+      assertEquals("Weight", 1.0, inst.weight(), 0.0);
+      assertTrue("Missing value", inst.isMissing(0));
+      assertEquals("Nominal value", "a", inst.stringValue(1));
+      assertEquals("String value", "x", strings.get(2));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Incremental read failed: " + e.toString());
+    }
+  }
+
+  /**
+   * tests that malformed documents raise an error instead of being truncated
+   * silently.
+   */
+  public void testIncrementalMalformed() {
+    String first =
+      "{\"sparse\":false,\"weight\":1.0,\"values\":[\"1.5\",\"b\",\"s\"]}";
+    String[] malformed = {
+      // document ends inside the data section
+      HEADER + first + ",",
+      HEADER + first,
+      HEADER + first + ",{\"sparse\":false,\"weight\":1.0,\"values\":[\"2",
+      // undeclared label
+      HEADER + first + ",{\"sparse\":false,\"weight\":1.0,"
+        + "\"values\":[\"1\",\"c\",\"s\"]}]}",
+      // wrong number of values
+      HEADER + first + ",{\"sparse\":false,\"weight\":1.0,"
+        + "\"values\":[\"1\",\"a\"]}]}",
+      // not JSON
+      HEADER + first + ",[}]}"};
+    for (String json : malformed) {
+      try {
+        readIncremental(json, new ArrayList<String>());
+        fail("No error for malformed document: " + json);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
   /**
    * returns a test suite.
    * 
@@ -19,6 +19,10 @@
 
 package weka.core.converters;
 
+import java.io.File;
+
+import weka.core.Instances;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -71,6 +75,47 @@ public class LibSVMTest
     m_CheckHeader = false;
   }
 
+  /**
+   * tests whether parsing in parallel and with a declared number of features
+   * produces the same dataset as the sequential parse.
+   */
+  public void testParallelBatch() {
+    try {
+      m_Saver.setInstances(m_Instances);
+      m_Saver.setFile(new File(m_ExportFilename));
+      m_Saver.writeBatch();
+
+      LibSVMLoader loader = new LibSVMLoader();
+      loader.setFile(new File(m_ExportFilename));
+      Instances sequential = loader.getDataSet();
+
+      // small chunks to force many blocks
+      loader = new LibSVMLoader();
+      loader.setNumExecutionSlots(4);
+      loader.setChunkSize(16);
+      loader.setFile(new File(m_ExportFilename));
+      Instances parallel = loader.getDataSet();
+      compareDatasets(sequential, parallel);
+
+      // structure is available without reading the data
+      loader = new LibSVMLoader();
+      loader.setNumFeatures(sequential.numAttributes() + 2);
+      loader.setFile(new File(m_ExportFilename));
+      assertEquals("Number of attributes differs",
+        sequential.numAttributes() + 3, loader.getStructure().numAttributes());
+      Instances declared = loader.getDataSet();
+      assertEquals("Number of instances differs", sequential.numInstances(),
+        declared.numInstances());
+      for (int i = 0; i < sequential.numInstances(); i++) {
+        assertEquals("Class value differs", sequential.instance(i)
+          .classValue(), declared.instance(i).classValue(), 0.0);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Parallel batch load failed: " + e.toString());
+    }
+  }
+
   /**
    * returns a test suite.
    * 
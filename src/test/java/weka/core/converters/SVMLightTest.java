@@ -19,6 +19,8 @@
 
 package weka.core.converters;
 
+import java.io.File;
+
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -95,6 +97,36 @@ public class SVMLightTest
     }
   }
 
+  /**
+   * tests whether parsing in parallel produces the same dataset as the
+   * sequential parse.
+   */
+  public void testParallelBatch() {
+    try {
+      m_Saver.setInstances(m_Instances);
+      m_Saver.setFile(new File(m_ExportFilename));
+      m_Saver.writeBatch();
+
+      SVMLightLoader loader = new SVMLightLoader();
+      loader.setFile(new File(m_ExportFilename));
+      Instances sequential = loader.getDataSet();
+
+      // small chunks to force many blocks
+      loader = new SVMLightLoader();
+      loader.setNumExecutionSlots(4);
+      loader.setChunkSize(16);
+      loader.setFile(new File(m_ExportFilename));
+      Instances parallel = loader.getDataSet();
+
+      compareDatasets(sequential, parallel);
+      assertEquals("Datasets differ", sequential.toString(),
+        parallel.toString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Parallel batch load failed: " + e.toString());
+    }
+  }
+
   /**
    * returns a test suite.
    * 
@@ -0,0 +1,198 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.converters;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Tests TextDirectoryLoader. Run from the command line with:<p/>
+ * java weka.core.converters.TextDirectoryLoaderTest
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class TextDirectoryLoaderTest extends TestCase {
+
+  /** the class directories */
+  protected static final String[] CLASSES = { "alpha", "beta", "gamma" };
+
+  /** the number of documents in each class directory */
+  protected static final int[] COUNTS = { 5, 2, 7 };
+
+  /** the directory with the class directories */
+  protected File m_Directory;
+
+  public TextDirectoryLoaderTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Creates a directory with a subdirectory per class. Each document contains
+   * the name of its class and its number.
+   *
+   * @throws Exception if the files cannot be created
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_Directory = File.createTempFile("weka_textdir", "");
+    m_Directory.delete();
+    m_Directory.mkdir();
+    for (int i = 0; i < CLASSES.length; i++) {
+      File classDir = new File(m_Directory, CLASSES[i]);
+      classDir.mkdir();
+      for (int n = 0; n < COUNTS[i]; n++) {
+        FileWriter writer = new FileWriter(new File(classDir, "doc" + n + ".txt"));
+        writer.write(CLASSES[i] + " " + n);
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * Removes the directory created by setUp().
+   *
+   * @throws Exception if the files cannot be removed
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    for (String name : CLASSES) {
+      File classDir = new File(m_Directory, name);
+      File[] files = classDir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      classDir.delete();
+    }
+    m_Directory.delete();
+
+    super.tearDown();
+  }
+
+  /**
+   * Reads the directory in batch mode.
+   *
+   * @param slots the number of execution slots
+   * @return the data
+   * @throws Exception if reading fails
+   */
+  protected Instances readBatch(int slots) throws Exception {
+    TextDirectoryLoader loader = new TextDirectoryLoader();
+    loader.setNumExecutionSlots(slots);
+    loader.setSource(m_Directory);
+    return loader.getDataSet();
+  }
+
+  /**
+   * Reads the directory incrementally, collecting the instances in a dataset.
+   *
+   * @param slots the number of execution slots
+   * @return the data
+   * @throws Exception if reading fails
+   */
+  protected Instances readIncremental(int slots) throws Exception {
+    TextDirectoryLoader loader = new TextDirectoryLoader();
+    loader.setNumExecutionSlots(slots);
+    loader.setSource(m_Directory);
+    Instances structure = loader.getStructure();
+    Instances result = structure.stringFreeStructure();
+    Instance inst;
+    while ((inst = loader.getNextInstance(structure)) != null) {
+      // only the current string value is kept in the structure
+      double[] values = inst.toDoubleArray();
+      values[0] = result.attribute(0).addStringValue(inst.stringValue(0));
+      result.add(new DenseInstance(inst.weight(), values));
+    }
+    return result;
+  }
+
+  /**
+   * Tests that each document gets the label of its directory, that the
+   * documents of a class are in the order of their names and that the
+   * classes are interleaved.
+   */
+  public void testClassLabels() throws Exception {
+    Instances data = readBatch(1);
+    int total = 0;
+    for (int count : COUNTS) {
+      total += count;
+    }
+    assertEquals(total, data.numInstances());
+    assertEquals(CLASSES.length, data.classAttribute().numValues());
+
+    int[] next = new int[CLASSES.length];
+    int i = 0;
+    for (int n = 0; i < data.numInstances(); n++) {
+      // the labels are in the order the directories are listed
+      for (int label = 0; label < CLASSES.length; label++) {
+        String name = data.classAttribute().value(label);
+        int c = Arrays.asList(CLASSES).indexOf(name);
+        if (n < COUNTS[c]) {
+          Instance inst = data.instance(i++);
+          assertEquals(name, inst.stringValue(data.classIndex()));
+          assertEquals(name + " " + next[c]++, inst.stringValue(0));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that batch and incremental reads give the same instances in the
+   * same order.
+   */
+  public void testBatchEqualsIncremental() throws Exception {
+    assertEquals(readBatch(1).toString(), readIncremental(1).toString());
+  }
+
+  /**
+   * Tests that the output does not depend on the number of threads reading
+   * the documents.
+   */
+  public void testExecutionSlots() throws Exception {
+    String batch = readBatch(1).toString();
+    String incremental = readIncremental(1).toString();
+    for (int slots : new int[] { 2, 4, 0 }) {
+      assertEquals("Batch, " + slots + " slots", batch, readBatch(slots)
+        .toString());
+      assertEquals("Incremental, " + slots + " slots", incremental,
+        readIncremental(slots).toString());
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(TextDirectoryLoaderTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
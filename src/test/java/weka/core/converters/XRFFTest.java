@@ -19,8 +19,15 @@
 
 package weka.core.converters;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
 
 /**
  * Tests XRFFLoader/XRFFSaver. Run from the command line with:<p/>
@@ -59,6 +66,124 @@ public class XRFFTest
     return new XRFFSaver();
   }
 
+  /** the header used by the incremental tests */
+  protected static final String HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+    + "<dataset name=\"rel\" version=\"3.4.3\">\n"
+    + "<header><attributes>\n"
+    + "<attribute name=\"num\" type=\"numeric\"/>\n"
+    + "<attribute name=\"nom\" type=\"nominal\">"
+    + "<labels><label>a</label><label>b</label></labels></attribute>\n"
+    + "<attribute name=\"str\" type=\"string\"/>\n"
+    + "</attributes></header>\n"
+    + "<body><instances>\n";
+
+  /** the end of the document used by the incremental tests */
+  protected static final String FOOTER = "</instances></body></dataset>\n";
+
+  /**
+   * reads the given XRFF document incrementally. The values of the string
+   * attribute are collected as they are read, since only the current one is
+   * kept in incremental mode.
+   * 
+   * @param xml the document
+   * @param strings the list to add the string values to
+   * @return the instances read
+   * @throws IOException if reading fails
+   */
+  protected ArrayList<Instance> readIncremental(String xml,
+    ArrayList<String> strings) throws IOException {
+    XRFFLoader loader = new XRFFLoader();
+    loader.setSource(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    Instances structure = loader.getStructure();
+    ArrayList<Instance> result = new ArrayList<Instance>();
+    Instance inst;
+    while ((inst = loader.getNextInstance(structure)) != null) {
+      result.add(inst);
+      strings.add(inst.isMissing(2) ? null : inst.stringValue(2));
+    }
+    return result;
+  }
+
+  /**
+   * tests reading dense and sparse instances with weights incrementally.
+   */
+  public void testIncrementalSparseAndWeights() {
+    String xml = HEADER
+      + "<instance weight=\"2.5\"><value>1.5</value><value>b</value>"
+      + "<value>hello</value></instance>\n"
+      + "<instance type=\"sparse\" weight=\"0.5\"><value index=\"2\">b</value>"
+      + "<value index=\"3\">world</value></instance>\n"
+      + "<instance><value missing=\"yes\"/><value>a</value>"
+      + "<value>x</value></instance>\n"
+      + FOOTER;
+    try {
+      ArrayList<String> strings = new ArrayList<String>();
+      ArrayList<Instance> insts = readIncremental(xml, strings);
+      assertEquals("Number of instances", 3, insts.size());
+
+      Instance inst = insts.get(0);
+      assertFalse("Dense instance read as sparse",
+        inst instanceof SparseInstance);
+      assertEquals("Weight", 2.5, inst.weight(), 0.0);
+      assertEquals("Numeric value", 1.5, inst.value(0), 0.0);
+      assertEquals("Nominal value", "b", inst.stringValue(1));
+      assertEquals("String value", "hello", strings.get(0));
+
+      inst = insts.get(1);
+      assertTrue("Sparse instance read as dense",
+        inst instanceof SparseInstance);
+      assertEquals("Weight", 0.5, inst.weight(), 0.0);
+      assertEquals("Implicit value", 0.0, inst.value(0), 0.0);
+      assertEquals("Nominal value", "b", inst.stringValue(1));
+      assertEquals("String value", "world", strings.get(1));
+
+      inst = insts.get(2);
+      assertEquals("Weight", 1.0, inst.weight(), 0.0);
+      assertTrue("Missing value", inst.isMissing(0));
+      assertEquals("Nominal value", "a", inst.stringValue(1));
+      assertEquals("String value", "x", strings.get(2));
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Incremental read failed: " + e.toString());
+    }
+  }
+
+  /**
+   * tests that malformed documents raise an error instead of being truncated
+   * silently.
+   */
+  public void testIncrementalMalformed() {
+    String first =
+      "<instance><value>1.5</value><value>b</value><value>s</value></instance>\n";
+    String[] malformed = {
+      // document ends inside the instances
+      HEADER + first,
+      HEADER + first + "<instance><value>2</value>",
+      HEADER + first + "</instances>",
+      // undeclared label
+      HEADER + first + "<instance><value>1</value><value>c</value>"
+        + "<value>s</value></instance>\n" + FOOTER,
+      // not a number
+      HEADER + first + "<instance><value>x</value><value>a</value>"
+        + "<value>s</value></instance>\n" + FOOTER,
+      // invalid weight
+      HEADER + first + "<instance weight=\"heavy\"><value>1</value>"
+        + "<value>a</value><value>s</value></instance>\n" + FOOTER,
+      // wrong number of values
+      HEADER + first + "<instance><value>1</value><value>a</value></instance>\n"
+        + FOOTER,
+      // not well-formed
+      HEADER + first + "<instance><value>1</instance>\n" + FOOTER};
+    for (String xml : malformed) {
+      try {
+        readIncremental(xml, new ArrayList<String>());
+        fail("No error for malformed document: " + xml);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
   /**
    * returns a test suite
    * 
@@ -0,0 +1,155 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.experiment;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import javax.swing.DefaultListModel;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.converters.ArffSaver;
+
+/**
+ * Tests running experiments with the Experiment class.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class ExperimentTest extends TestCase {
+
+  /** the datasets of the experiment */
+  protected File[] m_Datasets;
+
+  public ExperimentTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Writes the datasets used by the experiments to temporary files.
+   *
+   * @throws Exception if writing fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    String[] resources = { "weka/classifiers/pmml/data/iris.arff",
+      "weka/classifiers/pmml/data/heart-c.arff" };
+    m_Datasets = new File[resources.length];
+    for (int i = 0; i < resources.length; i++) {
+      Reader reader = new InputStreamReader(ClassLoader
+        .getSystemResourceAsStream(resources[i]));
+      Instances data = new Instances(reader);
+      reader.close();
+      m_Datasets[i] = File.createTempFile("weka_experiment", ".arff");
+      m_Datasets[i].deleteOnExit();
+      ArffSaver saver = new ArffSaver();
+      saver.setInstances(data);
+      saver.setFile(m_Datasets[i]);
+      saver.writeBatch();
+    }
+  }
+
+  /**
+   * Removes the temporary datasets.
+   *
+   * @throws Exception if removing fails
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    for (File file : m_Datasets) {
+      file.delete();
+    }
+
+    super.tearDown();
+  }
+
+  /**
+   * Runs a random split experiment with J48 on the datasets.
+   *
+   * @param numThreads the number of threads to run the experiment with
+   * @return the results, without the columns that depend on timing
+   * @throws Exception if the experiment fails
+   */
+  protected Instances runExperiment(int numThreads) throws Exception {
+    File output = File.createTempFile("weka_experiment", ".arff");
+    output.deleteOnExit();
+    try {
+      Experiment exp = new Experiment();
+      DefaultListModel datasets = new DefaultListModel();
+      for (File file : m_Datasets) {
+        datasets.addElement(file);
+      }
+      exp.setDatasets(datasets);
+      exp.setRunLower(1);
+      exp.setRunUpper(5);
+      ClassifierSplitEvaluator se = new ClassifierSplitEvaluator();
+      se.setClassifier(new J48());
+      RandomSplitResultProducer rp = new RandomSplitResultProducer();
+      rp.setSplitEvaluator(se);
+      exp.setResultProducer(rp);
+      InstancesResultListener listener = new InstancesResultListener();
+      listener.setOutputFile(output);
+      exp.setResultListener(listener);
+
+      exp.initialize();
+      exp.runExperiment(false, numThreads);
+      exp.postProcess();
+
+      Reader reader = new FileReader(output);
+      Instances result = new Instances(reader);
+      reader.close();
+      for (int i = result.numAttributes() - 1; i >= 0; i--) {
+        String name = result.attribute(i).name();
+        if (name.startsWith("Date_time") || (name.indexOf("Time_") > -1)) {
+          result.deleteAttributeAt(i);
+        }
+      }
+      return result;
+    } finally {
+      output.delete();
+    }
+  }
+
+  /**
+   * Tests that running the experiment with several threads gives the same
+   * results in the same order as running it sequentially.
+   */
+  public void testParallelRun() throws Exception {
+    Instances sequential = runExperiment(1);
+    assertEquals(2 * 5, sequential.numInstances());
+    assertEquals(sequential.toString(), runExperiment(3).toString());
+  }
+
+  public static Test suite() {
+    return new TestSuite(ExperimentTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.experiment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Tests the ResultKeyIndex class.
+ *
+ * @author The WEKA Team
+ * @version $Revision$
+ */
+public class ResultKeyIndexTest extends TestCase {
+
+  public ResultKeyIndexTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a key as generated by the cross-validation result producer.
+   *
+   * @param run the run
+   * @param fold the fold
+   * @return the key
+   */
+  protected Object[] key(int run, int fold) {
+    return new Object[] { "iris", "" + run, "" + fold,
+      "weka.classifiers.trees.J48", "'-C 0.25 -M 2'", null };
+  }
+
+  public void testContains() throws Exception {
+    ResultKeyIndex index = new ResultKeyIndex();
+    for (int run = 1; run <= 100; run++) {
+      for (int fold = 1; fold <= 10; fold++) {
+        index.add(key(run, fold));
+      }
+    }
+    index.add(key(1, 1));
+    assertEquals(1000, index.size());
+    assertTrue(index.contains(key(100, 10)));
+    assertFalse(index.contains(key(101, 1)));
+    assertFalse(index.contains(new Object[] { "iris", "1", "1" }));
+    assertFalse(index.contains(new Object[] { "iris", new Double(1), "1",
+      "weka.classifiers.trees.J48", "'-C 0.25 -M 2'", null }));
+  }
+
+  public void testResume() throws Exception {
+    File file = File.createTempFile("weka_keys", ResultKeyIndex.FILE_EXTENSION);
+    file.deleteOnExit();
+
+    ResultKeyIndex index = new ResultKeyIndex(file, false);
+    index.add(key(1, 1));
+    index.add(key(1, 2));
+    index.close();
+
+    // a partially written key is skipped
+    FileOutputStream out = new FileOutputStream(file, true);
+    out.write(new byte[] { 1, 2, 3 });
+    out.close();
+
+    index = new ResultKeyIndex(file, true);
+    assertEquals(2, index.size());
+    assertTrue(index.contains(key(1, 2)));
+    index.add(key(1, 3));
+    index.close();
+
+    index = new ResultKeyIndex(file, true);
+    assertEquals(3, index.size());
+    assertTrue(index.contains(key(1, 3)));
+    index.close();
+
+    index = new ResultKeyIndex(file, false);
+    assertEquals(0, index.size());
+    index.close();
+    file.delete();
+  }
+
+  public static Test suite() {
+    return new TestSuite(ResultKeyIndexTest.class);
+  }
+
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}